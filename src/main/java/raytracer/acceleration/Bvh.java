@@ -0,0 +1,391 @@
+package raytracer.acceleration;
+
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.TraceStats;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Point;
+import raytracer.geometry.shapes.Shape;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hiérarchie de volumes englobants (BVH) sur une liste de formes.
+ *
+ * Les formes bornées sont réparties dans un arbre binaire de boîtes
+ * englobantes, construit en parallèle par BvhBuilder (SAH par
+ * intervalles) ; les formes non bornées (plans) sont testées une à une.
+ *
+ * L'arbre est stocké à plat dans un tableau d'entiers, en profondeur
+ * d'abord, à raison de NODE_INTS entiers (32 octets) par nœud :
+ *
+ *   0..5 : boîte min x, y, z, max x, y, z (bits de float, arrondis vers
+ *          l'extérieur pour rester conservatifs)
+ *   6    : nœud interne : indice de l'enfant droit (le gauche suit
+ *          immédiatement le nœud) ; feuille : début de ses formes dans
+ *          le tableau des formes permutées
+ *   7    : feuille : nombre de formes (&gt; 0) ; nœud interne : -1 - axe
+ *          de coupe
+ *
+ * Le parcours est une boucle avec une petite pile d'entiers, sans
+ * récursion ni allocation par nœud, qui visite d'abord l'enfant situé du
+ * côté de l'origine du rayon.
+ *
+ * La recherche de l'intersection la plus proche donne le même résultat
+ * que le parcours linéaire de la liste : à distance égale, la forme de
+ * plus petit indice l'emporte.
+ *
+ * Lorsque les formes se déplacent sans changer de nature (animation),
+ * refit recalcule les boîtes de bas en haut sans modifier la topologie
+ * de l'arbre. La qualité de l'arbre est mesurée par son coût SAH, qu'il
+ * convient de comparer à celui obtenu à la construction pour décider d'une
+ * reconstruction. refit ne doit pas être appelée pendant un rendu.
+ */
+public final class Bvh {
+
+    /** Nombre maximal de formes par feuille. */
+    public static final int MAX_LEAF_SIZE = 4;
+
+    /** Coût SAH de la traversée d'un nœud interne, relatif à un test de forme. */
+    public static final double TRAVERSAL_COST = 1.0;
+
+    /** Coût SAH d'un test d'intersection avec une forme. */
+    public static final double INTERSECTION_COST = 1.0;
+
+    /** Nombre d'entiers par nœud (32 octets). */
+    public static final int NODE_INTS = 8;
+
+    /**
+     * Taille de la pile de parcours : au plus un nœud par niveau, et la
+     * profondeur est bornée par BvhBuilder.MAX_SAH_DEPTH plus celle d'une
+     * coupe à la médiane.
+     */
+    public static final int STACK_SIZE = 128;
+
+    /** Formes indexées par la hiérarchie. */
+    private final Shape[] shapes;
+
+    /** Indices des formes non bornées, testées à chaque requête. */
+    private final int[] unbounded;
+
+    /** Nœuds de l'arbre, NODE_INTS entiers par nœud. */
+    private final int[] nodes;
+
+    /** Indices des formes bornées, permutés pour que chaque feuille soit contiguë. */
+    private final int[] primitives;
+
+    /** Nombre de nœuds de l'arbre. */
+    private final int nodeCount;
+
+    /** Boîte englobant toutes les formes. */
+    private BoundingBox bounds;
+
+    /** Coût SAH de l'arbre à sa construction. */
+    private final double buildCost;
+
+    /**
+     * Pile de parcours propre à chaque thread. Elle est propre à chaque
+     * hiérarchie : le parcours d'un prototype d'instance s'effectue pendant
+     * celui de la scène.
+     */
+    private final ThreadLocal<int[]> stacks = ThreadLocal.withInitial(() -> new int[STACK_SIZE]);
+
+    /**
+     * Construit la hiérarchie sur une liste de formes, en parallèle sur le
+     * pool commun.
+     *
+     * @param shapes formes à indexer ; la liste n'est pas conservée
+     */
+    public Bvh(List<? extends Shape> shapes) {
+        this(shapes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construit la hiérarchie sur une liste de formes (SAH par intervalles,
+     * voir BvhBuilder).
+     *
+     * @param shapes formes à indexer ; la liste n'est pas conservée
+     * @param pool pool exécutant les tâches de construction
+     */
+    public Bvh(List<? extends Shape> shapes, ForkJoinPool pool) {
+        this.shapes = shapes.toArray(new Shape[0]);
+
+        int n = this.shapes.length;
+        double[] boxes = BvhBuilder.boxes(this.shapes, pool);
+        int[] bounded = new int[n];
+        int boundedCount = 0;
+        int[] infinite = new int[n];
+        int infiniteCount = 0;
+        for (int k = 0; k < n; k++) {
+            int o = 6 * k;
+            if (Double.isInfinite(boxes[o]) || Double.isInfinite(boxes[o + 1]) || Double.isInfinite(boxes[o + 2])
+                    || Double.isInfinite(boxes[o + 3]) || Double.isInfinite(boxes[o + 4])
+                    || Double.isInfinite(boxes[o + 5])) {
+                infinite[infiniteCount++] = k;
+            } else if (boxes[o] <= boxes[o + 3] && boxes[o + 1] <= boxes[o + 4] && boxes[o + 2] <= boxes[o + 5]) {
+                bounded[boundedCount++] = k;
+            }
+        }
+        this.unbounded = Arrays.copyOf(infinite, infiniteCount);
+        this.primitives = Arrays.copyOf(bounded, boundedCount);
+        this.nodes = new BvhBuilder(boxes, primitives).build(pool);
+        this.nodeCount = nodes.length / NODE_INTS;
+        this.bounds = infiniteCount > 0 ? BoundingBox.INFINITE
+                : nodeCount == 0 ? BoundingBox.EMPTY : nodeBounds(0);
+        this.buildCost = getSahCost();
+    }
+
+    /**
+     * Construit, sans formes associées, un arbre au format des nœuds de Bvh
+     * sur des boîtes déjà calculées. Les copies compactes de la géométrie
+     * (rendu en simple précision) utilisent ainsi la même structure et le
+     * même constructeur SAH que la scène.
+     *
+     * @param boxes boîtes des primitives, 6 valeurs (min x, y, z, max x, y, z) par primitive
+     * @param primitives indices des primitives à indexer, permutés sur place
+     *        pour que chaque feuille soit contiguë
+     * @return nœuds, NODE_INTS entiers par nœud
+     */
+    public static int[] buildNodes(double[] boxes, int[] primitives) {
+        return new BvhBuilder(boxes, primitives).build(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Écrit une boîte dans un nœud, en float arrondi vers l'extérieur.
+     */
+    private static void writeBounds(int[] nodes, int node, BoundingBox box) {
+        writeBounds(nodes, node, new double[] {
+                box.getMinX(), box.getMinY(), box.getMinZ(),
+                box.getMaxX(), box.getMaxY(), box.getMaxZ()});
+    }
+
+    /**
+     * Écrit une boîte (min x, y, z, max x, y, z) dans un nœud, en float
+     * arrondi vers l'extérieur.
+     */
+    static void writeBounds(int[] nodes, int node, double[] box) {
+        int o = NODE_INTS * node;
+        for (int k = 0; k < 3; k++) {
+            nodes[o + k] = Float.floatToRawIntBits(down(box[k]));
+            nodes[o + 3 + k] = Float.floatToRawIntBits(up(box[3 + k]));
+        }
+    }
+
+    private static float down(double v) {
+        float f = (float) v;
+        return f > v ? Math.nextDown(f) : f;
+    }
+
+    private static float up(double v) {
+        float f = (float) v;
+        return f < v ? Math.nextUp(f) : f;
+    }
+
+    private float bound(int node, int k) {
+        return Float.intBitsToFloat(nodes[NODE_INTS * node + k]);
+    }
+
+    private BoundingBox nodeBounds(int node) {
+        return new BoundingBox(bound(node, 0), bound(node, 1), bound(node, 2),
+                bound(node, 3), bound(node, 4), bound(node, 5));
+    }
+
+    /**
+     * Recherche l'intersection la plus proche (t &gt; 0) entre un rayon et
+     * les formes indexées, jusqu'au tMax du rayon. tMax est réduit à
+     * chaque intersection trouvée, puis rétabli. Les tests effectués sont
+     * comptés dans TraceStats.
+     *
+     * @param ray rayon testé
+     * @return intersection la plus proche, si elle existe
+     */
+    public Optional<Intersection> intersect(Ray ray) {
+        Optional<Intersection> best = Optional.empty();
+        double tMax = ray.getTMax();
+        double bestT = tMax;
+        int bestIndex = Integer.MAX_VALUE;
+        long tests = 0;
+
+        for (int k : unbounded) {
+            tests++;
+            Optional<Intersection> hit = shapes[k].intersect(ray);
+            if (hit.isPresent()) {
+                double t = hit.get().getT();
+                if (t > 0 && (t < bestT || (t == bestT && k < bestIndex))) {
+                    best = hit;
+                    bestT = t;
+                    bestIndex = k;
+                    ray.setTMax(Math.min(tMax, t));
+                }
+            }
+        }
+
+        if (nodeCount > 0) {
+            Point o = ray.getOrigin();
+            double ox = o.x, oy = o.y, oz = o.z;
+            double ix = ray.getInvDirX(), iy = ray.getInvDirY(), iz = ray.getInvDirZ();
+            int[] stack = stacks.get();
+            int top = 0;
+            int node = 0;
+
+            while (true) {
+                int base = NODE_INTS * node;
+                if (hitsBox(nodes, base, ox, oy, oz, ix, iy, iz, bestT)) {
+                    int count = nodes[base + 7];
+                    if (count > 0) {
+                        int first = nodes[base + 6];
+                        for (int p = first; p < first + count; p++) {
+                            int k = primitives[p];
+                            tests++;
+                            Optional<Intersection> hit = shapes[k].intersect(ray);
+                            if (hit.isPresent()) {
+                                double t = hit.get().getT();
+                                if (t > 0 && (t < bestT || (t == bestT && k < bestIndex))) {
+                                    best = hit;
+                                    bestT = t;
+                                    bestIndex = k;
+                                    // les formes suivantes abandonnent au-delà de ce point
+                                    ray.setTMax(Math.min(tMax, t));
+                                }
+                            }
+                        }
+                    } else {
+                        // enfant proche d'abord, l'autre sur la pile
+                        if (ray.isNegative(-1 - count)) {
+                            stack[top++] = node + 1;
+                            node = nodes[base + 6];
+                        } else {
+                            stack[top++] = nodes[base + 6];
+                            node = node + 1;
+                        }
+                        continue;
+                    }
+                }
+                if (top == 0) {
+                    break;
+                }
+                node = stack[--top];
+            }
+        }
+
+        ray.setTMax(tMax);
+        TraceStats stats = TraceStats.current();
+        if (stats != null) {
+            stats.intersectionTests += tests;
+        }
+        return best;
+    }
+
+    /**
+     * Test du segment [0, tMax] contre la boîte d'un nœud (méthode des
+     * slabs). Lorsque l'origine est exactement sur un plan de la boîte avec
+     * une direction parallèle, 0 * infini donne NaN : l'ordre des
+     * comparaisons fait alors retenir le NaN, qui laisse les bornes
+     * inchangées, et le test reste conservatif.
+     */
+    static boolean hitsBox(int[] nodes, int base, double ox, double oy, double oz,
+                           double ix, double iy, double iz, double tMax) {
+        double t0 = 0.0;
+        double t1 = tMax;
+
+        double a = (Float.intBitsToFloat(nodes[base]) - ox) * ix;
+        double b = (Float.intBitsToFloat(nodes[base + 3]) - ox) * ix;
+        double near = b < a ? b : a;
+        double far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (Float.intBitsToFloat(nodes[base + 1]) - oy) * iy;
+        b = (Float.intBitsToFloat(nodes[base + 4]) - oy) * iy;
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (Float.intBitsToFloat(nodes[base + 2]) - oz) * iz;
+        b = (Float.intBitsToFloat(nodes[base + 5]) - oz) * iz;
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        return t0 <= t1;
+    }
+
+    /**
+     * Recalcule les boîtes englobantes de bas en haut après un déplacement
+     * des formes, en O(N). Les enfants d'un nœud étant rangés après lui,
+     * un seul parcours du tableau à rebours suffit. La répartition des
+     * formes entre les feuilles est conservée : elle peut devenir médiocre
+     * si les formes se sont beaucoup déplacées, ce que mesure getSahCost.
+     *
+     * @return coût SAH de l'arbre après mise à jour
+     */
+    public double refit() {
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int base = NODE_INTS * node;
+            int count = nodes[base + 7];
+            if (count > 0) {
+                BoundingBox box = BoundingBox.EMPTY;
+                int first = nodes[base + 6];
+                for (int p = first; p < first + count; p++) {
+                    box = box.union(shapes[primitives[p]].getBounds());
+                }
+                writeBounds(nodes, node, box);
+            } else {
+                int left = base + NODE_INTS;
+                int right = NODE_INTS * nodes[base + 6];
+                for (int k = 0; k < 3; k++) {
+                    nodes[base + k] = Float.floatToRawIntBits(Math.min(
+                            Float.intBitsToFloat(nodes[left + k]), Float.intBitsToFloat(nodes[right + k])));
+                    nodes[base + 3 + k] = Float.floatToRawIntBits(Math.max(
+                            Float.intBitsToFloat(nodes[left + 3 + k]), Float.intBitsToFloat(nodes[right + 3 + k])));
+                }
+            }
+        }
+        if (nodeCount > 0) {
+            bounds = unbounded.length == 0 ? nodeBounds(0) : BoundingBox.INFINITE;
+        }
+        return getSahCost();
+    }
+
+    /**
+     * Calcule le coût SAH de l'arbre : somme, sur les nœuds, de la
+     * probabilité qu'un rayon touchant la racine touche le nœud (rapport
+     * des aires) multipliée par le coût du nœud (traversée ou tests des
+     * formes de la feuille). Le coût est indépendant de l'échelle de la scène.
+     *
+     * @return coût SAH, 0 pour un arbre vide ou dégénéré
+     */
+    public double getSahCost() {
+        if (nodeCount == 0) {
+            return 0.0;
+        }
+        double rootArea = nodeBounds(0).surfaceArea();
+        if (!(rootArea > 0.0) || Double.isInfinite(rootArea)) {
+            return 0.0;
+        }
+        double cost = 0.0;
+        for (int node = 0; node < nodeCount; node++) {
+            double area = nodeBounds(node).surfaceArea();
+            int count = nodes[NODE_INTS * node + 7];
+            cost += count > 0 ? area * INTERSECTION_COST * count : area * TRAVERSAL_COST;
+        }
+        return cost / rootArea;
+    }
+
+    /** @return coût SAH de l'arbre à sa construction */
+    public double getBuildCost() { return buildCost; }
+
+    /** @return boîte englobant toutes les formes, infinie si l'une ne l'est pas */
+    public BoundingBox getBounds() { return bounds; }
+
+    /** @return nombre de formes indexées */
+    public int size() { return shapes.length; }
+
+    /** @return nombre de nœuds de l'arbre des formes bornées */
+    public int getNodeCount() { return nodeCount; }
+}
@@ -0,0 +1,499 @@
+package raytracer.acceleration;
+
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.shapes.Shape;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Construction parallèle d'une Bvh par SAH sur des intervalles (binned SAH).
+ *
+ * Pour chaque nœud, les centres des primitives sont répartis dans BINS
+ * intervalles le long de l'axe où ils sont le plus étendus ; parmi les
+ * BINS - 1 plans séparant ces intervalles, on retient celui qui minimise
+ * le coût SAH estimé
+ *
+ *   TRAVERSAL_COST + (aire gauche * n gauche + aire droite * n droite)
+ *                    / aire du nœud * INTERSECTION_COST
+ *
+ * puis les primitives sont partitionnées sur place. Les deux sous-arbres
+ * sont construits par des tâches ForkJoin distinctes au-dessus de
+ * PARALLEL_THRESHOLD primitives ; au-dessus de CHUNK_SIZE, le calcul des
+ * boîtes et la répartition dans les intervalles sont eux aussi découpés
+ * en tâches. L'arbre obtenu est ensuite aplati en profondeur d'abord au
+ * format de Bvh.
+ *
+ * Au-delà de MAX_SAH_DEPTH niveaux, la coupe se fait à la médiane pour
+ * borner la profondeur, et donc la pile de parcours.
+ */
+final class BvhBuilder {
+
+    /** Nombre d'intervalles par axe. */
+    static final int BINS = 16;
+
+    /** Nombre de primitives à partir duquel les sous-arbres sont construits en parallèle. */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    /** Taille des tranches de primitives traitées par une même tâche. */
+    static final int CHUNK_SIZE = 16384;
+
+    /** Profondeur au-delà de laquelle la coupe se fait à la médiane. */
+    static final int MAX_SAH_DEPTH = 64;
+
+    /** Boîtes des primitives, 6 valeurs (min x, y, z, max x, y, z) par forme. */
+    private final double[] boxes;
+
+    /** Indices des formes, permutés au fil de la construction. */
+    private final int[] primitives;
+
+    /**
+     * Prépare la construction.
+     *
+     * @param boxes boîtes de toutes les formes, 6 valeurs par forme
+     * @param primitives indices des formes à indexer, permutés sur place
+     */
+    BvhBuilder(double[] boxes, int[] primitives) {
+        this.boxes = boxes;
+        this.primitives = primitives;
+    }
+
+    /**
+     * Construit l'arbre et l'aplatit.
+     *
+     * @param pool pool exécutant les tâches
+     * @return nœuds au format de Bvh, Bvh.NODE_INTS entiers par nœud
+     */
+    int[] build(ForkJoinPool pool) {
+        if (primitives.length == 0) {
+            return new int[0];
+        }
+        Node root = pool.invoke(new BuildTask(0, primitives.length, 0));
+        int[] nodes = new int[Bvh.NODE_INTS * root.size];
+        flatten(root, nodes, 0);
+        return nodes;
+    }
+
+    /**
+     * Écrit le sous-arbre de node à partir de l'indice index.
+     *
+     * @return indice suivant le sous-arbre
+     */
+    private static int flatten(Node node, int[] nodes, int index) {
+        Bvh.writeBounds(nodes, index, node.bounds);
+        int base = Bvh.NODE_INTS * index;
+        if (node.left == null) {
+            nodes[base + 6] = node.first;
+            nodes[base + 7] = node.count;
+            return index + 1;
+        }
+        int right = flatten(node.left, nodes, index + 1);
+        nodes[base + 6] = right;
+        nodes[base + 7] = -1 - node.axis;
+        return flatten(node.right, nodes, right);
+    }
+
+    /**
+     * Calcule en parallèle les boîtes et les centres d'un intervalle.
+     */
+    private Extent extent(int from, int to) {
+        return to - from > CHUNK_SIZE
+                ? new ExtentTask(from, to).invoke()
+                : computeExtent(from, to);
+    }
+
+    private Extent computeExtent(int from, int to) {
+        Extent e = new Extent();
+        for (int p = from; p < to; p++) {
+            int o = 6 * primitives[p];
+            for (int axis = 0; axis < 3; axis++) {
+                double lo = boxes[o + axis];
+                double hi = boxes[o + 3 + axis];
+                double c = 0.5 * (lo + hi);
+                e.bounds[axis] = Math.min(e.bounds[axis], lo);
+                e.bounds[3 + axis] = Math.max(e.bounds[3 + axis], hi);
+                e.centers[axis] = Math.min(e.centers[axis], c);
+                e.centers[3 + axis] = Math.max(e.centers[3 + axis], c);
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Répartit en parallèle les primitives d'un intervalle dans les BINS
+     * intervalles de l'axe donné.
+     */
+    private Bins bin(int from, int to, int axis, double min, double scale) {
+        return to - from > CHUNK_SIZE
+                ? new BinTask(from, to, axis, min, scale).invoke()
+                : computeBins(from, to, axis, min, scale);
+    }
+
+    private Bins computeBins(int from, int to, int axis, double min, double scale) {
+        Bins bins = new Bins();
+        for (int p = from; p < to; p++) {
+            int o = 6 * primitives[p];
+            int b = binOf(o, axis, min, scale);
+            bins.counts[b]++;
+            int ob = 6 * b;
+            for (int k = 0; k < 3; k++) {
+                bins.bounds[ob + k] = Math.min(bins.bounds[ob + k], boxes[o + k]);
+                bins.bounds[ob + 3 + k] = Math.max(bins.bounds[ob + 3 + k], boxes[o + 3 + k]);
+            }
+        }
+        return bins;
+    }
+
+    private int binOf(int o, int axis, double min, double scale) {
+        double c = 0.5 * (boxes[o + axis] + boxes[o + 3 + axis]);
+        int b = (int) ((c - min) * scale);
+        return b < 0 ? 0 : b >= BINS ? BINS - 1 : b;
+    }
+
+    /**
+     * Construit le sous-arbre des primitives [from, to[.
+     */
+    @SuppressWarnings("serial")
+    private final class BuildTask extends RecursiveTask<Node> {
+
+        private final int from;
+        private final int to;
+        private final int depth;
+
+        BuildTask(int from, int to, int depth) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Node compute() {
+            Extent extent = extent(from, to);
+            int count = to - from;
+            if (count <= Bvh.MAX_LEAF_SIZE) {
+                Arrays.sort(primitives, from, to);
+                return Node.leaf(extent.bounds, from, count);
+            }
+
+            int axis = 0;
+            double best = -1.0;
+            for (int k = 0; k < 3; k++) {
+                double size = extent.centers[3 + k] - extent.centers[k];
+                if (size > best) {
+                    best = size;
+                    axis = k;
+                }
+            }
+
+            int mid = best > 0.0 && depth < MAX_SAH_DEPTH
+                    ? sahSplit(extent, axis)
+                    : -1;
+            if (mid < 0) {
+                mid = medianSplit(axis);
+            }
+
+            BuildTask left = new BuildTask(from, mid, depth + 1);
+            BuildTask right = new BuildTask(mid, to, depth + 1);
+            Node l;
+            Node r;
+            if (count > PARALLEL_THRESHOLD) {
+                left.fork();
+                r = right.compute();
+                l = left.join();
+            } else {
+                l = left.compute();
+                r = right.compute();
+            }
+            return Node.interior(extent.bounds, axis, l, r);
+        }
+
+        /**
+         * Coupe au meilleur plan SAH et partitionne les primitives.
+         *
+         * @return indice de coupe, ou -1 si aucun plan ne sépare les primitives
+         */
+        private int sahSplit(Extent extent, int axis) {
+            double min = extent.centers[axis];
+            double scale = BINS / (extent.centers[3 + axis] - min);
+            Bins bins = bin(from, to, axis, min, scale);
+
+            // aires et effectifs cumulés depuis la droite
+            double[] rightArea = new double[BINS];
+            int[] rightCount = new int[BINS];
+            double[] box = Bins.empty();
+            int n = 0;
+            for (int b = BINS - 1; b > 0; b--) {
+                bins.include(box, b);
+                n += bins.counts[b];
+                rightArea[b] = area(box);
+                rightCount[b] = n;
+            }
+
+            double nodeArea = area(extent.bounds);
+            int split = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            box = Bins.empty();
+            n = 0;
+            for (int b = 1; b < BINS; b++) {
+                bins.include(box, b - 1);
+                n += bins.counts[b - 1];
+                if (n == 0 || rightCount[b] == 0) {
+                    continue;
+                }
+                double cost = Bvh.TRAVERSAL_COST + Bvh.INTERSECTION_COST
+                        * (area(box) * n + rightArea[b] * rightCount[b]) / nodeArea;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    split = b;
+                }
+            }
+            if (split < 0) {
+                return -1;
+            }
+
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                if (binOf(6 * primitives[i], axis, min, scale) < split) {
+                    i++;
+                } else {
+                    int tmp = primitives[i];
+                    primitives[i] = primitives[j];
+                    primitives[j--] = tmp;
+                }
+            }
+            return i;
+        }
+
+        /**
+         * Coupe à la médiane des centres le long de l'axe.
+         */
+        private int medianSplit(int axis) {
+            Integer[] items = new Integer[to - from];
+            for (int p = from; p < to; p++) {
+                items[p - from] = primitives[p];
+            }
+            Arrays.sort(items, (a, b) -> Double.compare(
+                    boxes[6 * a + axis] + boxes[6 * a + 3 + axis],
+                    boxes[6 * b + axis] + boxes[6 * b + 3 + axis]));
+            for (int p = from; p < to; p++) {
+                primitives[p] = items[p - from];
+            }
+            return (from + to) >>> 1;
+        }
+    }
+
+    private static double area(double[] box) {
+        double dx = box[3] - box[0];
+        double dy = box[4] - box[1];
+        double dz = box[5] - box[2];
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0.0;
+        }
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /**
+     * Boîtes et centres d'un intervalle, calculés par tranches.
+     */
+    @SuppressWarnings("serial")
+    private final class ExtentTask extends RecursiveTask<Extent> {
+
+        private final int from;
+        private final int to;
+
+        ExtentTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Extent compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return computeExtent(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            ExtentTask left = new ExtentTask(from, mid);
+            left.fork();
+            Extent right = new ExtentTask(mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Répartition d'un intervalle dans les BINS intervalles, par tranches.
+     */
+    @SuppressWarnings("serial")
+    private final class BinTask extends RecursiveTask<Bins> {
+
+        private final int from;
+        private final int to;
+        private final int axis;
+        private final double min;
+        private final double scale;
+
+        BinTask(int from, int to, int axis, double min, double scale) {
+            this.from = from;
+            this.to = to;
+            this.axis = axis;
+            this.min = min;
+            this.scale = scale;
+        }
+
+        @Override
+        protected Bins compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return computeBins(from, to, axis, min, scale);
+            }
+            int mid = (from + to) >>> 1;
+            BinTask left = new BinTask(from, mid, axis, min, scale);
+            left.fork();
+            Bins right = new BinTask(mid, to, axis, min, scale).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Boîte englobant des primitives et boîte de leurs centres.
+     */
+    private static final class Extent {
+
+        final double[] bounds = Bins.empty();
+        final double[] centers = Bins.empty();
+
+        Extent merge(Extent other) {
+            for (int k = 0; k < 3; k++) {
+                bounds[k] = Math.min(bounds[k], other.bounds[k]);
+                bounds[3 + k] = Math.max(bounds[3 + k], other.bounds[3 + k]);
+                centers[k] = Math.min(centers[k], other.centers[k]);
+                centers[3 + k] = Math.max(centers[3 + k], other.centers[3 + k]);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Effectifs et boîtes des BINS intervalles.
+     */
+    private static final class Bins {
+
+        final int[] counts = new int[BINS];
+        final double[] bounds = new double[6 * BINS];
+
+        Bins() {
+            for (int b = 0; b < BINS; b++) {
+                System.arraycopy(empty(), 0, bounds, 6 * b, 6);
+            }
+        }
+
+        static double[] empty() {
+            double inf = Double.POSITIVE_INFINITY;
+            return new double[] {inf, inf, inf, -inf, -inf, -inf};
+        }
+
+        /** Agrandit box pour contenir l'intervalle b. */
+        void include(double[] box, int b) {
+            for (int k = 0; k < 3; k++) {
+                box[k] = Math.min(box[k], bounds[6 * b + k]);
+                box[3 + k] = Math.max(box[3 + k], bounds[6 * b + 3 + k]);
+            }
+        }
+
+        Bins merge(Bins other) {
+            for (int b = 0; b < BINS; b++) {
+                counts[b] += other.counts[b];
+                for (int k = 0; k < 3; k++) {
+                    bounds[6 * b + k] = Math.min(bounds[6 * b + k], other.bounds[6 * b + k]);
+                    bounds[6 * b + 3 + k] = Math.max(bounds[6 * b + 3 + k], other.bounds[6 * b + 3 + k]);
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Nœud temporaire de construction, avant aplatissement.
+     */
+    private static final class Node {
+
+        final double[] bounds;
+        final int axis;
+        final Node left;
+        final Node right;
+        final int first;
+        final int count;
+
+        /** Nombre de nœuds du sous-arbre. */
+        final int size;
+
+        private Node(double[] bounds, int axis, Node left, Node right, int first, int count) {
+            this.bounds = bounds;
+            this.axis = axis;
+            this.left = left;
+            this.right = right;
+            this.first = first;
+            this.count = count;
+            this.size = left == null ? 1 : 1 + left.size + right.size;
+        }
+
+        static Node leaf(double[] bounds, int first, int count) {
+            return new Node(bounds, 0, null, null, first, count);
+        }
+
+        static Node interior(double[] bounds, int axis, Node left, Node right) {
+            return new Node(bounds, axis, left, right, 0, 0);
+        }
+    }
+
+    /**
+     * Calcule en parallèle les boîtes des formes.
+     *
+     * @param shapes formes
+     * @param pool pool exécutant les tâches
+     * @return 6 valeurs (min x, y, z, max x, y, z) par forme
+     */
+    static double[] boxes(Shape[] shapes, ForkJoinPool pool) {
+        double[] out = new double[6 * shapes.length];
+        pool.invoke(new BoxTask(shapes, out, 0, shapes.length));
+        return out;
+    }
+
+    /**
+     * Boîtes d'un intervalle de formes, par tranches.
+     */
+    @SuppressWarnings("serial")
+    private static final class BoxTask extends RecursiveAction {
+
+        private final Shape[] shapes;
+        private final double[] out;
+        private final int from;
+        private final int to;
+
+        BoxTask(Shape[] shapes, double[] out, int from, int to) {
+            this.shapes = shapes;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int k = from; k < to; k++) {
+                    BoundingBox b = shapes[k].getBounds();
+                    out[6 * k] = b.getMinX();
+                    out[6 * k + 1] = b.getMinY();
+                    out[6 * k + 2] = b.getMinZ();
+                    out[6 * k + 3] = b.getMaxX();
+                    out[6 * k + 4] = b.getMaxY();
+                    out[6 * k + 5] = b.getMaxZ();
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BoxTask(shapes, out, from, mid), new BoxTask(shapes, out, mid, to));
+        }
+    }
+}
@@ -0,0 +1,824 @@
+package raytracer.acceleration;
+
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.TraceStats;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Triangle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maillage de triangles hors mémoire : la géométrie reste dans un fichier
+ * et n'est projetée en mémoire que par morceaux, à la demande.
+ *
+ * Le fichier est produit par write à partir d'une liste de triangles. Une
+ * hiérarchie est construite sur l'ensemble des triangles (BvhBuilder), puis
+ * coupée en grappes : chaque sous-arbre d'au plus clusterSize triangles est
+ * écrit d'un bloc, avec ses nœuds et ses triangles. Seul le haut de
+ * l'arbre, dont les feuilles désignent les grappes, reste chargé ; une
+ * grappe est projetée (MappedByteBuffer) lorsqu'un rayon atteint sa boîte,
+ * et des grappes peu utilisées sont abandonnées au-delà d'un budget
+ * d'octets. Java 11 n'offrant pas de libération explicite, une projection
+ * abandonnée est libérée par le ramasse-miettes ; ses pages restent
+ * entre-temps sous le contrôle du système. Le budget borne donc la taille
+ * des projections retenues par le maillage, non la mémoire physique
+ * occupée, que le système ajuste seul.
+ *
+ * La recherche d'une grappe déjà projetée ne prend aucun verrou : seule
+ * une projection nouvelle, avec les abandons qu'elle entraîne, est
+ * sérialisée. Les grappes abandonnées sont choisies par l'algorithme de
+ * l'horloge (seconde chance), approximation de la moins récemment utilisée
+ * qui ne demande qu'un indicateur par grappe sur le chemin sans verrou.
+ *
+ * Organisation du fichier (petit-boutiste) :
+ *
+ *   en-tête  : MAGIC, FORMAT_VERSION, nombre de triangles, nombre de
+ *              grappes, nombre de nœuds du haut de l'arbre, 4 octets de
+ *              remplissage, empreinte SHA-256 des triangles (32 octets)
+ *   haut     : nœuds au format de Bvh ; une feuille désigne une grappe
+ *              (entier 6) et donne son nombre de triangles (entier 7)
+ *   table    : position et taille en octets de chaque grappe (2 long)
+ *   grappes  : nombre de nœuds, nombre de triangles, nœuds au format de
+ *              Bvh (indices relatifs à la grappe), indices d'origine des
+ *              triangles, remplissage jusqu'à un multiple de 8 octets, puis
+ *              sommets a, b, c et normale de chaque triangle (12 double)
+ *
+ * Les tests d'intersection reprennent exactement les calculs de Triangle :
+ * le résultat est celui de la liste de triangles d'origine, y compris le
+ * choix du plus petit indice à distance égale.
+ *
+ * La conversion (write) a besoin de tous les triangles en mémoire ; le
+ * rendu n'a besoin que du haut de l'arbre et des grappes du budget.
+ */
+public final class MeshFile implements Closeable {
+
+    /** Nombre maximal de triangles par grappe par défaut. */
+    public static final int DEFAULT_CLUSTER_SIZE = 4096;
+
+    /** Nombre maximal de triangles par grappe accepté par write. */
+    public static final int MAX_CLUSTER_SIZE = 1 << 20;
+
+    /** Budget par défaut des grappes projetées en mémoire (256 Mo). */
+    public static final long DEFAULT_MAX_RESIDENT_BYTES = 256L << 20;
+
+    /** Signature des fichiers de maillage ("RTMS"). */
+    private static final int MAGIC = 0x52544d53;
+
+    /** Version du format de fichier. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Taille de l'en-tête en octets. */
+    private static final int HEADER_BYTES = 56;
+
+    /** Nombre de double par triangle : sommets a, b, c et normale. */
+    private static final int TRIANGLE_DOUBLES = 12;
+
+    /** Taille d'un nœud en octets. */
+    private static final int NODE_BYTES = 4 * Bvh.NODE_INTS;
+
+    /** Fichier projeté. */
+    private final Path file;
+
+    /** Canal de lecture, ouvert jusqu'à close. */
+    private final FileChannel channel;
+
+    /** Nombre total de triangles. */
+    private final int triangleCount;
+
+    /** Haut de l'arbre, résident. */
+    private final int[] topNodes;
+
+    /** Position de chaque grappe dans le fichier. */
+    private final long[] clusterOffsets;
+
+    /** Taille en octets de chaque grappe. */
+    private final int[] clusterLengths;
+
+    /** Boîte englobant tous les triangles. */
+    private final BoundingBox bounds;
+
+    /** Empreinte SHA-256 des triangles, en hexadécimal. */
+    private final String digest;
+
+    /** Budget en octets des projections retenues. */
+    private final long maxResidentBytes;
+
+    /** Projection de chaque grappe, ou null si elle n'est pas retenue. */
+    private final AtomicReferenceArray<ByteBuffer> resident;
+
+    /** Indicateur d'utilisation de chaque grappe depuis le passage de l'horloge. */
+    private final boolean[] referenced;
+
+    /** Prochaine grappe examinée par l'horloge ; protégée par this. */
+    private int hand;
+
+    /** Nombre de grappes projetées ; protégé par this. */
+    private int residentClusters;
+
+    /** Taille cumulée des grappes projetées ; protégée par this. */
+    private long residentBytes;
+
+    /** Nombre de projections effectuées depuis l'ouverture ; protégé par this. */
+    private long pageIns;
+
+    /** Piles de parcours du haut de l'arbre, une par thread. */
+    private final ThreadLocal<int[]> topStacks = ThreadLocal.withInitial(() -> new int[Bvh.STACK_SIZE]);
+
+    /** Piles de parcours des grappes, une par thread. */
+    private final ThreadLocal<int[]> clusterStacks = ThreadLocal.withInitial(() -> new int[Bvh.STACK_SIZE]);
+
+    private MeshFile(Path file, FileChannel channel, long maxResidentBytes) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.maxResidentBytes = maxResidentBytes;
+
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            throw new IOException("Maillage tronqué : " + file);
+        }
+        ByteBuffer header = read(0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Format de maillage inconnu : " + file);
+        }
+        this.triangleCount = header.getInt(8);
+        int clusterCount = header.getInt(12);
+        int topNodeCount = header.getInt(16);
+        long tableOffset = HEADER_BYTES + (long) NODE_BYTES * topNodeCount;
+        if (triangleCount < 0 || clusterCount < 0 || topNodeCount < 0
+                || tableOffset + 16L * clusterCount > size) {
+            throw new IOException("Maillage incohérent : " + file);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (int k = 24; k < HEADER_BYTES; k++) {
+            sb.append(String.format("%02x", header.get(k)));
+        }
+        this.digest = sb.toString();
+
+        this.topNodes = new int[Bvh.NODE_INTS * topNodeCount];
+        read(HEADER_BYTES, NODE_BYTES * topNodeCount).asIntBuffer().get(topNodes);
+
+        this.clusterOffsets = new long[clusterCount];
+        this.clusterLengths = new int[clusterCount];
+        this.resident = new AtomicReferenceArray<>(clusterCount);
+        this.referenced = new boolean[clusterCount];
+        ByteBuffer table = read(tableOffset, 16 * clusterCount);
+        for (int c = 0; c < clusterCount; c++) {
+            long offset = table.getLong(16 * c);
+            long length = table.getLong(16 * c + 8);
+            if (offset < 0 || length < 8 || length > Integer.MAX_VALUE || offset + length > size) {
+                throw new IOException("Maillage incohérent : " + file);
+            }
+            clusterOffsets[c] = offset;
+            clusterLengths[c] = (int) length;
+        }
+
+        this.bounds = topNodeCount == 0 ? BoundingBox.EMPTY : new BoundingBox(
+                Float.intBitsToFloat(topNodes[0]), Float.intBitsToFloat(topNodes[1]),
+                Float.intBitsToFloat(topNodes[2]), Float.intBitsToFloat(topNodes[3]),
+                Float.intBitsToFloat(topNodes[4]), Float.intBitsToFloat(topNodes[5]));
+    }
+
+    /**
+     * Ouvre un maillage écrit par write. Seuls l'en-tête, le haut de
+     * l'arbre et la table des grappes sont lus.
+     *
+     * @param file fichier de maillage
+     * @param maxResidentBytes budget en octets des projections retenues ;
+     *                         une grappe plus grande que le budget reste
+     *                         projetée seule
+     * @return maillage ouvert, à fermer par close
+     * @throws IOException si le fichier est illisible, tronqué ou d'un autre format
+     * @throws IllegalArgumentException si le budget n'est pas positif
+     */
+    public static MeshFile open(Path file, long maxResidentBytes) throws IOException {
+        if (maxResidentBytes <= 0) {
+            throw new IllegalArgumentException("Le budget de mémoire doit être positif");
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MeshFile(file, channel, maxResidentBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Écrit un maillage hors mémoire à partir d'une liste de triangles. Le
+     * matériau des triangles n'est pas conservé : il est porté par la forme
+     * qui utilise le maillage (MappedMesh).
+     *
+     * @param file fichier de destination, créé ou écrasé
+     * @param triangles triangles à écrire, dans l'ordre qui départage les égalités
+     * @param clusterSize nombre maximal de triangles par grappe
+     * @throws IOException en cas d'erreur d'écriture
+     * @throws IllegalArgumentException si clusterSize est hors de
+     *         [Bvh.MAX_LEAF_SIZE, MAX_CLUSTER_SIZE]
+     */
+    public static void write(Path file, List<Triangle> triangles, int clusterSize) throws IOException {
+        if (clusterSize < Bvh.MAX_LEAF_SIZE || clusterSize > MAX_CLUSTER_SIZE) {
+            throw new IllegalArgumentException("Taille de grappe invalide : " + clusterSize);
+        }
+        Triangle[] shapes = triangles.toArray(new Triangle[0]);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int[] primitives = new int[shapes.length];
+        for (int k = 0; k < primitives.length; k++) {
+            primitives[k] = k;
+        }
+        int[] nodes = new BvhBuilder(BvhBuilder.boxes(shapes, pool), primitives).build(pool);
+        int nodeCount = nodes.length / Bvh.NODE_INTS;
+
+        // taille, nombre de triangles et premier triangle de chaque sous-arbre
+        int[] subtree = new int[nodeCount];
+        int[] count = new int[nodeCount];
+        int[] first = new int[nodeCount];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int base = Bvh.NODE_INTS * node;
+            if (nodes[base + 7] > 0) {
+                subtree[node] = 1;
+                count[node] = nodes[base + 7];
+                first[node] = nodes[base + 6];
+            } else {
+                int right = nodes[base + 6];
+                subtree[node] = 1 + subtree[node + 1] + subtree[right];
+                count[node] = count[node + 1] + count[right];
+                first[node] = first[node + 1];
+            }
+        }
+
+        List<Integer> clusters = new ArrayList<>();
+        int[] top = new int[nodes.length];
+        int topNodeCount = nodeCount == 0 ? 0 : cut(nodes, count, clusterSize, 0, top, 0, clusters);
+
+        long tableOffset = HEADER_BYTES + (long) NODE_BYTES * topNodeCount;
+        long offset = align(tableOffset + 16L * clusters.size());
+        ByteBuffer head = ByteBuffer.allocate((int) offset).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(shapes.length)
+                .putInt(clusters.size()).putInt(topNodeCount).putInt(0);
+        head.put(digest(shapes));
+        for (int k = 0; k < Bvh.NODE_INTS * topNodeCount; k++) {
+            head.putInt(top[k]);
+        }
+        for (int node : clusters) {
+            long length = clusterBytes(subtree[node], count[node]);
+            head.putLong(offset).putLong(length);
+            offset += length;
+        }
+        head.position(0);
+
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, head);
+            for (int node : clusters) {
+                writeFully(out, cluster(nodes, primitives, shapes, node, subtree[node], count[node], first[node]));
+            }
+        }
+    }
+
+    /**
+     * Recopie le haut de l'arbre dans top, en remplaçant par une feuille
+     * de grappe chaque sous-arbre d'au plus clusterSize triangles.
+     *
+     * @return indice suivant le sous-arbre recopié
+     */
+    private static int cut(int[] nodes, int[] count, int clusterSize, int node,
+                           int[] top, int index, List<Integer> clusters) {
+        int base = Bvh.NODE_INTS * node;
+        int topBase = Bvh.NODE_INTS * index;
+        System.arraycopy(nodes, base, top, topBase, 6);
+        if (count[node] <= clusterSize) {
+            top[topBase + 6] = clusters.size();
+            top[topBase + 7] = count[node];
+            clusters.add(node);
+            return index + 1;
+        }
+        int right = cut(nodes, count, clusterSize, node + 1, top, index + 1, clusters);
+        top[topBase + 6] = right;
+        top[topBase + 7] = nodes[base + 7];
+        return cut(nodes, count, clusterSize, nodes[base + 6], top, right, clusters);
+    }
+
+    /**
+     * Sérialise la grappe formée du sous-arbre de node.
+     */
+    private static ByteBuffer cluster(int[] nodes, int[] primitives, Triangle[] shapes,
+                                      int node, int nodeCount, int count, int first) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) clusterBytes(nodeCount, count))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(nodeCount).putInt(count);
+        for (int m = node; m < node + nodeCount; m++) {
+            int base = Bvh.NODE_INTS * m;
+            for (int k = 0; k < 6; k++) {
+                buffer.putInt(nodes[base + k]);
+            }
+            int leafCount = nodes[base + 7];
+            buffer.putInt(leafCount > 0 ? nodes[base + 6] - first : nodes[base + 6] - node);
+            buffer.putInt(leafCount);
+        }
+        for (int p = first; p < first + count; p++) {
+            buffer.putInt(primitives[p]);
+        }
+        buffer.position((int) align(buffer.position()));
+        for (int p = first; p < first + count; p++) {
+            Triangle t = shapes[primitives[p]];
+            putPoint(buffer, t.getA());
+            putPoint(buffer, t.getB());
+            putPoint(buffer, t.getC());
+            Vector n = t.getNormal(t.getA());
+            buffer.putDouble(n.x).putDouble(n.y).putDouble(n.z);
+        }
+        buffer.position(0);
+        return buffer;
+    }
+
+    private static void putPoint(ByteBuffer buffer, Point p) {
+        buffer.putDouble(p.x).putDouble(p.y).putDouble(p.z);
+    }
+
+    private static long clusterBytes(int nodeCount, int count) {
+        return align(8L + (long) NODE_BYTES * nodeCount + 4L * count) + 8L * TRIANGLE_DOUBLES * count;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Calcule l'empreinte SHA-256 des sommets, dans l'ordre de la liste.
+     */
+    private static byte[] digest(Triangle[] shapes) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            ByteBuffer vertices = ByteBuffer.allocate(72).order(ByteOrder.LITTLE_ENDIAN);
+            for (Triangle t : shapes) {
+                vertices.clear();
+                putPoint(vertices, t.getA());
+                putPoint(vertices, t.getB());
+                putPoint(vertices, t.getC());
+                vertices.flip();
+                sha.update(vertices);
+            }
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 est garanti par toutes les JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Maillage tronqué : " + file);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Retourne la projection d'une grappe. Une grappe retenue est trouvée
+     * sans verrou ; sinon elle est projetée sous verrou.
+     */
+    private ByteBuffer cluster(int c) {
+        ByteBuffer buffer = resident.get(c);
+        if (buffer == null) {
+            return map(c);
+        }
+        // écriture seulement au premier usage après le passage de l'horloge
+        if (!referenced[c]) {
+            referenced[c] = true;
+        }
+        return buffer;
+    }
+
+    /**
+     * Projette une grappe après avoir abandonné, par l'horloge, les grappes
+     * qui dépassent le budget : une grappe utilisée depuis le dernier
+     * passage perd son indicateur et reste, les autres sont abandonnées.
+     */
+    private synchronized ByteBuffer map(int c) {
+        ByteBuffer buffer = resident.get(c);
+        if (buffer != null) {
+            return buffer;
+        }
+        int length = clusterLengths[c];
+        while (residentClusters > 0 && residentBytes + length > maxResidentBytes) {
+            ByteBuffer victim = resident.get(hand);
+            if (victim != null) {
+                if (referenced[hand]) {
+                    referenced[hand] = false;
+                } else {
+                    resident.set(hand, null);
+                    residentClusters--;
+                    residentBytes -= victim.capacity();
+                }
+            }
+            hand = hand + 1 == referenced.length ? 0 : hand + 1;
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, clusterOffsets[c], length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        referenced[c] = true;
+        resident.set(c, buffer);
+        residentClusters++;
+        residentBytes += length;
+        pageIns++;
+        return buffer;
+    }
+
+    /**
+     * Recherche l'intersection la plus proche (t &gt; 0) entre un rayon et
+     * les triangles du maillage, jusqu'au tMax du rayon, en projetant les
+     * grappes traversées. Les tests effectués sont comptés dans TraceStats.
+     *
+     * @param ray rayon testé
+     * @param owner forme portant le matériau, désignée par l'intersection
+     * @return intersection la plus proche, si elle existe
+     * @throws UncheckedIOException si une grappe ne peut pas être projetée
+     */
+    public Optional<Intersection> intersect(Ray ray, Shape owner) {
+        if (topNodes.length == 0) {
+            return Optional.empty();
+        }
+        Point o = ray.getOrigin();
+        Vector d = ray.getDirection();
+        double ox = o.x, oy = o.y, oz = o.z;
+        double dx = d.x, dy = d.y, dz = d.z;
+        double ix = ray.getInvDirX(), iy = ray.getInvDirY(), iz = ray.getInvDirZ();
+
+        double bestT = ray.getTMax();
+        int bestIndex = Integer.MAX_VALUE;
+        ByteBuffer bestCluster = null;
+        int bestAt = 0;
+        long tests = 0;
+
+        int[] stack = topStacks.get();
+        int[] inner = clusterStacks.get();
+        int top = 0;
+        int node = 0;
+        while (true) {
+            int base = Bvh.NODE_INTS * node;
+            if (Bvh.hitsBox(topNodes, base, ox, oy, oz, ix, iy, iz, bestT)) {
+                int count = topNodes[base + 7];
+                if (count > 0) {
+                    ByteBuffer cluster = cluster(topNodes[base + 6]);
+                    int indicesAt = 8 + NODE_BYTES * cluster.getInt(0);
+                    int trianglesAt = (int) align(indicesAt + 4L * cluster.getInt(4));
+                    int innerTop = 0;
+                    int local = 0;
+                    while (true) {
+                        int at = 8 + NODE_BYTES * local;
+                        if (hitsBox(cluster, at, ox, oy, oz, ix, iy, iz, bestT)) {
+                            int leafCount = cluster.getInt(at + 28);
+                            if (leafCount > 0) {
+                                int first = cluster.getInt(at + 24);
+                                for (int slot = first; slot < first + leafCount; slot++) {
+                                    tests++;
+                                    int triangleAt = trianglesAt + 8 * TRIANGLE_DOUBLES * slot;
+                                    double t = hit(cluster, triangleAt, ox, oy, oz, dx, dy, dz, ray.getTMin(), bestT);
+                                    if (t > 0) {
+                                        int index = cluster.getInt(indicesAt + 4 * slot);
+                                        if (t < bestT || (t == bestT && index < bestIndex)) {
+                                            bestT = t;
+                                            bestIndex = index;
+                                            bestCluster = cluster;
+                                            bestAt = triangleAt;
+                                        }
+                                    }
+                                }
+                            } else {
+                                int right = cluster.getInt(at + 24);
+                                if (ray.isNegative(-1 - leafCount)) {
+                                    inner[innerTop++] = local + 1;
+                                    local = right;
+                                } else {
+                                    inner[innerTop++] = right;
+                                    local = local + 1;
+                                }
+                                continue;
+                            }
+                        }
+                        if (innerTop == 0) {
+                            break;
+                        }
+                        local = inner[--innerTop];
+                    }
+                } else {
+                    if (ray.isNegative(-1 - count)) {
+                        stack[top++] = node + 1;
+                        node = topNodes[base + 6];
+                    } else {
+                        stack[top++] = topNodes[base + 6];
+                        node = node + 1;
+                    }
+                    continue;
+                }
+            }
+            if (top == 0) {
+                break;
+            }
+            node = stack[--top];
+        }
+
+        TraceStats stats = TraceStats.current();
+        if (stats != null) {
+            stats.intersectionTests += tests;
+        }
+        if (bestCluster == null) {
+            return Optional.empty();
+        }
+        int n = bestAt + 72;
+        Vector normal = new Vector(bestCluster.getDouble(n), bestCluster.getDouble(n + 8),
+                bestCluster.getDouble(n + 16));
+        return Optional.of(new Intersection(bestT, ray.at(bestT), owner, normal));
+    }
+
+    /**
+     * Retourne la normale du triangle le plus proche d'un point de la
+     * surface du maillage. Seules les grappes et les nœuds dont la boîte,
+     * élargie de tolerance, contient le point sont parcourus ; à distance
+     * égale, le triangle de plus petit indice l'emporte, comme pour
+     * intersect.
+     *
+     * @param p point de la surface du maillage
+     * @param tolerance élargissement des boîtes, pour les arrondis sur p
+     * @return normale du triangle le plus proche
+     * @throws IllegalArgumentException si aucune boîte ne contient le point
+     */
+    public Vector normalAt(Point p, double tolerance) {
+        double px = p.x, py = p.y, pz = p.z;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int bestIndex = Integer.MAX_VALUE;
+        ByteBuffer bestCluster = null;
+        int bestAt = 0;
+
+        int[] stack = topStacks.get();
+        int[] inner = clusterStacks.get();
+        int top = 0;
+        int node = topNodes.length == 0 ? -1 : 0;
+        while (node >= 0) {
+            int base = Bvh.NODE_INTS * node;
+            if (contains(topNodes, base, px, py, pz, tolerance)) {
+                int count = topNodes[base + 7];
+                if (count > 0) {
+                    ByteBuffer cluster = cluster(topNodes[base + 6]);
+                    int indicesAt = 8 + NODE_BYTES * cluster.getInt(0);
+                    int trianglesAt = (int) align(indicesAt + 4L * cluster.getInt(4));
+                    int innerTop = 0;
+                    int local = 0;
+                    while (true) {
+                        int at = 8 + NODE_BYTES * local;
+                        if (contains(cluster, at, px, py, pz, tolerance)) {
+                            int leafCount = cluster.getInt(at + 28);
+                            if (leafCount > 0) {
+                                int first = cluster.getInt(at + 24);
+                                for (int slot = first; slot < first + leafCount; slot++) {
+                                    int triangleAt = trianglesAt + 8 * TRIANGLE_DOUBLES * slot;
+                                    double distance = distance(cluster, triangleAt, px, py, pz);
+                                    int index = cluster.getInt(indicesAt + 4 * slot);
+                                    if (distance < bestDistance
+                                            || (distance == bestDistance && index < bestIndex)) {
+                                        bestDistance = distance;
+                                        bestIndex = index;
+                                        bestCluster = cluster;
+                                        bestAt = triangleAt;
+                                    }
+                                }
+                            } else {
+                                inner[innerTop++] = cluster.getInt(at + 24);
+                                local = local + 1;
+                                continue;
+                            }
+                        }
+                        if (innerTop == 0) {
+                            break;
+                        }
+                        local = inner[--innerTop];
+                    }
+                } else {
+                    stack[top++] = topNodes[base + 6];
+                    node = node + 1;
+                    continue;
+                }
+            }
+            node = top == 0 ? -1 : stack[--top];
+        }
+
+        if (bestCluster == null) {
+            throw new IllegalArgumentException("Point éloigné du maillage : " + p);
+        }
+        int n = bestAt + 72;
+        return new Vector(bestCluster.getDouble(n), bestCluster.getDouble(n + 8),
+                bestCluster.getDouble(n + 16));
+    }
+
+    /**
+     * Teste si un nœud du haut de l'arbre, élargi de tolerance, contient
+     * le point.
+     */
+    private static boolean contains(int[] nodes, int base, double px, double py, double pz,
+                                    double tolerance) {
+        return Float.intBitsToFloat(nodes[base]) - tolerance <= px
+                && Float.intBitsToFloat(nodes[base + 3]) + tolerance >= px
+                && Float.intBitsToFloat(nodes[base + 1]) - tolerance <= py
+                && Float.intBitsToFloat(nodes[base + 4]) + tolerance >= py
+                && Float.intBitsToFloat(nodes[base + 2]) - tolerance <= pz
+                && Float.intBitsToFloat(nodes[base + 5]) + tolerance >= pz;
+    }
+
+    /**
+     * Teste si un nœud de grappe, élargi de tolerance, contient le point.
+     */
+    private static boolean contains(ByteBuffer cluster, int at, double px, double py, double pz,
+                                    double tolerance) {
+        return cluster.getFloat(at) - tolerance <= px
+                && cluster.getFloat(at + 12) + tolerance >= px
+                && cluster.getFloat(at + 4) - tolerance <= py
+                && cluster.getFloat(at + 16) + tolerance >= py
+                && cluster.getFloat(at + 8) - tolerance <= pz
+                && cluster.getFloat(at + 20) + tolerance >= pz;
+    }
+
+    /**
+     * Distance d'un point à un triangle de grappe : distance au plan si le
+     * point se projette dans le triangle, sinon distance au bord le plus
+     * proche.
+     */
+    private static double distance(ByteBuffer cluster, int at, double px, double py, double pz) {
+        double ax = cluster.getDouble(at), ay = cluster.getDouble(at + 8), az = cluster.getDouble(at + 16);
+        double bx = cluster.getDouble(at + 24), by = cluster.getDouble(at + 32), bz = cluster.getDouble(at + 40);
+        double cx = cluster.getDouble(at + 48), cy = cluster.getDouble(at + 56), cz = cluster.getDouble(at + 64);
+        double nx = cluster.getDouble(at + 72), ny = cluster.getDouble(at + 80), nz = cluster.getDouble(at + 88);
+
+        if (edge(ax, ay, az, bx, by, bz, px, py, pz, nx, ny, nz) >= 0
+                && edge(bx, by, bz, cx, cy, cz, px, py, pz, nx, ny, nz) >= 0
+                && edge(cx, cy, cz, ax, ay, az, px, py, pz, nx, ny, nz) >= 0) {
+            return Math.abs((px - ax) * nx + (py - ay) * ny + (pz - az) * nz);
+        }
+        return Math.min(segmentDistance(ax, ay, az, bx, by, bz, px, py, pz),
+                Math.min(segmentDistance(bx, by, bz, cx, cy, cz, px, py, pz),
+                        segmentDistance(cx, cy, cz, ax, ay, az, px, py, pz)));
+    }
+
+    /**
+     * Distance d'un point au segment [from, to].
+     */
+    private static double segmentDistance(double fx, double fy, double fz,
+                                          double tx, double ty, double tz,
+                                          double px, double py, double pz) {
+        double ex = tx - fx, ey = ty - fy, ez = tz - fz;
+        double qx = px - fx, qy = py - fy, qz = pz - fz;
+        double length2 = ex * ex + ey * ey + ez * ez;
+        double s = length2 > 0 ? (qx * ex + qy * ey + qz * ez) / length2 : 0;
+        s = s < 0 ? 0 : (s > 1 ? 1 : s);
+        double rx = qx - s * ex, ry = qy - s * ey, rz = qz - s * ez;
+        return Math.sqrt(rx * rx + ry * ry + rz * rz);
+    }
+
+    /**
+     * Test du segment [0, tMax] contre la boîte d'un nœud de grappe ; mêmes
+     * calculs que Bvh.hitsBox.
+     */
+    private static boolean hitsBox(ByteBuffer cluster, int at, double ox, double oy, double oz,
+                                   double ix, double iy, double iz, double tMax) {
+        double t0 = 0.0;
+        double t1 = tMax;
+
+        double a = (cluster.getFloat(at) - ox) * ix;
+        double b = (cluster.getFloat(at + 12) - ox) * ix;
+        double near = b < a ? b : a;
+        double far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (cluster.getFloat(at + 4) - oy) * iy;
+        b = (cluster.getFloat(at + 16) - oy) * iy;
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (cluster.getFloat(at + 8) - oz) * iz;
+        b = (cluster.getFloat(at + 20) - oz) * iz;
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        return t0 <= t1;
+    }
+
+    /**
+     * Intersection avec un triangle de grappe, calculée comme
+     * Triangle.intersect. Les sommets b et c ne sont lus que si le plan du
+     * triangle est touché entre tMin et tMax.
+     *
+     * @return paramètre t du point d'impact, ou -1 si le rayon manque le triangle
+     */
+    private static double hit(ByteBuffer cluster, int at, double ox, double oy, double oz,
+                              double dx, double dy, double dz, double tMin, double tMax) {
+        double ax = cluster.getDouble(at), ay = cluster.getDouble(at + 8), az = cluster.getDouble(at + 16);
+        double nx = cluster.getDouble(at + 72), ny = cluster.getDouble(at + 80), nz = cluster.getDouble(at + 88);
+
+        double denom = dx * nx + dy * ny + dz * nz;
+        if (Math.abs(denom) < 1e-8) {
+            return -1;
+        }
+        double t = ((ax - ox) * nx + (ay - oy) * ny + (az - oz) * nz) / denom;
+        if (t < tMin || t > tMax) {
+            return -1;
+        }
+        double bx = cluster.getDouble(at + 24), by = cluster.getDouble(at + 32), bz = cluster.getDouble(at + 40);
+        double cx = cluster.getDouble(at + 48), cy = cluster.getDouble(at + 56), cz = cluster.getDouble(at + 64);
+        double px = ox + t * dx, py = oy + t * dy, pz = oz + t * dz;
+
+        if (edge(ax, ay, az, bx, by, bz, px, py, pz, nx, ny, nz) < 0) return -1;
+        if (edge(bx, by, bz, cx, cy, cz, px, py, pz, nx, ny, nz) < 0) return -1;
+        if (edge(cx, cy, cz, ax, ay, az, px, py, pz, nx, ny, nz) < 0) return -1;
+        return t;
+    }
+
+    /**
+     * Calcule ((to - from) x (p - from)) · n.
+     */
+    private static double edge(double fx, double fy, double fz, double tx, double ty, double tz,
+                               double px, double py, double pz, double nx, double ny, double nz) {
+        double ex = tx - fx, ey = ty - fy, ez = tz - fz;
+        double qx = px - fx, qy = py - fy, qz = pz - fz;
+        return (ey * qz - ez * qy) * nx + (ez * qx - ex * qz) * ny + (ex * qy - ey * qx) * nz;
+    }
+
+    /**
+     * Ferme le fichier. Les grappes déjà projetées restent lisibles ; toute
+     * nouvelle projection échoue.
+     *
+     * @throws IOException si la fermeture échoue
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (int c = 0; c < resident.length(); c++) {
+            resident.set(c, null);
+        }
+        residentClusters = 0;
+        residentBytes = 0;
+        channel.close();
+    }
+
+    /** @return fichier projeté */
+    public Path getFile() { return file; }
+
+    /** @return vrai tant que le fichier n'a pas été fermé */
+    public boolean isOpen() { return channel.isOpen(); }
+
+    /** @return boîte englobant tous les triangles */
+    public BoundingBox getBounds() { return bounds; }
+
+    /** @return empreinte SHA-256 des triangles, en hexadécimal */
+    public String getDigest() { return digest; }
+
+    /** @return nombre de triangles */
+    public int size() { return triangleCount; }
+
+    /** @return nombre de grappes */
+    public int getClusterCount() { return clusterOffsets.length; }
+
+    /** @return nombre de nœuds du haut de l'arbre, résident */
+    public int getTopNodeCount() { return topNodes.length / Bvh.NODE_INTS; }
+
+    /** @return nombre de projections de grappes effectuées depuis l'ouverture */
+    public synchronized long getPageIns() { return pageIns; }
+
+    /** @return taille cumulée des grappes actuellement projetées */
+    public synchronized long getResidentBytes() { return residentBytes; }
+
+    /** @return nombre de grappes actuellement projetées */
+    public synchronized int getResidentClusters() { return residentClusters; }
+}
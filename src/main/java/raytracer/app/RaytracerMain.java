@@ -1,41 +1,258 @@
 package raytracer.app;
 
+import raytracer.acceleration.MeshFile;
+import raytracer.distributed.RenderCoordinator;
+import raytracer.distributed.RenderFarm;
+import raytracer.imaging.CostHeatmap;
+import raytracer.imaging.DeferredRenderer;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.GBufferStore;
+import raytracer.imaging.IncrementalRenderer;
+import raytracer.imaging.PngWriter;
+import raytracer.imaging.RenderCache;
+import raytracer.imaging.Tile;
+import raytracer.imaging.TileOrder;
+import raytracer.service.BatchRunner;
+import raytracer.service.ScenePipeline;
+import raytracer.service.RenderServer;
 import raytracer.parsing.SceneFileParser;
 import raytracer.imaging.ImageRenderer;
+import raytracer.core.Precision;
 import raytracer.core.Scene;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Triangle;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class RaytracerMain {
 
-    public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage : java RaytracerMain <fichier.scene>");
-            System.exit(1);
-        }
+    private static final String USAGE =
+            "Usage : java RaytracerMain [--farm <travailleurs>] [--tile <taille>]\n"
+          + "                           [--cache] [--cache-size <Mo>] [--heatmap]\n"
+          + "                           [--precision double|float] [--light-error <e>]\n"
+          + "                           [--samples <n>] [--png-level 0-9|fast]\n"
+          + "                           [--threads <n>] [--tile-order row|morton|hilbert|spiral|cost]\n"
+          + "                           [--deferred] [--relight] <fichier.scene>\n"
+          + "        java RaytracerMain --bake-mesh <sortie.rtm> <fichier.scene>\n"
+          + "        java RaytracerMain --batch [--threads <n>] [--precision double|float]\n"
+          + "                           [--samples <n>] [--png-level 0-9|fast] <fichier.scene>...\n"
+          + "        java RaytracerMain --watch <dossier> [--queue <n>] [--threads <n>]\n"
+          + "                           [--precision double|float] [--samples <n>] [--png-level 0-9|fast]\n"
+          + "        java RaytracerMain --live [--tile <taille>] <fichier.scene>\n"
+          + "        java RaytracerMain --serve <port> [--scene-root <dossier>]";
+
+    /** Intervalle d'affichage des métriques en mode --watch. */
+    private static final int REPORT_SECONDS = 5;
 
-        String sceneFile = args[0];
+    public static void main(String[] args) {
+        String sceneFile = null;
+        List<String> batchFiles = new ArrayList<>();
+        boolean batch = false;
+        String watchDir = null;
+        int queueCapacity = ScenePipeline.DEFAULT_QUEUE_CAPACITY;
+        int farmWorkers = 0;
+        int tileSize = Tile.DEFAULT_SIZE;
+        int servePort = -1;
+        String sceneRoot = "";
+        boolean useCache = false;
+        boolean live = false;
+        boolean heatmap = false;
+        Precision precision = Precision.DOUBLE;
+        double lightError = 0.0;
+        boolean deferred = false;
+        boolean relight = false;
+        int samples = 1;
+        int pngLevel = PngWriter.DEFAULT_LEVEL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        TileOrder tileOrder = TileOrder.HILBERT;
+        String bakeMesh = null;
+        long cacheBytes = RenderCache.DEFAULT_MAX_BYTES;
 
         try {
-            // 1) Parse scène
-            SceneFileParser parser = new SceneFileParser();
-            Scene scene = parser.parse(sceneFile);
+            for (int k = 0; k < args.length; k++) {
+                switch (args[k]) {
+                    case "--farm": farmWorkers = Integer.parseInt(optionValue(args, ++k)); break;
+                    case "--tile": tileSize = Integer.parseInt(optionValue(args, ++k)); break;
+                    case "--serve": servePort = Integer.parseInt(optionValue(args, ++k)); break;
+                    case "--scene-root": sceneRoot = optionValue(args, ++k); break;
+                    case "--cache": useCache = true; break;
+                    case "--live": live = true; break;
+                    case "--batch": batch = true; break;
+                    case "--watch": watchDir = optionValue(args, ++k); break;
+                    case "--queue":
+                        queueCapacity = Integer.parseInt(optionValue(args, ++k));
+                        if (queueCapacity < 1) {
+                            usage();
+                        }
+                        break;
+                    case "--heatmap": heatmap = true; break;
+                    case "--precision": precision = Precision.parse(optionValue(args, ++k)); break;
+                    case "--deferred": deferred = true; break;
+                    case "--relight": relight = true; break;
+                    case "--samples":
+                        samples = Integer.parseInt(optionValue(args, ++k));
+                        if (samples < 1) {
+                            usage();
+                        }
+                        break;
+                    case "--png-level":
+                        String level = optionValue(args, ++k);
+                        pngLevel = level.equals("fast") ? PngWriter.FAST_LEVEL : Integer.parseInt(level);
+                        if (pngLevel < 0 || pngLevel > 9) {
+                            usage();
+                        }
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(optionValue(args, ++k));
+                        if (threads < 1) {
+                            usage();
+                        }
+                        break;
+                    case "--tile-order": tileOrder = TileOrder.parse(optionValue(args, ++k)); break;
+                    case "--bake-mesh": bakeMesh = optionValue(args, ++k); break;
+                    case "--light-error": lightError = Double.parseDouble(optionValue(args, ++k)); break;
+                    case "--cache-size":
+                        useCache = true;
+                        long megabytes = Long.parseLong(optionValue(args, ++k));
+                        if (megabytes <= 0 || megabytes > Long.MAX_VALUE >> 20) {
+                            usage();
+                        }
+                        cacheBytes = megabytes << 20;
+                        break;
+                    default:
+                        if (args[k].startsWith("--")) {
+                            usage();
+                        }
+                        batchFiles.add(args[k]);
+                        sceneFile = args[k];
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage();
+        }
+        if (servePort >= 0) {
+            serve(servePort, Paths.get(sceneRoot));
+            return;
+        }
+        if (watchDir != null) {
+            watch(Paths.get(watchDir), threads, queueCapacity, precision, samples, pngLevel);
+            return;
+        }
+        if (sceneFile == null || (!batch && batchFiles.size() > 1)) {
+            usage();
+        }
+        if (batch) {
+            batch(batchFiles, threads, precision, samples, pngLevel);
+            return;
+        }
 
+        try {
             // 1) dossier des images générées, relatif au répertoire de lancement
-            Path imagesDir = Paths.get("images_gen");
+            Path imagesDir = Paths.get(ImageRenderer.OUTPUT_DIR);
 
             // 2) création du dossier s'il n'existe pas
             Files.createDirectories(imagesDir);
 
-            // 3) chemin complet de sortie : "images générés/<nom_scene_output>"
-            Path outputPath = imagesDir.resolve(scene.getOutput());
+            if (live) {
+                // Re-rendu incrémental à chaque modification du fichier
+                live(Paths.get(sceneFile), tileSize);
+                return;
+            }
+
+            if (farmWorkers > 0) {
+                // Rendu réparti entre plusieurs processus travailleurs
+                String sceneText = Files.readString(Paths.get(sceneFile));
+                RenderCoordinator coordinator = new RenderCoordinator(sceneText, tileSize);
+                requireEightBitOutput(coordinator.getScene(), "--farm");
+                BufferedImage image = new RenderFarm(farmWorkers, tileSize).render(coordinator);
+                ImageRenderer writer = new ImageRenderer(coordinator.getScene());
+                writer.setPngLevel(pngLevel);
+                writer.writeImage(image);
 
-            // 2) Rendu
-            ImageRenderer renderer = new ImageRenderer(scene);
+                System.out.println("Image générée : " + coordinator.getScene().getOutput()
+                        + " (" + farmWorkers + " travailleurs, "
+                        + coordinator.getReassignedCount() + " tuiles réattribuées)");
+                return;
+            }
+
+            // 3) Parse scène
+            SceneFileParser parser = new SceneFileParser();
+            Scene scene = parser.parse(sceneFile);
+            scene.setLightSamplingError(lightError);
+
+            if (bakeMesh != null) {
+                // Conversion des triangles de la scène en maillage hors mémoire
+                List<Triangle> triangles = new ArrayList<>();
+                for (Shape shape : scene.getShapes()) {
+                    if (shape instanceof Triangle) {
+                        triangles.add((Triangle) shape);
+                    }
+                }
+                MeshFile.write(Paths.get(bakeMesh), triangles, MeshFile.DEFAULT_CLUSTER_SIZE);
+                System.out.println("Maillage écrit : " + bakeMesh + " (" + triangles.size() + " triangles)");
+                return;
+            }
+
+            if (relight) {
+                // Ré-éclairage : G-buffer relu depuis images_gen/.gbuffer si
+                // seules les lumières ont changé depuis le rendu précédent
+                requireEightBitOutput(scene, "--relight");
+                GBufferStore store = new GBufferStore(Paths.get(GBufferStore.DEFAULT_DIR),
+                        GBufferStore.DEFAULT_MAX_ENTRIES);
+                DeferredRenderer relighter = new DeferredRenderer(tileSize, store);
+                ImageRenderer writer = new ImageRenderer(scene);
+                writer.setPngLevel(pngLevel);
+                writer.writeImage(relighter.render(scene));
+
+                System.out.println("Image générée : " + scene.getOutput()
+                        + (relighter.getLastPrimaryRays() == 0
+                            ? " (G-buffer réutilisé)"
+                            : " (G-buffer enregistré, " + relighter.getLastPrimaryRays() + " rayons primaires)"));
+                long batches = relighter.getLastShadowBatches();
+                long rays = relighter.getLastShadowRays();
+                System.out.printf("Ombres : %d lots, %.1f rayons par lot, %.1f %% bloqués%n",
+                        batches, batches == 0 ? 0.0 : (double) rays / batches,
+                        rays == 0 ? 0.0 : 100.0 * relighter.getLastOccludedShadowRays() / rays);
+                return;
+            }
+
+            // 4) Rendu
+            ImageRenderer renderer = new ImageRenderer(scene, precision);
+            renderer.setDeferred(deferred);
+            renderer.setSamples(samples);
+            renderer.setPngLevel(pngLevel);
+            renderer.setThreads(threads);
+            renderer.setTileOrder(tileOrder);
+            if (useCache) {
+                renderer.setCache(new RenderCache(Paths.get(RenderCache.DEFAULT_DIR), cacheBytes));
+            }
+            CostHeatmap costs = heatmap ? new CostHeatmap(scene.getWidth(), scene.getHeight()) : null;
+            renderer.setHeatmap(costs);
             renderer.render();
 
-            System.out.println("Image générée : " + scene.getOutput());
+            if (costs != null) {
+                // 5) Carte de coût : images_gen/<nom>_cost.png et .csv
+                String base = scene.getOutput().replaceAll("\\.[^.]+$", "");
+                costs.write(imagesDir.resolve(base + "_cost.png"), imagesDir.resolve(base + "_cost.csv"));
+                long traced = costs.getTotalShadowRays();
+                long skipped = costs.getTotalSkippedShadowRays();
+                System.out.printf("Carte de coût : %s_cost.png (%d tests d'intersection, %d rayons d'ombre,"
+                                + " %.1f %% évités, %d ms)%n",
+                        base, costs.getTotalIntersectionTests(), traced,
+                        100.0 * skipped / Math.max(1, traced + skipped),
+                        costs.getTotalNanos() / 1_000_000);
+            }
+
+            System.out.println("Image générée : " + scene.getOutput()
+                    + (renderer.isCacheHit() ? " (cache)" : ""));
 
         } catch (IOException e) {
             System.err.println("Erreur I/O : " + e.getMessage());
@@ -47,4 +264,189 @@ public class RaytracerMain {
             System.exit(3);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Surveille un répertoire et rend chaque fichier .scene qui y est déposé
+     * (ScenePipeline), dans le dossier des images. Les métriques de la chaîne
+     * sont affichées toutes les REPORT_SECONDS secondes, jusqu'à l'arrêt du
+     * processus.
+     */
+    private static void watch(Path dir, int threads, int queueCapacity, Precision precision, int samples,
+                              int pngLevel) {
+        try (ScenePipeline pipeline = new ScenePipeline(dir, Paths.get(ImageRenderer.OUTPUT_DIR), precision,
+                threads, queueCapacity)) {
+            pipeline.setSamples(samples);
+            pipeline.setPngLevel(pngLevel);
+            pipeline.start();
+            System.out.println("Surveillance de " + dir.toAbsolutePath() + " (Ctrl+C pour arrêter)");
+            while (true) {
+                Thread.sleep(REPORT_SECONDS * 1000L);
+                System.out.println(pipeline.report());
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur de surveillance : " + e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rend une file de scènes indépendantes avec un BatchRunner : analyse
+     * des fichiers et écriture des images sur des threads d'entrées-sorties
+     * (virtuels si le JDK le permet), rendu sur un thread par cœur. Chaque
+     * scène est rendue sur un seul thread, le parallélisme venant du nombre
+     * de scènes. Une scène en erreur est signalée sans arrêter les autres.
+     */
+    private static void batch(List<String> files, int threads, Precision precision, int samples,
+                              int pngLevel) {
+        List<CompletableFuture<File>> pending = new ArrayList<>();
+        int failed = 0;
+        long start = System.nanoTime();
+        try (BatchRunner runner = new BatchRunner(threads)) {
+            for (String file : files) {
+                pending.add(runner.submit(new BatchRunner.Job<Framebuffer, Framebuffer, File>() {
+                    private Scene scene;
+                    private ImageRenderer renderer;
+
+                    @Override
+                    public Framebuffer load() throws IOException {
+                        scene = new SceneFileParser().parse(file);
+                        renderer = new ImageRenderer(scene, precision);
+                        renderer.setSamples(samples);
+                        renderer.setPngLevel(pngLevel);
+                        return Framebuffer.create(Paths.get(ImageRenderer.OUTPUT_DIR),
+                                scene.getWidth(), scene.getHeight());
+                    }
+
+                    @Override
+                    public Framebuffer trace(Framebuffer image) {
+                        // la géométrie n'est plus utile une fois l'image tracée
+                        try {
+                            renderer.renderFramebuffer(image);
+                        } finally {
+                            scene.close();
+                        }
+                        return image;
+                    }
+
+                    @Override
+                    public File store(Framebuffer image) throws IOException {
+                        try (image) {
+                            return renderer.writeImage(image);
+                        }
+                    }
+                }));
+            }
+            for (int k = 0; k < files.size(); k++) {
+                try {
+                    System.out.println("Image générée : " + pending.get(k).join() + " (" + files.get(k) + ")");
+                } catch (CompletionException e) {
+                    failed++;
+                    System.err.println("Erreur pour " + files.get(k) + " : " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        System.out.printf("%d scènes rendues, %d en erreur (%d ms)%n", files.size() - failed, failed,
+                (System.nanoTime() - start) / 1_000_000);
+        if (failed > 0) {
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Surveille un fichier .scene et le re-rend de façon incrémentale à
+     * chaque modification, jusqu'à l'arrêt du programme. Une scène invalide
+     * est signalée sans interrompre la surveillance.
+     */
+    private static void live(Path sceneFile, int tileSize) throws IOException {
+        IncrementalRenderer renderer = new IncrementalRenderer(tileSize);
+        SceneFileParser parser = new SceneFileParser();
+        FileTime lastModified = null;
+
+        System.out.println("Surveillance de " + sceneFile + " (Ctrl+C pour arrêter)");
+        while (true) {
+            FileTime modified = Files.getLastModifiedTime(sceneFile);
+            if (!modified.equals(lastModified)) {
+                lastModified = modified;
+                try {
+                    long start = System.nanoTime();
+                    Scene scene = parser.parse(sceneFile.toString());
+                    requireEightBitOutput(scene, "--live");
+                    BufferedImage image = renderer.render(scene);
+                    // aperçu : compression rapide
+                    ImageRenderer writer = new ImageRenderer(scene);
+                    writer.setPngLevel(PngWriter.FAST_LEVEL);
+                    writer.writeImage(image);
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+
+                    System.out.printf("Image générée : %s (%d/%d tuiles, %.1f %% des pixels, %d ms)%n",
+                            scene.getOutput(),
+                            renderer.getLastTracedTiles(), renderer.getLastTotalTiles(),
+                            100.0 * renderer.getLastTracedPixels() / ((long) scene.getWidth() * scene.getHeight()),
+                            millis);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Erreur dans le fichier .scene : " + e.getMessage());
+                }
+            }
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Démarre le service de rendu HTTP et le laisse tourner jusqu'à l'arrêt de la JVM.
+     * GET /render ne lit que les scènes situées sous sceneRoot.
+     */
+    private static void serve(int port, Path sceneRoot) {
+        try {
+            int threads = Runtime.getRuntime().availableProcessors();
+            RenderServer server = new RenderServer(port, threads, RenderServer.DEFAULT_CACHE_SIZE, sceneRoot);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+            System.out.println("Service de rendu à l'écoute sur http://localhost:" + server.getPort() + "/render");
+        } catch (IOException e) {
+            System.err.println("Erreur I/O : " + e.getMessage());
+            System.exit(2);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Refuse, avant tout rendu, une sortie PFM ou RGBE pour un mode qui ne
+     * produit que des pixels 8 bits.
+     */
+    private static void requireEightBitOutput(Scene scene, String mode) {
+        if (scene.isHighDynamicRange()) {
+            throw new IllegalArgumentException(mode + " ne produit que des images 8 bits : sortie "
+                    + scene.getOutput() + " refusée");
+        }
+    }
+
+    /**
+     * Retourne la valeur associée à une option de la ligne de commande.
+     */
+    private static String optionValue(String[] args, int index) {
+        if (index >= args.length) {
+            usage();
+        }
+        return args[index];
+    }
+
+    /**
+     * Affiche l'aide et termine le programme.
+     */
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
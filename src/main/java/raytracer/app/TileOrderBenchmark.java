@@ -0,0 +1,77 @@
+package raytracer.app;
+
+import raytracer.core.Scene;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.TileOrder;
+import raytracer.parsing.SceneFileParser;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Banc d'essai des ordres de rendu des tuiles.
+ *
+ * Rend plusieurs fois une scène dans un Framebuffer pour chaque ordre
+ * demandé et affiche le temps médian et le meilleur temps. Un ordre seul
+ * peut être mesuré sous un profileur matériel pour comparer les défauts
+ * de cache, par exemple :
+ *
+ *   perf stat -e cache-misses,LLC-load-misses java -cp raytracer.jar \
+ *       raytracer.app.TileOrderBenchmark scene.scene hilbert 8 5
+ */
+public final class TileOrderBenchmark {
+
+    private static final String USAGE =
+            "Usage : java raytracer.app.TileOrderBenchmark <fichier.scene>"
+          + " [row|morton|hilbert|spiral|cost|all] [threads] [répétitions]";
+
+    private TileOrderBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        TileOrder[] orders;
+        int threads;
+        int repetitions;
+        try {
+            orders = args.length < 2 || args[1].equals("all")
+                    ? TileOrder.values() : new TileOrder[] {TileOrder.parse(args[1])};
+            threads = args.length < 3 ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(args[2]);
+            repetitions = args.length < 4 ? 5 : Integer.parseInt(args[3]);
+            if (threads < 1 || repetitions < 1) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        Scene scene = new SceneFileParser().parse(args[0]);
+        System.out.printf("%s : %dx%d, %d formes, %d threads%n", args[0],
+                scene.getWidth(), scene.getHeight(), scene.getShapes().size(), threads);
+
+        Framebuffer image = Framebuffer.allocate(scene.getWidth(), scene.getHeight());
+        for (TileOrder order : orders) {
+            ImageRenderer renderer = new ImageRenderer(scene);
+            renderer.setThreads(threads);
+            renderer.setTileOrder(order);
+
+            // un rendu d'échauffement : compilation et construction du BVH
+            renderer.renderFramebuffer(image);
+            long[] millis = new long[repetitions];
+            for (int r = 0; r < repetitions; r++) {
+                long start = System.nanoTime();
+                renderer.renderFramebuffer(image);
+                millis[r] = (System.nanoTime() - start) / 1_000_000;
+            }
+            Arrays.sort(millis);
+            System.out.printf("%-10s médiane %6d ms, meilleur %6d ms%n",
+                    order.name().toLowerCase(), millis[repetitions / 2], millis[0]);
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package raytracer.core;
+
+import raytracer.acceleration.Bvh;
+import raytracer.geometry.Orthonormal;
+import raytracer.geometry.Point;
+
+/**
+ * Traceur de rayons en simple précision.
+ *
+ * Il produit la même image que RayTracer (ambiant, Lambert, Blinn-Phong et
+ * ombres portées) mais travaille sur une FloatScene : géométrie, calculs
+ * d'éclairage et accumulation des couleurs se font en float, sans allouer
+ * d'objets par rayon : l'intersection courante, la normale et la pile de
+ * parcours de la hiérarchie sont rangées dans un état propre à chaque
+ * thread. Sphères et triangles sont parcourus par la hiérarchie de la
+ * FloatScene, les plans un à un.
+ *
+ * Les epsilons du pipeline double (1e-6 sur t, 1e-4 pour les rayons
+ * d'ombre) sont absolus. En float l'erreur sur un point d'impact est
+ * proportionnelle à la grandeur des coordonnées en jeu : l'epsilon des
+ * rayons d'ombre est donc relatif à la primitive touchée et au point
+ * d'impact, et l'origine du rayon d'ombre est décalée le long de la
+ * normale pour éviter l'auto-ombrage (shadow acne).
+ */
+public class FloatRayTracer {
+
+    /** Epsilon relatif sur t pour les rayons primaires. */
+    static final float RAY_EPS = 1e-5f;
+
+    /** Epsilon absolu minimal des rayons d'ombre (valeur du pipeline double). */
+    static final float SHADOW_EPS = 1e-4f;
+
+    /**
+     * Epsilon relatif des rayons d'ombre, environ 32 ulp d'un float :
+     * couvre les erreurs d'arrondi accumulées par l'intersection.
+     */
+    static final float SHADOW_EPS_REL = 4e-6f;
+
+    /** Seuil de parallélisme rayon / plan. */
+    private static final float PARALLEL_EPS = 1e-8f;
+
+    /** Scène recopiée en simple précision. */
+    private final FloatScene fs;
+
+    /** Largeur de l'image. */
+    private final int width;
+
+    /** Hauteur de l'image. */
+    private final int height;
+
+    /** Position de l'œil. */
+    private final float eyeX, eyeY, eyeZ;
+
+    /** Repère de la caméra. */
+    private final float ux, uy, uz, vx, vy, vz, wx, wy, wz;
+
+    /** Taille d'un pixel en coordonnées caméra. */
+    private final float pixelWidth, pixelHeight;
+
+    /** État de tracé propre à chaque thread. */
+    private final ThreadLocal<Hit> hits = ThreadLocal.withInitial(Hit::new);
+
+    /**
+     * Prépare le rendu en simple précision d'une scène.
+     *
+     * @param scene scène à tracer
+     * @throws IllegalArgumentException si la scène n'est pas prise en charge
+     */
+    public FloatRayTracer(Scene scene) {
+        this.fs = new FloatScene(scene);
+        this.width = scene.getWidth();
+        this.height = scene.getHeight();
+
+        Point eye = scene.getCamera().getLookFrom();
+        this.eyeX = (float) eye.x;
+        this.eyeY = (float) eye.y;
+        this.eyeZ = (float) eye.z;
+
+        Orthonormal basis = new Orthonormal(scene.getCamera());
+        this.ux = (float) basis.getU().x;
+        this.uy = (float) basis.getU().y;
+        this.uz = (float) basis.getU().z;
+        this.vx = (float) basis.getV().x;
+        this.vy = (float) basis.getV().y;
+        this.vz = (float) basis.getV().z;
+        this.wx = (float) basis.getW().x;
+        this.wy = (float) basis.getW().y;
+        this.wz = (float) basis.getW().z;
+
+        double halfHeight = Math.tan(Math.toRadians(scene.getCamera().getFieldOfView()) / 2.0);
+        double halfWidth = halfHeight * width / height;
+        this.pixelHeight = (float) (2.0 * halfHeight / height);
+        this.pixelWidth = (float) (2.0 * halfWidth / width);
+    }
+
+    /**
+     * Indique si une scène peut être rendue par ce traceur.
+     *
+     * @param scene scène analysée
+     * @return vrai si toutes les formes et lumières sont prises en charge
+     */
+    public static boolean supports(Scene scene) {
+        return FloatScene.supports(scene);
+    }
+
+    /**
+     * Calcule la couleur d'un pixel au format 0xRRGGBB.
+     *
+     * @param i coordonnée X du pixel
+     * @param j coordonnée Y du pixel
+     * @return couleur RGB
+     */
+    public int getPixelRGB(int i, int j) {
+        Hit hit = hits.get();
+        tracePixel(i, j, hit, hit.rgb, 0);
+        return toRGB(hit.rgb, 0);
+    }
+
+    /**
+     * Trace une zone rectangulaire de l'image dans un tampon d'accumulation
+     * en float (r, g, b par pixel, ligne par ligne).
+     *
+     * @param x colonne du coin supérieur gauche
+     * @param y ligne du coin supérieur gauche
+     * @param w largeur de la zone
+     * @param h hauteur de la zone
+     * @param accum tampon de 3 * w * h flottants
+     */
+    public void traceRegion(int x, int y, int w, int h, float[] accum) {
+        Hit hit = hits.get();
+        int k = 0;
+        for (int j = y; j < y + h; j++) {
+            for (int i = x; i < x + w; i++) {
+                tracePixel(i, j, hit, accum, k);
+                k += 3;
+            }
+        }
+    }
+
+    /**
+     * Convertit un tampon d'accumulation en pixels 0xRRGGBB, avec le même
+     * écrêtage et le même arrondi que Color.toRGB.
+     *
+     * @param accum tampon r, g, b
+     * @param pixels pixels de sortie, accum.length / 3 éléments
+     */
+    public static void quantize(float[] accum, int[] pixels) {
+        for (int p = 0; p < pixels.length; p++) {
+            pixels[p] = toRGB(accum, 3 * p);
+        }
+    }
+
+    private static int toRGB(float[] rgb, int o) {
+        int r = Math.round(Math.min(1f, Math.max(0f, rgb[o])) * 255f);
+        int g = Math.round(Math.min(1f, Math.max(0f, rgb[o + 1])) * 255f);
+        int b = Math.round(Math.min(1f, Math.max(0f, rgb[o + 2])) * 255f);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Trace le rayon primaire du pixel (i, j) et écrit sa couleur dans out.
+     */
+    private void tracePixel(int i, int j, Hit hit, float[] out, int o) {
+        float x = ((i + 0.5f) - width / 2f) * pixelWidth;
+        float y = (height / 2f - (j + 0.5f)) * pixelHeight;
+
+        float dx = ux * x + vx * y - wx;
+        float dy = uy * x + vy * y - wy;
+        float dz = uz * x + vz * y - wz;
+        float inv = 1f / (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx *= inv;
+        dy *= inv;
+        dz *= inv;
+
+        TraceStats stats = TraceStats.current();
+        hit.tests = 0;
+
+        float tMin = RAY_EPS * Math.max(1f, maxAbs(eyeX, eyeY, eyeZ));
+        if (!closestHit(eyeX, eyeY, eyeZ, dx, dy, dz, tMin, hit)) {
+            out[o] = 0f;
+            out[o + 1] = 0f;
+            out[o + 2] = 0f;
+        } else {
+            shade(eyeX + hit.t * dx, eyeY + hit.t * dy, eyeZ + hit.t * dz, hit.prim, hit, stats, out, o);
+        }
+        if (stats != null) {
+            stats.intersectionTests += hit.tests;
+        }
+    }
+
+    /**
+     * Calcule l'éclairage (ambiant, Lambert, Blinn-Phong, ombres) au point
+     * p de la primitive prim, dans le même ordre que Scene.computeColor.
+     */
+    private void shade(float px, float py, float pz, int prim, Hit hit, TraceStats stats,
+                       float[] out, int o) {
+        normal(prim, px, py, pz, hit);
+        float nx = hit.nx, ny = hit.ny, nz = hit.nz;
+
+        int m = fs.materialIndex[prim] * FloatScene.MATERIAL_STRIDE;
+        float[] mat = fs.materials;
+        float shininess = mat[m + 6];
+
+        float ex = eyeX - px, ey = eyeY - py, ez = eyeZ - pz;
+        float einv = 1f / (float) Math.sqrt(ex * ex + ey * ey + ez * ez);
+        ex *= einv;
+        ey *= einv;
+        ez *= einv;
+
+        float eps = Math.max(SHADOW_EPS, SHADOW_EPS_REL
+                * Math.max(fs.primitiveScale[prim], maxAbs(px, py, pz)));
+
+        float r = fs.ambientR, g = fs.ambientG, b = fs.ambientB;
+        float[] lights = fs.lights;
+
+        for (int l = 0; l < fs.lightCount; l++) {
+            int lo = l * FloatScene.LIGHT_STRIDE;
+            float lx, ly, lz, maxDist;
+            if (lights[lo] == FloatScene.POINT_LIGHT) {
+                lx = lights[lo + 1] - px;
+                ly = lights[lo + 2] - py;
+                lz = lights[lo + 3] - pz;
+                maxDist = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+                float linv = 1f / maxDist;
+                lx *= linv;
+                ly *= linv;
+                lz *= linv;
+            } else {
+                lx = lights[lo + 1];
+                ly = lights[lo + 2];
+                lz = lights[lo + 3];
+                maxDist = Float.POSITIVE_INFINITY;
+            }
+
+            float ndotl = nx * lx + ny * ly + nz * lz;
+            float cr = lights[lo + 4], cg = lights[lo + 5], cb = lights[lo + 6];
+            float dr = 0f, dg = 0f, db = 0f;
+
+            if (ndotl > 0f) {
+                dr = cr * mat[m] * ndotl;
+                dg = cg * mat[m + 1] * ndotl;
+                db = cb * mat[m + 2] * ndotl;
+            }
+
+            if (shininess > 0f) {
+                float hx = lx + ex, hy = ly + ey, hz = lz + ez;
+                float hinv = 1f / (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+                float ndoth = (nx * hx + ny * hy + nz * hz) * hinv;
+                if (ndoth > 0f) {
+                    float factor = (float) Math.pow(ndoth, shininess);
+                    dr += cr * mat[m + 3] * factor;
+                    dg += cg * mat[m + 4] * factor;
+                    db += cb * mat[m + 5] * factor;
+                }
+            }
+
+            // une lumière sans contribution n'a pas besoin de rayon d'ombre
+            if (dr <= 0f && dg <= 0f && db <= 0f) {
+                if (stats != null) {
+                    stats.skippedShadowRays++;
+                }
+                continue;
+            }
+
+            // origine décalée du côté de la lumière
+            float off = ndotl >= 0f ? eps : -eps;
+            if (stats != null) {
+                stats.shadowRays++;
+            }
+            if (anyHit(px + off * nx, py + off * ny, pz + off * nz,
+                    lx, ly, lz, eps, maxDist - eps, hit)) {
+                continue;
+            }
+
+            r += dr;
+            g += dg;
+            b += db;
+        }
+
+        out[o] = r;
+        out[o + 1] = g;
+        out[o + 2] = b;
+    }
+
+    /**
+     * Écrit dans hit la normale de la primitive prim au point p.
+     */
+    private void normal(int prim, float px, float py, float pz, Hit hit) {
+        if (prim < fs.sphereCount) {
+            int s = prim * FloatScene.SPHERE_STRIDE;
+            float x = px - fs.spheres[s];
+            float y = py - fs.spheres[s + 1];
+            float z = pz - fs.spheres[s + 2];
+            float inv = 1f / (float) Math.sqrt(x * x + y * y + z * z);
+            hit.nx = x * inv;
+            hit.ny = y * inv;
+            hit.nz = z * inv;
+        } else if (prim < fs.sphereCount + fs.triangleCount) {
+            int t = (prim - fs.sphereCount) * FloatScene.TRIANGLE_STRIDE + 9;
+            hit.nx = fs.triangles[t];
+            hit.ny = fs.triangles[t + 1];
+            hit.nz = fs.triangles[t + 2];
+        } else {
+            int q = (prim - fs.sphereCount - fs.triangleCount) * FloatScene.PLANE_STRIDE + 3;
+            hit.nx = fs.planes[q];
+            hit.ny = fs.planes[q + 1];
+            hit.nz = fs.planes[q + 2];
+        }
+    }
+
+    /**
+     * Recherche l'intersection la plus proche au-delà de tMin : plans un à
+     * un, puis sphères et triangles par la hiérarchie, enfant proche
+     * d'abord. En cas d'égalité, la première primitive (dans l'ordre
+     * global) l'emporte.
+     */
+    private boolean closestHit(float ox, float oy, float oz, float dx, float dy, float dz,
+                               float tMin, Hit hit) {
+        hit.t = Float.POSITIVE_INFINITY;
+        hit.prim = -1;
+
+        int first = fs.sphereCount + fs.triangleCount;
+        float[] pl = fs.planes;
+        for (int k = 0; k < fs.planeCount; k++) {
+            hit.tests++;
+            float t = intersectPlane(pl, k * FloatScene.PLANE_STRIDE, ox, oy, oz, dx, dy, dz, tMin);
+            if (t < hit.t) {
+                hit.t = t;
+                hit.prim = first + k;
+            }
+        }
+
+        int[] nodes = fs.nodes;
+        if (nodes.length == 0) {
+            return hit.prim >= 0;
+        }
+        float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+        int[] stack = hit.stack;
+        int top = 0;
+        int node = 0;
+        while (true) {
+            int base = Bvh.NODE_INTS * node;
+            if (hitsBox(nodes, base, ox, oy, oz, ix, iy, iz, hit.t)) {
+                int count = nodes[base + 7];
+                if (count > 0) {
+                    int from = nodes[base + 6];
+                    for (int p = from; p < from + count; p++) {
+                        int k = fs.leafPrimitives[p];
+                        hit.tests++;
+                        float t = intersect(k, ox, oy, oz, dx, dy, dz, tMin, Math.nextUp(hit.t));
+                        if (t < hit.t || (t == hit.t && k < hit.prim)) {
+                            hit.t = t;
+                            hit.prim = k;
+                        }
+                    }
+                } else {
+                    // enfant proche d'abord, l'autre sur la pile
+                    int axis = -1 - count;
+                    if ((axis == 0 ? dx : axis == 1 ? dy : dz) < 0f) {
+                        stack[top++] = node + 1;
+                        node = nodes[base + 6];
+                    } else {
+                        stack[top++] = nodes[base + 6];
+                        node = node + 1;
+                    }
+                    continue;
+                }
+            }
+            if (top == 0) {
+                break;
+            }
+            node = stack[--top];
+        }
+        return hit.prim >= 0;
+    }
+
+    /**
+     * Indique si une primitive coupe le rayon pour un t dans ]tMin, tMax[.
+     */
+    private boolean anyHit(float ox, float oy, float oz, float dx, float dy, float dz,
+                           float tMin, float tMax, Hit hit) {
+        float[] pl = fs.planes;
+        for (int k = 0; k < fs.planeCount; k++) {
+            hit.tests++;
+            if (intersectPlane(pl, k * FloatScene.PLANE_STRIDE, ox, oy, oz, dx, dy, dz, tMin) < tMax) {
+                return true;
+            }
+        }
+
+        int[] nodes = fs.nodes;
+        if (nodes.length == 0) {
+            return false;
+        }
+        float ix = 1f / dx, iy = 1f / dy, iz = 1f / dz;
+        int[] stack = hit.stack;
+        int top = 0;
+        int node = 0;
+        while (true) {
+            int base = Bvh.NODE_INTS * node;
+            if (hitsBox(nodes, base, ox, oy, oz, ix, iy, iz, tMax)) {
+                int count = nodes[base + 7];
+                if (count > 0) {
+                    int from = nodes[base + 6];
+                    for (int p = from; p < from + count; p++) {
+                        hit.tests++;
+                        if (intersect(fs.leafPrimitives[p], ox, oy, oz, dx, dy, dz, tMin, tMax) < tMax) {
+                            return true;
+                        }
+                    }
+                } else {
+                    stack[top++] = nodes[base + 6];
+                    node = node + 1;
+                    continue;
+                }
+            }
+            if (top == 0) {
+                return false;
+            }
+            node = stack[--top];
+        }
+    }
+
+    /**
+     * Intersection avec la sphère ou le triangle d'indice global k.
+     *
+     * @return t dans ]tMin, tMax[, sinon +infini
+     */
+    private float intersect(int k, float ox, float oy, float oz, float dx, float dy, float dz,
+                            float tMin, float tMax) {
+        if (k < fs.sphereCount) {
+            float t = intersectSphere(fs.spheres, k * FloatScene.SPHERE_STRIDE, ox, oy, oz, dx, dy, dz, tMin);
+            return t < tMax ? t : Float.POSITIVE_INFINITY;
+        }
+        return intersectTriangle(fs.triangles, (k - fs.sphereCount) * FloatScene.TRIANGLE_STRIDE,
+                ox, oy, oz, dx, dy, dz, tMin, tMax);
+    }
+
+    /**
+     * Test du segment [0, tMax] contre la boîte d'un nœud, en float, avec
+     * les mêmes précautions que Bvh.hitsBox pour les directions parallèles
+     * à une face. Les boîtes de FloatScene sont élargies pour absorber les
+     * arrondis de ce calcul.
+     */
+    private static boolean hitsBox(int[] nodes, int base, float ox, float oy, float oz,
+                                   float ix, float iy, float iz, float tMax) {
+        float t0 = 0f;
+        float t1 = tMax;
+
+        float a = (Float.intBitsToFloat(nodes[base]) - ox) * ix;
+        float b = (Float.intBitsToFloat(nodes[base + 3]) - ox) * ix;
+        float near = b < a ? b : a;
+        float far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (Float.intBitsToFloat(nodes[base + 1]) - oy) * iy;
+        b = (Float.intBitsToFloat(nodes[base + 4]) - oy) * iy;
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (Float.intBitsToFloat(nodes[base + 2]) - oz) * iz;
+        b = (Float.intBitsToFloat(nodes[base + 5]) - oz) * iz;
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        return t0 <= t1;
+    }
+
+    /**
+     * Intersection rayon / sphère.
+     * Les racines sont calculées sous la forme q / a et c / q, qui évite la
+     * soustraction de deux grandeurs voisines lorsque la sphère est grande
+     * devant la distance au point d'impact.
+     *
+     * Le calcul se fait en double à partir des données float, qui y sont
+     * exactes ; seul le t retourné est arrondi. En float, le terme
+     * c = |oc|² - r² se perd dès que l'origine est près de la surface d'une
+     * grande sphère (sol de rayon 10000 de final.scene), et supposer la
+     * direction unitaire (|d|² = 1 à un ulp près) décale les impacts
+     * rasants de plusieurs fois l'epsilon des ombres : les deux erreurs
+     * produisaient de l'acné d'ombre.
+     *
+     * @return plus petit t supérieur à tMin, ou +infini
+     */
+    private static float intersectSphere(float[] s, int o, float ox, float oy, float oz,
+                                         float dx, float dy, float dz, float tMin) {
+        double cx = (double) ox - s[o], cy = (double) oy - s[o + 1], cz = (double) oz - s[o + 2];
+        double r = s[o + 3];
+        double a = (double) dx * dx + (double) dy * dy + (double) dz * dz;
+        double b = cx * dx + cy * dy + cz * dz;
+        double c = cx * cx + cy * cy + cz * cz - r * r;
+        double disc = b * b - a * c;
+        if (disc < 0.0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        double q = -(b + Math.copySign(Math.sqrt(disc), b));
+        float t1 = (float) (q / a);
+        float t2 = q != 0.0 ? (float) (c / q) : 0f;
+        float near = Math.min(t1, t2);
+        float far = Math.max(t1, t2);
+        if (near > tMin) {
+            return near;
+        }
+        return far > tMin ? far : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Intersection rayon / triangle : plan du triangle puis tests des trois
+     * arêtes, comme Triangle.intersect.
+     *
+     * @return t si le triangle est touché dans ]tMin, tMax[, sinon +infini
+     */
+    private static float intersectTriangle(float[] tr, int o, float ox, float oy, float oz,
+                                           float dx, float dy, float dz, float tMin, float tMax) {
+        float nx = tr[o + 9], ny = tr[o + 10], nz = tr[o + 11];
+        float denom = dx * nx + dy * ny + dz * nz;
+        if (Math.abs(denom) < PARALLEL_EPS) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float ax = tr[o], ay = tr[o + 1], az = tr[o + 2];
+        float t = ((ax - ox) * nx + (ay - oy) * ny + (az - oz) * nz) / denom;
+        if (t <= tMin || t >= tMax) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float px = ox + t * dx, py = oy + t * dy, pz = oz + t * dz;
+        float bx = tr[o + 3], by = tr[o + 4], bz = tr[o + 5];
+        float cx = tr[o + 6], cy = tr[o + 7], cz = tr[o + 8];
+
+        if (edge(ax, ay, az, bx, by, bz, px, py, pz, nx, ny, nz) < 0f
+                || edge(bx, by, bz, cx, cy, cz, px, py, pz, nx, ny, nz) < 0f
+                || edge(cx, cy, cz, ax, ay, az, px, py, pz, nx, ny, nz) < 0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return t;
+    }
+
+    /**
+     * ((q - p0) x (p - p0)) . n : positif si p est à gauche de l'arête p0 q.
+     */
+    private static float edge(float p0x, float p0y, float p0z, float qx, float qy, float qz,
+                              float px, float py, float pz, float nx, float ny, float nz) {
+        float ex = qx - p0x, ey = qy - p0y, ez = qz - p0z;
+        float fx = px - p0x, fy = py - p0y, fz = pz - p0z;
+        return (ey * fz - ez * fy) * nx + (ez * fx - ex * fz) * ny + (ex * fy - ey * fx) * nz;
+    }
+
+    /**
+     * Intersection rayon / plan.
+     *
+     * @return t si le plan est touché au-delà de tMin, sinon +infini
+     */
+    private static float intersectPlane(float[] pl, int o, float ox, float oy, float oz,
+                                        float dx, float dy, float dz, float tMin) {
+        float nx = pl[o + 3], ny = pl[o + 4], nz = pl[o + 5];
+        float denom = dx * nx + dy * ny + dz * nz;
+        if (Math.abs(denom) < PARALLEL_EPS) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float t = ((pl[o] - ox) * nx + (pl[o + 1] - oy) * ny + (pl[o + 2] - oz) * nz) / denom;
+        return t > tMin ? t : Float.POSITIVE_INFINITY;
+    }
+
+    private static float maxAbs(float x, float y, float z) {
+        return Math.max(Math.abs(x), Math.max(Math.abs(y), Math.abs(z)));
+    }
+
+    /**
+     * État de tracé propre à un thread, réutilisé d'un rayon à l'autre :
+     * résultat de la recherche d'intersection, normale au point touché,
+     * pile de parcours et nombre de tests effectués.
+     */
+    private static final class Hit {
+        float t;
+        int prim;
+        float nx, ny, nz;
+        long tests;
+        final int[] stack = new int[Bvh.STACK_SIZE];
+        final float[] rgb = new float[3];
+    }
+}
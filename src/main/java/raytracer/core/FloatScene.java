@@ -0,0 +1,310 @@
+package raytracer.core;
+
+import raytracer.acceleration.Bvh;
+import raytracer.geometry.AbstractVec3;
+import raytracer.geometry.Point;
+import raytracer.geometry.shapes.Plane;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+import raytracer.lighting.AbstractLight;
+import raytracer.lighting.DirectionalLight;
+import raytracer.lighting.PointLight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copie compacte d'une scène en simple précision, utilisée par FloatRayTracer.
+ *
+ * La géométrie est rangée dans des tableaux de float contigus, par type de
+ * forme, au lieu d'objets Point / Vector / Color en double :
+ *  - sphère : cx, cy, cz, rayon (16 octets) ;
+ *  - triangle : sommets a, b, c puis normale (48 octets) ;
+ *  - plan : point puis normale (24 octets).
+ *
+ * Les primitives sont numérotées globalement : sphères, puis triangles,
+ * puis plans. Chaque primitive référence un matériau dans une table
+ * dédoublonnée (diffuse, spéculaire, brillance).
+ *
+ * Les sphères et triangles sont indexés par une hiérarchie au format des
+ * nœuds de Bvh (32 octets par nœud), construite sur ces tableaux ; les
+ * plans, non bornés, sont testés un à un. En simple précision, c'est
+ * cette copie qui est parcourue : la hiérarchie en double de la scène
+ * n'est jamais construite. Les formes en double restent en mémoire,
+ * produites par l'analyseur et utilisées hors du tracé (dimensions,
+ * empreinte du cache).
+ */
+final class FloatScene {
+
+    /** Nombre de flottants par sphère. */
+    static final int SPHERE_STRIDE = 4;
+
+    /** Nombre de flottants par triangle. */
+    static final int TRIANGLE_STRIDE = 12;
+
+    /** Nombre de flottants par plan. */
+    static final int PLANE_STRIDE = 6;
+
+    /** Nombre de flottants par matériau. */
+    static final int MATERIAL_STRIDE = 7;
+
+    /** Nombre de flottants par lumière : type, x, y, z, r, g, b. */
+    static final int LIGHT_STRIDE = 7;
+
+    /** Type de lumière ponctuelle (x, y, z = position). */
+    static final float POINT_LIGHT = 0f;
+
+    /** Type de lumière directionnelle (x, y, z = direction vers la lumière). */
+    static final float DIRECTIONAL_LIGHT = 1f;
+
+    /**
+     * Marge relative des boîtes de la hiérarchie : le test des boîtes se
+     * fait en float et ne doit pas écarter un impact sur leur bord.
+     */
+    private static final double BOX_PAD = 1e-5;
+
+    /** Nombre de sphères. */
+    final int sphereCount;
+
+    /** Sphères, SPHERE_STRIDE flottants chacune. */
+    final float[] spheres;
+
+    /** Nombre de triangles. */
+    final int triangleCount;
+
+    /** Triangles, TRIANGLE_STRIDE flottants chacun. */
+    final float[] triangles;
+
+    /** Nombre de plans. */
+    final int planeCount;
+
+    /** Plans, PLANE_STRIDE flottants chacun. */
+    final float[] planes;
+
+    /** Indice de matériau de chaque primitive. */
+    final int[] materialIndex;
+
+    /** Table des matériaux : diffuse rgb, spéculaire rgb, brillance. */
+    final float[] materials;
+
+    /**
+     * Ordre de grandeur des coordonnées de chaque primitive, utilisé pour
+     * adapter les epsilons à la précision relative des float.
+     */
+    final float[] primitiveScale;
+
+    /** Nombre de lumières. */
+    final int lightCount;
+
+    /** Lumières, dans l'ordre de la scène. */
+    final float[] lights;
+
+    /** Couleur ambiante. */
+    final float ambientR, ambientG, ambientB;
+
+    /** Nœuds de la hiérarchie des sphères et triangles, au format de Bvh. */
+    final int[] nodes;
+
+    /** Indices globaux des sphères et triangles, dans l'ordre des feuilles. */
+    final int[] leafPrimitives;
+
+    /**
+     * Recopie une scène en simple précision.
+     *
+     * @param scene scène analysée
+     * @throws IllegalArgumentException si la scène contient une forme ou
+     *         une lumière non prise en charge (voir supports)
+     */
+    FloatScene(Scene scene) {
+        if (!supports(scene)) {
+            throw new IllegalArgumentException(
+                    "Scène non prise en charge en simple précision");
+        }
+
+        List<Sphere> sphereList = new ArrayList<>();
+        List<Triangle> triangleList = new ArrayList<>();
+        List<Plane> planeList = new ArrayList<>();
+        for (Shape shape : scene.getShapes()) {
+            if (shape instanceof Sphere) {
+                sphereList.add((Sphere) shape);
+            } else if (shape instanceof Triangle) {
+                triangleList.add((Triangle) shape);
+            } else {
+                planeList.add((Plane) shape);
+            }
+        }
+
+        sphereCount = sphereList.size();
+        triangleCount = triangleList.size();
+        planeCount = planeList.size();
+        int count = sphereCount + triangleCount + planeCount;
+
+        spheres = new float[sphereCount * SPHERE_STRIDE];
+        triangles = new float[triangleCount * TRIANGLE_STRIDE];
+        planes = new float[planeCount * PLANE_STRIDE];
+        materialIndex = new int[count];
+        primitiveScale = new float[count];
+
+        Map<String, Integer> materialIds = new HashMap<>();
+        List<float[]> materialList = new ArrayList<>();
+        int prim = 0;
+
+        for (int k = 0; k < sphereCount; k++, prim++) {
+            Sphere s = sphereList.get(k);
+            int o = k * SPHERE_STRIDE;
+            put(spheres, o, s.getCenter());
+            spheres[o + 3] = (float) s.getRadius();
+            // intersection calculée en double par rapport au centre : seule compte
+            // la position du point d'impact, même pour un sol de rayon 10000
+            primitiveScale[prim] = 0f;
+            materialIndex[prim] = material(s, materialIds, materialList);
+        }
+        for (int k = 0; k < triangleCount; k++, prim++) {
+            Triangle t = triangleList.get(k);
+            int o = k * TRIANGLE_STRIDE;
+            put(triangles, o, t.getA());
+            put(triangles, o + 3, t.getB());
+            put(triangles, o + 6, t.getC());
+            put(triangles, o + 9, t.getNormal(t.getA()));
+            primitiveScale[prim] = (float) Math.max(maxAbs(t.getA()),
+                    Math.max(maxAbs(t.getB()), maxAbs(t.getC())));
+            materialIndex[prim] = material(t, materialIds, materialList);
+        }
+        for (int k = 0; k < planeCount; k++, prim++) {
+            Plane p = planeList.get(k);
+            int o = k * PLANE_STRIDE;
+            put(planes, o, p.getPoint());
+            put(planes, o + 3, p.getNormal(p.getPoint()));
+            primitiveScale[prim] = (float) maxAbs(p.getPoint());
+            materialIndex[prim] = material(p, materialIds, materialList);
+        }
+
+        materials = new float[materialList.size() * MATERIAL_STRIDE];
+        for (int m = 0; m < materialList.size(); m++) {
+            System.arraycopy(materialList.get(m), 0, materials, m * MATERIAL_STRIDE, MATERIAL_STRIDE);
+        }
+
+        List<AbstractLight> lightList = scene.getLights();
+        lightCount = lightList.size();
+        lights = new float[lightCount * LIGHT_STRIDE];
+        for (int k = 0; k < lightCount; k++) {
+            AbstractLight light = lightList.get(k);
+            int o = k * LIGHT_STRIDE;
+            if (light instanceof PointLight) {
+                lights[o] = POINT_LIGHT;
+                put(lights, o + 1, ((PointLight) light).getPosition());
+            } else {
+                lights[o] = DIRECTIONAL_LIGHT;
+                // direction du point vers la lumière, identique pour tout point
+                put(lights, o + 1, light.getLightDirection(new Point(0, 0, 0)));
+            }
+            put(lights, o + 4, light.getColor());
+        }
+
+        Color ambient = scene.getAmbient();
+        ambientR = (float) ambient.x;
+        ambientG = (float) ambient.y;
+        ambientB = (float) ambient.z;
+
+        int bounded = sphereCount + triangleCount;
+        leafPrimitives = new int[bounded];
+        for (int k = 0; k < bounded; k++) {
+            leafPrimitives[k] = k;
+        }
+        nodes = Bvh.buildNodes(boxes(), leafPrimitives);
+    }
+
+    /**
+     * Calcule les boîtes des sphères et des triangles à partir des valeurs
+     * float, élargies de BOX_PAD.
+     */
+    private double[] boxes() {
+        double[] boxes = new double[6 * (sphereCount + triangleCount)];
+        for (int k = 0; k < sphereCount; k++) {
+            int o = k * SPHERE_STRIDE;
+            double r = Math.abs(spheres[o + 3]);
+            for (int a = 0; a < 3; a++) {
+                boxes[6 * k + a] = spheres[o + a] - r;
+                boxes[6 * k + 3 + a] = spheres[o + a] + r;
+            }
+        }
+        for (int k = 0; k < triangleCount; k++) {
+            int o = k * TRIANGLE_STRIDE;
+            int b = 6 * (sphereCount + k);
+            for (int a = 0; a < 3; a++) {
+                boxes[b + a] = Math.min(triangles[o + a], Math.min(triangles[o + 3 + a], triangles[o + 6 + a]));
+                boxes[b + 3 + a] = Math.max(triangles[o + a], Math.max(triangles[o + 3 + a], triangles[o + 6 + a]));
+            }
+        }
+        for (int k = 0; k < boxes.length; k += 6) {
+            for (int a = 0; a < 3; a++) {
+                boxes[k + a] -= BOX_PAD * Math.max(1.0, Math.abs(boxes[k + a]));
+                boxes[k + 3 + a] += BOX_PAD * Math.max(1.0, Math.abs(boxes[k + 3 + a]));
+            }
+        }
+        return boxes;
+    }
+
+    /**
+     * Indique si une scène peut être rendue en simple précision : seules
+     * les sphères, triangles, plans et lumières ponctuelles ou
+     * directionnelles sont recopiés. Les autres scènes restent rendues
+     * par le pipeline double précision, de même que les scènes éclairées
+     * par échantillonnage des lumières (LightTree).
+     *
+     * @param scene scène analysée
+     * @return vrai si toutes les formes et lumières sont prises en charge
+     */
+    static boolean supports(Scene scene) {
+        if (scene.getLightSamplingError() > 0.0) {
+            return false;
+        }
+        for (Shape shape : scene.getShapes()) {
+            Class<?> type = shape.getClass();
+            if (type != Sphere.class && type != Triangle.class && type != Plane.class) {
+                return false;
+            }
+        }
+        for (AbstractLight light : scene.getLights()) {
+            Class<?> type = light.getClass();
+            if (type != PointLight.class && type != DirectionalLight.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return nombre total de primitives */
+    int primitiveCount() {
+        return materialIndex.length;
+    }
+
+    private static int material(Shape shape, Map<String, Integer> ids, List<float[]> list) {
+        Color d = shape.getDiffuse();
+        Color s = shape.getSpecular();
+        float[] m = {
+            (float) d.x, (float) d.y, (float) d.z,
+            (float) s.x, (float) s.y, (float) s.z,
+            (float) shape.getShininess()
+        };
+        return ids.computeIfAbsent(Arrays.toString(m), key -> {
+            list.add(m);
+            return list.size() - 1;
+        });
+    }
+
+    private static void put(float[] array, int offset, AbstractVec3 v) {
+        array[offset] = (float) v.x;
+        array[offset + 1] = (float) v.y;
+        array[offset + 2] = (float) v.z;
+    }
+
+    private static double maxAbs(AbstractVec3 v) {
+        return Math.max(Math.abs(v.x), Math.max(Math.abs(v.y), Math.abs(v.z)));
+    }
+}
@@ -61,6 +61,26 @@ public class Intersection {
         this.shininess = shape.getShininess();
     }
 
+    /**
+     * Construit une intersection dont la normale est déjà connue, par
+     * exemple relue depuis un G-buffer : la normale n'est pas recalculée.
+     *
+     * @param t valeur du paramètre du rayon
+     * @param point point d'intersection
+     * @param shape forme touchée
+     * @param normal normale à la surface au point
+     */
+    public Intersection(double t, Point point, Shape shape, Vector normal) {
+        this.t = t;
+        this.point = point;
+        this.shape = shape;
+
+        this.normal = normal;
+        this.diffuse = shape.getDiffuse();
+        this.specular = shape.getSpecular();
+        this.shininess = shape.getShininess();
+    }
+
     /** @return la valeur t de l'intersection */
     public double getT() { return t; }
 
@@ -0,0 +1,33 @@
+package raytracer.core;
+
+/**
+ * Précision numérique utilisée par le pipeline de rendu.
+ *
+ *  - DOUBLE : pipeline d'origine, objets Point / Vector / Color en double ;
+ *  - FLOAT : pipeline compact en simple précision (FloatRayTracer), la
+ *    géométrie étant recopiée dans des tableaux de float.
+ */
+public enum Precision {
+
+    /** Pipeline en double précision (par défaut). */
+    DOUBLE,
+
+    /** Pipeline en simple précision. */
+    FLOAT;
+
+    /**
+     * Analyse le nom d'une précision depuis la ligne de commande.
+     *
+     * @param name "double" ou "float" (casse indifférente)
+     * @return précision correspondante
+     * @throws IllegalArgumentException si le nom est inconnu
+     */
+    public static Precision parse(String name) {
+        switch (name.toLowerCase()) {
+            case "double": return DOUBLE;
+            case "float":  return FLOAT;
+            default:
+                throw new IllegalArgumentException("Précision inconnue : " + name);
+        }
+    }
+}
@@ -9,31 +9,99 @@ import raytracer.geometry.Vector;
  * Un rayon est défini par :
  *  - une origine ;
  *  - une direction normalisée ;
+ *  - l'inverse de chaque composante de la direction, précalculé pour les
+ *    tests contre des boîtes englobantes (méthode des slabs), qui
+ *    multiplient au lieu de diviser, et le signe de chaque composante,
+ *    qui donne l'ordre de parcours des enfants d'une hiérarchie ;
+ *  - l'intervalle [tMin, tMax] des intersections recherchées.
  *
  * Le rayon est paramétré par la formule suivante :
  *   R(t) = origin + t * direction
  *
+ * Les formes ignorent les intersections en deçà de tMin (auto-intersection
+ * d'un rayon partant d'une surface) et au-delà de tMax. La recherche de
+ * l'intersection la plus proche réduit tMax à chaque intersection trouvée,
+ * pour que les formes plus lointaines abandonnent leur test au plus tôt,
+ * puis lui rend sa valeur : un rayon n'est donc pas partagé entre threads.
+ *
  * Cette classe est utilisée pour tester les intersections avec les formes
  * et pour parcourir la scène lors du rendu.
  */
 public class Ray {
 
+    /** Paramètre minimal par défaut des intersections. */
+    public static final double DEFAULT_T_MIN = 1e-6;
+
+    /** Bit de getSignBits indiquant une composante X négative. */
+    public static final int NEGATIVE_X = 1;
+
+    /** Bit de getSignBits indiquant une composante Y négative. */
+    public static final int NEGATIVE_Y = 2;
+
+    /** Bit de getSignBits indiquant une composante Z négative. */
+    public static final int NEGATIVE_Z = 4;
+
     /** Origine du rayon. */
     private final Point origin;
 
     /** Direction unitaire du rayon. */
     private final Vector direction;
 
+    /** Inverse de la composante X de la direction (infini si elle est nulle). */
+    private final double invDirX;
+
+    /** Inverse de la composante Y de la direction (infini si elle est nulle). */
+    private final double invDirY;
+
+    /** Inverse de la composante Z de la direction (infini si elle est nulle). */
+    private final double invDirZ;
+
+    /** Signes des composantes de la direction (NEGATIVE_X, NEGATIVE_Y, NEGATIVE_Z). */
+    private final int signBits;
+
+    /** Paramètre minimal des intersections recherchées. */
+    private final double tMin;
+
+    /** Paramètre maximal des intersections recherchées, réduit pendant la recherche. */
+    private double tMax;
+
     /**
      * Construit un rayon à partir d'une origine et d'une direction.
      * La direction est automatiquement normalisée.
      *
+     * Les intersections sont recherchées de DEFAULT_T_MIN à l'infini.
+     *
      * @param origin point d'origine du rayon
      * @param direction direction du rayon
      */
     public Ray(Point origin, Vector direction) {
+        this(origin, direction, DEFAULT_T_MIN, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Construit un rayon limité à un intervalle de paramètres, par exemple
+     * un rayon d'ombre qui s'arrête avant la lumière.
+     *
+     * @param origin point d'origine du rayon
+     * @param direction direction du rayon, normalisée
+     * @param tMin paramètre minimal des intersections
+     * @param tMax paramètre maximal des intersections, éventuellement infini
+     * @throws IllegalArgumentException si tMin est supérieur à tMax
+     */
+    public Ray(Point origin, Vector direction, double tMin, double tMax) {
+        if (!(tMin <= tMax)) {
+            throw new IllegalArgumentException("Intervalle de rayon invalide : [" + tMin + ", " + tMax + "]");
+        }
         this.origin = origin;
         this.direction = (Vector) direction.normalize();
+        this.invDirX = 1.0 / this.direction.x;
+        this.invDirY = 1.0 / this.direction.y;
+        this.invDirZ = 1.0 / this.direction.z;
+        this.signBits = (this.direction.x < 0 ? NEGATIVE_X : 0)
+                | (this.direction.y < 0 ? NEGATIVE_Y : 0)
+                | (this.direction.z < 0 ? NEGATIVE_Z : 0);
+        this.tMin = tMin;
+        this.tMax = tMax;
     }
 
     /**
@@ -54,6 +122,49 @@ public class Ray {
         return direction;
     }
 
+    /** @return inverse de la composante X de la direction */
+    public double getInvDirX() { return invDirX; }
+
+    /** @return inverse de la composante Y de la direction */
+    public double getInvDirY() { return invDirY; }
+
+    /** @return inverse de la composante Z de la direction */
+    public double getInvDirZ() { return invDirZ; }
+
+    /**
+     * Retourne les signes des composantes de la direction.
+     *
+     * @return combinaison de NEGATIVE_X, NEGATIVE_Y et NEGATIVE_Z
+     */
+    public int getSignBits() { return signBits; }
+
+    /**
+     * Indique si la composante de la direction sur un axe est négative.
+     *
+     * @param axis 0 pour X, 1 pour Y, 2 pour Z
+     * @return vrai si la composante est strictement négative
+     */
+    public boolean isNegative(int axis) {
+        return (signBits >> axis & 1) != 0;
+    }
+
+    /** @return paramètre minimal des intersections recherchées */
+    public double getTMin() { return tMin; }
+
+    /** @return paramètre maximal des intersections recherchées */
+    public double getTMax() { return tMax; }
+
+    /**
+     * Modifie le paramètre maximal des intersections recherchées. Les
+     * recherches d'intersection la plus proche le réduisent au fil des
+     * intersections trouvées, puis le rétablissent.
+     *
+     * @param tMax nouveau paramètre maximal
+     */
+    public void setTMax(double tMax) {
+        this.tMax = tMax;
+    }
+
     /**
      * Calcule le point situé à la distance t le long du rayon.
      * Utilise la formule :
@@ -77,6 +188,6 @@ public class Ray {
      */
     @Override
     public String toString() {
-        return "Ray{origin=" + origin + ", direction=" + direction + "}";
+        return "Ray{origin=" + origin + ", direction=" + direction + ", t=[" + tMin + ", " + tMax + "]}";
     }
 }
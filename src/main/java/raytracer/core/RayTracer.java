@@ -1,7 +1,9 @@
 package raytracer.core;
 
+import raytracer.diagnostics.ScenePrepareEvent;
 import raytracer.imaging.Color;
 import raytracer.geometry.Orthonormal;
+import raytracer.geometry.Point;
 import raytracer.geometry.Vector;
 
 import java.util.Optional;
@@ -40,6 +42,9 @@ public class RayTracer {
      * @param scene scène à tracer
      */
     public RayTracer(Scene scene) {
+        ScenePrepareEvent event = new ScenePrepareEvent();
+        event.begin();
+
         this.scene = scene;
         this.basis = new Orthonormal(scene.getCamera());
 
@@ -53,6 +58,14 @@ public class RayTracer {
 
         this.pixelHeight = (2.0 * halfHeight) / imgHeight;
         this.pixelWidth = (2.0 * halfWidth) / imgWidth;
+
+        if (event.shouldCommit()) {
+            event.width = imgWidth;
+            event.height = imgHeight;
+            event.shapeCount = scene.getShapes().size();
+            event.lightCount = scene.getLights().size();
+            event.commit();
+        }
     }
 
     /**
@@ -72,11 +85,72 @@ public class RayTracer {
      */
     public Color getPixelColor(int i, int j) {
 
+        Optional<Intersection> hit = tracePrimary(i, j);
+
+        if (hit.isPresent()) {
+            return scene.computeColor(hit.get());
+        }
+
+        return new Color(0, 0, 0);
+    }
+
+    /**
+     * Calcule la couleur d'un échantillon situé en un point quelconque de
+     * l'image (voir getPrimaryRay(double, double)), pour le suréchantillonnage.
+     * La couleur est exacte : les échantillons d'un pixel sont moyennés avant
+     * quantification.
+     *
+     * @param px abscisse dans l'image
+     * @param py ordonnée dans l'image
+     * @return couleur de l'échantillon
+     */
+    public Color getSampleColor(double px, double py) {
+        Optional<Intersection> hit = scene.findClosestIntersection(getPrimaryRay(px, py));
+        if (hit.isPresent()) {
+            return scene.computeColor(hit.get(), true);
+        }
+        return new Color(0, 0, 0);
+    }
+
+    /**
+     * Lance le rayon primaire du pixel (i, j) et retourne l'intersection
+     * la plus proche, sans calcul d'éclairage.
+     *
+     * @param i coordonnée X du pixel
+     * @param j coordonnée Y du pixel
+     * @return intersection la plus proche, si elle existe
+     */
+    public Optional<Intersection> tracePrimary(int i, int j) {
+        return scene.findClosestIntersection(getPrimaryRay(i, j));
+    }
+
+    /**
+     * Construit le rayon primaire passant par le centre du pixel (i, j).
+     *
+     * @param i coordonnée X du pixel
+     * @param j coordonnée Y du pixel
+     * @return rayon partant de l'œil
+     */
+    public Ray getPrimaryRay(int i, int j) {
+        return getPrimaryRay(i + 0.5, j + 0.5);
+    }
+
+    /**
+     * Construit le rayon primaire passant par un point quelconque de
+     * l'image, exprimé en pixels depuis le coin supérieur gauche : le
+     * centre du pixel (i, j) est (i + 0.5, j + 0.5).
+     *
+     * @param px abscisse dans l'image
+     * @param py ordonnée dans l'image
+     * @return rayon partant de l'œil
+     */
+    public Ray getPrimaryRay(double px, double py) {
+
         int imgWidth = scene.getWidth();
         int imgHeight = scene.getHeight();
 
-        double x = ((i + 0.5) - imgWidth / 2.0) * pixelWidth;
-        double y = (imgHeight / 2.0 - (j + 0.5)) * pixelHeight;
+        double x = (px - imgWidth / 2.0) * pixelWidth;
+        double y = (imgHeight / 2.0 - py) * pixelHeight;
 
         Vector u = basis.getU();
         Vector v = basis.getV();
@@ -86,14 +160,29 @@ public class RayTracer {
                       .add(v.multiply(y))
                       .subtract(w);
 
-        Ray ray = new Ray(scene.getCamera().getLookFrom(), dir);
-
-        Optional<Intersection> hit = scene.findClosestIntersection(ray);
+        return new Ray(scene.getCamera().getLookFrom(), dir);
+    }
 
-        if (hit.isPresent()) {
-            return scene.computeColor(hit.get());
+    /**
+     * Projette un point de la scène sur l'écran.
+     * C'est l'opération inverse de getPrimaryRay : le point projeté en
+     * (i, j) se trouve sur le rayon primaire du pixel (i, j).
+     *
+     * @param p point de la scène
+     * @return coordonnées fractionnaires {i, j} du pixel, ou null si le
+     *         point n'est pas strictement devant la caméra
+     */
+    public double[] project(Point p) {
+        Vector d = p.subtract(scene.getCamera().getLookFrom());
+        double depth = -d.dot(basis.getW());
+        if (depth <= 1e-9) {
+            return null;
         }
+        double x = d.dot(basis.getU()) / depth;
+        double y = d.dot(basis.getV()) / depth;
 
-        return new Color(0, 0, 0);
+        double i = x / pixelWidth + scene.getWidth() / 2.0 - 0.5;
+        double j = scene.getHeight() / 2.0 - 0.5 - y / pixelHeight;
+        return new double[] {i, j};
     }
 }
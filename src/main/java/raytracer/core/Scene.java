@@ -1,11 +1,22 @@
 package raytracer.core;
 
+import raytracer.acceleration.Bvh;
+import raytracer.diagnostics.ShadowBatchEvent;
 import raytracer.lighting.AbstractLight;
+import raytracer.lighting.LightTree;
+import raytracer.lighting.PointLight;
 import raytracer.imaging.Color;
+import raytracer.imaging.OutputFormat;
+import raytracer.geometry.BoundingBox;
 import raytracer.geometry.Point;
 import raytracer.geometry.shapes.Shape;
 import raytracer.geometry.Vector;
 
+import jdk.jfr.EventType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -23,8 +34,30 @@ import java.util.*;
  *  - la détection d'ombres ;
  *  - le calcul complet de l'éclairage en un point d'intersection
  *    incluant ambiant, Lambert et Phong.
+ *
+ * Les fichiers ouverts pour la scène (maillages hors mémoire) lui sont
+ * confiés par addResource et fermés par close, une fois le rendu terminé.
  */
-public class Scene {
+public class Scene implements Closeable {
+
+    /**
+     * Nombre de formes à partir duquel les intersections sont recherchées
+     * dans une BVH plutôt qu'en parcourant la liste.
+     */
+    public static final int BVH_THRESHOLD = 8;
+
+    /**
+     * Type de l'événement ShadowBatch, consulté avant de créer un
+     * événement : computeColor en émettrait un par point ombré même
+     * sans enregistrement en cours.
+     */
+    private static final EventType SHADOW_BATCH = EventType.getEventType(ShadowBatchEvent.class);
+
+    /**
+     * Croissance du coût SAH, par rapport à celui de la construction, au-delà
+     * de laquelle refit reconstruit la hiérarchie au lieu de la mettre à jour.
+     */
+    public static final double BVH_REBUILD_RATIO = 1.5;
 
     /** Largeur de l'image. */
     private int width;
@@ -35,6 +68,9 @@ public class Scene {
     /** Nom du fichier de sortie. */
     private String output = "output.png";
 
+    /** Vrai si le format de sortie conserve les couleurs sans les quantifier (PFM, RGBE). */
+    private boolean highDynamicRange;
+
     /** Caméra de la scène. */
     private Camera camera;
 
@@ -47,6 +83,32 @@ public class Scene {
     /** Liste des formes géométriques. */
     private List<Shape> shapes = new ArrayList<>();
 
+    /** Ressources ouvertes pour la scène, fermées par close. */
+    private final List<Closeable> resources = new ArrayList<>();
+
+    /**
+     * Erreur relative tolérée par l'échantillonnage des lumières ponctuelles,
+     * ou 0 pour les évaluer toutes exactement.
+     */
+    private double lightSamplingError;
+
+    /** Hiérarchie des lumières ponctuelles, construite à la demande. */
+    private volatile LightTree lightTree;
+
+    /** Hiérarchie des formes (niveau supérieur), construite à la demande. */
+    private volatile Bvh bvh;
+
+    /**
+     * Boîtes englobantes des formes (légèrement agrandies), dans l'ordre de
+     * la liste, pour le parcours sans hiérarchie ; null pour une forme non
+     * bornée ou dont le test de boîte ne vaut pas la peine. Construites à
+     * la demande.
+     */
+    private volatile BoundingBox[] bounds;
+
+    /** Tableaux de travail de computeColor, propres à chaque thread. */
+    private final ThreadLocal<ShadingScratch> scratch = ThreadLocal.withInitial(ShadingScratch::new);
+
     /** @return largeur de la scène */
     public int getWidth() { return width; }
 
@@ -59,8 +121,14 @@ public class Scene {
     /** Définit la hauteur de la scène. */
     public void setHeight(int h) { height = h; }
 
-    /** Définit le chemin du fichier de sortie. */
-    public void setOutput(String o) { output = o; }
+    /** Définit le chemin du fichier de sortie, dont l'extension fixe le format. */
+    public void setOutput(String o) {
+        output = o;
+        highDynamicRange = OutputFormat.of(o).isHighDynamicRange();
+    }
+
+    /** @return vrai si la sortie conserve les couleurs sans écrêtage ni quantification */
+    public boolean isHighDynamicRange() { return highDynamicRange; }
 
     /** @return fichier de sortie */
     public String getOutput() { return output; }
@@ -78,60 +146,181 @@ public class Scene {
     public Color getAmbient() { return ambient; }
 
     /** Ajoute une lumière à la scène. */
-    public void addLight(AbstractLight l) { lights.add(l); }
+    public void addLight(AbstractLight l) {
+        lights.add(l);
+        lightTree = null;
+    }
 
     /** @return la liste des lumières */
     public List<AbstractLight> getLights() { return lights; }
 
     /** Ajoute une forme géométrique à la scène. */
-    public void addShape(Shape s) { shapes.add(s); }
+    public void addShape(Shape s) {
+        shapes.add(s);
+        bvh = null;
+        bounds = null;
+    }
+
+    /**
+     * Confie à la scène une ressource utilisée par ses formes, fermée avec
+     * elle.
+     *
+     * @param resource ressource ouverte (fichier de maillage)
+     */
+    public void addResource(Closeable resource) {
+        resources.add(resource);
+    }
+
+    /**
+     * Ferme les ressources confiées à la scène. Les formes qui en dépendent
+     * ne doivent plus être intersectées ; un second appel est sans effet.
+     *
+     * @throws UncheckedIOException si une fermeture échoue, après avoir
+     *         tenté de fermer toutes les ressources
+     */
+    @Override
+    public void close() {
+        IOException failure = null;
+        for (Closeable resource : resources) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        resources.clear();
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
 
     /** @return la liste des formes */
     public List<Shape> getShapes() { return shapes; }
 
+    /**
+     * Met à jour la hiérarchie des formes après leur déplacement (par exemple
+     * par Sphere.setCenter entre deux images d'une animation) : les boîtes
+     * sont recalculées de bas en haut, et la hiérarchie n'est reconstruite
+     * que si son coût SAH a crû de plus de BVH_REBUILD_RATIO depuis sa
+     * construction. À appeler entre deux rendus, jamais pendant.
+     *
+     * @return vrai si la hiérarchie a été reconstruite
+     */
+    public boolean refit() {
+        bounds = null;
+        Bvh tree = bvh;
+        if (tree == null) {
+            // construite au prochain rendu à partir des positions courantes
+            return false;
+        }
+        double cost = tree.refit();
+        if (cost > BVH_REBUILD_RATIO * tree.getBuildCost()) {
+            bvh = new Bvh(shapes);
+            return true;
+        }
+        return false;
+    }
+
+    /** @return erreur relative de l'échantillonnage des lumières, 0 si désactivé */
+    public double getLightSamplingError() { return lightSamplingError; }
+
+    /**
+     * Active l'éclairage par hiérarchie de lumières (LightTree) : les
+     * lumières ponctuelles dont la contribution majorée est inférieure à
+     * maxError fois celle de l'ensemble des lumières sont regroupées et
+     * représentées par une lumière tirée au hasard. Les lumières
+     * directionnelles restent évaluées exactement.
+     *
+     * @param maxError erreur relative dans [0, 1[, 0 pour désactiver
+     * @throws IllegalArgumentException si maxError est hors de [0, 1[
+     */
+    public void setLightSamplingError(double maxError) {
+        if (!(maxError >= 0.0 && maxError < 1.0)) {
+            throw new IllegalArgumentException(
+                    "L'erreur d'échantillonnage des lumières doit être dans [0, 1[");
+        }
+        lightSamplingError = maxError;
+    }
+
     /**
      * Recherche l'intersection la plus proche entre un rayon
      * et n'importe quelle forme de la scène.
      *
+     * Au-delà de BVH_THRESHOLD formes, la recherche passe par une BVH dont
+     * les instances forment le niveau supérieur, chaque prototype ayant la
+     * sienne ; le résultat est le même qu'avec le parcours de la liste.
+     * En deçà, une forme bornée dont le test d'intersection est coûteux
+     * (Shape.isBoundsTestUseful) n'est testée que si le rayon traverse sa
+     * boîte englobante avant l'intersection la plus proche déjà trouvée.
+     *
+     * Seules les intersections entre tMin et tMax du rayon sont cherchées ;
+     * tMax est réduit pendant la recherche puis rétabli.
+     *
      * @param ray rayon lancé depuis la caméra ou un point de la scène
      * @return intersection la plus proche, si elle existe
      */
     public Optional<Intersection> findClosestIntersection(Ray ray) {
+        if (shapes.size() >= BVH_THRESHOLD) {
+            return bvh().intersect(ray);
+        }
+
         Optional<Intersection> best = Optional.empty();
         double minT = Double.POSITIVE_INFINITY;
+        double tMax = ray.getTMax();
+        BoundingBox[] boxes = bounds();
+        long tests = 0;
 
-        for (Shape s : shapes) {
-            Optional<Intersection> hit = s.intersect(ray);
+        for (int k = 0; k < boxes.length; k++) {
+            if (boxes[k] != null && !boxes[k].intersects(ray, ray.getTMax())) {
+                continue;
+            }
+            tests++;
+            Optional<Intersection> hit = shapes.get(k).intersect(ray);
             if (hit.isPresent() &&
                 hit.get().getT() > 0 &&
                 hit.get().getT() < minT) {
 
                 minT = hit.get().getT();
                 best = hit;
+                // les formes suivantes abandonnent au-delà de ce point
+                ray.setTMax(Math.min(tMax, minT));
             }
         }
+        ray.setTMax(tMax);
+
+        TraceStats stats = TraceStats.current();
+        if (stats != null) {
+            stats.intersectionTests += tests;
+        }
         return best;
     }
 
     /**
-     * Indique si un point d'intersection est dans l'ombre
-     * pour une lumière donnée.
+     * Indique si un point est dans l'ombre pour une lumière donnée.
      *
      * Un rayon d'ombre est lancé depuis le point vers la lumière.
      * Si une forme est touchée avant la lumière, le point est dans l'ombre.
      *
-     * @param inter intersection courante
+     * @param p point éclairé
      * @param light lumière testée
      * @return vrai si un obstacle bloque la lumière
      */
-    private boolean isInShadow(Intersection inter, AbstractLight light) {
+    public boolean isInShadow(Point p, AbstractLight light) {
 
-        Point p = inter.getPoint();
         Vector L = light.getLightDirection(p);
-        Ray shadowRay = new Ray(p, L);
-
         double maxDist = light.getMaxDistance(p);
         double eps = 1e-4;
+        // les formes au-delà de la lumière ne peuvent pas l'occulter : le rayon s'arrête avant
+        Ray shadowRay = new Ray(p, L, Ray.DEFAULT_T_MIN, Math.max(Ray.DEFAULT_T_MIN, maxDist - eps));
+
+        TraceStats stats = TraceStats.current();
+        if (stats != null) {
+            stats.shadowRays++;
+        }
 
         Optional<Intersection> hit = findClosestIntersection(shadowRay);
         if (hit.isPresent()) {
@@ -152,29 +341,312 @@ public class Scene {
      *  - la composante spéculaire de Phong si applicable ;
      *  - l'occlusion par ombres.
      *
+     * Les contributions sans ombre de chaque lumière sont calculées d'abord.
+     * Les rayons d'ombre ne sont lancés que pour les lumières qui contribuent,
+     * de la plus forte à la plus faible, et seulement tant que le résultat
+     * quantifié sur 8 bits n'est pas déterminé : avec minorant = ambiante +
+     * lumières visibles et majorant = minorant + lumières non testées, dès
+     * que les deux bornes donnent le même pixel les rayons restants ne
+     * peuvent plus le modifier (écrêtage et arrondi sont monotones). Pour
+     * une sortie à grande dynamique, tous les rayons d'ombre sont lancés.
+     *
      * @param inter intersection pour laquelle calculer la couleur
      * @return couleur finale en ce point
      */
     public Color computeColor(Intersection inter) {
+        return computeColor(inter, highDynamicRange);
+    }
 
-        Color result = new Color(ambient.x, ambient.y, ambient.z);
+    /**
+     * Calcule la couleur en un point d'intersection, en lançant tous les
+     * rayons d'ombre si exact est vrai. Une couleur destinée à être moyennée
+     * avec d'autres (suréchantillonnage) doit être exacte : l'arrêt anticipé
+     * ne garantit que le pixel quantifié de la couleur isolée.
+     *
+     * @param inter intersection pour laquelle calculer la couleur
+     * @param exact vrai pour ne jamais arrêter les rayons d'ombre en avance
+     * @return couleur finale en ce point
+     */
+    public Color computeColor(Intersection inter, boolean exact) {
 
         Point eye = camera.getLookFrom();
         Point p = inter.getPoint();
         Vector eyeDir = (Vector) eye.subtract(p).normalize();
 
-        for (AbstractLight light : lights) {
+        if (lightSamplingError > 0.0) {
+            return computeColorSampled(inter, eyeDir);
+        }
 
-            if (isInShadow(inter, light)) {
-                continue;
+        int count = lights.size();
+        ShadingScratch work = scratch.get().ensure(count);
+        double[] lambert = work.lambert;
+        double[] phong = work.phong;
+        double[] peak = work.peak;
+        int[] order = work.order;
+        boolean[] lit = work.lit;
+        int contributing = 0;
+
+        double[] upper = work.upper;
+        upper[0] = ambient.x;
+        upper[1] = ambient.y;
+        upper[2] = ambient.z;
+        for (int k = 0; k < count; k++) {
+            AbstractLight light = lights.get(k);
+            Color l = inter.computeLambert(light);
+            Color s = inter.computePhong(light, eyeDir);
+            int i = 3 * k;
+            lambert[i] = l.x;
+            lambert[i + 1] = l.y;
+            lambert[i + 2] = l.z;
+            phong[i] = s.x;
+            phong[i + 1] = s.y;
+            phong[i + 2] = s.z;
+            lit[k] = false;
+            double r = l.x + s.x;
+            double g = l.y + s.y;
+            double b = l.z + s.z;
+            peak[k] = Math.max(r, Math.max(g, b));
+            if (peak[k] > 0.0) {
+                order[contributing++] = k;
+                upper[0] += r;
+                upper[1] += g;
+                upper[2] += b;
+            }
+        }
+        if (contributing > 1) {
+            sortByPeak(order, contributing, peak);
+        }
+
+        ShadowBatchEvent batch = null;
+        if (SHADOW_BATCH.isEnabled()) {
+            batch = new ShadowBatchEvent();
+            batch.begin();
+        }
+        int occluded = 0;
+        int traced = 0;
+
+        double[] lower = work.lower;
+        lower[0] = ambient.x;
+        lower[1] = ambient.y;
+        lower[2] = ambient.z;
+        for (int n = 0; n < contributing; n++) {
+            if (!exact && Color.sameRGB(lower, upper, 0)) {
+                break;
+            }
+            int k = order[n];
+            int i = 3 * k;
+            double r = lambert[i] + phong[i];
+            double g = lambert[i + 1] + phong[i + 1];
+            double b = lambert[i + 2] + phong[i + 2];
+            traced++;
+            if (isInShadow(inter.getPoint(), lights.get(k))) {
+                occluded++;
+                upper[0] -= r;
+                upper[1] -= g;
+                upper[2] -= b;
+            } else {
+                lit[k] = true;
+                lower[0] += r;
+                lower[1] += g;
+                lower[2] += b;
             }
+        }
 
-            Color lambert = inter.computeLambert(light);
-            Color phong = inter.computePhong(light, eyeDir);
+        int skipped = count - traced;
+        TraceStats stats = TraceStats.current();
+        if (stats != null) {
+            stats.skippedShadowRays += skipped;
+        }
 
-            result = result.add(lambert).add(phong);
+        // somme dans l'ordre des lumières : identique au calcul sans tri
+        // lorsque tous les rayons d'ombre ont été lancés
+        double r = ambient.x;
+        double g = ambient.y;
+        double b = ambient.z;
+        for (int k = 0; k < count; k++) {
+            if (lit[k]) {
+                int i = 3 * k;
+                r = r + lambert[i] + phong[i];
+                g = g + lambert[i + 1] + phong[i + 1];
+                b = b + lambert[i + 2] + phong[i + 2];
+            }
+        }
+        Color result = new Color(r, g, b);
+
+        if (batch != null && batch.shouldCommit()) {
+            batch.shadowRays = traced;
+            batch.skipped = skipped;
+            batch.occluded = occluded;
+            batch.lightCount = count;
+            batch.commit();
         }
 
         return result;
     }
+
+    /**
+     * Trie les count premiers indices de lumière par contribution maximale
+     * décroissante. Tri par insertion, stable : les scènes comptent peu de
+     * lumières contributives en un point.
+     */
+    private static void sortByPeak(int[] order, int count, double[] peak) {
+        for (int n = 1; n < count; n++) {
+            int k = order[n];
+            int m = n;
+            while (m > 0 && peak[order[m - 1]] < peak[k]) {
+                order[m] = order[m - 1];
+                m--;
+            }
+            order[m] = k;
+        }
+    }
+
+    /**
+     * Variante de computeColor utilisant la hiérarchie des lumières
+     * ponctuelles : seules les lumières retenues par LightTree.select sont
+     * évaluées (ombre comprise), avec le poids qui leur est associé.
+     * Le tirage est initialisé à partir des coordonnées du point, ce qui
+     * rend le rendu reproductible.
+     */
+    private Color computeColorSampled(Intersection inter, Vector eyeDir) {
+        double[] rgb = {ambient.x, ambient.y, ambient.z};
+
+        for (AbstractLight light : lights) {
+            if (!(light instanceof PointLight)) {
+                accumulate(rgb, inter, light, eyeDir, 1.0);
+            }
+        }
+
+        Point p = inter.getPoint();
+        long seed = Double.doubleToLongBits(p.x) * 0x9E3779B97F4A7C15L
+                ^ Double.doubleToLongBits(p.y) * 0xC2B2AE3D27D4EB4FL
+                ^ Double.doubleToLongBits(p.z);
+        lightTree().select(p, inter.getNormal(), inter.getDiffuse(), inter.getSpecular(),
+                inter.getShininess(), lightSamplingError, seed,
+                (light, weight) -> accumulate(rgb, inter, light, eyeDir, weight));
+
+        return new Color(rgb[0], rgb[1], rgb[2]);
+    }
+
+    /**
+     * Ajoute à rgb la contribution pondérée d'une lumière non masquée.
+     */
+    private void accumulate(double[] rgb, Intersection inter, AbstractLight light,
+                          Vector eyeDir, double weight) {
+        Color c = inter.computeLambert(light).add(inter.computePhong(light, eyeDir));
+        if (c.x <= 0.0 && c.y <= 0.0 && c.z <= 0.0) {
+            TraceStats stats = TraceStats.current();
+            if (stats != null) {
+                stats.skippedShadowRays++;
+            }
+            return;
+        }
+        if (isInShadow(inter.getPoint(), light)) {
+            return;
+        }
+        rgb[0] += weight * c.x;
+        rgb[1] += weight * c.y;
+        rgb[2] += weight * c.z;
+    }
+
+    /**
+     * Retourne les boîtes englobantes des formes, calculées au premier appel
+     * puis après chaque ajout de forme ou Scene.refit. Deux threads peuvent
+     * les calculer en même temps : le résultat est le même.
+     */
+    private BoundingBox[] bounds() {
+        BoundingBox[] boxes = bounds;
+        if (boxes == null) {
+            boxes = new BoundingBox[shapes.size()];
+            for (int k = 0; k < boxes.length; k++) {
+                Shape s = shapes.get(k);
+                BoundingBox box = s.getBounds();
+                boxes[k] = s.isBoundsTestUseful() && !box.isInfinite() ? box.padded() : null;
+            }
+            bounds = boxes;
+        }
+        return boxes;
+    }
+
+    /**
+     * Retourne la hiérarchie des formes, construite au premier appel puis
+     * après chaque ajout de forme.
+     */
+    private Bvh bvh() {
+        Bvh tree = bvh;
+        if (tree == null) {
+            synchronized (this) {
+                tree = bvh;
+                if (tree == null) {
+                    tree = new Bvh(shapes);
+                    bvh = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Retourne la hiérarchie des lumières ponctuelles, construite au premier
+     * appel puis après chaque ajout de lumière.
+     */
+    private LightTree lightTree() {
+        LightTree tree = lightTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = lightTree;
+                if (tree == null) {
+                    List<PointLight> pointLights = new ArrayList<>();
+                    for (AbstractLight light : lights) {
+                        if (light instanceof PointLight) {
+                            pointLights.add((PointLight) light);
+                        }
+                    }
+                    tree = new LightTree(pointLights);
+                    lightTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Tableaux de travail de computeColor, agrandis au besoin pour le
+     * nombre de lumières, ce qui évite toute allocation par point éclairé.
+     */
+    private static final class ShadingScratch {
+
+        /** Composantes Lambert de chaque lumière, par triplets. */
+        double[] lambert = new double[0];
+
+        /** Composantes Phong de chaque lumière, par triplets. */
+        double[] phong = new double[0];
+
+        /** Contribution maximale de chaque lumière sur les trois canaux. */
+        double[] peak = new double[0];
+
+        /** Indices des lumières contributives, par contribution décroissante. */
+        int[] order = new int[0];
+
+        /** Lumières non masquées. */
+        boolean[] lit = new boolean[0];
+
+        /** Minorant de la couleur. */
+        final double[] lower = new double[3];
+
+        /** Majorant de la couleur. */
+        final double[] upper = new double[3];
+
+        /** Garantit la place pour count lumières. */
+        ShadingScratch ensure(int count) {
+            if (peak.length < count) {
+                lambert = new double[3 * count];
+                phong = new double[3 * count];
+                peak = new double[count];
+                order = new int[count];
+                lit = new boolean[count];
+            }
+            return this;
+        }
+    }
 }
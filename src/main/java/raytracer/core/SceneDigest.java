@@ -0,0 +1,288 @@
+package raytracer.core;
+
+import raytracer.geometry.AbstractVec3;
+import raytracer.geometry.shapes.Instance;
+import raytracer.geometry.shapes.MappedMesh;
+import raytracer.geometry.shapes.Plane;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.ShapeGroup;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.lighting.AbstractLight;
+import raytracer.lighting.DirectionalLight;
+import raytracer.lighting.PointLight;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Calcule des empreintes canoniques (SHA-256) de scènes analysées.
+ *
+ * L'empreinte dépend uniquement de ce qui influence l'image : dimensions,
+ * caméra, couleur ambiante, lumières, formes et matériaux. Le nom du fichier
+ * de sortie, la mise en forme ou les commentaires du .scene n'y entrent pas :
+ * deux fichiers décrivant la même scène ont donc la même empreinte.
+ */
+public final class SceneDigest {
+
+    private SceneDigest() {
+    }
+
+    /**
+     * Calcule l'empreinte complète d'une scène.
+     *
+     * @param scene scène analysée
+     * @return empreinte hexadécimale sur 64 caractères
+     */
+    public static String of(Scene scene) {
+        Writer w = new Writer();
+        w.writeInt(scene.getWidth());
+        w.writeInt(scene.getHeight());
+        writeCamera(w, scene.getCamera());
+        w.writeVec(scene.getAmbient());
+
+        w.writeInt(scene.getLights().size());
+        for (AbstractLight light : scene.getLights()) {
+            writeLight(w, light);
+        }
+
+        w.writeInt(scene.getShapes().size());
+        for (Shape shape : scene.getShapes()) {
+            writeShape(w, shape);
+        }
+
+        // absent par défaut pour ne pas changer l'empreinte des rendus exacts
+        if (scene.getLightSamplingError() > 0.0) {
+            w.writeString("lightSampling");
+            w.writeDouble(scene.getLightSamplingError());
+        }
+        return w.digest();
+    }
+
+    /**
+     * Calcule l'empreinte d'une forme seule (géométrie et matériau).
+     *
+     * @param shape forme à décrire
+     * @return empreinte hexadécimale sur 64 caractères
+     */
+    public static String of(Shape shape) {
+        Writer w = new Writer();
+        writeShape(w, shape);
+        return w.digest();
+    }
+
+    /**
+     * Calcule l'empreinte d'une lumière seule (type, position ou direction, couleur).
+     *
+     * @param light lumière à décrire
+     * @return empreinte hexadécimale sur 64 caractères
+     */
+    public static String of(AbstractLight light) {
+        Writer w = new Writer();
+        writeLight(w, light);
+        return w.digest();
+    }
+
+    /**
+     * Calcule l'empreinte du point de vue : dimensions de l'image et caméra.
+     *
+     * @param scene scène analysée
+     * @return empreinte hexadécimale sur 64 caractères
+     */
+    public static String ofView(Scene scene) {
+        Writer w = new Writer();
+        w.writeInt(scene.getWidth());
+        w.writeInt(scene.getHeight());
+        writeCamera(w, scene.getCamera());
+        return w.digest();
+    }
+
+    /**
+     * Calcule l'empreinte de ce qui détermine les rayons primaires et leurs
+     * points d'impact : dimensions, caméra et formes (matériaux compris),
+     * c'est-à-dire tout sauf l'éclairage.
+     *
+     * @param scene scène analysée
+     * @return empreinte hexadécimale sur 64 caractères
+     */
+    public static String ofGeometry(Scene scene) {
+        Writer w = new Writer();
+        w.writeInt(scene.getWidth());
+        w.writeInt(scene.getHeight());
+        writeCamera(w, scene.getCamera());
+        w.writeInt(scene.getShapes().size());
+        for (Shape shape : scene.getShapes()) {
+            writeShape(w, shape);
+        }
+        return w.digest();
+    }
+
+    /**
+     * Calcule l'empreinte SHA-256 d'un texte, en hexadécimal.
+     *
+     * @param content texte à hacher
+     * @return empreinte sur 64 caractères hexadécimaux
+     */
+    public static String sha256(String content) {
+        return sha256(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Calcule l'empreinte SHA-256 d'un tableau d'octets, en hexadécimal.
+     *
+     * @param bytes données à hacher
+     * @return empreinte sur 64 caractères hexadécimaux
+     */
+    public static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 est garanti par toutes les JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeCamera(Writer w, Camera camera) {
+        if (camera == null) {
+            w.writeString("nocamera");
+            return;
+        }
+        w.writeVec(camera.getLookFrom());
+        w.writeVec(camera.getLookAt());
+        w.writeVec(camera.getUp());
+        w.writeDouble(camera.getFieldOfView());
+    }
+
+    private static void writeLight(Writer w, AbstractLight light) {
+        if (light instanceof PointLight) {
+            w.writeString("point");
+            w.writeVec(((PointLight) light).getPosition());
+        } else if (light instanceof DirectionalLight) {
+            w.writeString("directional");
+            w.writeVec(((DirectionalLight) light).getDirection());
+        } else {
+            w.writeString(light.getClass().getName());
+            w.writeString(light.toString());
+        }
+        w.writeVec(light.getColor());
+    }
+
+    private static void writeShape(Writer w, Shape shape) {
+        if (shape instanceof Sphere) {
+            Sphere s = (Sphere) shape;
+            w.writeString("sphere");
+            w.writeVec(s.getCenter());
+            w.writeDouble(s.getRadius());
+        } else if (shape instanceof Triangle) {
+            Triangle t = (Triangle) shape;
+            w.writeString("tri");
+            w.writeVec(t.getA());
+            w.writeVec(t.getB());
+            w.writeVec(t.getC());
+        } else if (shape instanceof Plane) {
+            Plane p = (Plane) shape;
+            w.writeString("plane");
+            w.writeVec(p.getPoint());
+            w.writeVec(p.getNormal(p.getPoint()));
+        } else if (shape instanceof Instance) {
+            Instance i = (Instance) shape;
+            w.writeString("instance");
+            w.writeString(w.groupDigest(i.getPrototype()));
+            for (int row = 0; row < 3; row++) {
+                for (int column = 0; column < 4; column++) {
+                    w.writeDouble(i.getTransform().get(row, column));
+                }
+            }
+        } else if (shape instanceof MappedMesh) {
+            w.writeString("meshfile");
+            w.writeString(((MappedMesh) shape).getMesh().getDigest());
+        } else {
+            w.writeString(shape.getClass().getName());
+            w.writeString(shape.toString());
+        }
+        w.writeVec(shape.getDiffuse());
+        w.writeVec(shape.getSpecular());
+        w.writeDouble(shape.getShininess());
+    }
+
+    /**
+     * Sérialise des valeurs dans un ordre fixe avant hachage.
+     */
+    private static final class Writer {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        /** Empreintes des prototypes déjà décrits : un par instance sinon. */
+        private final Map<ShapeGroup, String> groups;
+
+        Writer() {
+            this(new IdentityHashMap<>());
+        }
+
+        private Writer(Map<ShapeGroup, String> groups) {
+            this.groups = groups;
+        }
+
+        String groupDigest(ShapeGroup group) {
+            String digest = groups.get(group);
+            if (digest == null) {
+                Writer w = new Writer(groups);
+                w.writeInt(group.getShapes().size());
+                for (Shape shape : group.getShapes()) {
+                    writeShape(w, shape);
+                }
+                digest = w.digest();
+                groups.put(group, digest);
+            }
+            return digest;
+        }
+
+        void writeInt(int v) {
+            try {
+                out.writeInt(v);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeDouble(double v) {
+            try {
+                // + 0.0 confond -0.0 et 0.0
+                out.writeDouble(v + 0.0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeVec(AbstractVec3 v) {
+            writeDouble(v.x);
+            writeDouble(v.y);
+            writeDouble(v.z);
+        }
+
+        void writeString(String s) {
+            try {
+                out.writeUTF(s);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String digest() {
+            return sha256(bytes.toByteArray());
+        }
+    }
+}
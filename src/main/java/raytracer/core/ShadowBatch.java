@@ -0,0 +1,194 @@
+package raytracer.core;
+
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.lighting.AbstractLight;
+
+import java.util.Arrays;
+
+/**
+ * Lot de requêtes d'ombre vers une même lumière.
+ *
+ * Les points sont d'abord tous collectés, puis triés selon l'octant de la
+ * direction vers la lumière et le code de Morton de leur position dans la
+ * boîte englobante du lot, avant d'être testés à la suite. Deux rayons
+ * consécutifs partent ainsi de points voisins dans la même direction et
+ * parcourent presque les mêmes nœuds de la hiérarchie, qui restent dans
+ * les caches du processeur.
+ *
+ * Le tri ne change que l'ordre des tests : chaque requête reçoit le
+ * résultat de Scene.isInShadow. Un lot est réutilisable d'une lumière à
+ * l'autre (clear) et n'est pas thread-safe.
+ */
+public final class ShadowBatch {
+
+    /** Bits de quantification par axe du code de Morton. */
+    private static final int MORTON_BITS = 10;
+
+    /** Bits réservés à l'indice de la requête dans les clés de tri. */
+    private static final int INDEX_BITS = 30;
+
+    /** Identifiants des requêtes, choisis par l'appelant. */
+    private int[] ids;
+
+    /** Points de départ des rayons d'ombre. */
+    private Point[] points;
+
+    /** Clés de tri : octant, code de Morton, puis indice de la requête. */
+    private long[] keys;
+
+    /** Nombre de requêtes du lot. */
+    private int size;
+
+    /** Nombre de lots tracés depuis la création. */
+    private long batches;
+
+    /** Nombre de rayons lancés par ces lots. */
+    private long rays;
+
+    /** Nombre de ces rayons bloqués par une forme. */
+    private long occluded;
+
+    /**
+     * Crée un lot vide.
+     *
+     * @param capacity nombre de requêtes prévu, le lot grandit au besoin
+     */
+    public ShadowBatch(int capacity) {
+        int n = Math.max(1, capacity);
+        this.ids = new int[n];
+        this.points = new Point[n];
+        this.keys = new long[n];
+    }
+
+    /** Vide le lot, sans toucher aux statistiques cumulées. */
+    public void clear() {
+        Arrays.fill(points, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Ajoute une requête d'ombre au lot.
+     *
+     * @param id identifiant de la requête, rendu par trace
+     * @param p point éclairé
+     * @throws IllegalArgumentException si le lot est plein (2^30 requêtes)
+     */
+    public void add(int id, Point p) {
+        if (size == ids.length) {
+            if (size == 1 << INDEX_BITS) {
+                throw new IllegalArgumentException("Lot de rayons d'ombre trop grand");
+            }
+            int n = (int) Math.min(1L << INDEX_BITS, 2L * size);
+            ids = Arrays.copyOf(ids, n);
+            points = Arrays.copyOf(points, n);
+            keys = Arrays.copyOf(keys, n);
+        }
+        ids[size] = id;
+        points[size] = p;
+        size++;
+    }
+
+    /** @return nombre de requêtes du lot */
+    public int size() { return size; }
+
+    /**
+     * Trie les requêtes puis lance leurs rayons d'ombre vers la lumière.
+     *
+     * @param scene scène dont les formes masquent la lumière
+     * @param light lumière visée par toutes les requêtes
+     * @param inShadow tableau indexé par identifiant, recevant vrai pour
+     *                 les points masqués et faux pour les autres
+     * @return nombre de points masqués
+     */
+    public int trace(Scene scene, AbstractLight light, boolean[] inShadow) {
+        if (size == 0) {
+            return 0;
+        }
+        sort(light);
+        int blocked = 0;
+        for (int n = 0; n < size; n++) {
+            int q = (int) (keys[n] & ((1L << INDEX_BITS) - 1));
+            boolean shadowed = scene.isInShadow(points[q], light);
+            inShadow[ids[q]] = shadowed;
+            if (shadowed) {
+                blocked++;
+            }
+        }
+        batches++;
+        rays += size;
+        occluded += blocked;
+        return blocked;
+    }
+
+    /**
+     * Calcule et trie les clés : octant de la direction vers la lumière
+     * (3 bits), code de Morton de la position quantifiée sur 2^10 valeurs
+     * par axe dans la boîte du lot (30 bits), indice (30 bits).
+     */
+    private void sort(AbstractLight light) {
+        double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int n = 0; n < size; n++) {
+            Point p = points[n];
+            minX = Math.min(minX, p.x);
+            minY = Math.min(minY, p.y);
+            minZ = Math.min(minZ, p.z);
+            maxX = Math.max(maxX, p.x);
+            maxY = Math.max(maxY, p.y);
+            maxZ = Math.max(maxZ, p.z);
+        }
+        double cells = (1 << MORTON_BITS) - 1;
+        double sx = maxX > minX ? cells / (maxX - minX) : 0.0;
+        double sy = maxY > minY ? cells / (maxY - minY) : 0.0;
+        double sz = maxZ > minZ ? cells / (maxZ - minZ) : 0.0;
+
+        for (int n = 0; n < size; n++) {
+            Point p = points[n];
+            Vector d = light.getLightDirection(p);
+            long octant = (d.x < 0 ? 4 : 0) | (d.y < 0 ? 2 : 0) | (d.z < 0 ? 1 : 0);
+            long morton = morton((int) ((p.x - minX) * sx), (int) ((p.y - minY) * sy),
+                    (int) ((p.z - minZ) * sz));
+            keys[n] = (octant << (3 * MORTON_BITS) | morton) << INDEX_BITS | n;
+        }
+        Arrays.sort(keys, 0, size);
+    }
+
+    /**
+     * Entrelace les bits de trois coordonnées de 10 bits.
+     *
+     * @return code de Morton sur 30 bits
+     */
+    private static long morton(int x, int y, int z) {
+        return spread(x) << 2 | spread(y) << 1 | spread(z);
+    }
+
+    /** Écarte les 10 bits de poids faible de v d'un intervalle de deux bits. */
+    private static long spread(int v) {
+        long x = v & 0x3ff;
+        x = (x | x << 16) & 0x30000ffL;
+        x = (x | x << 8) & 0x300f00fL;
+        x = (x | x << 4) & 0x30c30c3L;
+        x = (x | x << 2) & 0x9249249L;
+        return x;
+    }
+
+    /** @return nombre de lots non vides tracés depuis la création */
+    public long getBatchCount() { return batches; }
+
+    /** @return nombre de rayons d'ombre lancés par ces lots */
+    public long getRayCount() { return rays; }
+
+    /** @return nombre de ces rayons bloqués par une forme */
+    public long getOccludedCount() { return occluded; }
+
+    /** @return taille moyenne des lots tracés, 0 si aucun */
+    public double getMeanBatchSize() {
+        return batches == 0 ? 0.0 : (double) rays / batches;
+    }
+
+    /** @return proportion des rayons bloqués, 0 si aucun */
+    public double getOccludedFraction() {
+        return rays == 0 ? 0.0 : (double) occluded / rays;
+    }
+}
@@ -0,0 +1,93 @@
+package raytracer.core;
+
+/**
+ * Compteurs de travail du traceur, attachés au thread courant.
+ *
+ * Les compteurs ne sont mis à jour que lorsqu'une instance est attachée
+ * au thread par attach() ; sinon le coût se limite à une lecture de
+ * ThreadLocal par requête à la scène. Cela permet de mesurer le coût d'un
+ * pixel, d'une tuile ou d'une image sans modifier les signatures de Scene.
+ */
+public final class TraceStats {
+
+    /** Compteurs attachés à chaque thread, ou null. */
+    private static final ThreadLocal<TraceStats> CURRENT = new ThreadLocal<>();
+
+    /** Nombre de tests d'intersection rayon / forme. */
+    public long intersectionTests;
+
+    /** Nombre de rayons d'ombre lancés. */
+    public long shadowRays;
+
+    /**
+     * Nombre de rayons d'ombre évités : lumière sans contribution au point,
+     * ou pixel déjà déterminé quelle que soit l'ombre.
+     */
+    public long skippedShadowRays;
+
+    /**
+     * Attache ces compteurs au thread courant.
+     *
+     * @return ces compteurs
+     */
+    public TraceStats attach() {
+        CURRENT.set(this);
+        return this;
+    }
+
+    /**
+     * Détache les compteurs du thread courant.
+     */
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Retourne les compteurs attachés au thread courant.
+     *
+     * @return compteurs, ou null si aucun n'est attaché
+     */
+    public static TraceStats current() {
+        return CURRENT.get();
+    }
+
+    /** Remet tous les compteurs à zéro. */
+    public void reset() {
+        intersectionTests = 0;
+        shadowRays = 0;
+        skippedShadowRays = 0;
+    }
+
+    /**
+     * Ajoute les compteurs d'une autre instance à celle-ci.
+     *
+     * @param other compteurs à cumuler
+     */
+    public void add(TraceStats other) {
+        intersectionTests += other.intersectionTests;
+        shadowRays += other.shadowRays;
+        skippedShadowRays += other.skippedShadowRays;
+    }
+
+    /**
+     * Retourne la proportion de rayons d'ombre évités.
+     *
+     * @return rayons évités / (rayons lancés + rayons évités), 0 si aucun
+     */
+    public double getSkippedShadowFraction() {
+        long total = shadowRays + skippedShadowRays;
+        return total == 0 ? 0.0 : (double) skippedShadowRays / total;
+    }
+
+    /**
+     * Retourne une description textuelle des compteurs.
+     *
+     * @return chaîne contenant les compteurs
+     */
+    @Override
+    public String toString() {
+        return "TraceStats{intersectionTests=" + intersectionTests
+                + ", shadowRays=" + shadowRays
+                + ", skippedShadowRays=" + skippedShadowRays + "}";
+    }
+}
@@ -0,0 +1,35 @@
+package raytracer.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant l'encodage et l'écriture d'une image PNG.
+ */
+@Name("raytracer.PngEncode")
+@Label("PNG Encode")
+@Category({"Raytracer", "Output"})
+@Description("Encodage PNG d'une image rendue")
+public class PngEncodeEvent extends Event {
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Output")
+    public String output;
+
+    @Label("Level")
+    @Description("Niveau de compression PNG, -1 pour une sortie à grande dynamique")
+    public int level;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,27 @@
+package raytracer.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant l'analyse d'une scène par SceneFileParser.
+ */
+@Name("raytracer.SceneParse")
+@Label("Scene Parse")
+@Category({"Raytracer", "Scene"})
+@Description("Analyse d'un fichier ou d'un texte .scene")
+public class SceneParseEvent extends Event {
+
+    @Label("Lines")
+    @Description("Nombre de lignes lues")
+    public int lines;
+
+    @Label("Shape Count")
+    public int shapeCount;
+
+    @Label("Light Count")
+    public int lightCount;
+}
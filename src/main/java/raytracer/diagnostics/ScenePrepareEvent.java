@@ -0,0 +1,30 @@
+package raytracer.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant la préparation d'une scène avant le tracé
+ * (repère caméra, structures d'accélération).
+ */
+@Name("raytracer.ScenePrepare")
+@Label("Scene Prepare")
+@Category({"Raytracer", "Scene"})
+@Description("Préparation d'une scène avant le rendu")
+public class ScenePrepareEvent extends Event {
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Shape Count")
+    public int shapeCount;
+
+    @Label("Light Count")
+    public int lightCount;
+}
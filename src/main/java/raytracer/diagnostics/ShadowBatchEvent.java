@@ -0,0 +1,38 @@
+package raytracer.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant un lot de requêtes d'ombre.
+ *
+ * Un lot est émis à chaque point ombré par Scene.computeColor (il peut y
+ * en avoir un par pixel), ou par lumière et par tuile pour le rendu différé.
+ * L'événement est donc désactivé par défaut et doit être activé
+ * explicitement dans la configuration d'enregistrement.
+ */
+@Name("raytracer.ShadowBatch")
+@Label("Shadow Batch")
+@Category({"Raytracer", "Render"})
+@Description("Lot de rayons d'ombre lancés pour un point ou un groupe de points")
+@Enabled(false)
+public class ShadowBatchEvent extends Event {
+
+    @Label("Shadow Rays")
+    public int shadowRays;
+
+    @Label("Skipped")
+    @Description("Nombre de rayons évités car sans effet sur le pixel")
+    public int skipped;
+
+    @Label("Occluded")
+    @Description("Nombre de rayons bloqués par une forme")
+    public int occluded;
+
+    @Label("Light Count")
+    public int lightCount;
+}
@@ -0,0 +1,47 @@
+package raytracer.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Événement JFR couvrant le rendu d'une tuile de l'image.
+ */
+@Name("raytracer.TileRender")
+@Label("Tile Render")
+@Category({"Raytracer", "Render"})
+@Description("Rendu d'une tuile : position, taille et nombre de rayons")
+public class TileRenderEvent extends Event {
+
+    @Label("Tile Index")
+    public int tileIndex;
+
+    @Label("X")
+    public int x;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Primary Rays")
+    public long primaryRays;
+
+    @Label("Shadow Rays")
+    public long shadowRays;
+
+    @Label("Skipped Shadow Rays")
+    public long skippedShadowRays;
+
+    @Label("Intersection Tests")
+    public long intersectionTests;
+
+    @Label("Shape Count")
+    public int shapeCount;
+}
@@ -0,0 +1,242 @@
+package raytracer.distributed;
+
+import raytracer.core.Scene;
+import raytracer.imaging.Tile;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coordinateur du mode ferme de rendu.
+ *
+ * Le coordinateur découpe l'image en tuiles, les distribue aux travailleurs
+ * connectés en TCP et assemble les pixels reçus dans l'image finale.
+ * Chaque connexion est servie par son propre thread qui tire les tuiles
+ * d'une file partagée : un travailleur rapide reçoit donc plus de tuiles.
+ *
+ * Si un travailleur échoue (connexion rompue, réponse invalide, ou pas de
+ * réponse dans le délai par tuile), sa connexion est fermée et la tuile
+ * en cours est remise dans la file pour être rendue par un autre
+ * travailleur.
+ */
+public class RenderCoordinator {
+
+    /** Nombre maximal de tentatives pour une même tuile. */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /** Intervalle de surveillance des threads du coordinateur (ms). */
+    private static final int POLL_MILLIS = 100;
+
+    /** Délai par défaut accordé à un travailleur pour rendre une tuile (ms). */
+    public static final int DEFAULT_TILE_TIMEOUT_MILLIS = 60_000;
+
+    /** Texte de la scène transmis aux travailleurs. */
+    private final String sceneText;
+
+    /** Scène analysée localement (dimensions, nom de sortie). */
+    private final Scene scene;
+
+    /** Tuiles couvrant l'image. */
+    private final List<Tile> tiles;
+
+    /** Délai maximal d'attente de la réponse à une demande de tuile (ms). */
+    private final int tileTimeoutMillis;
+
+    /** Tuiles en attente d'attribution. */
+    private final BlockingQueue<Tile> pending = new LinkedBlockingQueue<>();
+
+    /** Nombre de tentatives par indice de tuile. */
+    private final Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+
+    /** Nombre de travailleurs actuellement connectés. */
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    /** Nombre de tuiles réattribuées après l'échec d'un travailleur. */
+    private final AtomicInteger reassigned = new AtomicInteger();
+
+    /** Tuiles restant à recevoir. */
+    private CountDownLatch remaining;
+
+    /** Image en cours d'assemblage. */
+    private BufferedImage image;
+
+    /** Erreur fatale rencontrée par un thread de service. */
+    private volatile IOException failure;
+
+    /**
+     * Construit un coordinateur pour une scène donnée.
+     *
+     * @param sceneText texte complet de la scène
+     * @param tileSize côté des tuiles en pixels
+     * @throws IllegalArgumentException si la scène est invalide
+     */
+    public RenderCoordinator(String sceneText, int tileSize) {
+        this(sceneText, tileSize, DEFAULT_TILE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Construit un coordinateur pour une scène donnée.
+     *
+     * @param sceneText texte complet de la scène
+     * @param tileSize côté des tuiles en pixels
+     * @param tileTimeoutMillis délai maximal de réponse à une demande de
+     *        tuile, au-delà duquel la tuile est réattribuée
+     * @throws IllegalArgumentException si la scène ou le délai est invalide
+     */
+    public RenderCoordinator(String sceneText, int tileSize, int tileTimeoutMillis) {
+        if (tileTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Le délai par tuile doit être positif");
+        }
+        this.sceneText = sceneText;
+        this.scene = new SceneFileParser().parseContent(sceneText);
+        this.tiles = Tile.split(scene.getWidth(), scene.getHeight(), tileSize);
+        this.tileTimeoutMillis = tileTimeoutMillis;
+    }
+
+    /** @return la scène analysée localement */
+    public Scene getScene() { return scene; }
+
+    /** @return nombre de tuiles réattribuées après l'échec d'un travailleur */
+    public int getReassignedCount() { return reassigned.get(); }
+
+    /**
+     * Distribue toutes les tuiles aux travailleurs qui se connectent au
+     * serveur et retourne l'image assemblée.
+     *
+     * @param server socket d'écoute sur lequel les travailleurs se connectent
+     * @param workerTimeoutMillis délai maximal sans aucun travailleur connecté
+     * @return image complète
+     * @throws IOException si aucun travailleur n'est disponible ou si une tuile échoue trop souvent
+     */
+    public BufferedImage render(ServerSocket server, long workerTimeoutMillis) throws IOException {
+        image = new BufferedImage(scene.getWidth(), scene.getHeight(), BufferedImage.TYPE_INT_RGB);
+        pending.clear();
+        pending.addAll(tiles);
+        attempts.clear();
+        remaining = new CountDownLatch(tiles.size());
+        failure = null;
+
+        server.setSoTimeout(POLL_MILLIS);
+        Thread acceptor = new Thread(() -> acceptWorkers(server), "farm-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        long idleSince = System.currentTimeMillis();
+        try {
+            while (!remaining.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (activeWorkers.get() > 0) {
+                    idleSince = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - idleSince > workerTimeoutMillis) {
+                    throw new IOException("Aucun travailleur connecté depuis "
+                            + workerTimeoutMillis + " ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rendu distribué interrompu", e);
+        } finally {
+            acceptor.interrupt();
+        }
+        return image;
+    }
+
+    /**
+     * Accepte les connexions entrantes tant que des tuiles restent à rendre.
+     */
+    private void acceptWorkers(ServerSocket server) {
+        while (remaining.getCount() > 0 && !Thread.currentThread().isInterrupted()) {
+            try {
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serveWorker(socket), "farm-worker-" + socket.getPort());
+                handler.setDaemon(true);
+                activeWorkers.incrementAndGet();
+                handler.start();
+            } catch (SocketTimeoutException e) {
+                // vérifie périodiquement s'il reste du travail
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    failure = e;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sert un travailleur : lui envoie la scène puis des tuiles jusqu'à
+     * épuisement, en réattribuant la tuile en cours en cas d'échec.
+     */
+    private void serveWorker(Socket socket) {
+        Tile current = null;
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            // un travailleur bloqué mais toujours connecté ne retient pas sa tuile
+            s.setSoTimeout(tileTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+            TileProtocol.writeScene(out, sceneText);
+
+            while (remaining.getCount() > 0) {
+                current = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (current == null) {
+                    continue;
+                }
+                TileProtocol.writeTileRequest(out, current);
+                int[] pixels = TileProtocol.readTileResult(in, current);
+                image.setRGB(current.getX(), current.getY(),
+                        current.getWidth(), current.getHeight(),
+                        pixels, 0, current.getWidth());
+                current = null;
+                remaining.countDown();
+            }
+
+            out.writeByte(TileProtocol.SHUTDOWN);
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            if (current != null) {
+                reassign(current, e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (current != null) {
+                reassign(current, e);
+            }
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Remet une tuile dans la file après l'échec du travailleur qui la rendait.
+     */
+    private void reassign(Tile tile, Exception cause) {
+        int count = attempts.merge(tile.getIndex(), 1, Integer::sum);
+        if (count >= MAX_ATTEMPTS) {
+            failure = new IOException("La tuile " + tile.getIndex()
+                    + " a échoué " + count + " fois", cause);
+            return;
+        }
+        reassigned.incrementAndGet();
+        pending.add(tile);
+    }
+}
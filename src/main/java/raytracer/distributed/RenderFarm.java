@@ -0,0 +1,94 @@
+package raytracer.distributed;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ferme de rendu locale : lance un coordinateur sur l'interface loopback
+ * et un nombre donné de processus RenderWorker qui s'y connectent.
+ *
+ * Chaque travailleur est une JVM distincte lancée avec le même classpath
+ * que le processus courant.
+ */
+public class RenderFarm {
+
+    /** Délai maximal sans travailleur connecté avant abandon (ms). */
+    private static final long WORKER_TIMEOUT_MILLIS = 30_000;
+
+    /** Nombre de processus travailleurs à lancer. */
+    private final int workers;
+
+    /** Côté des tuiles en pixels. */
+    private final int tileSize;
+
+    /**
+     * Construit une ferme de rendu locale.
+     *
+     * @param workers nombre de processus travailleurs
+     * @param tileSize côté des tuiles en pixels
+     */
+    public RenderFarm(int workers, int tileSize) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Le nombre de travailleurs doit être positif");
+        }
+        this.workers = workers;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Rend une scène en la répartissant entre les processus travailleurs.
+     *
+     * @param coordinator coordinateur construit pour la scène à rendre
+     * @return image assemblée
+     * @throws IOException si le rendu distribué échoue
+     */
+    public BufferedImage render(RenderCoordinator coordinator) throws IOException {
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            List<Process> processes = launchWorkers(server.getLocalPort());
+            try {
+                return coordinator.render(server, WORKER_TIMEOUT_MILLIS);
+            } finally {
+                for (Process p : processes) {
+                    p.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rend le texte d'une scène en la répartissant entre les travailleurs.
+     *
+     * @param sceneText texte complet de la scène
+     * @return image assemblée
+     * @throws IOException si le rendu distribué échoue
+     */
+    public BufferedImage render(String sceneText) throws IOException {
+        return render(new RenderCoordinator(sceneText, tileSize));
+    }
+
+    /**
+     * Lance les processus travailleurs vers le port du coordinateur.
+     */
+    private List<Process> launchWorkers(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classpath = System.getProperty("java.class.path");
+
+        List<Process> processes = new ArrayList<>();
+        for (int k = 0; k < workers; k++) {
+            ProcessBuilder pb = new ProcessBuilder(
+                    java, "-cp", classpath,
+                    RenderWorker.class.getName(),
+                    InetAddress.getLoopbackAddress().getHostAddress(),
+                    Integer.toString(port));
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+            processes.add(pb.start());
+        }
+        return processes;
+    }
+}
@@ -0,0 +1,73 @@
+package raytracer.distributed;
+
+import raytracer.core.Scene;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.Tile;
+import raytracer.parsing.SceneFileParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Processus travailleur du mode ferme de rendu.
+ *
+ * Le travailleur se connecte au coordinateur, reçoit le texte de la scène,
+ * l'analyse avec SceneFileParser puis rend les tuiles demandées une à une
+ * jusqu'à la fin de session.
+ */
+public class RenderWorker {
+
+    /**
+     * Point d'entrée d'un processus travailleur.
+     *
+     * @param args hôte et port du coordinateur
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage : java RenderWorker <hôte> <port>");
+            System.exit(1);
+        }
+
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            serve(socket);
+        } catch (IOException e) {
+            System.err.println("Travailleur interrompu : " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Traite une session complète sur une connexion déjà établie.
+     *
+     * @param socket connexion vers le coordinateur
+     * @throws IOException si la connexion est rompue
+     * @throws IllegalArgumentException si la scène reçue est invalide
+     */
+    public static void serve(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(socket.getOutputStream()));
+
+        String sceneText = TileProtocol.readScene(in);
+        Scene scene = new SceneFileParser().parseContent(sceneText);
+        ImageRenderer renderer = new ImageRenderer(scene);
+
+        while (true) {
+            byte op = in.readByte();
+            if (op == TileProtocol.SHUTDOWN) {
+                return;
+            }
+            if (op != TileProtocol.TILE) {
+                throw new IOException("Unknown opcode: " + op);
+            }
+            Tile tile = TileProtocol.readTileRequest(in);
+            TileProtocol.writeTileResult(out, tile, renderer.renderTile(tile));
+        }
+    }
+}
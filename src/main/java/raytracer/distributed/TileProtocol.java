@@ -0,0 +1,127 @@
+package raytracer.distributed;
+
+import raytracer.imaging.Tile;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocole binaire échangé entre le coordinateur et les travailleurs
+ * du mode ferme de rendu.
+ *
+ * Déroulement d'une session :
+ *  1. le travailleur se connecte au coordinateur ;
+ *  2. le coordinateur envoie le texte complet de la scène ;
+ *  3. le coordinateur envoie des demandes de tuiles (TILE) auxquelles
+ *     le travailleur répond par l'indice de la tuile suivi de ses pixels
+ *     encodés en RGB sur 3 octets ;
+ *  4. le coordinateur termine la session par SHUTDOWN.
+ *
+ * Tous les entiers sont écrits en big-endian par DataOutputStream.
+ */
+final class TileProtocol {
+
+    /** Identifie une connexion de ce protocole. */
+    static final int MAGIC = 0x52545446; // "RTTF"
+
+    /** Demande de rendu d'une tuile. */
+    static final byte TILE = 1;
+
+    /** Fin de session. */
+    static final byte SHUTDOWN = 2;
+
+    /** Taille maximale acceptée pour un texte de scène (64 Mo). */
+    private static final int MAX_SCENE_BYTES = 64 << 20;
+
+    private TileProtocol() {
+    }
+
+    /**
+     * Envoie le texte de la scène précédé de l'en-tête du protocole.
+     */
+    static void writeScene(DataOutputStream out, String sceneText) throws IOException {
+        byte[] bytes = sceneText.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(MAGIC);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Lit le texte de la scène envoyé par le coordinateur.
+     */
+    static String readScene(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Unexpected protocol header");
+        }
+        int length = in.readInt();
+        if (length < 0 || length > MAX_SCENE_BYTES) {
+            throw new IOException("Invalid scene length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Envoie une demande de rendu de tuile.
+     */
+    static void writeTileRequest(DataOutputStream out, Tile tile) throws IOException {
+        out.writeByte(TILE);
+        out.writeInt(tile.getIndex());
+        out.writeInt(tile.getX());
+        out.writeInt(tile.getY());
+        out.writeInt(tile.getWidth());
+        out.writeInt(tile.getHeight());
+        out.flush();
+    }
+
+    /**
+     * Lit une demande de tuile dont l'opcode TILE a déjà été consommé.
+     */
+    static Tile readTileRequest(DataInputStream in) throws IOException {
+        int index = in.readInt();
+        int x = in.readInt();
+        int y = in.readInt();
+        int w = in.readInt();
+        int h = in.readInt();
+        return new Tile(index, x, y, w, h);
+    }
+
+    /**
+     * Envoie les pixels d'une tuile rendue, encodés en RGB sur 3 octets.
+     */
+    static void writeTileResult(DataOutputStream out, Tile tile, int[] pixels) throws IOException {
+        byte[] encoded = new byte[pixels.length * 3];
+        for (int k = 0, b = 0; k < pixels.length; k++) {
+            int rgb = pixels[k];
+            encoded[b++] = (byte) (rgb >> 16);
+            encoded[b++] = (byte) (rgb >> 8);
+            encoded[b++] = (byte) rgb;
+        }
+        out.writeInt(tile.getIndex());
+        out.write(encoded);
+        out.flush();
+    }
+
+    /**
+     * Lit les pixels d'une tuile rendue et les décode au format 0xRRGGBB.
+     */
+    static int[] readTileResult(DataInputStream in, Tile tile) throws IOException {
+        int index = in.readInt();
+        if (index != tile.getIndex()) {
+            throw new IOException("Unexpected tile " + index + ", expected " + tile.getIndex());
+        }
+        byte[] encoded = new byte[tile.getPixelCount() * 3];
+        in.readFully(encoded);
+        int[] pixels = new int[tile.getPixelCount()];
+        for (int k = 0, b = 0; k < pixels.length; k++) {
+            pixels[k] = ((encoded[b++] & 0xFF) << 16)
+                      | ((encoded[b++] & 0xFF) << 8)
+                      | (encoded[b++] & 0xFF);
+        }
+        return pixels;
+    }
+}
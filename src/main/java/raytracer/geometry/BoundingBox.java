@@ -0,0 +1,269 @@
+package raytracer.geometry;
+
+import raytracer.core.Ray;
+
+/**
+ * Boîte englobante alignée sur les axes (AABB).
+ *
+ * Une boîte est définie par ses coins minimal et maximal. Une boîte infinie
+ * représente une forme non bornée (plan infini) : elle contient tout
+ * l'espace et ne permet aucun rejet.
+ */
+public final class BoundingBox {
+
+    /** Boîte couvrant tout l'espace. */
+    public static final BoundingBox INFINITE = new BoundingBox(
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    /** Boîte vide, élément neutre de l'union. */
+    public static final BoundingBox EMPTY = new BoundingBox(
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+
+    /** Marge relative de padded(). */
+    private static final double PAD = 1e-9;
+
+    private final double minX, minY, minZ;
+    private final double maxX, maxY, maxZ;
+
+    /**
+     * Construit une boîte à partir de ses bornes.
+     *
+     * @param minX borne minimale en X
+     * @param minY borne minimale en Y
+     * @param minZ borne minimale en Z
+     * @param maxX borne maximale en X
+     * @param maxY borne maximale en Y
+     * @param maxZ borne maximale en Z
+     */
+    public BoundingBox(double minX, double minY, double minZ,
+                       double maxX, double maxY, double maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * Construit la plus petite boîte contenant les points donnés.
+     *
+     * @param points points à englober
+     * @return boîte englobante
+     */
+    public static BoundingBox of(Point... points) {
+        BoundingBox box = EMPTY;
+        for (Point p : points) {
+            box = box.include(p.x, p.y, p.z);
+        }
+        return box;
+    }
+
+    /**
+     * Retourne la boîte agrandie pour contenir un point.
+     *
+     * @param x coordonnée X du point
+     * @param y coordonnée Y du point
+     * @param z coordonnée Z du point
+     * @return nouvelle boîte
+     */
+    public BoundingBox include(double x, double y, double z) {
+        return new BoundingBox(
+                Math.min(minX, x), Math.min(minY, y), Math.min(minZ, z),
+                Math.max(maxX, x), Math.max(maxY, y), Math.max(maxZ, z));
+    }
+
+    /**
+     * Retourne la plus petite boîte contenant les deux boîtes.
+     *
+     * @param other autre boîte
+     * @return union des deux boîtes
+     */
+    public BoundingBox union(BoundingBox other) {
+        return new BoundingBox(
+                Math.min(minX, other.minX), Math.min(minY, other.minY), Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX), Math.max(maxY, other.maxY), Math.max(maxZ, other.maxZ));
+    }
+
+    /** @return vrai si la boîte n'est pas bornée */
+    public boolean isInfinite() {
+        return Double.isInfinite(minX) || Double.isInfinite(minY) || Double.isInfinite(minZ)
+            || Double.isInfinite(maxX) || Double.isInfinite(maxY) || Double.isInfinite(maxZ);
+    }
+
+    /** @return vrai si la boîte ne contient aucun point */
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY || minZ > maxZ;
+    }
+
+    /**
+     * Retourne l'aire de la surface de la boîte, utilisée par l'heuristique
+     * de surface (SAH) : la probabilité qu'un rayon traversant une boîte
+     * traverse une boîte incluse est le rapport de leurs aires.
+     *
+     * @return aire de la boîte, 0 si elle est vide, infinie si elle n'est pas bornée
+     */
+    public double surfaceArea() {
+        if (isEmpty()) {
+            return 0.0;
+        }
+        double dx = maxX - minX;
+        double dy = maxY - minY;
+        double dz = maxZ - minZ;
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+
+    /** @return borne minimale en X */
+    public double getMinX() { return minX; }
+
+    /** @return borne minimale en Y */
+    public double getMinY() { return minY; }
+
+    /** @return borne minimale en Z */
+    public double getMinZ() { return minZ; }
+
+    /** @return borne maximale en X */
+    public double getMaxX() { return maxX; }
+
+    /** @return borne maximale en Y */
+    public double getMaxY() { return maxY; }
+
+    /** @return borne maximale en Z */
+    public double getMaxZ() { return maxZ; }
+
+    /**
+     * Retourne les huit sommets de la boîte.
+     *
+     * @return tableau des sommets
+     */
+    public Point[] corners() {
+        Point[] corners = new Point[8];
+        for (int k = 0; k < 8; k++) {
+            corners[k] = new Point(
+                    (k & 1) == 0 ? minX : maxX,
+                    (k & 2) == 0 ? minY : maxY,
+                    (k & 4) == 0 ? minZ : maxZ);
+        }
+        return corners;
+    }
+
+    /**
+     * Teste si le segment origin + t * dir, t dans [0, tMax], traverse la boîte
+     * (méthode des slabs).
+     *
+     * @param origin origine du segment
+     * @param dir direction du segment (non nécessairement normalisée)
+     * @param tMax paramètre maximal, éventuellement infini
+     * @return vrai si le segment touche la boîte
+     */
+    public boolean intersectsSegment(Point origin, Vector dir, double tMax) {
+        if (isEmpty()) {
+            return false;
+        }
+        double t0 = 0.0;
+        double t1 = tMax;
+
+        double[] o = {origin.x, origin.y, origin.z};
+        double[] d = {dir.x, dir.y, dir.z};
+        double[] lo = {minX, minY, minZ};
+        double[] hi = {maxX, maxY, maxZ};
+
+        for (int axis = 0; axis < 3; axis++) {
+            if (d[axis] == 0.0) {
+                if (o[axis] < lo[axis] || o[axis] > hi[axis]) {
+                    return false;
+                }
+                continue;
+            }
+            double inv = 1.0 / d[axis];
+            double tNear = (lo[axis] - o[axis]) * inv;
+            double tFar = (hi[axis] - o[axis]) * inv;
+            if (tNear > tFar) {
+                double tmp = tNear;
+                tNear = tFar;
+                tFar = tmp;
+            }
+            t0 = Math.max(t0, tNear);
+            t1 = Math.min(t1, tFar);
+            if (t0 > t1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Teste si le rayon traverse la boîte pour t dans [0, tMax] (méthode
+     * des slabs, avec l'inverse de la direction précalculé par le rayon).
+     * Lorsque l'origine est exactement sur un plan de la boîte avec une
+     * direction parallèle, 0 * infini donne NaN : l'ordre des comparaisons
+     * fait alors retenir le NaN, qui laisse les bornes inchangées, et le
+     * test reste conservatif.
+     *
+     * @param ray rayon testé
+     * @param tMax paramètre maximal, éventuellement infini
+     * @return vrai si le rayon peut toucher une forme contenue dans la boîte
+     */
+    public boolean intersects(Ray ray, double tMax) {
+        Point o = ray.getOrigin();
+        double t0 = 0.0;
+        double t1 = tMax;
+
+        double a = (minX - o.x) * ray.getInvDirX();
+        double b = (maxX - o.x) * ray.getInvDirX();
+        double near = b < a ? b : a;
+        double far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (minY - o.y) * ray.getInvDirY();
+        b = (maxY - o.y) * ray.getInvDirY();
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        a = (minZ - o.z) * ray.getInvDirZ();
+        b = (maxZ - o.z) * ray.getInvDirZ();
+        near = b < a ? b : a;
+        far = a > b ? a : b;
+        t0 = near > t0 ? near : t0;
+        t1 = far < t1 ? far : t1;
+
+        return t0 <= t1;
+    }
+
+    /**
+     * Retourne la boîte agrandie d'une marge relative à ses coordonnées,
+     * pour qu'un test de rejet ne perde pas, sur une erreur d'arrondi, un
+     * point situé exactement sur une face (triangle aligné sur les axes,
+     * sphère tangente). Une boîte vide ou infinie est retournée telle quelle.
+     *
+     * @return boîte légèrement agrandie
+     */
+    public BoundingBox padded() {
+        if (isEmpty() || isInfinite()) {
+            return this;
+        }
+        return new BoundingBox(
+                minX - PAD * Math.max(1.0, Math.abs(minX)),
+                minY - PAD * Math.max(1.0, Math.abs(minY)),
+                minZ - PAD * Math.max(1.0, Math.abs(minZ)),
+                maxX + PAD * Math.max(1.0, Math.abs(maxX)),
+                maxY + PAD * Math.max(1.0, Math.abs(maxY)),
+                maxZ + PAD * Math.max(1.0, Math.abs(maxZ)));
+    }
+
+    /**
+     * Retourne une description textuelle de la boîte.
+     *
+     * @return chaîne contenant les coins minimal et maximal
+     */
+    @Override
+    public String toString() {
+        return "BoundingBox{min=(" + minX + "," + minY + "," + minZ
+                + "), max=(" + maxX + "," + maxY + "," + maxZ + ")}";
+    }
+}
@@ -0,0 +1,236 @@
+package raytracer.geometry;
+
+/**
+ * Matrice 4x4 immuable représentant une transformation affine de l'espace
+ * en coordonnées homogènes (la dernière ligne vaut toujours 0 0 0 1).
+ *
+ * Les transformations se composent par multiply : a.multiply(b) applique
+ * d'abord b puis a.
+ */
+public final class Matrix4 {
+
+    /** Transformation identité. */
+    public static final Matrix4 IDENTITY = new Matrix4(new double[] {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1});
+
+    /** Coefficients, ligne par ligne. */
+    private final double[] m;
+
+    private Matrix4(double[] m) {
+        this.m = m;
+    }
+
+    /**
+     * Construit une translation.
+     *
+     * @param tx déplacement en X
+     * @param ty déplacement en Y
+     * @param tz déplacement en Z
+     * @return matrice de translation
+     */
+    public static Matrix4 translation(double tx, double ty, double tz) {
+        return new Matrix4(new double[] {
+                1, 0, 0, tx,
+                0, 1, 0, ty,
+                0, 0, 1, tz,
+                0, 0, 0, 1});
+    }
+
+    /**
+     * Construit un changement d'échelle.
+     *
+     * @param sx facteur en X
+     * @param sy facteur en Y
+     * @param sz facteur en Z
+     * @return matrice de changement d'échelle
+     * @throws IllegalArgumentException si un facteur est nul
+     */
+    public static Matrix4 scaling(double sx, double sy, double sz) {
+        if (sx == 0.0 || sy == 0.0 || sz == 0.0) {
+            throw new IllegalArgumentException("Le facteur d'échelle ne doit pas être nul");
+        }
+        return new Matrix4(new double[] {
+                sx, 0, 0, 0,
+                0, sy, 0, 0,
+                0, 0, sz, 0,
+                0, 0, 0, 1});
+    }
+
+    /**
+     * Construit une rotation autour d'un axe passant par l'origine
+     * (formule de Rodrigues).
+     *
+     * @param axis axe de rotation, non nul
+     * @param degrees angle en degrés, sens direct
+     * @return matrice de rotation
+     * @throws IllegalArgumentException si l'axe est nul
+     */
+    public static Matrix4 rotation(Vector axis, double degrees) {
+        double len = axis.length();
+        if (len == 0.0) {
+            throw new IllegalArgumentException("L'axe de rotation ne doit pas être nul");
+        }
+        double x = axis.x / len;
+        double y = axis.y / len;
+        double z = axis.z / len;
+        double rad = Math.toRadians(degrees);
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+        double k = 1.0 - c;
+        return new Matrix4(new double[] {
+                c + x * x * k,     x * y * k - z * s, x * z * k + y * s, 0,
+                y * x * k + z * s, c + y * y * k,     y * z * k - x * s, 0,
+                z * x * k - y * s, z * y * k + x * s, c + z * z * k,     0,
+                0, 0, 0, 1});
+    }
+
+    /**
+     * Compose deux transformations.
+     *
+     * @param other transformation appliquée en premier
+     * @return produit this * other
+     */
+    public Matrix4 multiply(Matrix4 other) {
+        double[] r = new double[16];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < 4; k++) {
+                    sum += m[4 * i + k] * other.m[4 * k + j];
+                }
+                r[4 * i + j] = sum;
+            }
+        }
+        return new Matrix4(r);
+    }
+
+    /**
+     * Calcule la transformation inverse : inverse de la partie linéaire 3x3
+     * (par les cofacteurs) puis de la translation.
+     *
+     * @return matrice inverse
+     * @throws IllegalArgumentException si la matrice n'est pas inversible
+     */
+    public Matrix4 inverse() {
+        double a = m[0], b = m[1], c = m[2];
+        double d = m[4], e = m[5], f = m[6];
+        double g = m[8], h = m[9], i = m[10];
+
+        double c00 = e * i - f * h;
+        double c01 = f * g - d * i;
+        double c02 = d * h - e * g;
+        double det = a * c00 + b * c01 + c * c02;
+        if (det == 0.0 || !Double.isFinite(det)) {
+            throw new IllegalArgumentException("Transformation non inversible");
+        }
+        double inv = 1.0 / det;
+
+        double r00 = c00 * inv;
+        double r01 = (c * h - b * i) * inv;
+        double r02 = (b * f - c * e) * inv;
+        double r10 = c01 * inv;
+        double r11 = (a * i - c * g) * inv;
+        double r12 = (c * d - a * f) * inv;
+        double r20 = c02 * inv;
+        double r21 = (b * g - a * h) * inv;
+        double r22 = (a * e - b * d) * inv;
+
+        double tx = m[3], ty = m[7], tz = m[11];
+        return new Matrix4(new double[] {
+                r00, r01, r02, -(r00 * tx + r01 * ty + r02 * tz),
+                r10, r11, r12, -(r10 * tx + r11 * ty + r12 * tz),
+                r20, r21, r22, -(r20 * tx + r21 * ty + r22 * tz),
+                0, 0, 0, 1});
+    }
+
+    /**
+     * Retourne la transposée de la partie linéaire, sans translation :
+     * appliquée à une normale par transformVector, la transposée de
+     * l'inverse d'une transformation transforme correctement les normales.
+     *
+     * @return transposée de la partie linéaire
+     */
+    public Matrix4 transposeLinear() {
+        return new Matrix4(new double[] {
+                m[0], m[4], m[8], 0,
+                m[1], m[5], m[9], 0,
+                m[2], m[6], m[10], 0,
+                0, 0, 0, 1});
+    }
+
+    /**
+     * Transforme un point (translation comprise).
+     *
+     * @param p point à transformer
+     * @return point transformé
+     */
+    public Point transformPoint(Point p) {
+        return new Point(
+                m[0] * p.x + m[1] * p.y + m[2] * p.z + m[3],
+                m[4] * p.x + m[5] * p.y + m[6] * p.z + m[7],
+                m[8] * p.x + m[9] * p.y + m[10] * p.z + m[11]);
+    }
+
+    /**
+     * Transforme une direction (sans translation).
+     *
+     * @param v vecteur à transformer
+     * @return vecteur transformé, non normalisé
+     */
+    public Vector transformVector(Vector v) {
+        return new Vector(
+                m[0] * v.x + m[1] * v.y + m[2] * v.z,
+                m[4] * v.x + m[5] * v.y + m[6] * v.z,
+                m[8] * v.x + m[9] * v.y + m[10] * v.z);
+    }
+
+    /**
+     * Transforme une boîte englobante : boîte alignée sur les axes
+     * contenant ses huit sommets transformés.
+     *
+     * @param box boîte à transformer
+     * @return boîte transformée, infinie si box l'est
+     */
+    public BoundingBox transformBounds(BoundingBox box) {
+        if (box.isInfinite()) {
+            return BoundingBox.INFINITE;
+        }
+        if (box.isEmpty()) {
+            return BoundingBox.EMPTY;
+        }
+        BoundingBox result = BoundingBox.EMPTY;
+        for (Point corner : box.corners()) {
+            Point p = transformPoint(corner);
+            result = result.include(p.x, p.y, p.z);
+        }
+        return result;
+    }
+
+    /**
+     * Retourne un coefficient de la matrice.
+     *
+     * @param row ligne, de 0 à 3
+     * @param column colonne, de 0 à 3
+     * @return coefficient
+     */
+    public double get(int row, int column) {
+        return m[4 * row + column];
+    }
+
+    /**
+     * Retourne une description textuelle de la matrice.
+     *
+     * @return coefficients ligne par ligne
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Matrix4{");
+        for (int k = 0; k < 12; k++) {
+            sb.append(k == 0 ? "" : k % 4 == 0 ? "; " : ",").append(m[k]);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,126 @@
+package raytracer.geometry.shapes;
+
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Matrix4;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.imaging.Color;
+
+import java.util.Optional;
+
+/**
+ * Occurrence transformée d'un prototype de géométrie (ShapeGroup).
+ *
+ * L'instance ne copie pas la géométrie : elle conserve une référence au
+ * groupe et sa transformation objet vers monde. L'intersection est
+ * calculée en ramenant le rayon dans le repère du prototype, puis le
+ * point et la normale sont ramenés dans le repère du monde.
+ *
+ * Le matériau est celui de l'instance : les formes du prototype ne
+ * fournissent que la géométrie, si bien que chaque occurrence peut avoir
+ * sa propre couleur.
+ */
+public class Instance extends Shape {
+
+    /** Marge relative ajoutée au tMax converti dans le repère du prototype. */
+    private static final double T_MAX_MARGIN = 1e-9;
+
+    /** Prototype partagé. */
+    private final ShapeGroup prototype;
+
+    /** Transformation du repère du prototype vers le monde. */
+    private final Matrix4 objectToWorld;
+
+    /** Transformation inverse, du monde vers le prototype. */
+    private final Matrix4 worldToObject;
+
+    /** Transformation des normales : transposée de worldToObject. */
+    private final Matrix4 normalToWorld;
+
+    /**
+     * Construit une instance d'un prototype.
+     *
+     * @param prototype groupe de formes partagé
+     * @param objectToWorld transformation du prototype vers le monde
+     * @param diffuse couleur diffuse
+     * @param specular couleur spéculaire
+     * @throws IllegalArgumentException si la transformation n'est pas inversible
+     */
+    public Instance(ShapeGroup prototype, Matrix4 objectToWorld,
+                    Color diffuse, Color specular) {
+        super(diffuse, specular);
+        this.prototype = prototype;
+        this.objectToWorld = objectToWorld;
+        this.worldToObject = objectToWorld.inverse();
+        this.normalToWorld = worldToObject.transposeLinear();
+    }
+
+    /** @return prototype partagé */
+    public ShapeGroup getPrototype() { return prototype; }
+
+    /** @return transformation du prototype vers le monde */
+    public Matrix4 getTransform() { return objectToWorld; }
+
+    /**
+     * Retourne la boîte englobante, dans le monde, de la boîte du prototype
+     * transformée.
+     *
+     * @return boîte englobante
+     */
+    @Override
+    public BoundingBox getBounds() {
+        return objectToWorld.transformBounds(prototype.getBounds());
+    }
+
+    /**
+     * Retourne la normale, dans le monde, de la forme du prototype qui
+     * passe par p : le point est ramené dans le repère du prototype, puis
+     * la normale trouvée par le groupe est ramenée dans le monde.
+     *
+     * @param p point de la surface de l'instance, dans le monde
+     * @return normale unitaire
+     * @throws IllegalArgumentException si le prototype est vide
+     */
+    @Override
+    public Vector getNormal(Point p) {
+        Vector local = prototype.getNormal(worldToObject.transformPoint(p));
+        return (Vector) normalToWorld.transformVector(local).normalize();
+    }
+
+    /**
+     * Teste l'intersection du rayon avec le prototype dans son repère.
+     *
+     * La direction transformée n'est pas unitaire : sa longueur est le
+     * nombre d'unités du prototype par unité du monde, ce qui convertit
+     * le paramètre t du repère du prototype vers celui du monde. Les bornes
+     * tMin et tMax du rayon sont converties de même, tMax avec une marge
+     * pour ne pas perdre sur un arrondi une intersection située exactement
+     * à tMax.
+     *
+     * @param ray rayon dans le repère du monde
+     * @return intersection la plus proche, exprimée dans le monde
+     */
+    @Override
+    public Optional<Intersection> intersect(Ray ray) {
+        Vector d = worldToObject.transformVector(ray.getDirection());
+        double scale = d.length();
+        Ray local = new Ray(worldToObject.transformPoint(ray.getOrigin()), d,
+                ray.getTMin() * scale, ray.getTMax() * scale * (1.0 + T_MAX_MARGIN));
+
+        Optional<Intersection> hit = prototype.intersect(local);
+        if (!hit.isPresent()) {
+            return Optional.empty();
+        }
+
+        double t = hit.get().getT() / scale;
+        Vector n = (Vector) normalToWorld.transformVector(hit.get().getNormal()).normalize();
+        return Optional.of(new Intersection(t, ray.at(t), this, n));
+    }
+
+    @Override
+    public String toString() {
+        return "Instance{" + prototype.getName() + ", " + objectToWorld + "}";
+    }
+}
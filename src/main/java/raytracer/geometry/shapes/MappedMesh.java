@@ -0,0 +1,72 @@
+package raytracer.geometry.shapes;
+
+import raytracer.acceleration.MeshFile;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.imaging.Color;
+
+import java.util.Optional;
+
+/**
+ * Maillage de triangles lu depuis un fichier hors mémoire (MeshFile).
+ *
+ * La forme ne porte que le matériau : la géométrie est projetée en mémoire
+ * par grappes au fil des rayons, si bien que le maillage peut dépasser la
+ * taille du tas. Tous les triangles partagent le matériau de la forme.
+ */
+public class MappedMesh extends Shape {
+
+    /** Tolérance relative de getNormal sur la position du point. */
+    private static final double NORMAL_TOLERANCE = 1e-6;
+
+    /** Fichier de maillage ouvert. */
+    private final MeshFile mesh;
+
+    /**
+     * Construit un maillage sur un fichier ouvert.
+     *
+     * @param mesh fichier de maillage, fermé par son propriétaire
+     * @param diffuse couleur diffuse
+     * @param specular couleur spéculaire
+     */
+    public MappedMesh(MeshFile mesh, Color diffuse, Color specular) {
+        super(diffuse, specular);
+        this.mesh = mesh;
+    }
+
+    /** @return fichier de maillage */
+    public MeshFile getMesh() { return mesh; }
+
+    @Override
+    public BoundingBox getBounds() {
+        return mesh.getBounds();
+    }
+
+    /**
+     * Retourne la normale du triangle du maillage le plus proche de p.
+     * Les boîtes parcourues sont élargies d'une tolérance relative aux
+     * coordonnées de p, pour absorber les arrondis du point d'impact.
+     *
+     * @param p point de la surface du maillage
+     * @return normale du triangle le plus proche
+     * @throws IllegalArgumentException si p est éloigné du maillage
+     */
+    @Override
+    public Vector getNormal(Point p) {
+        double scale = 1.0 + Math.abs(p.x) + Math.abs(p.y) + Math.abs(p.z);
+        return mesh.normalAt(p, NORMAL_TOLERANCE * scale);
+    }
+
+    @Override
+    public Optional<Intersection> intersect(Ray ray) {
+        return mesh.intersect(ray, this);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedMesh{" + mesh.getFile() + ", " + mesh.size() + " triangles}";
+    }
+}
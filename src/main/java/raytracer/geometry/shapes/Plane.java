@@ -36,6 +36,15 @@ public class Plane extends Shape {
         this.normal = (Vector)new Vector(nx, ny, nz).normalize();
     }
 
+    /**
+     * Retourne le point de référence du plan.
+     *
+     * @return point appartenant au plan
+     */
+    public Point getPoint() {
+        return q;
+    }
+
     @Override
     public Vector getNormal(Point p) {
         return normal;
@@ -56,8 +65,8 @@ public class Plane extends Shape {
 
         double t = q.subtract(o).dot(normal) / denom;
 
-        // Intersection derrière la caméra
-        if (t < 1e-6) {
+        // Intersection derrière la caméra ou au-delà de l'intervalle du rayon
+        if (t < ray.getTMin() || t > ray.getTMax()) {
             return Optional.empty();
         }
 
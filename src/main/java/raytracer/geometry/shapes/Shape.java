@@ -1,6 +1,7 @@
 package raytracer.geometry.shapes;
 
 import raytracer.imaging.Color;
+import raytracer.geometry.BoundingBox;
 import raytracer.geometry.Point;
 import raytracer.geometry.Vector;
 import raytracer.core.Intersection;
@@ -103,6 +104,29 @@ public abstract class Shape {
      */
     public abstract Vector getNormal(Point p);
 
+    /**
+     * Retourne la boîte englobante de la forme.
+     * Par défaut la forme est considérée comme non bornée ; les formes
+     * finies redéfinissent cette méthode.
+     *
+     * @return boîte englobante alignée sur les axes
+     */
+    public BoundingBox getBounds() {
+        return BoundingBox.INFINITE;
+    }
+
+    /**
+     * Indique si un test du rayon contre la boîte englobante vaut la peine
+     * avant le test d'intersection, dans un parcours sans hiérarchie
+     * (Scene). Vrai par défaut ; une forme dont le test d'intersection ne
+     * coûte pas plus qu'un test de boîte redéfinit cette méthode.
+     *
+     * @return vrai si la boîte englobante doit être testée d'abord
+     */
+    public boolean isBoundsTestUseful() {
+        return true;
+    }
+
     /**
      * Teste l'intersection entre cette forme et un rayon.
      *
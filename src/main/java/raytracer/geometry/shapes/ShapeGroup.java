@@ -0,0 +1,148 @@
+package raytracer.geometry.shapes;
+
+import raytracer.acceleration.Bvh;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Prototype de géométrie nommé, partagé par des instances (Instance).
+ *
+ * Les formes du groupe sont exprimées dans le repère du prototype. Elles
+ * sont indexées par leur propre BVH (niveau inférieur), construite une
+ * seule fois quel que soit le nombre d'instances qui y font référence.
+ */
+public class ShapeGroup {
+
+    /** Nom du groupe dans le fichier .scene. */
+    private final String name;
+
+    /** Formes du groupe, dans le repère du prototype. */
+    private final List<Shape> shapes = new ArrayList<>();
+
+    /** Distance relative de départ des sondes de getNormal. */
+    private static final double PROBE_DISTANCE = 1e-4;
+
+    /** Hiérarchie des formes, construite à la demande. */
+    private volatile Bvh bvh;
+
+    /**
+     * Construit un groupe vide.
+     *
+     * @param name nom du groupe
+     */
+    public ShapeGroup(String name) {
+        this.name = name;
+    }
+
+    /** @return nom du groupe */
+    public String getName() { return name; }
+
+    /**
+     * Ajoute une forme au groupe.
+     *
+     * @param shape forme exprimée dans le repère du prototype
+     */
+    public void addShape(Shape shape) {
+        shapes.add(shape);
+        bvh = null;
+    }
+
+    /** @return formes du groupe, non modifiables */
+    public List<Shape> getShapes() {
+        return Collections.unmodifiableList(shapes);
+    }
+
+    /** @return boîte englobante du groupe dans le repère du prototype */
+    public BoundingBox getBounds() {
+        return bvh().getBounds();
+    }
+
+    /**
+     * Recherche l'intersection la plus proche avec les formes du groupe,
+     * le rayon étant exprimé dans le repère du prototype.
+     *
+     * @param ray rayon dans le repère du prototype
+     * @return intersection la plus proche, si elle existe
+     */
+    public Optional<Intersection> intersect(Ray ray) {
+        return bvh().intersect(ray);
+    }
+
+    /**
+     * Retourne la normale, au point p, de la forme du groupe dont la
+     * surface passe par p.
+     *
+     * Chaque forme dont la boîte, élargie d'une distance δ relative aux
+     * coordonnées de p, contient le point est sondée : un rayon part de
+     * p + δ n vers -n, n étant la normale de la forme en p. La forme qui
+     * passe par p est touchée à δ ; celle dont l'impact en est le plus
+     * proche l'emporte. Si aucune sonde n'aboutit, la première forme
+     * candidate donne la normale.
+     *
+     * @param p point de la surface du groupe, dans le repère du prototype
+     * @return normale unitaire
+     * @throws IllegalArgumentException si le groupe est vide
+     */
+    public Vector getNormal(Point p) {
+        if (shapes.isEmpty()) {
+            throw new IllegalArgumentException("Groupe vide : " + name);
+        }
+        double delta = PROBE_DISTANCE * (1.0 + Math.abs(p.x) + Math.abs(p.y) + Math.abs(p.z));
+        Vector fallback = null;
+        Vector best = null;
+        double bestError = Double.POSITIVE_INFINITY;
+        for (Shape shape : shapes) {
+            BoundingBox b = shape.getBounds();
+            if (!b.isInfinite() && (p.x < b.getMinX() - delta || p.x > b.getMaxX() + delta
+                    || p.y < b.getMinY() - delta || p.y > b.getMaxY() + delta
+                    || p.z < b.getMinZ() - delta || p.z > b.getMaxZ() + delta)) {
+                continue;
+            }
+            Vector n = shape.getNormal(p);
+            if (fallback == null) {
+                fallback = n;
+            }
+            Vector back = n.multiply(-1);
+            Ray probe = new Ray(p.add(n.multiply(delta)), back, Ray.DEFAULT_T_MIN, 2 * delta);
+            Optional<Intersection> hit = shape.intersect(probe);
+            if (hit.isPresent()) {
+                double error = Math.abs(hit.get().getT() - delta);
+                if (error < bestError) {
+                    bestError = error;
+                    best = hit.get().getNormal();
+                }
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        return fallback != null ? fallback : shapes.get(0).getNormal(p);
+    }
+
+    private Bvh bvh() {
+        Bvh tree = bvh;
+        if (tree == null) {
+            synchronized (this) {
+                tree = bvh;
+                if (tree == null) {
+                    tree = new Bvh(shapes);
+                    bvh = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    @Override
+    public String toString() {
+        return "ShapeGroup{" + name + ", " + shapes.size() + " formes}";
+    }
+}
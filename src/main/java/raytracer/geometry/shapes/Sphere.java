@@ -1,6 +1,7 @@
 package raytracer.geometry.shapes;
 
 import raytracer.imaging.Color;
+import raytracer.geometry.BoundingBox;
 import raytracer.geometry.Point;
 import raytracer.geometry.Vector;
 import raytracer.core.Intersection;
@@ -55,6 +56,17 @@ public class Sphere extends Shape {
         return center;
     }
 
+    /**
+     * Déplace la sphère, par exemple d'une image à l'autre d'une animation.
+     * Si la sphère appartient à une scène, Scene.refit doit être appelée
+     * avant le rendu suivant pour mettre à jour la hiérarchie des formes.
+     *
+     * @param center nouveau centre
+     */
+    public void setCenter(Point center) {
+        this.center = center;
+    }
+
     /**
      * Retourne le rayon de la sphère.
      *
@@ -64,6 +76,31 @@ public class Sphere extends Shape {
         return radius;
     }
 
+    /**
+     * Retourne la boîte englobante de la sphère : le cube de demi-côté
+     * égal au rayon centré sur la sphère.
+     *
+     * @return boîte englobante
+     */
+    @Override
+    public BoundingBox getBounds() {
+        return new BoundingBox(
+            center.x - radius, center.y - radius, center.z - radius,
+            center.x + radius, center.y + radius, center.z + radius);
+    }
+
+    /**
+     * La sphère est sa propre sphère englobante : son test d'intersection
+     * rejette un rayon qui la manque en quelques produits scalaires, pas
+     * plus qu'un test contre sa boîte.
+     *
+     * @return faux
+     */
+    @Override
+    public boolean isBoundsTestUseful() {
+        return false;
+    }
+
     /**
      * Calcule la normale au point donné sur la sphère.
      * La normale est simplement la direction du point vers le centre,
@@ -89,6 +126,9 @@ public class Sphere extends Shape {
      *  - c est le centre de la sphère,
      *  - r est le rayon.
      *
+     * Seules les racines comprises entre tMin et tMax du rayon sont
+     * retenues.
+     *
      * @param ray rayon à tester
      * @return un Optional contenant l'intersection la plus proche si elle existe
      */
@@ -114,17 +154,10 @@ public class Sphere extends Shape {
         double t1 = (-b - sqrtDelta) * inv2a;
         double t2 = (-b + sqrtDelta) * inv2a;
 
-        double t = Double.POSITIVE_INFINITY;
-        double eps = 1e-6;
-
-        if (t1 > eps && t1 < t) {
-            t = t1;
-        }
-        if (t2 > eps && t2 < t) {
-            t = t2;
-        }
-
-        if (Double.isInfinite(t)) {
+        // t1 <= t2 : la racine retenue est la première au-delà de tMin,
+        // et rien n'est à garder si elle dépasse tMax
+        double t = t1 > ray.getTMin() ? t1 : t2;
+        if (!(t > ray.getTMin()) || t > ray.getTMax()) {
             return Optional.empty();
         }
 
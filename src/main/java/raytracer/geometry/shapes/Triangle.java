@@ -2,6 +2,7 @@ package raytracer.geometry.shapes;
 
 import raytracer.core.Intersection;
 import raytracer.core.Ray;
+import raytracer.geometry.BoundingBox;
 import raytracer.geometry.Point;
 import raytracer.geometry.Vector;
 import raytracer.imaging.Color;
@@ -33,6 +34,20 @@ public class Triangle extends Shape {
         this.normal = (Vector)b.subtract(a).cross(c.subtract(a)).normalize();
     }
 
+    /** @return premier sommet */
+    public Point getA() { return a; }
+
+    /** @return deuxième sommet */
+    public Point getB() { return b; }
+
+    /** @return troisième sommet */
+    public Point getC() { return c; }
+
+    @Override
+    public BoundingBox getBounds() {
+        return BoundingBox.of(a, b, c);
+    }
+
     @Override
     public Vector getNormal(Point p) {
         return normal;
@@ -53,8 +68,9 @@ public class Triangle extends Shape {
 
         double t = a.subtract(o).dot(normal) / denom;
 
-        // Intersection derrière la caméra
-        if (t < 1e-6) {
+        // Intersection derrière la caméra, ou au-delà de tMax : les tests
+        // barycentriques ne sont pas faits
+        if (t < ray.getTMin() || t > ray.getTMax()) {
             return Optional.empty();
         }
 
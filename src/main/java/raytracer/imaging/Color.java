@@ -18,6 +18,9 @@ import raytracer.geometry.AbstractVec3;
  */
 public class Color extends AbstractVec3 {
 
+    /** Marge appliquée aux bornes comparées par sameRGB. */
+    private static final double QUANTIZE_MARGIN = 1e-9;
+
     /**
      * Construit une couleur à partir des trois composantes.
      *
@@ -56,15 +59,38 @@ public class Color extends AbstractVec3 {
      * @return valeur entière au format 0xRRGGBB
      */
     public int toRGB() {
-        double cx = Math.min(1.0, Math.max(0.0, x));
-        double cy = Math.min(1.0, Math.max(0.0, y));
-        double cz = Math.min(1.0, Math.max(0.0, z));
+        return (quantize(x) << 16) | (quantize(y) << 8) | quantize(z);
+    }
 
-        int red = (int) Math.round(cx * 255.0);
-        int green = (int) Math.round(cy * 255.0);
-        int blue = (int) Math.round(cz * 255.0);
+    /**
+     * Convertit une composante en valeur 8 bits : bornage dans [0, 1]
+     * puis arrondi de la composante multipliée par 255.
+     *
+     * @param v composante flottante
+     * @return valeur entre 0 et 255
+     */
+    public static int quantize(double v) {
+        return (int) Math.round(Math.min(1.0, Math.max(0.0, v)) * 255.0);
+    }
 
-        return (red << 16) | (green << 8) | blue;
+    /**
+     * Indique si toute couleur comprise entre deux bornes donne le même
+     * pixel 8 bits. La conversion étant monotone, il suffit de comparer
+     * les bornes ; une marge couvre les erreurs d'arrondi des sommes
+     * partielles qui les ont produites.
+     *
+     * @param lower minorant r, g, b
+     * @param upper majorant r, g, b
+     * @param offset indice de la composante rouge dans les deux tableaux
+     * @return vrai si les deux bornes donnent le même pixel
+     */
+    public static boolean sameRGB(double[] lower, double[] upper, int offset) {
+        for (int c = offset; c < offset + 3; c++) {
+            if (quantize(lower[c] - QUANTIZE_MARGIN) != quantize(upper[c] + QUANTIZE_MARGIN)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
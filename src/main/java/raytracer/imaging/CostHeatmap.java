@@ -0,0 +1,157 @@
+package raytracer.imaging;
+
+import raytracer.core.TraceStats;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Carte de coût par pixel d'un rendu, utilisée pour le profilage des scènes.
+ *
+ * Pour chaque pixel sont enregistrés :
+ *  - le nombre de tests d'intersection rayon / forme ;
+ *  - le nombre de rayons d'ombre ;
+ *  - le temps passé dans RayTracer.getPixelColor, en nanosecondes.
+ *
+ * La carte peut être exportée en image en fausses couleurs (temps par pixel,
+ * du bleu pour les pixels bon marché au rouge pour les plus coûteux) et en
+ * fichier CSV contenant les valeurs brutes.
+ */
+public class CostHeatmap {
+
+    /** Largeur de l'image. */
+    private final int width;
+
+    /** Hauteur de l'image. */
+    private final int height;
+
+    /** Tests d'intersection par pixel. */
+    private final long[] intersectionTests;
+
+    /** Rayons d'ombre par pixel. */
+    private final long[] shadowRays;
+
+    /** Temps de calcul par pixel en nanosecondes. */
+    private final long[] nanos;
+
+    /** Total des rayons d'ombre évités. */
+    private long skippedShadowRays;
+
+    /**
+     * Construit une carte vide pour une image de taille donnée.
+     *
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     */
+    public CostHeatmap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.intersectionTests = new long[width * height];
+        this.shadowRays = new long[width * height];
+        this.nanos = new long[width * height];
+    }
+
+    /**
+     * Enregistre le coût d'un pixel.
+     *
+     * @param i coordonnée X du pixel
+     * @param j coordonnée Y du pixel
+     * @param stats compteurs accumulés pendant le calcul du pixel
+     * @param elapsedNanos temps de calcul du pixel
+     */
+    public void record(int i, int j, TraceStats stats, long elapsedNanos) {
+        int k = j * width + i;
+        intersectionTests[k] = stats.intersectionTests;
+        shadowRays[k] = stats.shadowRays;
+        nanos[k] = elapsedNanos;
+        skippedShadowRays += stats.skippedShadowRays;
+    }
+
+    /** @return tests d'intersection du pixel (i, j) */
+    public long getIntersectionTests(int i, int j) { return intersectionTests[j * width + i]; }
+
+    /** @return rayons d'ombre du pixel (i, j) */
+    public long getShadowRays(int i, int j) { return shadowRays[j * width + i]; }
+
+    /** @return temps de calcul du pixel (i, j) en nanosecondes */
+    public long getNanos(int i, int j) { return nanos[j * width + i]; }
+
+    /** @return total des tests d'intersection */
+    public long getTotalIntersectionTests() { return Arrays.stream(intersectionTests).sum(); }
+
+    /** @return total des rayons d'ombre */
+    public long getTotalShadowRays() { return Arrays.stream(shadowRays).sum(); }
+
+    /** @return total des rayons d'ombre évités */
+    public long getTotalSkippedShadowRays() { return skippedShadowRays; }
+
+    /** @return temps total de calcul en nanosecondes */
+    public long getTotalNanos() { return Arrays.stream(nanos).sum(); }
+
+    /**
+     * Construit l'image en fausses couleurs du temps par pixel.
+     * L'échelle est logarithmique et saturée au 99,5e centile pour que
+     * quelques pixels aberrants (pause GC, compilation JIT) n'écrasent pas
+     * le reste de l'image.
+     *
+     * @return image en fausses couleurs
+     */
+    public BufferedImage toFalseColor() {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long cap = Math.max(1, sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.995))]);
+        double logCap = Math.log1p(cap);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                double t = Math.log1p(Math.min(nanos[j * width + i], cap)) / logCap;
+                image.setRGB(i, j, ramp(t));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Écrit l'image en fausses couleurs et le fichier CSV des valeurs brutes.
+     *
+     * @param png fichier PNG de sortie
+     * @param csv fichier CSV de sortie (x,y,intersections,ombres,nanos)
+     * @throws IOException si l'écriture échoue
+     */
+    public void write(Path png, Path csv) throws IOException {
+        ImageIO.write(toFalseColor(), "png", png.toFile());
+
+        try (BufferedWriter out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("x,y,intersectionTests,shadowRays,nanos\n");
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    int k = j * width + i;
+                    out.write(i + "," + j + "," + intersectionTests[k] + ","
+                            + shadowRays[k] + "," + nanos[k] + "\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Palette bleu, cyan, vert, jaune, rouge pour t dans [0, 1].
+     */
+    static int ramp(double t) {
+        t = Math.max(0.0, Math.min(1.0, t));
+        double r = clamp01(Math.min(4.0 * t - 1.5, -4.0 * t + 4.5));
+        double g = clamp01(Math.min(4.0 * t - 0.5, -4.0 * t + 3.5));
+        double b = clamp01(Math.min(4.0 * t + 0.5, -4.0 * t + 2.5));
+        return new Color(r, g, b).toRGB();
+    }
+
+    private static double clamp01(double v) {
+        return Math.max(0.0, Math.min(1.0, v));
+    }
+}
@@ -0,0 +1,377 @@
+package raytracer.imaging;
+
+import raytracer.core.Intersection;
+import raytracer.core.RayTracer;
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+import raytracer.core.ShadowBatch;
+import raytracer.core.TraceStats;
+import raytracer.diagnostics.ShadowBatchEvent;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Shape;
+import raytracer.lighting.AbstractLight;
+
+import jdk.jfr.EventType;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Renderer en deux passes (rendu différé).
+ *
+ * Pour chaque tuile :
+ *  1. les rayons primaires sont tracés et leurs intersections rangées dans
+ *     un GBuffer ;
+ *  2. l'éclairage est calculé lumière par lumière sur toute la tuile : les
+ *     requêtes d'ombre d'une lumière sont collectées dans un ShadowBatch,
+ *     triées par code de Morton puis tracées à la suite.
+ *
+ * Le G-buffer est conservé entre deux appels : si seules les lumières ou
+ * la couleur ambiante ont changé (même empreinte SceneDigest.ofGeometry),
+ * la première passe est sautée. Avec un GBufferStore, le G-buffer est en
+ * outre enregistré sur le disque et relu lors d'une exécution ultérieure
+ * (mode de ré-éclairage).
+ *
+ * Le résultat est celui de Scene.computeColor : mêmes contributions,
+ * sommées dans l'ordre des lumières, et un rayon d'ombre n'est lancé que
+ * si la lumière contribue et si le pixel 8 bits n'est pas déjà déterminé.
+ */
+public class DeferredRenderer {
+
+    /**
+     * Type de l'événement ShadowBatch, consulté avant de créer un
+     * événement : un lot est tracé par lumière et par tuile.
+     */
+    private static final EventType SHADOW_BATCH = EventType.getEventType(ShadowBatchEvent.class);
+
+    /** Côté des tuiles en pixels. */
+    private final int tileSize;
+
+    /** Répertoire des G-buffers enregistrés, ou null. */
+    private final GBufferStore store;
+
+    /** G-buffer du dernier rendu. */
+    private GBuffer gbuffer;
+
+    /** Empreinte de la géométrie et de la caméra du G-buffer. */
+    private String geometryKey;
+
+    /** Nombre de rayons primaires tracés lors du dernier rendu. */
+    private long lastPrimaryRays;
+
+    /** Nombre de lots de rayons d'ombre tracés lors du dernier rendu. */
+    private long lastShadowBatches;
+
+    /** Nombre de rayons d'ombre tracés en lot lors du dernier rendu. */
+    private long lastShadowRays;
+
+    /** Nombre de ces rayons bloqués par une forme. */
+    private long lastOccludedShadowRays;
+
+    /**
+     * Construit un renderer différé.
+     *
+     * @param tileSize côté des tuiles en pixels
+     */
+    public DeferredRenderer(int tileSize) {
+        this(tileSize, null);
+    }
+
+    /**
+     * Construit un renderer différé qui enregistre ses G-buffers dans un
+     * répertoire et les relit d'une exécution à l'autre.
+     *
+     * @param tileSize côté des tuiles en pixels
+     * @param store répertoire des G-buffers, ou null
+     */
+    public DeferredRenderer(int tileSize, GBufferStore store) {
+        this.tileSize = tileSize;
+        this.store = store;
+    }
+
+    /**
+     * Rend la scène, en réutilisant le G-buffer du rendu précédent, ou à
+     * défaut celui du répertoire, si la géométrie et la caméra sont inchangées.
+     *
+     * @param scene scène à rendre
+     * @return image rendue
+     * @throws IllegalArgumentException si la largeur ou la hauteur est invalide
+     * @throws UncheckedIOException si le G-buffer ne peut pas être enregistré
+     */
+    public BufferedImage render(Scene scene) {
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                    "Scene width and height must be positive");
+        }
+
+        String key = SceneDigest.ofGeometry(scene);
+        boolean retrace = gbuffer == null || !key.equals(geometryKey);
+        if (retrace && store != null) {
+            Optional<GBuffer> stored = store.open(key);
+            if (stored.isPresent() && stored.get().getWidth() == width
+                    && stored.get().getHeight() == height) {
+                gbuffer = stored.get();
+                retrace = false;
+            }
+        }
+        RayTracer rayTracer = null;
+        Map<Shape, Integer> shapeIds = new IdentityHashMap<>();
+        Map<Shape, Integer> materialOf = new IdentityHashMap<>();
+        if (retrace) {
+            rayTracer = new RayTracer(scene);
+            List<Shape> shapes = scene.getShapes();
+            for (int s = 0; s < shapes.size(); s++) {
+                shapeIds.putIfAbsent(shapes.get(s), s);
+            }
+            double[] materials = materialTable(scene, materialOf);
+            try {
+                gbuffer = store != null
+                        ? store.create(key, width, height, materials)
+                        : new GBuffer(width, height, materials);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        int[] pixels = new int[width * height];
+        ShadowBatch batch = new ShadowBatch(tileSize * tileSize);
+        lastPrimaryRays = 0;
+        for (Tile tile : Tile.split(width, height, tileSize)) {
+            if (retrace) {
+                traceTile(scene, rayTracer, shapeIds, materialOf, tile);
+                lastPrimaryRays += tile.getPixelCount();
+            }
+            shadeTile(scene, tile, pixels, batch);
+        }
+        geometryKey = key;
+        lastShadowBatches = batch.getBatchCount();
+        lastShadowRays = batch.getRayCount();
+        lastOccludedShadowRays = batch.getOccludedCount();
+        if (retrace && store != null) {
+            try {
+                store.commit(key, gbuffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * Remplace le G-buffer courant, par exemple par un G-buffer relu depuis
+     * le disque. Le prochain rendu d'une scène de même empreinte le réutilise.
+     *
+     * @param gbuffer G-buffer à réutiliser
+     * @param geometryKey empreinte SceneDigest.ofGeometry de la scène correspondante
+     */
+    public void setGBuffer(GBuffer gbuffer, String geometryKey) {
+        this.gbuffer = gbuffer;
+        this.geometryKey = geometryKey;
+    }
+
+    /** @return G-buffer du dernier rendu, ou null */
+    public GBuffer getGBuffer() { return gbuffer; }
+
+    /** @return empreinte de la géométrie du G-buffer courant, ou null */
+    public String getGeometryKey() { return geometryKey; }
+
+    /** @return nombre de rayons primaires tracés lors du dernier rendu */
+    public long getLastPrimaryRays() { return lastPrimaryRays; }
+
+    /** @return nombre de lots de rayons d'ombre (une lumière, une tuile) du dernier rendu */
+    public long getLastShadowBatches() { return lastShadowBatches; }
+
+    /** @return nombre de rayons d'ombre tracés en lot lors du dernier rendu */
+    public long getLastShadowRays() { return lastShadowRays; }
+
+    /** @return nombre de ces rayons bloqués par une forme */
+    public long getLastOccludedShadowRays() { return lastOccludedShadowRays; }
+
+    /**
+     * Première passe : rayons primaires de la tuile vers le G-buffer.
+     */
+    private void traceTile(Scene scene, RayTracer rayTracer, Map<Shape, Integer> shapeIds,
+                           Map<Shape, Integer> materialOf, Tile tile) {
+        int width = scene.getWidth();
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                int k = j * width + i;
+                Optional<Intersection> hit = rayTracer.tracePrimary(i, j);
+                if (hit.isPresent()) {
+                    Shape shape = hit.get().getShape();
+                    gbuffer.set(k, hit.get(), shapeIds.get(shape), materialOf.get(shape));
+                } else {
+                    gbuffer.clear(k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Seconde passe : éclairage de la tuile lumière par lumière, les
+     * rayons d'ombre de chaque lumière étant tracés en un lot trié.
+     */
+    private void shadeTile(Scene scene, Tile tile, int[] pixels, ShadowBatch batch) {
+        int width = scene.getWidth();
+        int count = tile.getPixelCount();
+        List<Shape> shapes = scene.getShapes();
+        Point eye = scene.getCamera().getLookFrom();
+        Color ambient = scene.getAmbient();
+
+        Intersection[] hits = new Intersection[count];
+        Vector[] eyeDirs = new Vector[count];
+        int[] index = new int[count];
+        int n = 0;
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                int k = j * width + i;
+                if (!gbuffer.isHit(k)) {
+                    pixels[k] = 0;
+                    continue;
+                }
+                Point p = gbuffer.getPosition(k);
+                hits[n] = new Intersection(gbuffer.getT(k), p,
+                        shapes.get(gbuffer.getShapeId(k)), gbuffer.getNormal(k));
+                eyeDirs[n] = (Vector) eye.subtract(p).normalize();
+                index[n++] = k;
+            }
+        }
+
+        if (scene.getLightSamplingError() > 0.0) {
+            // l'échantillonnage des lumières reste évalué point par point
+            for (int h = 0; h < n; h++) {
+                pixels[index[h]] = scene.computeColor(hits[h]).toRGB();
+            }
+            return;
+        }
+
+        List<AbstractLight> lights = scene.getLights();
+        double[] lower = new double[3 * n];
+        double[] upper = new double[3 * n];
+        Color[] result = new Color[n];
+        for (int h = 0; h < n; h++) {
+            lower[3 * h] = upper[3 * h] = ambient.x;
+            lower[3 * h + 1] = upper[3 * h + 1] = ambient.y;
+            lower[3 * h + 2] = upper[3 * h + 2] = ambient.z;
+            result[h] = new Color(ambient.x, ambient.y, ambient.z);
+        }
+
+        // majorants : toutes les lumières visibles
+        for (AbstractLight light : lights) {
+            for (int h = 0; h < n; h++) {
+                Color c = hits[h].computeLambert(light).add(hits[h].computePhong(light, eyeDirs[h]));
+                upper[3 * h] += c.x;
+                upper[3 * h + 1] += c.y;
+                upper[3 * h + 2] += c.z;
+            }
+        }
+
+        long skipped = 0;
+        Color[] lambert = new Color[n];
+        Color[] phong = new Color[n];
+        boolean[] inShadow = new boolean[n];
+        for (AbstractLight light : lights) {
+            // collecte des requêtes de la lumière, tracées ensuite en un lot trié
+            batch.clear();
+            int lightSkipped = 0;
+            for (int h = 0; h < n; h++) {
+                lambert[h] = hits[h].computeLambert(light);
+                phong[h] = hits[h].computePhong(light, eyeDirs[h]);
+                double r = lambert[h].x + phong[h].x;
+                double g = lambert[h].y + phong[h].y;
+                double b = lambert[h].z + phong[h].z;
+                if (Math.max(r, Math.max(g, b)) <= 0.0 || Color.sameRGB(lower, upper, 3 * h)) {
+                    lightSkipped++;
+                    lambert[h] = null;
+                    continue;
+                }
+                batch.add(h, hits[h].getPoint());
+            }
+            skipped += lightSkipped;
+
+            ShadowBatchEvent event = null;
+            if (SHADOW_BATCH.isEnabled()) {
+                event = new ShadowBatchEvent();
+                event.begin();
+            }
+            int occluded = batch.trace(scene, light, inShadow);
+
+            for (int h = 0; h < n; h++) {
+                if (lambert[h] == null) {
+                    continue;
+                }
+                double r = lambert[h].x + phong[h].x;
+                double g = lambert[h].y + phong[h].y;
+                double b = lambert[h].z + phong[h].z;
+                if (inShadow[h]) {
+                    upper[3 * h] -= r;
+                    upper[3 * h + 1] -= g;
+                    upper[3 * h + 2] -= b;
+                } else {
+                    lower[3 * h] += r;
+                    lower[3 * h + 1] += g;
+                    lower[3 * h + 2] += b;
+                    result[h] = result[h].add(lambert[h]).add(phong[h]);
+                }
+            }
+
+            if (event != null && event.shouldCommit()) {
+                event.shadowRays = batch.size();
+                event.skipped = lightSkipped;
+                event.occluded = occluded;
+                event.lightCount = 1;
+                event.commit();
+            }
+        }
+
+        TraceStats stats = TraceStats.current();
+        if (stats != null) {
+            stats.skippedShadowRays += skipped;
+        }
+
+        for (int h = 0; h < n; h++) {
+            pixels[index[h]] = result[h].toRGB();
+        }
+    }
+
+    /**
+     * Construit la table des matériaux distincts de la scène et associe
+     * chaque forme (par identité) à l'indice de son matériau.
+     */
+    private static double[] materialTable(Scene scene, Map<Shape, Integer> materialOf) {
+        Map<List<Double>, Integer> ids = new HashMap<>();
+        List<Double> table = new ArrayList<>();
+        for (Shape shape : scene.getShapes()) {
+            List<Double> m = Arrays.asList(
+                    shape.getDiffuse().x, shape.getDiffuse().y, shape.getDiffuse().z,
+                    shape.getSpecular().x, shape.getSpecular().y, shape.getSpecular().z,
+                    shape.getShininess());
+            Integer id = ids.get(m);
+            if (id == null) {
+                id = ids.size();
+                ids.put(m, id);
+                table.addAll(m);
+            }
+            materialOf.put(shape, id);
+        }
+        double[] materials = new double[table.size()];
+        for (int k = 0; k < materials.length; k++) {
+            materials[k] = table.get(k);
+        }
+        return materials;
+    }
+}
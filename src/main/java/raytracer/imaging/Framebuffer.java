@@ -0,0 +1,321 @@
+package raytracer.imaging;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Image en cours de rendu, stockée hors du tas Java.
+ *
+ * Pour chaque pixel sont conservés :
+ *  - un tampon d'accumulation en float (r, g, b et poids cumulés), où
+ *    s'ajoutent les échantillons du suréchantillonnage ;
+ *  - la couleur finale sur 3 octets (r, g, b), écrite directement ou
+ *    obtenue par resolve à partir de l'accumulation.
+ *
+ * Les octets sont répartis dans des bandes de lignes, chacune dans un
+ * ByteBuffer direct ou projeté depuis un fichier temporaire (map) : la
+ * taille de l'image n'est limitée ni par le tas ni par la taille maximale
+ * d'un ByteBuffer, et le ramasse-miettes ne voit que quelques petits objets.
+ *
+ * Toutes les écritures sont absolues : des threads qui écrivent des tuiles
+ * disjointes n'ont besoin d'aucun verrou. Les lectures (encodeurs) doivent
+ * suivre la fin des écritures, par exemple la terminaison des tâches de
+ * rendu.
+ */
+public final class Framebuffer implements Closeable {
+
+    /** Octets d'accumulation par pixel : r, g, b et poids en float. */
+    static final int ACCUM_BYTES = 16;
+
+    /** Octets de couleur finale par pixel : r, g, b. */
+    static final int RGB_BYTES = 3;
+
+    /** Taille au-delà de laquelle create projette un fichier plutôt que la mémoire directe (256 Mo). */
+    public static final long DIRECT_LIMIT_BYTES = 256L << 20;
+
+    /** Taille maximale d'une bande de lignes (1 Go). */
+    private static final long BAND_BYTES = 1L << 30;
+
+    /** Largeur de l'image. */
+    private final int width;
+
+    /** Hauteur de l'image. */
+    private final int height;
+
+    /** Nombre de lignes par bande. */
+    private final int bandRows;
+
+    /** Bandes de lignes : accumulation puis couleur finale de chaque ligne de la bande. */
+    private final ByteBuffer[] bands;
+
+    /** Fichier projeté, fermé et supprimé par close ; null en mémoire directe. */
+    private final FileChannel channel;
+
+    private Framebuffer(int width, int height, FileChannel channel) throws IOException {
+        checkSize(width, height);
+        this.width = width;
+        this.height = height;
+        this.channel = channel;
+
+        long rowBytes = (long) width * (ACCUM_BYTES + RGB_BYTES);
+        this.bandRows = (int) Math.max(1, Math.min(height, BAND_BYTES / rowBytes));
+        this.bands = new ByteBuffer[(height + bandRows - 1) / bandRows];
+        for (int b = 0; b < bands.length; b++) {
+            int rows = Math.min(bandRows, height - b * bandRows);
+            long size = rows * rowBytes;
+            ByteBuffer band = channel == null
+                    ? ByteBuffer.allocateDirect((int) size)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, b * bandRows * rowBytes, size);
+            bands[b] = band.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Dimensions d'image invalides : " + width + "x" + height);
+        }
+        if ((long) width * (ACCUM_BYTES + RGB_BYTES) > BAND_BYTES) {
+            throw new IllegalArgumentException("Largeur d'image trop grande : " + width);
+        }
+    }
+
+    /**
+     * Crée une image noire en mémoire directe.
+     *
+     * @param width largeur
+     * @param height hauteur
+     * @return image hors tas
+     * @throws IllegalArgumentException si les dimensions sont invalides
+     */
+    public static Framebuffer allocate(int width, int height) {
+        try {
+            return new Framebuffer(width, height, null);
+        } catch (IOException e) {
+            // aucune entrée-sortie en mémoire directe
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Crée une image noire projetée depuis un fichier temporaire du
+     * répertoire donné. Le fichier est supprimé au plus tard par close
+     * (dès l'ouverture sous Linux, la projection restant valide) ; les pages
+     * peuvent être évincées par le système, si bien que l'image peut
+     * dépasser la mémoire disponible.
+     *
+     * @param directory répertoire du fichier temporaire
+     * @param width largeur
+     * @param height hauteur
+     * @return image hors tas, à fermer
+     * @throws IOException si le fichier ne peut pas être créé
+     * @throws IllegalArgumentException si les dimensions sont invalides
+     */
+    public static Framebuffer map(Path directory, int width, int height) throws IOException {
+        checkSize(width, height);
+        Path file = Files.createTempFile(Files.createDirectories(directory), "framebuffer_", ".tmp");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        try {
+            return new Framebuffer(width, height, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crée une image en mémoire directe, ou projetée depuis un fichier
+     * temporaire du répertoire donné si elle dépasse DIRECT_LIMIT_BYTES.
+     *
+     * @param directory répertoire du fichier temporaire éventuel
+     * @param width largeur
+     * @param height hauteur
+     * @return image hors tas, à fermer
+     * @throws IOException si le fichier ne peut pas être créé
+     * @throws IllegalArgumentException si les dimensions sont invalides
+     */
+    public static Framebuffer create(Path directory, int width, int height) throws IOException {
+        checkSize(width, height);
+        long size = (long) width * height * (ACCUM_BYTES + RGB_BYTES);
+        return size > DIRECT_LIMIT_BYTES ? map(directory, width, height) : allocate(width, height);
+    }
+
+    /** @return largeur de l'image */
+    public int getWidth() { return width; }
+
+    /** @return hauteur de l'image */
+    public int getHeight() { return height; }
+
+    private ByteBuffer band(int y) {
+        return bands[y / bandRows];
+    }
+
+    /** Position du tampon d'accumulation du pixel dans sa bande. */
+    private int accumAt(int x, int y) {
+        int row = y % bandRows;
+        return row * width * (ACCUM_BYTES + RGB_BYTES) + ACCUM_BYTES * x;
+    }
+
+    /** Position de la couleur finale du pixel dans sa bande. */
+    private int rgbAt(int x, int y) {
+        int row = y % bandRows;
+        return row * width * (ACCUM_BYTES + RGB_BYTES) + ACCUM_BYTES * width + RGB_BYTES * x;
+    }
+
+    /**
+     * Ajoute un échantillon pondéré à l'accumulation d'un pixel.
+     *
+     * @param x colonne
+     * @param y ligne
+     * @param r composante rouge
+     * @param g composante verte
+     * @param b composante bleue
+     * @param weight poids de l'échantillon
+     */
+    public void add(int x, int y, float r, float g, float b, float weight) {
+        ByteBuffer band = band(y);
+        int o = accumAt(x, y);
+        band.putFloat(o, band.getFloat(o) + r * weight);
+        band.putFloat(o + 4, band.getFloat(o + 4) + g * weight);
+        band.putFloat(o + 8, band.getFloat(o + 8) + b * weight);
+        band.putFloat(o + 12, band.getFloat(o + 12) + weight);
+    }
+
+    /**
+     * Lit la couleur accumulée d'un pixel, moyenne pondérée des échantillons.
+     *
+     * @param x colonne
+     * @param y ligne
+     * @param out tableau recevant r, g, b à partir de offset ; noir sans échantillon
+     * @param offset position dans out
+     */
+    public void getAccumulated(int x, int y, float[] out, int offset) {
+        ByteBuffer band = band(y);
+        int o = accumAt(x, y);
+        float weight = band.getFloat(o + 12);
+        float scale = weight > 0f ? 1f / weight : 0f;
+        out[offset] = band.getFloat(o) * scale;
+        out[offset + 1] = band.getFloat(o + 4) * scale;
+        out[offset + 2] = band.getFloat(o + 8) * scale;
+    }
+
+    /**
+     * Convertit l'accumulation d'une zone en couleurs finales 8 bits, avec
+     * le même écrêtage et le même arrondi que FloatRayTracer.
+     *
+     * @param x colonne du coin supérieur gauche
+     * @param y ligne du coin supérieur gauche
+     * @param w largeur de la zone
+     * @param h hauteur de la zone
+     */
+    public void resolve(int x, int y, int w, int h) {
+        float[] rgb = new float[3];
+        for (int j = y; j < y + h; j++) {
+            for (int i = x; i < x + w; i++) {
+                getAccumulated(i, j, rgb, 0);
+                int r = Math.round(Math.min(1f, Math.max(0f, rgb[0])) * 255f);
+                int g = Math.round(Math.min(1f, Math.max(0f, rgb[1])) * 255f);
+                int b = Math.round(Math.min(1f, Math.max(0f, rgb[2])) * 255f);
+                setRGB(i, j, (r << 16) | (g << 8) | b);
+            }
+        }
+    }
+
+    /**
+     * Écrit la couleur finale d'un pixel.
+     *
+     * @param x colonne
+     * @param y ligne
+     * @param rgb couleur au format 0xRRGGBB
+     */
+    public void setRGB(int x, int y, int rgb) {
+        ByteBuffer band = band(y);
+        int o = rgbAt(x, y);
+        band.put(o, (byte) (rgb >> 16));
+        band.put(o + 1, (byte) (rgb >> 8));
+        band.put(o + 2, (byte) rgb);
+    }
+
+    /**
+     * Écrit les couleurs finales d'une zone, rangées ligne par ligne.
+     *
+     * @param x colonne du coin supérieur gauche
+     * @param y ligne du coin supérieur gauche
+     * @param w largeur de la zone
+     * @param h hauteur de la zone
+     * @param pixels w * h couleurs 0xRRGGBB
+     */
+    public void setRGB(int x, int y, int w, int h, int[] pixels) {
+        int k = 0;
+        for (int j = y; j < y + h; j++) {
+            for (int i = x; i < x + w; i++) {
+                setRGB(i, j, pixels[k++]);
+            }
+        }
+    }
+
+    /**
+     * Lit la couleur finale d'un pixel.
+     *
+     * @param x colonne
+     * @param y ligne
+     * @return couleur au format 0xRRGGBB
+     */
+    public int getRGB(int x, int y) {
+        ByteBuffer band = band(y);
+        int o = rgbAt(x, y);
+        return (band.get(o) & 0xff) << 16 | (band.get(o + 1) & 0xff) << 8 | (band.get(o + 2) & 0xff);
+    }
+
+    /**
+     * Retourne une vue en lecture seule des couleurs finales d'une ligne :
+     * 3 * largeur octets r, g, b, sans copie. Utilisée par les encodeurs.
+     *
+     * @param y ligne
+     * @return vue positionnée au début de la ligne
+     */
+    public ByteBuffer row(int y) {
+        ByteBuffer view = band(y).asReadOnlyBuffer();
+        int o = rgbAt(0, y);
+        view.limit(o + RGB_BYTES * width).position(o);
+        return view;
+    }
+
+    /**
+     * Copie l'image dans une BufferedImage, pour les appelants qui en ont
+     * besoin (petites images).
+     *
+     * @return copie sur le tas
+     */
+    public BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] line = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                line[x] = getRGB(x, y);
+            }
+            image.setRGB(0, y, width, 1, line, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Libère le fichier projeté éventuel, qui est supprimé. L'image ne doit
+     * plus être utilisée ensuite.
+     *
+     * @throws IOException si la fermeture échoue
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
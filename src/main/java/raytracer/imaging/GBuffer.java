@@ -0,0 +1,307 @@
+package raytracer.imaging;
+
+import raytracer.core.Intersection;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tampon géométrique (G-buffer) d'une image : résultat des rayons primaires,
+ * conservé pour calculer l'éclairage dans une seconde passe.
+ *
+ * Pour chaque pixel sont stockés, dans des tableaux primitifs :
+ *  - le paramètre t du rayon primaire ;
+ *  - l'indice de la forme touchée dans la liste de la scène (MISS sinon) ;
+ *  - le point d'impact et la normale (x, y, z) ;
+ *  - l'indice du matériau dans la table des matériaux.
+ *
+ * La table des matériaux contient MATERIAL_STRIDE valeurs par matériau :
+ * diffuse r, g, b, spéculaire r, g, b, brillance.
+ *
+ * Les tableaux sont des vues d'un unique ByteBuffer, en mémoire ou projeté
+ * depuis un fichier (create / open) : un G-buffer relu depuis le disque
+ * est utilisé sans copie. Organisation du tampon (petit-boutiste) :
+ *
+ *   en-tête    : MAGIC, FORMAT_VERSION, largeur, hauteur, nombre de valeurs
+ *                de la table des matériaux, puis 4 octets de remplissage
+ *   matériaux  : double x nombre de valeurs
+ *   t          : double x pixels
+ *   positions  : double x 3 x pixels
+ *   normales   : double x 3 x pixels
+ *   formes     : int x pixels
+ *   matériaux  : int x pixels
+ */
+public class GBuffer {
+
+    /** Indice de forme des pixels dont le rayon primaire ne touche rien. */
+    public static final int MISS = -1;
+
+    /** Nombre de valeurs par matériau dans la table. */
+    public static final int MATERIAL_STRIDE = 7;
+
+    /** Signature des fichiers G-buffer ("GBUF"). */
+    private static final int MAGIC = 0x47425546;
+
+    /** Version du format de fichier. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Taille de l'en-tête en octets. */
+    private static final int HEADER_BYTES = 24;
+
+    /** Largeur de l'image. */
+    private final int width;
+
+    /** Hauteur de l'image. */
+    private final int height;
+
+    /** Tampon contenant l'en-tête et toutes les données. */
+    private final ByteBuffer buffer;
+
+    /** Table des matériaux. */
+    private final DoubleBuffer materials;
+
+    /** Paramètre t du rayon primaire par pixel. */
+    private final DoubleBuffer t;
+
+    /** Points d'impact (x, y, z) par pixel. */
+    private final DoubleBuffer position;
+
+    /** Normales (x, y, z) par pixel. */
+    private final DoubleBuffer normal;
+
+    /** Indice de la forme touchée par pixel. */
+    private final IntBuffer shapeId;
+
+    /** Indice de matériau par pixel. */
+    private final IntBuffer material;
+
+    /**
+     * Construit un G-buffer vide en mémoire (aucun pixel touché).
+     *
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @param materials table des matériaux, MATERIAL_STRIDE valeurs par matériau
+     */
+    public GBuffer(int width, int height, double[] materials) {
+        this(initialize(ByteBuffer.allocate(checkedSize(width, height, materials.length)),
+                width, height, materials));
+    }
+
+    /**
+     * Construit les vues d'un tampon déjà initialisé.
+     */
+    private GBuffer(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.width = buffer.getInt(8);
+        this.height = buffer.getInt(12);
+        int materialValues = buffer.getInt(16);
+        int pixels = width * height;
+
+        int offset = HEADER_BYTES;
+        this.materials = doubles(offset, materialValues);
+        offset += 8 * materialValues;
+        this.t = doubles(offset, pixels);
+        offset += 8 * pixels;
+        this.position = doubles(offset, 3 * pixels);
+        offset += 24 * pixels;
+        this.normal = doubles(offset, 3 * pixels);
+        offset += 24 * pixels;
+        this.shapeId = ints(offset, pixels);
+        offset += 4 * pixels;
+        this.material = ints(offset, pixels);
+    }
+
+    /**
+     * Crée un G-buffer vide projeté en mémoire depuis un fichier, qui est
+     * créé ou écrasé. Les écritures sont reportées dans le fichier.
+     *
+     * @param file fichier de destination
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @param materials table des matériaux
+     * @return G-buffer projeté
+     * @throws IOException si le fichier ne peut pas être créé
+     */
+    public static GBuffer create(Path file, int width, int height, double[] materials)
+            throws IOException {
+        long size = checkedSize(width, height, materials.length);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new GBuffer(initialize(mapped, width, height, materials));
+        }
+    }
+
+    /**
+     * Projette en mémoire un G-buffer enregistré par create, en lecture seule.
+     *
+     * @param file fichier G-buffer
+     * @return G-buffer projeté
+     * @throws IOException si le fichier est illisible, tronqué ou d'un autre format
+     */
+    public static GBuffer open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("G-buffer tronqué : " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Format de G-buffer inconnu : " + file);
+            }
+            int width = mapped.getInt(8);
+            int height = mapped.getInt(12);
+            int materialValues = mapped.getInt(16);
+            if (width <= 0 || height <= 0 || materialValues < 0
+                    || size != expectedSize(width, height, materialValues)) {
+                throw new IOException("G-buffer incohérent : " + file);
+            }
+            return new GBuffer(mapped);
+        }
+    }
+
+    /**
+     * Écrit sur le disque les modifications d'un G-buffer projeté.
+     * Sans effet pour un G-buffer en mémoire.
+     */
+    public void force() {
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    /** @return largeur de l'image */
+    public int getWidth() { return width; }
+
+    /** @return hauteur de l'image */
+    public int getHeight() { return height; }
+
+    /** @return copie de la table des matériaux */
+    public double[] getMaterials() {
+        double[] copy = new double[materials.capacity()];
+        for (int m = 0; m < copy.length; m++) {
+            copy[m] = materials.get(m);
+        }
+        return copy;
+    }
+
+    /**
+     * Enregistre l'intersection primaire d'un pixel.
+     *
+     * @param k indice du pixel (j * largeur + i)
+     * @param hit intersection la plus proche
+     * @param shape indice de la forme touchée dans la scène
+     * @param materialIndex indice de son matériau dans la table
+     */
+    public void set(int k, Intersection hit, int shape, int materialIndex) {
+        Point p = hit.getPoint();
+        Vector n = hit.getNormal();
+        t.put(k, hit.getT());
+        shapeId.put(k, shape);
+        material.put(k, materialIndex);
+        position.put(3 * k, p.x);
+        position.put(3 * k + 1, p.y);
+        position.put(3 * k + 2, p.z);
+        normal.put(3 * k, n.x);
+        normal.put(3 * k + 1, n.y);
+        normal.put(3 * k + 2, n.z);
+    }
+
+    /**
+     * Marque un pixel comme non touché.
+     *
+     * @param k indice du pixel
+     */
+    public void clear(int k) {
+        shapeId.put(k, MISS);
+    }
+
+    /** @return vrai si le rayon primaire du pixel k touche une forme */
+    public boolean isHit(int k) { return shapeId.get(k) != MISS; }
+
+    /** @return paramètre t du rayon primaire du pixel k */
+    public double getT(int k) { return t.get(k); }
+
+    /** @return indice de la forme touchée au pixel k, ou MISS */
+    public int getShapeId(int k) { return shapeId.get(k); }
+
+    /** @return indice du matériau au pixel k */
+    public int getMaterial(int k) { return material.get(k); }
+
+    /** @return point d'impact du pixel k */
+    public Point getPosition(int k) {
+        return new Point(position.get(3 * k), position.get(3 * k + 1), position.get(3 * k + 2));
+    }
+
+    /** @return normale au point d'impact du pixel k */
+    public Vector getNormal(int k) {
+        return new Vector(normal.get(3 * k), normal.get(3 * k + 1), normal.get(3 * k + 2));
+    }
+
+    /**
+     * Écrit l'en-tête et la table des matériaux et marque tous les pixels
+     * comme non touchés.
+     */
+    private static ByteBuffer initialize(ByteBuffer buffer, int width, int height, double[] materials) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putInt(8, width);
+        buffer.putInt(12, height);
+        buffer.putInt(16, materials.length);
+        for (int m = 0; m < materials.length; m++) {
+            buffer.putDouble(HEADER_BYTES + 8 * m, materials[m]);
+        }
+        int pixels = width * height;
+        int shapeOffset = HEADER_BYTES + 8 * materials.length + 56 * pixels;
+        for (int k = 0; k < pixels; k++) {
+            buffer.putInt(shapeOffset + 4 * k, MISS);
+        }
+        return buffer;
+    }
+
+    /**
+     * Taille totale du tampon.
+     *
+     * @throws IllegalArgumentException si les dimensions sont invalides ou
+     *         si le tampon dépasse 2 Go
+     */
+    private static int checkedSize(int width, int height, int materialValues) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Les dimensions du G-buffer doivent être positives");
+        }
+        long size = expectedSize(width, height, materialValues);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("G-buffer trop grand : " + width + "x" + height);
+        }
+        return (int) size;
+    }
+
+    private static long expectedSize(int width, int height, int materialValues) {
+        return HEADER_BYTES + 8L * materialValues + 64L * width * height;
+    }
+
+    private DoubleBuffer doubles(int offset, int count) {
+        return slice(offset, 8 * count).asDoubleBuffer();
+    }
+
+    private IntBuffer ints(int offset, int count) {
+        return slice(offset, 4 * count).asIntBuffer();
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,165 @@
+package raytracer.imaging;
+
+import raytracer.core.SceneDigest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Répertoire de G-buffers projetés en mémoire, indexés par l'empreinte de la
+ * géométrie et de la caméra (SceneDigest.ofGeometry).
+ *
+ * Il permet de ré-éclairer une scène d'une exécution à l'autre : tant que
+ * seules les lignes ambient, directional et point changent, le G-buffer du
+ * premier rendu est relu sans relancer les rayons primaires. Comme pour
+ * RenderCache, la date de modification sert de date de dernier accès et
+ * seules les maxEntries entrées les plus récentes sont conservées.
+ */
+public class GBufferStore {
+
+    /** Répertoire par défaut, sous le dossier des rendus. */
+    public static final String DEFAULT_DIR = ImageRenderer.OUTPUT_DIR + "/.gbuffer";
+
+    /** Nombre d'entrées conservées par défaut. */
+    public static final int DEFAULT_MAX_ENTRIES = 4;
+
+    /** Extension des entrées. */
+    private static final String EXTENSION = ".gbuf";
+
+    /** Répertoire contenant les entrées. */
+    private final Path directory;
+
+    /** Nombre maximal d'entrées conservées. */
+    private final int maxEntries;
+
+    /**
+     * Construit un répertoire de G-buffers.
+     *
+     * @param directory répertoire des entrées (créé si nécessaire)
+     * @param maxEntries nombre maximal d'entrées conservées
+     * @throws IOException si le répertoire ne peut pas être créé
+     */
+    public GBufferStore(Path directory, int maxEntries) throws IOException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Le nombre d'entrées doit être positif");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Projette le G-buffer enregistré pour une géométrie, s'il existe.
+     * Une entrée illisible ou d'un autre format est supprimée.
+     *
+     * @param geometryKey empreinte SceneDigest.ofGeometry de la scène
+     * @return G-buffer en lecture seule, s'il existe
+     */
+    public Optional<GBuffer> open(String geometryKey) {
+        Path entry = entryPath(geometryKey);
+        if (!Files.isRegularFile(entry)) {
+            return Optional.empty();
+        }
+        try {
+            GBuffer gbuffer = GBuffer.open(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(gbuffer);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(entry);
+            } catch (IOException ignored) {
+                // entrée déjà supprimée ou verrouillée
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Crée un G-buffer vide projeté dans un fichier temporaire du répertoire.
+     * Il devient visible par open après l'appel à commit.
+     *
+     * @param geometryKey empreinte de la scène
+     * @param width largeur de l'image
+     * @param height hauteur de l'image
+     * @param materials table des matériaux
+     * @return G-buffer projeté en écriture
+     * @throws IOException si le fichier ne peut pas être créé
+     */
+    public GBuffer create(String geometryKey, int width, int height, double[] materials)
+            throws IOException {
+        return GBuffer.create(tempPath(geometryKey), width, height, materials);
+    }
+
+    /**
+     * Écrit un G-buffer créé par create sur le disque, le publie de façon
+     * atomique puis supprime les entrées les moins récemment utilisées.
+     *
+     * @param geometryKey empreinte de la scène
+     * @param gbuffer G-buffer rempli
+     * @throws IOException si la publication échoue
+     */
+    public void commit(String geometryKey, GBuffer gbuffer) throws IOException {
+        gbuffer.force();
+        Files.move(tempPath(geometryKey), entryPath(geometryKey),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    /**
+     * @return nombre d'entrées présentes
+     * @throws IOException si le répertoire ne peut pas être lu
+     */
+    public int size() throws IOException {
+        return entries().size();
+    }
+
+    /**
+     * Supprime les entrées les plus anciennes au-delà de maxEntries.
+     */
+    private void evict() throws IOException {
+        List<Path> entries = entries();
+        entries.sort(Comparator.comparing(GBufferStore::lastModified).reversed());
+        for (int k = maxEntries; k < entries.size(); k++) {
+            Files.deleteIfExists(entries.get(k));
+        }
+    }
+
+    private List<Path> entries() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> list = new ArrayList<>();
+            files.filter(p -> p.getFileName().toString().endsWith(EXTENSION)).forEach(list::add);
+            return list;
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Le nom d'une entrée dépend aussi de la version du moteur : un G-buffer
+     * produit par une autre version n'est pas réutilisé.
+     */
+    private Path entryPath(String geometryKey) {
+        return directory.resolve(fileName(geometryKey) + EXTENSION);
+    }
+
+    private Path tempPath(String geometryKey) {
+        return directory.resolve(fileName(geometryKey) + ".tmp");
+    }
+
+    private static String fileName(String geometryKey) {
+        return SceneDigest.sha256("gbuffer-v" + ImageRenderer.VERSION + ":" + geometryKey);
+    }
+}
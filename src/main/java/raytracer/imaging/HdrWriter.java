@@ -0,0 +1,193 @@
+package raytracer.imaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encodeurs d'images à grande dynamique (PFM et Radiance RGBE), lisant les
+ * couleurs accumulées d'un Framebuffer sans écrêtage ni quantification.
+ *
+ * Les lignes sont converties une à une dans un ByteBuffer direct puis
+ * écrites sur un FileChannel : l'image n'est jamais copiée sur le tas.
+ */
+public final class HdrWriter {
+
+    /** Largeurs de ligne pour lesquelles RGBE utilise le codage par plages. */
+    private static final int RLE_MIN_WIDTH = 8;
+    private static final int RLE_MAX_WIDTH = 0x7fff;
+
+    /** Longueur maximale d'une plage ou d'une suite littérale RGBE. */
+    private static final int RLE_MAX_RUN = 127;
+
+    private HdrWriter() {
+    }
+
+    /**
+     * Écrit une image dans le format indiqué.
+     *
+     * @param image image dont les couleurs accumulées sont écrites
+     * @param file fichier de destination, créé ou écrasé
+     * @param format PFM ou RGBE
+     * @throws IOException en cas d'erreur d'écriture
+     * @throws IllegalArgumentException si le format n'est pas à grande dynamique
+     */
+    public static void write(Framebuffer image, Path file, OutputFormat format) throws IOException {
+        switch (format) {
+            case PFM:  writePfm(image, file); break;
+            case RGBE: writeRgbe(image, file); break;
+            default:
+                throw new IllegalArgumentException("Format sans grande dynamique : " + format);
+        }
+    }
+
+    /**
+     * Écrit une image au format Portable Float Map couleur : en-tête
+     * texte, puis trois float petit-boutistes par pixel, de la ligne du bas
+     * vers celle du haut.
+     *
+     * @param image image dont les couleurs accumulées sont écrites
+     * @param file fichier de destination, créé ou écrasé
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void writePfm(Framebuffer image, Path file) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        try (FileChannel out = open(file)) {
+            // échelle négative : données petit-boutistes
+            writeFully(out, header("PF\n" + width + " " + height + "\n-1.0\n"));
+
+            ByteBuffer row = ByteBuffer.allocateDirect(12 * width).order(ByteOrder.LITTLE_ENDIAN);
+            float[] rgb = new float[3];
+            for (int y = height - 1; y >= 0; y--) {
+                row.clear();
+                for (int x = 0; x < width; x++) {
+                    image.getAccumulated(x, y, rgb, 0);
+                    row.putFloat(rgb[0]).putFloat(rgb[1]).putFloat(rgb[2]);
+                }
+                row.flip();
+                writeFully(out, row);
+            }
+        }
+    }
+
+    /**
+     * Écrit une image au format Radiance RGBE, de la ligne du haut vers
+     * celle du bas. Les lignes de 8 à 32767 pixels utilisent le codage par
+     * plages de chaque composante ; les autres sont écrites à plat.
+     *
+     * @param image image dont les couleurs accumulées sont écrites
+     * @param file fichier de destination, créé ou écrasé
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void writeRgbe(Framebuffer image, Path file) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean rle = width >= RLE_MIN_WIDTH && width <= RLE_MAX_WIDTH;
+        try (FileChannel out = open(file)) {
+            writeFully(out, header("#?RADIANCE\nFORMAT=32-bit_rle_rgbe\n\n-Y " + height + " +X " + width + "\n"));
+
+            byte[] pixels = new byte[4 * width];
+            byte[] component = new byte[width];
+            // au pire une marque par octet littéral, plus l'en-tête de ligne
+            ByteBuffer row = ByteBuffer.allocateDirect(4 + 8 * width);
+            float[] rgb = new float[3];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    image.getAccumulated(x, y, rgb, 0);
+                    toRgbe(rgb[0], rgb[1], rgb[2], pixels, 4 * x);
+                }
+                row.clear();
+                if (rle) {
+                    row.put((byte) 2).put((byte) 2).put((byte) (width >> 8)).put((byte) width);
+                    for (int c = 0; c < 4; c++) {
+                        for (int x = 0; x < width; x++) {
+                            component[x] = pixels[4 * x + c];
+                        }
+                        encodeRuns(component, row);
+                    }
+                } else {
+                    row.put(pixels);
+                }
+                row.flip();
+                writeFully(out, row);
+            }
+        }
+    }
+
+    /**
+     * Convertit une couleur en mantisses 8 bits et exposant commun : la
+     * plus grande composante v s'écrit m * 2^e avec m dans [0.5, 1[, et
+     * chaque composante est multipliée par 256 / 2^e. Les composantes
+     * négatives sont ramenées à 0.
+     */
+    static void toRgbe(float r, float g, float b, byte[] out, int o) {
+        float v = Math.max(r, Math.max(g, b));
+        if (!(v >= 1e-32f) || Float.isInfinite(v)) {
+            out[o] = out[o + 1] = out[o + 2] = out[o + 3] = 0;
+            return;
+        }
+        int e = Math.getExponent(v) + 1;
+        float scale = Math.scalb(256f, -e);
+        out[o] = (byte) (int) (Math.max(0f, r) * scale);
+        out[o + 1] = (byte) (int) (Math.max(0f, g) * scale);
+        out[o + 2] = (byte) (int) (Math.max(0f, b) * scale);
+        out[o + 3] = (byte) (e + 128);
+    }
+
+    /**
+     * Code une composante d'une ligne par plages : un octet 128 + n suivi
+     * de la valeur répétée n fois (n &gt; 2), ou un octet n suivi de n
+     * valeurs littérales.
+     */
+    static void encodeRuns(byte[] data, ByteBuffer out) {
+        int x = 0;
+        while (x < data.length) {
+            // recherche de la prochaine plage d'au moins 3 valeurs égales
+            int runStart = x;
+            int runLength = 0;
+            while (runStart < data.length) {
+                runLength = 1;
+                while (runLength < RLE_MAX_RUN && runStart + runLength < data.length
+                        && data[runStart + runLength] == data[runStart]) {
+                    runLength++;
+                }
+                if (runLength >= 3) {
+                    break;
+                }
+                runStart += runLength;
+            }
+            // valeurs littérales précédant la plage
+            while (x < runStart) {
+                int n = Math.min(RLE_MAX_RUN, runStart - x);
+                out.put((byte) n);
+                out.put(data, x, n);
+                x += n;
+            }
+            if (runStart < data.length) {
+                out.put((byte) (128 + runLength));
+                out.put(data[runStart]);
+                x = runStart + runLength;
+            }
+        }
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private static ByteBuffer header(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
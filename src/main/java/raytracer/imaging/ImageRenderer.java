@@ -1,78 +1,597 @@
 package raytracer.imaging;
 
+import raytracer.core.FloatRayTracer;
+import raytracer.core.Precision;
 import raytracer.core.RayTracer;
 import raytracer.core.Scene;
+import raytracer.core.TraceStats;
+import raytracer.diagnostics.PngEncodeEvent;
+import raytracer.diagnostics.TileRenderEvent;
 
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Classe chargée de générer l'image finale à partir d'une scène.
  *
- * L'image est produite en parcourant chaque pixel de l'image et en
- * demandant au RayTracer la couleur correspondante. Une fois le rendu
- * terminé, l'image est écrite dans un fichier PNG.
+ * L'image est découpée en tuiles ; chaque pixel de chaque tuile est
+ * obtenu en demandant au RayTracer la couleur correspondante. Les tuiles
+ * sont parcourues dans un ordre TileOrder et distribuées entre threads par
+ * segments contigus (TileScheduler). Elles sont écrites dans un
+ * Framebuffer hors du tas, puis l'image est encodée en PNG directement
+ * depuis celui-ci (PngWriter).
  */
 public class ImageRenderer {
 
+    /** Répertoire, relatif au dossier de lancement, où sont écrits les rendus. */
+    public static final String OUTPUT_DIR = "images_gen";
+
+    /**
+     * Version du moteur de rendu, à incrémenter dès qu'une modification
+     * change les pixels produits pour une même scène (invalide le cache).
+     */
+    public static final int VERSION = 1;
+
+    /** Pixels sondés par côté de tuile lors de l'estimation des coûts (ordre COST). */
+    static final int COST_PROBES = 4;
+
     /** Scène à rendre. */
     private final Scene scene;
 
     /** Traceur de rayons utilisé pour calculer la couleur de chaque pixel. */
     private final RayTracer rayTracer;
 
+    /** Traceur simple précision, ou null si le rendu se fait en double. */
+    private final FloatRayTracer floatTracer;
+
+    /** Cache disque des rendus, ou null s'il est désactivé. */
+    private RenderCache cache;
+
+    /** Indique si le dernier appel à render() a été servi par le cache. */
+    private boolean cacheHit;
+
+    /** Carte de coût à remplir pendant le rendu, ou null. */
+    private CostHeatmap heatmap;
+
+    /** Indique si le rendu se fait en deux passes avec un G-buffer. */
+    private boolean deferred;
+
+    /** Nombre d'échantillons par côté de pixel (suréchantillonnage). */
+    private int samples = 1;
+
+    /** Niveau de compression des PNG écrits. */
+    private int pngLevel = PngWriter.DEFAULT_LEVEL;
+
+    /** Nombre de threads de rendu. */
+    private int threads = 1;
+
+    /** Ordre de rendu des tuiles. */
+    private TileOrder tileOrder = TileOrder.ROW_MAJOR;
+
     /**
      * Construit un renderer associé à une scène donnée.
      *
      * @param scene scène à rendre
      */
     public ImageRenderer(Scene scene) {
+        this(scene, Precision.DOUBLE);
+    }
+
+    /**
+     * Construit un renderer associé à une scène et à une précision de calcul.
+     * En simple précision, une scène contenant des formes ou des lumières
+     * non prises en charge par FloatRayTracer est rendue en double.
+     *
+     * @param scene scène à rendre
+     * @param precision précision demandée
+     */
+    public ImageRenderer(Scene scene, Precision precision) {
         this.scene = scene;
         this.rayTracer = new RayTracer(scene);
+        this.floatTracer = precision == Precision.FLOAT && FloatRayTracer.supports(scene)
+                ? new FloatRayTracer(scene) : null;
+    }
+
+    /** @return précision effectivement utilisée pour le rendu */
+    public Precision getPrecision() {
+        return floatTracer != null ? Precision.FLOAT : Precision.DOUBLE;
+    }
+
+    /**
+     * Active le cache disque des rendus pour les appels à render().
+     *
+     * @param cache cache à utiliser, ou null pour le désactiver
+     */
+    public void setCache(RenderCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Active la mesure du coût de chaque pixel pendant les rendus suivants.
+     * Le cache disque est ignoré tant que la mesure est active.
+     *
+     * @param heatmap carte à remplir, ou null pour désactiver la mesure
+     */
+    public void setHeatmap(CostHeatmap heatmap) {
+        this.heatmap = heatmap;
+    }
+
+    /**
+     * Active le rendu différé (DeferredRenderer) : rayons primaires de chaque
+     * tuile vers un G-buffer, puis éclairage lumière par lumière. Sans
+     * effet en simple précision, avec suréchantillonnage ou lorsque la
+     * carte de coût est active.
+     *
+     * @param deferred vrai pour rendre en deux passes
+     */
+    public void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    /**
+     * Active le suréchantillonnage : chaque pixel est la moyenne de
+     * samples x samples rayons répartis sur une grille régulière, accumulés
+     * en float dans le Framebuffer. Sans effet en simple précision ou
+     * lorsque la carte de coût est active.
+     *
+     * @param samples échantillons par côté de pixel, 1 pour un rayon par pixel
+     * @throws IllegalArgumentException si samples est inférieur à 1
+     */
+    public void setSamples(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("Le nombre d'échantillons doit être au moins 1");
+        }
+        this.samples = samples;
+    }
+
+    /**
+     * Choisit le niveau de compression des PNG écrits, compressés en
+     * parallèle par PngWriter. Le niveau ne change pas les pixels : un
+     * rendu servi par le cache peut avoir été compressé à un autre niveau.
+     *
+     * @param level de 0 (aucune compression) à 9, PngWriter.FAST_LEVEL pour les aperçus
+     * @throws IllegalArgumentException si le niveau est invalide
+     */
+    public void setPngLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Niveau de compression PNG invalide : " + level);
+        }
+        this.pngLevel = level;
+    }
+
+    /**
+     * Choisit le nombre de threads qui rendent les tuiles. Les threads
+     * prennent tour à tour des segments contigus de l'ordre des tuiles
+     * (TileScheduler). Le rendu reste séquentiel lorsque la carte de coût
+     * est active, pour ne pas fausser les temps mesurés.
+     *
+     * @param threads nombre de threads, 1 pour rendre sur le thread appelant
+     * @throws IllegalArgumentException si threads est inférieur à 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Le nombre de threads doit être au moins 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Choisit l'ordre de rendu des tuiles. L'ordre ne change pas les pixels.
+     *
+     * @param order ordre des tuiles
+     */
+    public void setTileOrder(TileOrder order) {
+        this.tileOrder = order;
+    }
+
+    /** @return ordre de rendu des tuiles */
+    public TileOrder getTileOrder() { return tileOrder; }
+
+    /** @return échantillons par côté de pixel effectivement utilisés */
+    public int getSamples() {
+        return floatTracer == null && heatmap == null ? samples : 1;
+    }
+
+    /** @return vrai si le dernier rendu a été copié depuis le cache */
+    public boolean isCacheHit() {
+        return cacheHit;
     }
 
     /**
      * Effectue le rendu de la scène et écrit l'image dans un fichier PNG
      * dans le répertoire "images_gen".
+     * Si un cache est actif et contient déjà l'image de cette scène,
+     * l'image est simplement copiée sans nouveau rendu.
      *
      * @throws IOException si l'écriture du fichier échoue
      * @throws IllegalArgumentException si la largeur ou la hauteur est invalide
      */
     public void render() throws IOException {
-        int width = scene.getWidth();
-        int height = scene.getHeight();
+        cacheHit = false;
+        if (cache == null || heatmap != null) {
+            renderToFile();
+            return;
+        }
+
+        String key = RenderCache.key(scene, getPrecision(), getSamples(), OutputFormat.of(scene.getOutput()));
+        Path target = outputFile().toPath();
+        if (cache.copyTo(key, target)) {
+            cacheHit = true;
+            return;
+        }
+        File written = renderToFile();
+        cache.store(key, written.toPath());
+    }
+
+    /**
+     * Effectue le rendu dans un Framebuffer, en mémoire directe ou projeté
+     * sous "images_gen" pour les très grandes images, puis l'écrit en PNG.
+     */
+    private File renderToFile() throws IOException {
+        if (isDeferred()) {
+            return writeImage(renderImage());
+        }
+        checkSize();
+        try (Framebuffer image = Framebuffer.create(Paths.get(OUTPUT_DIR), scene.getWidth(), scene.getHeight())) {
+            renderFramebuffer(image);
+            return writeImage(image);
+        }
+    }
 
-        if (width <= 0 || height <= 0) {
+    private boolean isDeferred() {
+        return deferred && floatTracer == null && heatmap == null && samples == 1
+                && !scene.isHighDynamicRange();
+    }
+
+    private void checkSize() {
+        if (scene.getWidth() <= 0 || scene.getHeight() <= 0) {
             throw new IllegalArgumentException(
                     "Scene width and height must be positive");
         }
+    }
+
+    /**
+     * Effectue le rendu complet de la scène en mémoire, tuile par tuile.
+     *
+     * @return image rendue
+     * @throws IllegalArgumentException si la largeur ou la hauteur est invalide
+     */
+    public BufferedImage renderImage() {
+        checkSize();
+        if (isDeferred()) {
+            return new DeferredRenderer(Tile.DEFAULT_SIZE).render(scene);
+        }
 
-        BufferedImage image =
-                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Framebuffer image = Framebuffer.allocate(scene.getWidth(), scene.getHeight());
+        renderFramebuffer(image);
+        return image.toImage();
+    }
 
-        for (int j = 0; j < height; j++) {
-            for (int i = 0; i < width; i++) {
+    /**
+     * Effectue le rendu complet de la scène dans un Framebuffer, tuile par
+     * tuile, dans l'ordre choisi et sur le nombre de threads choisi. Avec
+     * le suréchantillonnage ou une sortie à grande dynamique, les
+     * échantillons sont accumulés dans l'image puis convertis en 8 bits
+     * tuile par tuile ; l'accumulation reste disponible pour HdrWriter.
+     *
+     * @param image image de la taille de la scène
+     * @throws IllegalArgumentException si l'image n'a pas la taille de la scène
+     */
+    public void renderFramebuffer(Framebuffer image) {
+        if (image.getWidth() != scene.getWidth() || image.getHeight() != scene.getHeight()) {
+            throw new IllegalArgumentException("Le Framebuffer n'a pas la taille de la scène");
+        }
+        List<Tile> tiles = tileOrder.arrange(
+                Tile.split(image.getWidth(), image.getHeight(), Tile.DEFAULT_SIZE), Tile.DEFAULT_SIZE);
+        int workers = heatmap != null ? 1 : Math.min(threads, tiles.size());
+        double[] costs = tileOrder == TileOrder.COST ? estimateCosts(tiles) : null;
+        TileScheduler scheduler = new TileScheduler(tiles, costs, workers * TileScheduler.SEGMENTS_PER_WORKER);
+
+        if (workers == 1) {
+            renderSegments(scheduler, image);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                done.add(pool.submit(() -> renderSegments(scheduler, image)));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Rendu interrompu", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Rend les segments du planificateur jusqu'à épuisement.
+     */
+    private void renderSegments(TileScheduler scheduler, Framebuffer image) {
+        int n = getSamples();
+        for (List<Tile> segment = scheduler.next(); segment != null; segment = scheduler.next()) {
+            for (Tile tile : segment) {
+                if (n > 1 || scene.isHighDynamicRange()) {
+                    accumulateTile(tile, image, n);
+                    image.resolve(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight());
+                } else {
+                    image.setRGB(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), renderTile(tile));
+                }
+            }
+        }
+    }
+
+    /**
+     * Pré-passe grossière de l'ordre COST : COST_PROBES x COST_PROBES
+     * pixels par tuile sont tracés et leurs tests d'intersection et rayons
+     * d'ombre comptés. Le coût est une fraction négligeable du rendu
+     * (16 pixels sur 4096 pour une tuile de 64 x 64).
+     *
+     * @param tiles tuiles à estimer
+     * @return coût estimé de chaque tuile, dans l'ordre de tiles
+     */
+    private double[] estimateCosts(List<Tile> tiles) {
+        double[] costs = new double[tiles.size()];
+        TraceStats previous = TraceStats.current();
+        TraceStats stats = new TraceStats().attach();
+        try {
+            for (int k = 0; k < costs.length; k++) {
+                Tile tile = tiles.get(k);
+                stats.reset();
+                for (int sy = 0; sy < COST_PROBES; sy++) {
+                    for (int sx = 0; sx < COST_PROBES; sx++) {
+                        rayTracer.getPixelColor(tile.getX() + (2 * sx + 1) * tile.getWidth() / (2 * COST_PROBES),
+                                tile.getY() + (2 * sy + 1) * tile.getHeight() / (2 * COST_PROBES));
+                    }
+                }
+                // un pixel coûte au moins son rayon primaire
+                costs[k] = tile.getPixelCount() * (1.0 + (double) (stats.intersectionTests + stats.shadowRays)
+                        / (COST_PROBES * COST_PROBES));
+            }
+        } finally {
+            // les compteurs de l'appelant ne voient pas la pré-passe
+            if (previous != null) {
+                previous.attach();
+            } else {
+                TraceStats.detach();
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Accumule n x n échantillons par pixel d'une tuile, aux centres d'une
+     * grille régulière sur le pixel.
+     */
+    private void accumulateTile(Tile tile, Framebuffer image, int n) {
+        if (floatTracer != null) {
+            // un seul échantillon en simple précision
+            float[] accum = new float[3 * tile.getPixelCount()];
+            floatTracer.traceRegion(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), accum);
+            int k = 0;
+            for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                    image.add(i, j, accum[k], accum[k + 1], accum[k + 2], 1f);
+                    k += 3;
+                }
+            }
+            return;
+        }
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                for (int sy = 0; sy < n; sy++) {
+                    for (int sx = 0; sx < n; sx++) {
+                        Color c = rayTracer.getSampleColor(i + (sx + 0.5) / n, j + (sy + 0.5) / n);
+                        image.add(i, j, (float) c.x, (float) c.y, (float) c.z, 1f);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcule les pixels d'une tuile de l'image.
+     * Les pixels sont rangés ligne par ligne au format 0xRRGGBB.
+     *
+     * @param tile tuile à rendre
+     * @return tableau de tile.getPixelCount() pixels RGB
+     */
+    public int[] renderTile(Tile tile) {
+        TileRenderEvent event = new TileRenderEvent();
+        event.begin();
+
+        int[] pixels;
+        TraceStats total = new TraceStats();
+        if (heatmap != null) {
+            pixels = renderTileMeasured(tile, total);
+        } else if (event.isEnabled()) {
+            // les compteurs ne sont attachés que si l'événement est enregistré
+            total.attach();
+            try {
+                pixels = tracePixels(tile);
+            } finally {
+                TraceStats.detach();
+            }
+        } else {
+            pixels = tracePixels(tile);
+        }
+
+        if (event.shouldCommit()) {
+            event.tileIndex = tile.getIndex();
+            event.x = tile.getX();
+            event.y = tile.getY();
+            event.width = tile.getWidth();
+            event.height = tile.getHeight();
+            event.primaryRays = tile.getPixelCount();
+            event.shadowRays = total.shadowRays;
+            event.skippedShadowRays = total.skippedShadowRays;
+            event.intersectionTests = total.intersectionTests;
+            event.shapeCount = scene.getShapes().size();
+            event.commit();
+        }
+        return pixels;
+    }
+
+    /**
+     * Calcule les pixels d'une tuile sans instrumentation.
+     */
+    private int[] tracePixels(Tile tile) {
+        int[] pixels = new int[tile.getPixelCount()];
+        if (floatTracer != null) {
+            float[] accum = new float[3 * pixels.length];
+            floatTracer.traceRegion(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), accum);
+            FloatRayTracer.quantize(accum, pixels);
+            return pixels;
+        }
+        int k = 0;
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
                 Color c = rayTracer.getPixelColor(i, j);
-                int rgb = c.toRGB();
-                image.setRGB(i, j, rgb);
+                pixels[k++] = c.toRGB();
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Variante instrumentée de renderTile qui enregistre dans la carte de
+     * coût les compteurs et le temps de chaque pixel.
+     */
+    private int[] renderTileMeasured(Tile tile, TraceStats total) {
+        int[] pixels = new int[tile.getPixelCount()];
+        TraceStats stats = new TraceStats().attach();
+        try {
+            int k = 0;
+            for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                    stats.reset();
+                    long start = System.nanoTime();
+                    int rgb = floatTracer != null
+                            ? floatTracer.getPixelRGB(i, j)
+                            : rayTracer.getPixelColor(i, j).toRGB();
+                    long elapsed = System.nanoTime() - start;
+                    heatmap.record(i, j, stats, elapsed);
+                    total.add(stats);
+                    pixels[k++] = rgb;
+                }
+            }
+        } finally {
+            TraceStats.detach();
+        }
+        return pixels;
+    }
+
+    /**
+     * Écrit une image rendue dans le fichier PNG de sortie de la scène,
+     * dans le répertoire "images_gen", après copie dans un Framebuffer
+     * pour la compresser en parallèle. Une image 8 bits ne peut pas
+     * alimenter une sortie à grande dynamique : ses couleurs sont déjà
+     * écrêtées et quantifiées.
+     *
+     * @param image image à écrire
+     * @return fichier écrit
+     * @throws IOException si l'écriture du fichier échoue
+     * @throws IllegalArgumentException si la sortie de la scène est PFM ou RGBE
+     */
+    public File writeImage(BufferedImage image) throws IOException {
+        if (scene.isHighDynamicRange()) {
+            throw new IllegalArgumentException(
+                    "Sortie à grande dynamique impossible depuis une image 8 bits : " + scene.getOutput());
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Framebuffer copy = Framebuffer.allocate(width, height);
+        int[] line = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, line, 0, width);
+            for (int x = 0; x < width; x++) {
+                copy.setRGB(x, y, line[x]);
             }
         }
+        return writeImage(copy);
+    }
 
+    /**
+     * Encode un Framebuffer dans le fichier de sortie de la scène, dans le
+     * répertoire "images_gen", sans copie de l'image sur le tas : PNG depuis
+     * les couleurs 8 bits, PFM ou RGBE depuis les couleurs accumulées selon
+     * l'extension du nom de sortie.
+     *
+     * @param image image à écrire
+     * @return fichier écrit
+     * @throws IOException si l'écriture du fichier échoue
+     */
+    public File writeImage(Framebuffer image) throws IOException {
+        return writeImage(image, outputFile());
+    }
+
+    /**
+     * Encode un Framebuffer dans un fichier donné, au format déduit de son
+     * extension (PNG, PFM ou RGBE).
+     *
+     * @param image image à écrire
+     * @param outFile fichier de destination, créé ou écrasé
+     * @return fichier écrit
+     * @throws IOException si l'écriture du fichier échoue
+     */
+    public File writeImage(Framebuffer image, File outFile) throws IOException {
+        PngEncodeEvent event = new PngEncodeEvent();
+        event.begin();
+
+        OutputFormat format = OutputFormat.of(outFile.getName());
+        if (format.isHighDynamicRange()) {
+            HdrWriter.write(image, outFile.toPath(), format);
+        } else {
+            PngWriter.write(image, outFile.toPath(), pngLevel);
+        }
+
+        if (event.shouldCommit()) {
+            event.level = format.isHighDynamicRange() ? -1 : pngLevel;
+            event.width = image.getWidth();
+            event.height = image.getHeight();
+            event.output = outFile.getPath();
+            event.bytes = outFile.length();
+            event.commit();
+        }
+        return outFile;
+    }
+
+    /**
+     * Retourne le fichier de sortie de la scène en créant le répertoire
+     * "images_gen" si nécessaire.
+     *
+     * @return fichier images_gen/<output>
+     * @throws IOException si le répertoire ne peut pas être créé
+     */
+    private File outputFile() throws IOException {
         // nom de fichier venant du .scene (ex: "output.png")
         String filename = scene.getOutput();
 
         // dossier où stocker les rendus
-        File outputDir = new File("images_gen");
+        File outputDir = new File(OUTPUT_DIR);
         if (!outputDir.exists() && !outputDir.mkdirs()) {
             throw new IOException("Unable to create output directory: " + outputDir);
         }
 
         // chemin complet : images_gen/<filename>
-        File outFile = new File(outputDir, filename);
-
-        // écriture de l'image
-        ImageIO.write(image, "png", outFile);
+        return new File(outputDir, filename);
     }
 }
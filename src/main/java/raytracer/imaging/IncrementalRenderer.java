@@ -0,0 +1,301 @@
+package raytracer.imaging;
+
+import raytracer.core.Intersection;
+import raytracer.core.RayTracer;
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Shape;
+import raytracer.lighting.AbstractLight;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntPredicate;
+
+/**
+ * Renderer incrémental : après une modification de la scène, seules les
+ * tuiles susceptibles d'avoir changé sont re-tracées.
+ *
+ * Le renderer conserve entre deux appels l'image précédente, le point
+ * d'impact primaire de chaque pixel et l'empreinte de chaque forme et
+ * lumière. La nouvelle scène est comparée à l'ancienne :
+ *  - si les dimensions ou la caméra changent, tout est re-tracé ;
+ *  - si une lumière ou la couleur ambiante change, les tuiles contenant
+ *    au moins un pixel touché sont re-tracées (le fond reste noir) ;
+ *  - pour chaque forme ajoutée, supprimée ou modifiée, on re-trace les
+ *    tuiles couvertes par la projection de sa boîte englobante, ainsi que
+ *    celles dont un rayon d'ombre traverse cette boîte.
+ */
+public class IncrementalRenderer {
+
+    /** Côté des tuiles en pixels. */
+    private final int tileSize;
+
+    /** Empreinte des dimensions et de la caméra du rendu précédent. */
+    private String viewKey;
+
+    /** Empreintes ordonnées des lumières (et de l'ambiante) du rendu précédent. */
+    private List<String> lightKeys;
+
+    /** Boîtes englobantes des formes du rendu précédent, par empreinte. */
+    private Map<String, List<BoundingBox>> shapeBounds;
+
+    /** Pixels RGB de l'image précédente. */
+    private int[] pixels;
+
+    /** Points d'impact primaires (x, y, z) par pixel. */
+    private double[] hitPoints;
+
+    /** Indique si le rayon primaire de chaque pixel touche une forme. */
+    private boolean[] hits;
+
+    /** Nombre de tuiles re-tracées lors du dernier rendu. */
+    private int lastTracedTiles;
+
+    /** Nombre total de tuiles lors du dernier rendu. */
+    private int lastTotalTiles;
+
+    /** Nombre de pixels re-tracés lors du dernier rendu. */
+    private long lastTracedPixels;
+
+    /**
+     * Construit un renderer incrémental.
+     *
+     * @param tileSize côté des tuiles en pixels
+     */
+    public IncrementalRenderer(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Rend la scène en réutilisant les tuiles inchangées du rendu précédent.
+     *
+     * @param scene nouvelle version de la scène
+     * @return image complète
+     * @throws IllegalArgumentException si la largeur ou la hauteur est invalide
+     */
+    public BufferedImage render(Scene scene) {
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException(
+                    "Scene width and height must be positive");
+        }
+
+        RayTracer rayTracer = new RayTracer(scene);
+        List<Tile> tiles = Tile.split(width, height, tileSize);
+        String newViewKey = SceneDigest.ofView(scene);
+        List<String> newLightKeys = lightKeys(scene);
+
+        boolean[] dirty = new boolean[tiles.size()];
+        if (pixels == null || !newViewKey.equals(viewKey)) {
+            pixels = new int[width * height];
+            hitPoints = new double[width * height * 3];
+            hits = new boolean[width * height];
+            Arrays.fill(dirty, true);
+        } else {
+            if (!newLightKeys.equals(lightKeys)) {
+                markLitTiles(tiles, dirty, width);
+            }
+            for (BoundingBox box : changedBounds(scene)) {
+                markFootprint(rayTracer, box, tiles, dirty, width, height);
+                markShadowInfluence(scene, box, tiles, dirty, width);
+            }
+        }
+
+        lastTotalTiles = tiles.size();
+        lastTracedTiles = 0;
+        lastTracedPixels = 0;
+        for (Tile tile : tiles) {
+            if (dirty[tile.getIndex()]) {
+                traceTile(scene, rayTracer, tile, width);
+                lastTracedTiles++;
+                lastTracedPixels += tile.getPixelCount();
+            }
+        }
+
+        viewKey = newViewKey;
+        lightKeys = newLightKeys;
+        shapeBounds = boundsByKey(scene);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /** @return nombre de tuiles re-tracées lors du dernier rendu */
+    public int getLastTracedTiles() { return lastTracedTiles; }
+
+    /** @return nombre total de tuiles lors du dernier rendu */
+    public int getLastTotalTiles() { return lastTotalTiles; }
+
+    /** @return nombre de pixels re-tracés lors du dernier rendu */
+    public long getLastTracedPixels() { return lastTracedPixels; }
+
+    /**
+     * Trace tous les pixels d'une tuile et mémorise couleurs et points d'impact.
+     */
+    private void traceTile(Scene scene, RayTracer rayTracer, Tile tile, int width) {
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                int k = j * width + i;
+                Optional<Intersection> hit = rayTracer.tracePrimary(i, j);
+                if (hit.isPresent()) {
+                    Point p = hit.get().getPoint();
+                    hits[k] = true;
+                    hitPoints[3 * k] = p.x;
+                    hitPoints[3 * k + 1] = p.y;
+                    hitPoints[3 * k + 2] = p.z;
+                    pixels[k] = scene.computeColor(hit.get()).toRGB();
+                } else {
+                    hits[k] = false;
+                    pixels[k] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcule les boîtes des formes présentes dans une seule des deux
+     * versions de la scène (ajoutées, supprimées ou modifiées).
+     */
+    private List<BoundingBox> changedBounds(Scene scene) {
+        Map<String, List<BoundingBox>> previous = new HashMap<>();
+        for (Map.Entry<String, List<BoundingBox>> e : shapeBounds.entrySet()) {
+            previous.put(e.getKey(), new ArrayList<>(e.getValue()));
+        }
+
+        List<BoundingBox> changed = new ArrayList<>();
+        for (Shape shape : scene.getShapes()) {
+            List<BoundingBox> same = previous.get(SceneDigest.of(shape));
+            if (same != null && !same.isEmpty()) {
+                same.remove(same.size() - 1);
+            } else {
+                changed.add(shape.getBounds());
+            }
+        }
+        for (List<BoundingBox> removed : previous.values()) {
+            changed.addAll(removed);
+        }
+        return changed;
+    }
+
+    /**
+     * Marque les tuiles contenant au moins un pixel touché par un rayon primaire.
+     */
+    private void markLitTiles(List<Tile> tiles, boolean[] dirty, int width) {
+        for (Tile tile : tiles) {
+            if (!dirty[tile.getIndex()] && anyPixel(tile, width, k -> hits[k])) {
+                dirty[tile.getIndex()] = true;
+            }
+        }
+    }
+
+    /**
+     * Marque les tuiles couvertes par la projection écran d'une boîte.
+     * Une boîte infinie ou traversant le plan de la caméra couvre tout l'écran.
+     */
+    private void markFootprint(RayTracer rayTracer, BoundingBox box, List<Tile> tiles,
+                               boolean[] dirty, int width, int height) {
+        double minI = Double.POSITIVE_INFINITY, maxI = Double.NEGATIVE_INFINITY;
+        double minJ = Double.POSITIVE_INFINITY, maxJ = Double.NEGATIVE_INFINITY;
+        boolean wholeScreen = box.isInfinite();
+
+        if (!wholeScreen) {
+            for (Point corner : box.corners()) {
+                double[] ij = rayTracer.project(corner);
+                if (ij == null) {
+                    wholeScreen = true;
+                    break;
+                }
+                minI = Math.min(minI, ij[0]);
+                maxI = Math.max(maxI, ij[0]);
+                minJ = Math.min(minJ, ij[1]);
+                maxJ = Math.max(maxJ, ij[1]);
+            }
+        }
+
+        int x0 = wholeScreen ? 0 : (int) Math.floor(minI) - 1;
+        int x1 = wholeScreen ? width - 1 : (int) Math.ceil(maxI) + 1;
+        int y0 = wholeScreen ? 0 : (int) Math.floor(minJ) - 1;
+        int y1 = wholeScreen ? height - 1 : (int) Math.ceil(maxJ) + 1;
+
+        for (Tile tile : tiles) {
+            if (tile.getX() <= x1 && tile.getX() + tile.getWidth() - 1 >= x0
+                    && tile.getY() <= y1 && tile.getY() + tile.getHeight() - 1 >= y0) {
+                dirty[tile.getIndex()] = true;
+            }
+        }
+    }
+
+    /**
+     * Marque les tuiles dont un rayon d'ombre (point d'impact vers une lumière)
+     * traverse la boîte d'une forme modifiée.
+     */
+    private void markShadowInfluence(Scene scene, BoundingBox box, List<Tile> tiles,
+                                     boolean[] dirty, int width) {
+        List<AbstractLight> lights = scene.getLights();
+        for (Tile tile : tiles) {
+            if (dirty[tile.getIndex()]) {
+                continue;
+            }
+            dirty[tile.getIndex()] = anyPixel(tile, width, k -> {
+                if (!hits[k]) {
+                    return false;
+                }
+                Point p = new Point(hitPoints[3 * k], hitPoints[3 * k + 1], hitPoints[3 * k + 2]);
+                for (AbstractLight light : lights) {
+                    Vector l = light.getLightDirection(p);
+                    if (box.intersectsSegment(p, l, light.getMaxDistance(p))) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+    }
+
+    /**
+     * Teste si au moins un pixel de la tuile vérifie le prédicat (indice linéaire).
+     */
+    private static boolean anyPixel(Tile tile, int width, IntPredicate test) {
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                if (test.test(j * width + i)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Empreintes ordonnées de l'ambiante puis des lumières.
+     */
+    private static List<String> lightKeys(Scene scene) {
+        List<String> keys = new ArrayList<>();
+        keys.add(scene.getAmbient().toString());
+        for (AbstractLight light : scene.getLights()) {
+            keys.add(SceneDigest.of(light));
+        }
+        return keys;
+    }
+
+    /**
+     * Boîtes englobantes des formes regroupées par empreinte.
+     */
+    private static Map<String, List<BoundingBox>> boundsByKey(Scene scene) {
+        Map<String, List<BoundingBox>> map = new HashMap<>();
+        for (Shape shape : scene.getShapes()) {
+            map.computeIfAbsent(SceneDigest.of(shape), k -> new ArrayList<>()).add(shape.getBounds());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,45 @@
+package raytracer.imaging;
+
+import java.util.Locale;
+
+/**
+ * Format du fichier image produit, déduit de l'extension du nom de sortie.
+ *
+ *  - PNG : couleurs écrêtées dans [0, 1] et quantifiées sur 8 bits ;
+ *  - PFM : Portable Float Map, trois float par pixel, sans écrêtage ;
+ *  - RGBE : format Radiance (.hdr), mantisses 8 bits et exposant commun,
+ *    sans écrêtage.
+ */
+public enum OutputFormat {
+
+    /** PNG 8 bits (par défaut). */
+    PNG,
+
+    /** Portable Float Map (.pfm). */
+    PFM,
+
+    /** Radiance RGBE (.hdr, .pic). */
+    RGBE;
+
+    /**
+     * Détermine le format d'un nom de fichier de sortie.
+     *
+     * @param filename nom du fichier
+     * @return PFM pour .pfm, RGBE pour .hdr ou .pic, PNG sinon
+     */
+    public static OutputFormat of(String filename) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".pfm")) {
+            return PFM;
+        }
+        if (name.endsWith(".hdr") || name.endsWith(".pic")) {
+            return RGBE;
+        }
+        return PNG;
+    }
+
+    /** @return vrai si les couleurs sont écrites sans écrêtage ni quantification */
+    public boolean isHighDynamicRange() {
+        return this != PNG;
+    }
+}
@@ -0,0 +1,430 @@
+package raytracer.imaging;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodeur PNG (RGB 8 bits) lisant directement les lignes d'un Framebuffer.
+ *
+ * Les lignes sont filtrées puis compressées par tranches d'environ
+ * SLICE_BYTES octets, en parallèle sur un ForkJoinPool, comme le fait
+ * pigz : chaque tranche est un flux deflate brut terminé par un vidage
+ * synchrone (SYNC_FLUSH), qui s'aligne sur un octet et se concatène donc
+ * tel quel à la suivante. Le dictionnaire de chaque tranche est initialisé
+ * avec les 32 Ko filtrés qui la précèdent, si bien que le taux de
+ * compression reste proche de celui d'un flux unique. Les sommes Adler-32
+ * des tranches sont combinées pour former celle du flux zlib.
+ *
+ * Le découpage ne dépend que de l'image : le fichier produit est le même
+ * quel que soit le nombre de threads. Seules quelques tranches sont en
+ * cours à la fois, si bien que la mémoire utilisée sur le tas ne dépend
+ * pas de la taille de l'image.
+ *
+ * Le filtre de chaque ligne est choisi parmi les cinq filtres PNG par la
+ * somme minimale des valeurs absolues des octets filtrés, comme le fait
+ * libpng ; au niveau FAST_LEVEL, destiné aux aperçus, toutes les lignes
+ * utilisent le filtre Sub.
+ */
+public final class PngWriter {
+
+    /** Signature de tout fichier PNG. */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    /** Taille maximale des chunks IDAT. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Niveau de compression par défaut (celui de zlib). */
+    public static final int DEFAULT_LEVEL = 6;
+
+    /** Niveau de compression rapide, pour les aperçus. */
+    public static final int FAST_LEVEL = Deflater.BEST_SPEED;
+
+    /** Taille visée des données filtrées de chaque tranche compressée (128 Ko, comme pigz). */
+    static final int SLICE_BYTES = 1 << 17;
+
+    /** Taille de la fenêtre deflate, reprise comme dictionnaire d'une tranche à l'autre. */
+    private static final int WINDOW_BYTES = 1 << 15;
+
+    /** Module des sommes Adler-32. */
+    private static final int ADLER_BASE = 65521;
+
+    private PngWriter() {
+    }
+
+    /**
+     * Écrit une image dans un fichier PNG, créé ou écrasé, au niveau de
+     * compression par défaut.
+     *
+     * @param image image à encoder
+     * @param file fichier de destination
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void write(Framebuffer image, Path file) throws IOException {
+        write(image, file, DEFAULT_LEVEL);
+    }
+
+    /**
+     * Écrit une image dans un fichier PNG, créé ou écrasé, en compressant
+     * sur le pool commun.
+     *
+     * @param image image à encoder
+     * @param file fichier de destination
+     * @param level niveau de compression, de 0 (aucune) à 9
+     * @throws IOException en cas d'erreur d'écriture
+     * @throws IllegalArgumentException si le niveau est invalide
+     */
+    public static void write(Framebuffer image, Path file, int level) throws IOException {
+        checkLevel(level);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), CHUNK_SIZE)) {
+            write(image, out, level, ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Écrit une image au format PNG dans un flux, qui n'est pas fermé, au
+     * niveau de compression par défaut et sur le pool commun.
+     *
+     * @param image image à encoder
+     * @param out flux de destination
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public static void write(Framebuffer image, OutputStream out) throws IOException {
+        write(image, out, DEFAULT_LEVEL, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Écrit une image au format PNG dans un flux, qui n'est pas fermé.
+     *
+     * @param image image à encoder ; elle ne doit pas être modifiée pendant l'écriture
+     * @param out flux de destination
+     * @param level niveau de compression, de 0 (aucune) à 9
+     * @param pool pool sur lequel les tranches sont filtrées et compressées
+     * @throws IOException en cas d'erreur d'écriture
+     * @throws IllegalArgumentException si le niveau est invalide
+     */
+    public static void write(Framebuffer image, OutputStream out, int level, ForkJoinPool pool)
+            throws IOException {
+        checkLevel(level);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        out.write(SIGNATURE);
+
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(width).putInt(height)
+                .put((byte) 8)   // bits par composante
+                .put((byte) 2)   // RGB
+                .put((byte) 0)   // deflate
+                .put((byte) 0)   // filtrage adaptatif
+                .put((byte) 0);  // non entrelacé
+        writeChunk(out, "IHDR", header.array(), header.position());
+
+        int rowBytes = Framebuffer.RGB_BYTES * width;
+        int sliceRows = Math.max(1, SLICE_BYTES / (1 + rowBytes));
+        int slices = (height + sliceRows - 1) / sliceRows;
+        // quelques tranches d'avance par thread, pas davantage
+        int window = 2 * pool.getParallelism();
+
+        ChunkStream idat = new ChunkStream(out);
+        idat.write(zlibHeader(level));
+        long adler = 1;
+        ArrayDeque<ForkJoinTask<Slice>> pending = new ArrayDeque<>();
+        int next = 0;
+        while (next < slices || !pending.isEmpty()) {
+            while (next < slices && pending.size() < window) {
+                int first = next * sliceRows;
+                int rows = Math.min(sliceRows, height - first);
+                boolean last = next == slices - 1;
+                pending.add(pool.submit(() -> compressSlice(image, first, rows, level, last)));
+                next++;
+            }
+            Slice slice = pending.poll().join();
+            idat.write(slice.data, 0, slice.length);
+            adler = combineAdler32(adler, slice.adler, slice.inputBytes);
+        }
+        idat.write(new byte[] {(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler});
+        idat.flushChunk();
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    private static void checkLevel(int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Niveau de compression PNG invalide : " + level);
+        }
+    }
+
+    /**
+     * En-tête zlib (RFC 1950) : deflate avec fenêtre de 32 Ko, niveau
+     * indicatif, sans dictionnaire prédéfini.
+     */
+    static byte[] zlibHeader(int level) {
+        int cmf = 0x78;
+        int flevel = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int flg = flevel << 6;
+        flg += (31 - (cmf << 8 | flg) % 31) % 31;
+        return new byte[] {(byte) cmf, (byte) flg};
+    }
+
+    /**
+     * Combine les sommes Adler-32 de deux suites d'octets consécutives,
+     * comme adler32_combine de zlib.
+     *
+     * @param adler1 somme de la première suite
+     * @param adler2 somme de la seconde suite
+     * @param length2 longueur de la seconde suite
+     * @return somme de la concaténation des deux suites
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = rem * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Filtre et compresse les lignes [first, first + rows[ en un flux
+     * deflate brut, terminé par un vidage synchrone, ou par le bloc final
+     * pour la dernière tranche. Les lignes filtrées qui précèdent la
+     * tranche servent de dictionnaire.
+     */
+    private static Slice compressSlice(Framebuffer image, int first, int rows, int level, boolean last) {
+        int rowBytes = Framebuffer.RGB_BYTES * image.getWidth();
+        int dictionaryRows = Math.min(first, (WINDOW_BYTES + rowBytes) / (1 + rowBytes));
+        int start = first - dictionaryRows;
+
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        byte[] filtered = new byte[1 + rowBytes];
+        byte[] candidate = new byte[1 + rowBytes];
+        byte[] dictionary = new byte[dictionaryRows * (1 + rowBytes)];
+        if (start > 0) {
+            image.row(start - 1).get(previous);
+        }
+
+        Slice slice = new Slice(rows * (1 + rowBytes));
+        Adler32 adler = new Adler32();
+        Deflater deflater = new Deflater(level, true);
+        try {
+            for (int y = start; y < first + rows; y++) {
+                image.row(y).get(current);
+                if (level == FAST_LEVEL) {
+                    filter(1, current, previous, filtered);
+                } else {
+                    filterRow(current, previous, filtered, candidate);
+                }
+                if (y < first) {
+                    System.arraycopy(filtered, 0, dictionary, (y - start) * filtered.length, filtered.length);
+                } else {
+                    if (y == first && dictionary.length > 0) {
+                        int n = Math.min(WINDOW_BYTES, dictionary.length);
+                        deflater.setDictionary(dictionary, dictionary.length - n, n);
+                    }
+                    adler.update(filtered);
+                    deflater.setInput(filtered);
+                    while (!deflater.needsInput()) {
+                        slice.deflate(deflater, Deflater.NO_FLUSH);
+                    }
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    slice.deflate(deflater, Deflater.NO_FLUSH);
+                }
+            } else {
+                // tant que le tampon de sortie est rempli, le vidage n'est pas terminé
+                boolean full;
+                do {
+                    full = slice.deflate(deflater, Deflater.SYNC_FLUSH);
+                } while (full);
+            }
+        } finally {
+            deflater.end();
+        }
+        slice.adler = adler.getValue();
+        slice.inputBytes = (long) rows * (1 + rowBytes);
+        return slice;
+    }
+
+    /**
+     * Filtre une ligne avec le filtre PNG de plus petite somme des valeurs
+     * absolues ; le premier octet de out reçoit le type de filtre.
+     *
+     * @param row octets de la ligne
+     * @param previous octets de la ligne précédente (zéros pour la première)
+     * @param out ligne filtrée, 1 + row.length octets
+     * @param scratch tampon de travail de même taille que out
+     */
+    static void filterRow(byte[] row, byte[] previous, byte[] out, byte[] scratch) {
+        long best = Long.MAX_VALUE;
+        for (int type = 0; type <= 4; type++) {
+            long sum = filter(type, row, previous, scratch);
+            if (sum < best) {
+                best = sum;
+                System.arraycopy(scratch, 0, out, 0, scratch.length);
+            }
+        }
+    }
+
+    /**
+     * Applique un filtre PNG à une ligne.
+     *
+     * @return somme des valeurs absolues des octets filtrés, signés
+     */
+    private static long filter(int type, byte[] row, byte[] previous, byte[] out) {
+        int bpp = Framebuffer.RGB_BYTES;
+        out[0] = (byte) type;
+        long sum = 0;
+        for (int k = 0; k < row.length; k++) {
+            int x = row[k] & 0xff;
+            int a = k >= bpp ? row[k - bpp] & 0xff : 0;
+            int b = previous[k] & 0xff;
+            int c = k >= bpp ? previous[k - bpp] & 0xff : 0;
+            int predictor;
+            switch (type) {
+                case 1:  predictor = a; break;
+                case 2:  predictor = b; break;
+                case 3:  predictor = (a + b) >>> 1; break;
+                case 4:  predictor = paeth(a, b, c); break;
+                default: predictor = 0;
+            }
+            byte v = (byte) (x - predictor);
+            out[1 + k] = v;
+            sum += Math.abs(v);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Écrit un chunk PNG : longueur, type, données et CRC du type et des données.
+     */
+    static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+
+        DataOutputStream chunk = new DataOutputStream(out);
+        chunk.writeInt(length);
+        chunk.write(name);
+        chunk.write(data, 0, length);
+        chunk.writeInt((int) crc.getValue());
+        chunk.flush();
+    }
+
+    /**
+     * Données compressées d'une tranche, avec la somme Adler-32 et la
+     * longueur des données filtrées d'origine.
+     */
+    private static final class Slice {
+
+        byte[] data;
+        int length;
+        long adler;
+        long inputBytes;
+
+        Slice(int inputBytes) {
+            // les données filtrées se compressent en général bien en deçà de leur taille
+            this.data = new byte[Math.max(1 << 10, inputBytes / 4)];
+        }
+
+        /**
+         * Compresse dans l'espace libre du tampon, agrandi s'il est plein.
+         *
+         * @return vrai si le tampon a été rempli, signe que deflate peut avoir d'autres octets à produire
+         */
+        boolean deflate(Deflater deflater, int flush) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, 2 * data.length);
+            }
+            int free = data.length - length;
+            int n = deflater.deflate(data, length, free, flush);
+            length += n;
+            return n == free;
+        }
+    }
+
+    /**
+     * Flux découpant les données compressées en chunks IDAT de CHUNK_SIZE octets.
+     */
+    private static final class ChunkStream extends OutputStream {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        ChunkStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /** Écrit les données en attente dans un chunk IDAT. */
+        void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, "IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package raytracer.imaging;
+
+import raytracer.core.Precision;
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Cache disque des images rendues, indexé par l'empreinte canonique
+ * de la scène et la version du moteur de rendu.
+ *
+ * Chaque entrée est un fichier PNG nommé d'après sa clé. La date de
+ * modification d'un fichier sert de date de dernier accès : elle est
+ * rafraîchie à chaque succès, et les entrées les plus anciennes sont
+ * supprimées dès que la taille totale dépasse la limite (politique LRU).
+ */
+public class RenderCache {
+
+    /** Répertoire par défaut du cache, sous le dossier des rendus. */
+    public static final String DEFAULT_DIR = ImageRenderer.OUTPUT_DIR + "/.cache";
+
+    /** Taille maximale par défaut du cache (256 Mo). */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    /** Extension des entrées du cache. */
+    private static final String EXTENSION = ".png";
+
+    /** Répertoire contenant les entrées. */
+    private final Path directory;
+
+    /** Taille totale maximale des entrées en octets. */
+    private final long maxBytes;
+
+    /**
+     * Construit un cache disque.
+     *
+     * @param directory répertoire des entrées (créé si nécessaire)
+     * @param maxBytes taille totale maximale en octets
+     * @throws IOException si le répertoire ne peut pas être créé
+     */
+    public RenderCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("La taille du cache doit être positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Calcule la clé de cache d'une scène : empreinte canonique de la scène
+     * combinée à la version du moteur de rendu.
+     *
+     * @param scene scène analysée
+     * @return clé hexadécimale
+     */
+    public static String key(Scene scene) {
+        return key(scene, Precision.DOUBLE);
+    }
+
+    /**
+     * Calcule la clé de cache d'une scène rendue avec une précision donnée.
+     * Les deux pipelines ne produisant pas exactement les mêmes pixels,
+     * la précision fait partie de la clé.
+     *
+     * @param scene scène analysée
+     * @param precision précision du rendu
+     * @return clé hexadécimale
+     */
+    public static String key(Scene scene, Precision precision) {
+        return key(scene, precision, 1);
+    }
+
+    /**
+     * Calcule la clé de cache d'une scène rendue avec une précision et un
+     * nombre d'échantillons par côté de pixel donnés.
+     *
+     * @param scene scène analysée
+     * @param precision précision du rendu
+     * @param samples échantillons par côté de pixel (1 sans suréchantillonnage)
+     * @return clé hexadécimale
+     */
+    public static String key(Scene scene, Precision precision, int samples) {
+        return key(scene, precision, samples, OutputFormat.PNG);
+    }
+
+    /**
+     * Calcule la clé de cache d'une scène rendue avec une précision, un
+     * nombre d'échantillons et un format de fichier donnés.
+     *
+     * @param scene scène analysée
+     * @param precision précision du rendu
+     * @param samples échantillons par côté de pixel (1 sans suréchantillonnage)
+     * @param format format du fichier produit
+     * @return clé hexadécimale
+     */
+    public static String key(Scene scene, Precision precision, int samples, OutputFormat format) {
+        String prefix = "v" + ImageRenderer.VERSION
+                + (precision == Precision.DOUBLE ? "" : "-" + precision.name().toLowerCase())
+                + (samples == 1 ? "" : "-s" + samples)
+                + (format == OutputFormat.PNG ? "" : "-" + format.name().toLowerCase());
+        return SceneDigest.sha256(prefix + ":" + SceneDigest.of(scene));
+    }
+
+    /**
+     * Recherche une image en cache et, si elle existe, la copie vers la destination.
+     *
+     * @param key clé de la scène
+     * @param target fichier de destination
+     * @return vrai si l'image était en cache
+     * @throws IOException si la copie échoue
+     */
+    public boolean copyTo(String key, Path target) throws IOException {
+        Optional<Path> entry = lookup(key);
+        if (entry.isEmpty()) {
+            return false;
+        }
+        try {
+            Files.copy(entry.get(), target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException e) {
+            // entrée évincée entre-temps par un autre processus
+            return false;
+        }
+    }
+
+    /**
+     * Recherche une entrée et rafraîchit sa date d'accès.
+     *
+     * @param key clé de la scène
+     * @return chemin de l'entrée si elle existe
+     */
+    public Optional<Path> lookup(String key) {
+        Path entry = entryPath(key);
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(entry);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Ajoute une image rendue au cache puis évince les entrées les moins
+     * récemment utilisées si la taille maximale est dépassée.
+     *
+     * @param key clé de la scène
+     * @param image fichier PNG à copier dans le cache
+     * @throws IOException si la copie échoue
+     */
+    public void store(String key, Path image) throws IOException {
+        Path entry = entryPath(key);
+        Path tmp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            Files.copy(image, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        evict();
+    }
+
+    /**
+     * Supprime les entrées les plus anciennes jusqu'à repasser sous la taille maximale.
+     *
+     * @throws IOException si le répertoire ne peut pas être parcouru
+     */
+    public void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().endsWith(EXTENSION)).forEach(entries::add);
+        }
+
+        long total = 0;
+        List<long[]> stats = new ArrayList<>();
+        for (int k = 0; k < entries.size(); k++) {
+            try {
+                long size = Files.size(entries.get(k));
+                long time = Files.getLastModifiedTime(entries.get(k)).toMillis();
+                stats.add(new long[] {time, size, k});
+                total += size;
+            } catch (NoSuchFileException e) {
+                // supprimée par un autre processus
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        stats.sort(Comparator.comparingLong(s -> s[0]));
+        for (long[] s : stats) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(entries.get((int) s[2]));
+            total -= s[1];
+        }
+    }
+
+    /**
+     * Calcule la taille totale actuelle des entrées.
+     *
+     * @return taille en octets
+     */
+    public long size() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(EXTENSION))
+                    .mapToLong(p -> {
+                        try {
+                            return Files.size(p);
+                        } catch (IOException e) {
+                            return 0;
+                        }
+                    }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + EXTENSION);
+    }
+}
@@ -0,0 +1,110 @@
+package raytracer.imaging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Représente une tuile rectangulaire de l'image à rendre.
+ *
+ * Une tuile est définie par :
+ *  - son indice dans le découpage de l'image ;
+ *  - la position (x, y) de son coin supérieur gauche en pixels ;
+ *  - sa largeur et sa hauteur en pixels.
+ *
+ * Les tuiles permettent de répartir le rendu d'une image entre
+ * plusieurs unités de travail (threads ou processus) indépendantes.
+ */
+public final class Tile {
+
+    /** Taille par défaut (en pixels) du côté d'une tuile. */
+    public static final int DEFAULT_SIZE = 64;
+
+    /** Indice de la tuile dans le découpage de l'image. */
+    private final int index;
+
+    /** Abscisse du coin supérieur gauche. */
+    private final int x;
+
+    /** Ordonnée du coin supérieur gauche. */
+    private final int y;
+
+    /** Largeur de la tuile en pixels. */
+    private final int width;
+
+    /** Hauteur de la tuile en pixels. */
+    private final int height;
+
+    /**
+     * Construit une tuile.
+     *
+     * @param index indice de la tuile
+     * @param x abscisse du coin supérieur gauche
+     * @param y ordonnée du coin supérieur gauche
+     * @param width largeur en pixels
+     * @param height hauteur en pixels
+     */
+    public Tile(int index, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Tile width and height must be positive");
+        }
+        this.index = index;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Découpe une image en tuiles carrées parcourues ligne par ligne.
+     * Les tuiles du bord droit et du bord bas sont tronquées pour ne pas
+     * déborder de l'image.
+     *
+     * @param imageWidth largeur de l'image
+     * @param imageHeight hauteur de l'image
+     * @param size côté d'une tuile en pixels
+     * @return liste des tuiles couvrant exactement l'image
+     */
+    public static List<Tile> split(int imageWidth, int imageHeight, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        List<Tile> tiles = new ArrayList<>();
+        int index = 0;
+        for (int ty = 0; ty < imageHeight; ty += size) {
+            for (int tx = 0; tx < imageWidth; tx += size) {
+                int w = Math.min(size, imageWidth - tx);
+                int h = Math.min(size, imageHeight - ty);
+                tiles.add(new Tile(index++, tx, ty, w, h));
+            }
+        }
+        return tiles;
+    }
+
+    /** @return indice de la tuile */
+    public int getIndex() { return index; }
+
+    /** @return abscisse du coin supérieur gauche */
+    public int getX() { return x; }
+
+    /** @return ordonnée du coin supérieur gauche */
+    public int getY() { return y; }
+
+    /** @return largeur en pixels */
+    public int getWidth() { return width; }
+
+    /** @return hauteur en pixels */
+    public int getHeight() { return height; }
+
+    /** @return nombre de pixels couverts par la tuile */
+    public int getPixelCount() { return width * height; }
+
+    /**
+     * Retourne une description textuelle de la tuile.
+     *
+     * @return chaîne contenant indice, position et dimensions
+     */
+    @Override
+    public String toString() {
+        return String.format("Tile{#%d, x=%d, y=%d, %dx%d}", index, x, y, width, height);
+    }
+}
@@ -0,0 +1,143 @@
+package raytracer.imaging;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ordre dans lequel les tuiles d'une image sont rendues.
+ *
+ *  - ROW_MAJOR : ligne par ligne, l'ordre de Tile.split ;
+ *  - MORTON : courbe en Z, par entrelacement des bits des coordonnées ;
+ *  - HILBERT : courbe de Hilbert, dont deux tuiles consécutives sont
+ *    toujours voisines ;
+ *  - SPIRAL : anneaux concentriques depuis le centre, pour que les aperçus
+ *    montrent d'abord le sujet ;
+ *  - COST : courbe de Hilbert, découpée en segments de coût estimé égal
+ *    par une pré-passe grossière (voir TileScheduler).
+ *
+ * Les courbes de remplissage gardent proches, dans le temps, des tuiles
+ * proches dans l'image : elles touchent la même géométrie, qui reste dans
+ * les caches du processeur. Les threads reçoivent des segments contigus
+ * de la courbe.
+ */
+public enum TileOrder {
+
+    /** Ligne par ligne (par défaut). */
+    ROW_MAJOR,
+
+    /** Courbe de Morton (en Z). */
+    MORTON,
+
+    /** Courbe de Hilbert. */
+    HILBERT,
+
+    /** Spirale depuis le centre de l'image. */
+    SPIRAL,
+
+    /** Courbe de Hilbert, segments équilibrés par une estimation du coût. */
+    COST;
+
+    /**
+     * Analyse le nom d'un ordre depuis la ligne de commande.
+     *
+     * @param name "row", "morton", "hilbert", "spiral" ou "cost" (casse indifférente)
+     * @return ordre correspondant
+     * @throws IllegalArgumentException si le nom est inconnu
+     */
+    public static TileOrder parse(String name) {
+        switch (name.toLowerCase()) {
+            case "row":     return ROW_MAJOR;
+            case "morton":  return MORTON;
+            case "hilbert": return HILBERT;
+            case "spiral":  return SPIRAL;
+            case "cost":    return COST;
+            default:
+                throw new IllegalArgumentException("Ordre de tuiles inconnu : " + name);
+        }
+    }
+
+    /**
+     * Range des tuiles dans cet ordre. Les indices des tuiles sont conservés.
+     *
+     * @param tiles tuiles d'un découpage Tile.split
+     * @param size côté des tuiles utilisé pour le découpage
+     * @return nouvelle liste des mêmes tuiles
+     */
+    public List<Tile> arrange(List<Tile> tiles, int size) {
+        List<Tile> ordered = new ArrayList<>(tiles);
+        if (this == ROW_MAJOR || tiles.isEmpty()) {
+            return ordered;
+        }
+        int columns = 0;
+        int rows = 0;
+        for (Tile tile : tiles) {
+            columns = Math.max(columns, tile.getX() / size + 1);
+            rows = Math.max(rows, tile.getY() / size + 1);
+        }
+        int cols = columns;
+        int rowCount = rows;
+        switch (this) {
+            case MORTON:
+                ordered.sort(Comparator.comparingLong(t -> morton(t.getX() / size, t.getY() / size)));
+                break;
+            case SPIRAL:
+                ordered.sort(Comparator.comparingLong(t -> spiral(t.getX() / size, t.getY() / size, cols, rowCount)));
+                break;
+            default: {
+                int side = Integer.highestOneBit(Math.max(1, Math.max(cols, rowCount) - 1)) << 1;
+                ordered.sort(Comparator.comparingLong(t -> hilbert(side, t.getX() / size, t.getY() / size)));
+            }
+        }
+        return ordered;
+    }
+
+    /** Entrelace les bits de deux coordonnées de tuile. */
+    private static long morton(int x, int y) {
+        long code = 0;
+        for (int b = 0; b < 31; b++) {
+            code |= (long) ((x >> b) & 1) << (2 * b) | (long) ((y >> b) & 1) << (2 * b + 1);
+        }
+        return code;
+    }
+
+    /**
+     * Position d'une case sur la courbe de Hilbert d'un carré de côté side
+     * (puissance de deux), par l'algorithme itératif classique.
+     */
+    private static long hilbert(int side, int x, int y) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotation du quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Clé de la spirale : anneau autour de la tuile centrale (distance de
+     * Tchebychev), puis angle autour du centre, en tournant dans le sens
+     * des aiguilles d'une montre à partir du haut.
+     */
+    private static long spiral(int x, int y, int columns, int rows) {
+        double dx = x - (columns - 1) / 2.0;
+        double dy = y - (rows - 1) / 2.0;
+        long ring = (long) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)));
+        double angle = Math.atan2(dx, -dy);
+        if (angle < 0) {
+            angle += 2 * Math.PI;
+        }
+        return ring << 32 | (long) (angle / (2 * Math.PI) * (1L << 31));
+    }
+}
@@ -0,0 +1,86 @@
+package raytracer.imaging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distribution de tuiles ordonnées entre threads, par segments contigus.
+ *
+ * La suite des tuiles (dans un ordre TileOrder) est coupée en segments de
+ * poids égal : le nombre de pixels, ou le coût estimé de chaque tuile
+ * lorsqu'il est fourni. Chaque thread prend le segment suivant dès qu'il a
+ * fini le précédent, si bien qu'il parcourt des tuiles voisines tout en
+ * laissant assez de segments pour équilibrer la charge.
+ */
+public final class TileScheduler {
+
+    /** Nombre de segments par thread, pour absorber les écarts d'estimation. */
+    public static final int SEGMENTS_PER_WORKER = 4;
+
+    /** Segments de tuiles, dans l'ordre de distribution. */
+    private final List<List<Tile>> segments;
+
+    /** Indice du prochain segment à distribuer. */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Découpe des tuiles ordonnées en segments de poids égal.
+     *
+     * @param tiles tuiles, dans l'ordre de rendu
+     * @param costs coût estimé de chaque tuile (même ordre), ou null pour
+     *              pondérer par le nombre de pixels
+     * @param count nombre de segments souhaité
+     * @throws IllegalArgumentException si count est inférieur à 1 ou si
+     *         costs n'a pas la taille de tiles
+     */
+    public TileScheduler(List<Tile> tiles, double[] costs, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Le nombre de segments doit être au moins 1");
+        }
+        if (costs != null && costs.length != tiles.size()) {
+            throw new IllegalArgumentException("Un coût par tuile est attendu");
+        }
+        double total = 0.0;
+        for (int k = 0; k < tiles.size(); k++) {
+            total += weight(tiles, costs, k);
+        }
+
+        List<List<Tile>> cut = new ArrayList<>();
+        List<Tile> segment = new ArrayList<>();
+        double done = 0.0;
+        for (int k = 0; k < tiles.size(); k++) {
+            segment.add(tiles.get(k));
+            done += weight(tiles, costs, k);
+            // fin du segment lorsque la part cumulée atteint la suivante
+            if (done >= total * (cut.size() + 1) / count && cut.size() < count - 1) {
+                cut.add(Collections.unmodifiableList(segment));
+                segment = new ArrayList<>();
+            }
+        }
+        if (!segment.isEmpty()) {
+            cut.add(Collections.unmodifiableList(segment));
+        }
+        this.segments = Collections.unmodifiableList(cut);
+    }
+
+    private static double weight(List<Tile> tiles, double[] costs, int k) {
+        // un coût nul compte pour un peu, afin qu'une zone vide ne forme pas un seul segment
+        return costs == null ? tiles.get(k).getPixelCount() : Math.max(costs[k], 1e-9);
+    }
+
+    /**
+     * Retourne le prochain segment à rendre. Peut être appelé depuis
+     * plusieurs threads.
+     *
+     * @return tuiles consécutives du segment, ou null s'il n'en reste plus
+     */
+    public List<Tile> next() {
+        int k = next.getAndIncrement();
+        return k < segments.size() ? segments.get(k) : null;
+    }
+
+    /** @return tous les segments, dans l'ordre de distribution */
+    public List<List<Tile>> getSegments() { return segments; }
+}
@@ -0,0 +1,257 @@
+package raytracer.lighting;
+
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.imaging.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Hiérarchie de boîtes englobantes sur les lumières ponctuelles d'une scène,
+ * utilisée pour éclairer un point sans évaluer toutes les lumières.
+ *
+ * Chaque nœud stocke la boîte de ses lumières et leur puissance cumulée
+ * (somme r + g + b). Pour un point p de normale n et de matériau (kd, ks),
+ * la contribution d'un nœud est majorée par :
+ *
+ *   B = P * max_c(kd_c * cosMax + ks_c)      (ks seulement si brillance > 0)
+ *
+ * où cosMax majore n · l sur la boîte vue depuis p. Les lumières n'ayant pas
+ * d'atténuation, la distance n'intervient que par l'angle sous lequel la
+ * boîte est vue. Lors du parcours :
+ *  - un nœud de majorant nul (derrière le plan tangent, matériau mat) est ignoré ;
+ *  - une feuille est évaluée exactement ;
+ *  - un nœud dont le majorant est inférieur à maxError fois celui de la
+ *    racine est représenté par une seule lumière tirée au hasard
+ *    proportionnellement à sa puissance, pondérée par P_nœud / P_lumière ;
+ *  - les autres nœuds sont ouverts.
+ *
+ * L'estimateur est sans biais et, pour chaque nœud échantillonné, l'erreur
+ * commise est bornée par son majorant. Le nombre de nœuds évalués dépend de
+ * maxError et non du nombre de lumières.
+ */
+public class LightTree {
+
+    /**
+     * Reçoit les lumières retenues par le parcours.
+     */
+    @FunctionalInterface
+    public interface LightSink {
+
+        /**
+         * @param light lumière à évaluer exactement (ombre comprise)
+         * @param weight poids à appliquer à sa contribution
+         */
+        void accept(PointLight light, double weight);
+    }
+
+    /** Lumières, dans l'ordre des feuilles. */
+    private final PointLight[] lights;
+
+    /** Boîtes des nœuds : minX, minY, minZ, maxX, maxY, maxZ. */
+    private final double[] bounds;
+
+    /** Puissance cumulée (r + g + b) de chaque nœud. */
+    private final double[] power;
+
+    /** Fils gauche de chaque nœud, ou -1 pour une feuille. */
+    private final int[] left;
+
+    /** Fils droit de chaque nœud. */
+    private final int[] right;
+
+    /** Indice de la lumière d'une feuille. */
+    private final int[] lightIndex;
+
+    /** Nombre de nœuds construits. */
+    private int nodeCount;
+
+    /**
+     * Construit la hiérarchie par découpage médian selon l'axe le plus long.
+     *
+     * @param pointLights lumières ponctuelles de la scène
+     */
+    public LightTree(List<PointLight> pointLights) {
+        List<PointLight> sorted = new ArrayList<>(pointLights);
+        int capacity = Math.max(1, 2 * sorted.size() - 1);
+        this.lights = new PointLight[sorted.size()];
+        this.bounds = new double[6 * capacity];
+        this.power = new double[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.lightIndex = new int[capacity];
+        if (!sorted.isEmpty()) {
+            build(sorted, 0, sorted.size());
+        }
+    }
+
+    /** @return nombre de lumières de la hiérarchie */
+    public int size() {
+        return lights.length;
+    }
+
+    /**
+     * Sélectionne les lumières à évaluer pour un point éclairé.
+     *
+     * @param p point éclairé
+     * @param n normale au point
+     * @param diffuse couleur diffuse du matériau
+     * @param specular couleur spéculaire du matériau
+     * @param shininess brillance du matériau
+     * @param maxError erreur relative tolérée par nœud échantillonné
+     * @param seed graine du tirage (déterministe pour un même point)
+     * @param sink destinataire des lumières retenues
+     */
+    public void select(Point p, Vector n, Color diffuse, Color specular, double shininess,
+                       double maxError, long seed, LightSink sink) {
+        if (lights.length == 0) {
+            return;
+        }
+        double ksR = shininess > 0.0 ? specular.x : 0.0;
+        double ksG = shininess > 0.0 ? specular.y : 0.0;
+        double ksB = shininess > 0.0 ? specular.z : 0.0;
+
+        double threshold = maxError * bound(0, p, n, diffuse, ksR, ksG, ksB);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            double b = bound(node, p, n, diffuse, ksR, ksG, ksB);
+            if (b <= 0.0) {
+                continue;
+            }
+            if (left[node] < 0) {
+                sink.accept(lights[lightIndex[node]], 1.0);
+            } else if (b < threshold) {
+                int leaf = sampleLeaf(node, random);
+                double leafPower = power[leaf];
+                sink.accept(lights[lightIndex[leaf]], power[node] / leafPower);
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = right[node];
+                stack[top++] = left[node];
+            }
+        }
+    }
+
+    /**
+     * Descend jusqu'à une feuille en choisissant chaque fils avec une
+     * probabilité proportionnelle à sa puissance : la feuille l est tirée
+     * avec la probabilité P_l / P_nœud.
+     */
+    private int sampleLeaf(int node, SplittableRandom random) {
+        while (left[node] >= 0) {
+            double pl = power[left[node]];
+            double total = pl + power[right[node]];
+            node = random.nextDouble() * total < pl ? left[node] : right[node];
+        }
+        return node;
+    }
+
+    /**
+     * Majorant de la contribution d'un nœud au point p.
+     */
+    private double bound(int node, Point p, Vector n, Color kd,
+                         double ksR, double ksG, double ksB) {
+        double cos = maxCosine(node, p, n);
+        double m = Math.max(kd.x * cos + ksR, Math.max(kd.y * cos + ksG, kd.z * cos + ksB));
+        return power[node] * m;
+    }
+
+    /**
+     * Majore n · l pour toute direction l du point p vers la boîte du nœud,
+     * en englobant la boîte dans une sphère vue sous un cône de demi-angle θ.
+     */
+    private double maxCosine(int node, Point p, Vector n) {
+        int o = 6 * node;
+        double hx = 0.5 * (bounds[o + 3] - bounds[o]);
+        double hy = 0.5 * (bounds[o + 4] - bounds[o + 1]);
+        double hz = 0.5 * (bounds[o + 5] - bounds[o + 2]);
+        double ax = bounds[o] + hx - p.x;
+        double ay = bounds[o + 1] + hy - p.y;
+        double az = bounds[o + 2] + hz - p.z;
+
+        double dist = Math.sqrt(ax * ax + ay * ay + az * az);
+        double radius = Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (dist <= radius) {
+            return 1.0;
+        }
+        double cosPhi = (n.x * ax + n.y * ay + n.z * az) / dist;
+        double sinTheta = radius / dist;
+        double cosTheta = Math.sqrt(1.0 - sinTheta * sinTheta);
+        if (cosPhi >= cosTheta) {
+            return 1.0;
+        }
+        double sinPhi = Math.sqrt(Math.max(0.0, 1.0 - cosPhi * cosPhi));
+        // cos(φ - θ)
+        return Math.max(0.0, Math.min(1.0, cosPhi * cosTheta + sinPhi * sinTheta));
+    }
+
+    /**
+     * Construit récursivement le sous-arbre des lumières [from, to).
+     *
+     * @return indice du nœud créé
+     */
+    private int build(List<PointLight> list, int from, int to) {
+        int node = nodeCount++;
+        int o = 6 * node;
+        bounds[o] = bounds[o + 1] = bounds[o + 2] = Double.POSITIVE_INFINITY;
+        bounds[o + 3] = bounds[o + 4] = bounds[o + 5] = Double.NEGATIVE_INFINITY;
+        double total = 0.0;
+        for (int k = from; k < to; k++) {
+            PointLight light = list.get(k);
+            Point q = light.getPosition();
+            bounds[o] = Math.min(bounds[o], q.x);
+            bounds[o + 1] = Math.min(bounds[o + 1], q.y);
+            bounds[o + 2] = Math.min(bounds[o + 2], q.z);
+            bounds[o + 3] = Math.max(bounds[o + 3], q.x);
+            bounds[o + 4] = Math.max(bounds[o + 4], q.y);
+            bounds[o + 5] = Math.max(bounds[o + 5], q.z);
+            total += lightPower(light);
+        }
+        power[node] = total;
+
+        if (to - from == 1) {
+            lights[from] = list.get(from);
+            lightIndex[node] = from;
+            left[node] = -1;
+            right[node] = -1;
+            return node;
+        }
+
+        double ex = bounds[o + 3] - bounds[o];
+        double ey = bounds[o + 4] - bounds[o + 1];
+        double ez = bounds[o + 5] - bounds[o + 2];
+        Comparator<PointLight> axis;
+        if (ex >= ey && ex >= ez) {
+            axis = Comparator.comparingDouble(l -> l.getPosition().x);
+        } else if (ey >= ez) {
+            axis = Comparator.comparingDouble(l -> l.getPosition().y);
+        } else {
+            axis = Comparator.comparingDouble(l -> l.getPosition().z);
+        }
+        list.subList(from, to).sort(axis);
+
+        int mid = (from + to) >>> 1;
+        left[node] = build(list, from, mid);
+        right[node] = build(list, mid, to);
+        return node;
+    }
+
+    /**
+     * Puissance scalaire d'une lumière : somme de ses composantes.
+     */
+    private static double lightPower(PointLight light) {
+        Color c = light.getColor();
+        return c.x + c.y + c.z;
+    }
+}
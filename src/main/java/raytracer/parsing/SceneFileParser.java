@@ -1,9 +1,17 @@
 package raytracer.parsing;
 
+import raytracer.acceleration.MeshFile;
 import raytracer.core.Camera;
 import raytracer.core.Scene;
+import raytracer.diagnostics.SceneParseEvent;
+import raytracer.geometry.Matrix4;
 import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Instance;
+import raytracer.geometry.shapes.MappedMesh;
 import raytracer.geometry.shapes.Plane;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.ShapeGroup;
 import raytracer.geometry.shapes.Sphere;
 import raytracer.geometry.shapes.Triangle;
 import raytracer.imaging.Color;
@@ -13,8 +21,15 @@ import raytracer.lighting.PointLight;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Analyseur de fichiers de description de scène (.scene).
@@ -28,6 +43,8 @@ import java.util.List;
  * - création de lumières directionnelles et ponctuelles ;
  * - création des formes géométriques : sphère, triangle et plan ;
  * - gestion de maxverts et vertex pour la construction de triangles ;
+ * - prototypes de géométrie (group / endgroup) placés par instance ;
+ * - maillages hors mémoire (meshfile) ;
  * - validation des valeurs imposées par la spécification.
  */
 public class SceneFileParser {
@@ -53,6 +70,38 @@ public class SceneFileParser {
     /** Accumulation des couleurs des lumières utilisée pour validation. */
     private Color accumulatedLightColor = new Color(0, 0, 0);
 
+    /** Prototypes définis par group / endgroup, par nom. */
+    private final Map<String, ShapeGroup> groups = new HashMap<>();
+
+    /** Groupe en cours de définition, ou null hors d'un bloc group. */
+    private ShapeGroup currentGroup;
+
+    /**
+     * Répertoire auquel les chemins meshfile sont restreints (chemin réel),
+     * ou null si tout fichier lisible est accepté.
+     */
+    private final Path meshRoot;
+
+    /**
+     * Construit un analyseur acceptant tout chemin meshfile, relatif au
+     * répertoire courant.
+     */
+    public SceneFileParser() {
+        this.meshRoot = null;
+    }
+
+    /**
+     * Construit un analyseur dont les chemins meshfile sont résolus par
+     * rapport à meshRoot ; un chemin qui en sort est refusé. Utilisé pour
+     * les scènes reçues d'un client du service de rendu.
+     *
+     * @param meshRoot répertoire des maillages autorisés
+     * @throws IOException si le répertoire n'existe pas
+     */
+    public SceneFileParser(Path meshRoot) throws IOException {
+        this.meshRoot = meshRoot.toRealPath();
+    }
+
     /**
      * Analyse un fichier .scene et retourne la scène correspondante.
      *
@@ -62,15 +111,54 @@ public class SceneFileParser {
      * @throws IllegalArgumentException si une commande est invalide ou incohérente
      */
     public Scene parse(String filename) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Analyse le contenu textuel d'une scène déjà chargé en mémoire.
+     * Utilisé lorsque la scène est transmise sans fichier (travailleurs
+     * distants, service de rendu).
+     *
+     * @param content texte complet au format .scene
+     * @return la scène entièrement construite
+     * @throws IllegalArgumentException si une commande est invalide ou incohérente
+     */
+    public Scene parseContent(String content) {
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+            return parse(reader);
+        } catch (IOException e) {
+            // impossible avec un StringReader
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Analyse une scène ligne par ligne depuis un lecteur quelconque.
+     * Les maillages meshfile restent ouverts jusqu'à la fermeture de la
+     * scène (Scene.close) ; en cas d'erreur, ils sont refermés ici.
+     *
+     * @param reader source des lignes du .scene
+     * @return la scène entièrement construite
+     * @throws IOException en cas d'erreur de lecture
+     * @throws IllegalArgumentException si une commande est invalide ou incohérente
+     */
+    public Scene parse(BufferedReader reader) throws IOException {
+        SceneParseEvent event = new SceneParseEvent();
+        event.begin();
+
         scene = new Scene();
         vertices.clear();
         maxverts = 0;
         accumulatedLightColor = new Color(0, 0, 0);
+        groups.clear();
+        currentGroup = null;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            int lineNumber = 0;
+        String line;
+        int lineNumber = 0;
 
+        try {
             while ((line = reader.readLine()) != null) {
                 lineNumber++;
                 line = line.trim();
@@ -87,9 +175,24 @@ public class SceneFileParser {
                             e);
                 }
             }
+
+            validateScene();
+        } catch (IOException | RuntimeException e) {
+            // les maillages déjà ouverts ne seront jamais rendus
+            try {
+                scene.close();
+            } catch (UncheckedIOException closing) {
+                e.addSuppressed(closing.getCause());
+            }
+            throw e;
         }
 
-        validateScene();
+        if (event.shouldCommit()) {
+            event.lines = lineNumber;
+            event.shapeCount = scene.getShapes().size();
+            event.lightCount = scene.getLights().size();
+            event.commit();
+        }
         return scene;
     }
 
@@ -121,6 +224,11 @@ public class SceneFileParser {
             case "vertex":      parseVertex(parts); break;
             case "tri":         parseTriangle(parts); break;
             case "plane":       parsePlane(parts); break;
+            case "meshfile":    parseMeshFile(parts); break;
+
+            case "group":       parseGroup(parts); break;
+            case "endgroup":    parseEndGroup(parts); break;
+            case "instance":    parseInstance(parts); break;
 
             default:
                 throw new IllegalArgumentException("Commande inconnue : " + parts[0]);
@@ -329,7 +437,7 @@ public class SceneFileParser {
 
         Sphere s = new Sphere(x, y, z, r, currentDiffuse, currentSpecular);
         s.setShininess(currentShininess);
-        scene.addShape(s);
+        addShape(s);
     }
 
     /**
@@ -375,7 +483,7 @@ public class SceneFileParser {
                 currentDiffuse, currentSpecular);
         t.setShininess(currentShininess);
 
-        scene.addShape(t);
+        addShape(t);
     }
 
     /**
@@ -393,7 +501,143 @@ public class SceneFileParser {
                 currentDiffuse, currentSpecular);
 
         pl.setShininess(currentShininess);
-        scene.addShape(pl);
+        addShape(pl);
+    }
+
+    /**
+     * Analyse un maillage hors mémoire écrit par MeshFile.write :
+     *   meshfile chemin
+     *   meshfile chemin budget_Mo
+     * Les grappes de triangles sont projetées à la demande dans la limite
+     * du budget. Le maillage prend le matériau courant.
+     */
+    private void parseMeshFile(String[] p) {
+        if (p.length != 2 && p.length != 3) {
+            throw new IllegalArgumentException("meshfile attend chemin [budget_Mo]");
+        }
+        long budget = MeshFile.DEFAULT_MAX_RESIDENT_BYTES;
+        if (p.length == 3) {
+            budget = Long.parseLong(p[2]) << 20;
+        }
+        MeshFile mesh;
+        try {
+            mesh = MeshFile.open(meshPath(p[1]), budget);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        scene.addResource(mesh);
+        MappedMesh m = new MappedMesh(mesh, currentDiffuse, currentSpecular);
+        m.setShininess(currentShininess);
+        addShape(m);
+    }
+
+    /**
+     * Résout le chemin d'un maillage, en vérifiant qu'il reste sous meshRoot
+     * lorsque l'analyseur est restreint.
+     */
+    private Path meshPath(String name) throws IOException {
+        if (meshRoot == null) {
+            return Paths.get(name);
+        }
+        Path file;
+        try {
+            file = meshRoot.resolve(name).normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Chemin de maillage invalide : " + name);
+        }
+        // un lien symbolique du répertoire peut désigner un fichier extérieur
+        if (!file.startsWith(meshRoot) || !file.toRealPath().startsWith(meshRoot)) {
+            throw new IllegalArgumentException("Maillage hors du répertoire autorisé : " + name);
+        }
+        return file;
+    }
+
+    /**
+     * Ajoute une forme au groupe en cours de définition, ou à la scène.
+     */
+    private void addShape(Shape shape) {
+        if (currentGroup != null) {
+            currentGroup.addShape(shape);
+        } else {
+            scene.addShape(shape);
+        }
+    }
+
+    /* =============================================================== */
+    /* ============================ INSTANCES ======================== */
+    /* =============================================================== */
+
+    /**
+     * Analyse le début d'un prototype : les formes suivantes, jusqu'à
+     * endgroup, sont rangées dans le groupe au lieu de la scène.
+     */
+    private void parseGroup(String[] p) {
+        if (p.length != 2) {
+            throw new IllegalArgumentException("group attend un nom");
+        }
+        if (currentGroup != null) {
+            throw new IllegalArgumentException("group imbriqué dans " + currentGroup.getName());
+        }
+        if (groups.containsKey(p[1])) {
+            throw new IllegalArgumentException("Groupe déjà défini : " + p[1]);
+        }
+        currentGroup = new ShapeGroup(p[1]);
+    }
+
+    /**
+     * Analyse la fin d'un prototype, qui devient utilisable par instance.
+     */
+    private void parseEndGroup(String[] p) {
+        if (p.length != 1) {
+            throw new IllegalArgumentException("endgroup n'attend pas d'argument");
+        }
+        if (currentGroup == null) {
+            throw new IllegalArgumentException("endgroup sans group");
+        }
+        groups.put(currentGroup.getName(), currentGroup);
+        currentGroup = null;
+    }
+
+    /**
+     * Analyse le placement d'un prototype :
+     *   instance nom tx ty tz
+     *   instance nom tx ty tz ax ay az angle échelle
+     * La transformation appliquée au prototype est une mise à l'échelle
+     * uniforme, puis une rotation d'angle (en degrés) autour de l'axe
+     * (ax, ay, az), puis la translation. L'instance prend le matériau courant.
+     */
+    private void parseInstance(String[] p) {
+        if (p.length != 5 && p.length != 10) {
+            throw new IllegalArgumentException(
+                    "instance attend nom tx ty tz [ax ay az angle échelle]");
+        }
+        ShapeGroup group = groups.get(p[1]);
+        if (group == null) {
+            throw new IllegalArgumentException("Groupe inconnu : " + p[1]);
+        }
+
+        Matrix4 transform = Matrix4.translation(
+                Double.parseDouble(p[2]),
+                Double.parseDouble(p[3]),
+                Double.parseDouble(p[4]));
+        if (p.length == 10) {
+            Vector axis = new Vector(
+                    Double.parseDouble(p[5]),
+                    Double.parseDouble(p[6]),
+                    Double.parseDouble(p[7]));
+            double scale = Double.parseDouble(p[9]);
+            if (scale <= 0) {
+                throw new IllegalArgumentException("L'échelle doit être positive");
+            }
+            transform = transform
+                    .multiply(Matrix4.rotation(axis, Double.parseDouble(p[8])))
+                    .multiply(Matrix4.scaling(scale, scale, scale));
+        }
+
+        Instance instance = new Instance(group, transform, currentDiffuse, currentSpecular);
+        instance.setShininess(currentShininess);
+        addShape(instance);
     }
 
     /* =============================================================== */
@@ -410,6 +654,9 @@ public class SceneFileParser {
         if (scene.getCamera() == null) {
             throw new IllegalArgumentException("La commande camera est obligatoire");
         }
+        if (currentGroup != null) {
+            throw new IllegalArgumentException("group " + currentGroup.getName() + " sans endgroup");
+        }
     }
 
     /**
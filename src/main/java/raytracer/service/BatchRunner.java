@@ -0,0 +1,207 @@
+package raytracer.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exécuteur de lots de travaux de rendu indépendants (suite de régression,
+ * file de petites scènes).
+ *
+ * Chaque travail se compose de trois étapes :
+ *  - load : entrées-sorties bloquantes (lecture et analyse de la scène,
+ *    décodage d'une image de référence) ;
+ *  - trace : calcul, sur un pool de threads plateforme de la taille du
+ *    nombre de cœurs ;
+ *  - store : entrées-sorties bloquantes (encodage et écriture des images).
+ *
+ * Les étapes d'entrées-sorties s'exécutent sur des threads virtuels
+ * lorsque le JDK les fournit (Java 21 et au-delà, détecté par réflexion),
+ * et sinon sur un pool de threads extensible. Un thread bloqué sur le
+ * disque n'occupe ainsi jamais un thread de calcul, et des milliers de
+ * petits travaux gardent tous les cœurs occupés sans les surcharger.
+ *
+ * Le nombre de travaux en cours est borné : submit bloque l'appelant
+ * lorsqu'il est atteint, ce qui limite la mémoire occupée par les scènes
+ * chargées d'avance.
+ */
+public final class BatchRunner implements AutoCloseable {
+
+    /**
+     * Étapes d'un travail.
+     *
+     * @param <L> résultat du chargement
+     * @param <T> résultat du calcul
+     * @param <R> résultat final
+     */
+    public interface Job<L, T, R> {
+
+        /**
+         * Charge les entrées du travail.
+         *
+         * @return données chargées
+         * @throws IOException en cas d'erreur de lecture
+         */
+        L load() throws IOException;
+
+        /**
+         * Effectue le calcul, sans entrée-sortie.
+         *
+         * @param loaded données chargées
+         * @return résultat du calcul
+         */
+        T trace(L loaded);
+
+        /**
+         * Écrit les résultats du travail.
+         *
+         * @param traced résultat du calcul
+         * @return résultat final
+         * @throws IOException en cas d'erreur d'écriture
+         */
+        R store(T traced) throws IOException;
+    }
+
+    /** Travaux en cours autorisés par thread de calcul. */
+    public static final int JOBS_PER_THREAD = 4;
+
+    /** Threads exécutant les étapes d'entrées-sorties. */
+    private final ExecutorService io;
+
+    /** Threads de calcul, en nombre fixe. */
+    private final ExecutorService cpu;
+
+    /** Nombre maximal de travaux en cours. */
+    private final int capacity;
+
+    /** Places libres pour des travaux (du chargement à l'écriture). */
+    private final Semaphore inFlight;
+
+    /** Vrai si les entrées-sorties s'exécutent sur des threads virtuels. */
+    private final boolean virtualThreads;
+
+    /**
+     * Crée un exécuteur dont le calcul utilise tous les cœurs.
+     */
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crée un exécuteur.
+     *
+     * @param threads nombre de threads de calcul
+     * @throws IllegalArgumentException si threads est inférieur à 1
+     */
+    public BatchRunner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Le nombre de threads doit être au moins 1");
+        }
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.io = virtual != null ? virtual : Executors.newCachedThreadPool(daemon("batch-io-"));
+        this.cpu = Executors.newFixedThreadPool(threads, daemon("batch-cpu-"));
+        this.capacity = JOBS_PER_THREAD * threads;
+        this.inFlight = new Semaphore(capacity);
+    }
+
+    /**
+     * Retourne Executors.newVirtualThreadPerTaskExecutor() si le JDK en
+     * cours d'exécution le fournit ; le code reste compilable en Java 11.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** @return vrai si les entrées-sorties s'exécutent sur des threads virtuels */
+    public boolean isUsingVirtualThreads() { return virtualThreads; }
+
+    /**
+     * Soumet un travail. Bloque tant que le nombre maximal de travaux en
+     * cours est atteint.
+     *
+     * @param job travail à exécuter
+     * @param <L> résultat du chargement
+     * @param <T> résultat du calcul
+     * @param <R> résultat final
+     * @return résultat, ou exception de l'étape en échec (les IOException
+     *         sont enveloppées dans une UncheckedIOException)
+     * @throws InterruptedException si l'attente d'une place est interrompue
+     */
+    public <L, T, R> CompletableFuture<R> submit(Job<L, T, R> job) throws InterruptedException {
+        inFlight.acquire();
+        CompletableFuture<R> result;
+        try {
+            result = CompletableFuture
+                    .supplyAsync(() -> {
+                        try {
+                            return job.load();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, io)
+                    .thenApplyAsync(job::trace, cpu)
+                    .thenApplyAsync(traced -> {
+                        try {
+                            return job.store(traced);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, io);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        // le résultat est complété avant de libérer la place : close() voit des travaux terminés
+        CompletableFuture<R> done = new CompletableFuture<>();
+        result.whenComplete((value, error) -> {
+            try {
+                if (error != null) {
+                    done.completeExceptionally(error instanceof CompletionException
+                            ? error : new CompletionException(error));
+                } else {
+                    done.complete(value);
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Attend la fin des travaux soumis puis arrête les threads.
+     */
+    @Override
+    public void close() {
+        try {
+            // toutes les places libérées : plus aucune étape ne reste à soumettre
+            inFlight.acquire(capacity);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cpu.shutdown();
+        io.shutdown();
+    }
+}
@@ -0,0 +1,253 @@
+package raytracer.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import raytracer.imaging.ImageRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service de rendu longue durée reposant sur le serveur HTTP du JDK.
+ *
+ * Le service évite de payer à chaque image le démarrage de la JVM, le
+ * chargement des classes, la compilation JIT et l'analyse de la scène.
+ * Il écoute uniquement sur l'interface loopback et expose :
+ *  - POST /render : le corps de la requête est le texte de la scène ;
+ *  - GET /render?path=fichier.scene : la scène est lue sur le disque ;
+ *  - GET /status : compteurs du service.
+ *
+ * Les deux routes /render répondent par les octets PNG de l'image. Les
+ * requêtes sont rendues en parallèle sur un pool de threads partagé.
+ *
+ * Le chemin de GET /render est résolu par rapport au répertoire des
+ * scènes fixé à la construction (le répertoire courant par défaut). Un
+ * chemin qui en sort, par ".." ou par un chemin absolu ou un lien
+ * symbolique, est refusé (403). Les commandes meshfile des scènes reçues,
+ * par POST comme par GET, sont soumises à la même restriction : le
+ * service ne lit aucun autre fichier.
+ */
+public class RenderServer {
+
+    /** Nombre de scènes analysées conservées par défaut. */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    /** Serveur HTTP du JDK. */
+    private final HttpServer server;
+
+    /** Pool partagé exécutant les requêtes. */
+    private final ExecutorService pool;
+
+    /** Cache des scènes analysées. */
+    private final SceneCache cache;
+
+    /** Répertoire des scènes lisibles par GET /render, chemin réel. */
+    private final Path sceneRoot;
+
+    /** Nombre d'images rendues. */
+    private final AtomicLong rendered = new AtomicLong();
+
+    /** Temps cumulé de rendu en nanosecondes. */
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    /**
+     * Construit le service sur le port loopback donné, les scènes lues sur
+     * le disque étant prises dans le répertoire courant.
+     *
+     * @param port port d'écoute (0 pour un port libre quelconque)
+     * @param threads nombre de threads de rendu
+     * @param cacheSize nombre de scènes analysées conservées
+     * @throws IOException si le port ne peut pas être ouvert
+     */
+    public RenderServer(int port, int threads, int cacheSize) throws IOException {
+        this(port, threads, cacheSize, Paths.get(""));
+    }
+
+    /**
+     * Construit le service sur le port loopback donné.
+     *
+     * @param port port d'écoute (0 pour un port libre quelconque)
+     * @param threads nombre de threads de rendu
+     * @param cacheSize nombre de scènes analysées conservées
+     * @param sceneRoot répertoire des scènes lisibles par GET /render
+     * @throws IOException si le port ne peut pas être ouvert
+     * @throws IllegalArgumentException si sceneRoot n'est pas un répertoire
+     */
+    public RenderServer(int port, int threads, int cacheSize, Path sceneRoot) throws IOException {
+        if (!Files.isDirectory(sceneRoot)) {
+            throw new IllegalArgumentException("Répertoire des scènes introuvable : " + sceneRoot);
+        }
+        this.sceneRoot = sceneRoot.toRealPath();
+        this.cache = new SceneCache(cacheSize, this.sceneRoot);
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.setExecutor(pool);
+        this.server.createContext("/render", this::handleRender);
+        this.server.createContext("/status", this::handleStatus);
+    }
+
+    /** Démarre l'écoute des requêtes. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Arrête le service et attend la fin des requêtes en cours.
+     *
+     * @param delaySeconds délai maximal d'attente
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        pool.shutdown();
+        try {
+            pool.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return port effectivement utilisé */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** @return cache des scènes analysées */
+    public SceneCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Traite une requête de rendu et répond par l'image PNG.
+     */
+    private void handleRender(HttpExchange exchange) throws IOException {
+        try {
+            String content;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                try (InputStream in = exchange.getRequestBody()) {
+                    content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                String path = queryParameter(exchange, "path");
+                if (path == null) {
+                    sendText(exchange, 400, "Paramètre path manquant");
+                    return;
+                }
+                Path file = resolveScene(path);
+                if (file == null) {
+                    sendText(exchange, 403, "Chemin hors du répertoire des scènes : " + path);
+                    return;
+                }
+                content = Files.readString(file);
+            } else {
+                sendText(exchange, 405, "Méthode non supportée");
+                return;
+            }
+
+            long start = System.nanoTime();
+            BufferedImage image;
+            try (SceneCache.Lease lease = cache.acquire(content)) {
+                image = new ImageRenderer(lease.getScene()).renderImage();
+            }
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+            long elapsed = System.nanoTime() - start;
+            rendered.incrementAndGet();
+            renderNanos.addAndGet(elapsed);
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.getResponseHeaders().set("X-Render-Millis",
+                    Long.toString(TimeUnit.NANOSECONDS.toMillis(elapsed)));
+            send(exchange, 200, png.toByteArray());
+        } catch (NoSuchFileException e) {
+            sendText(exchange, 404, "Fichier introuvable : " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendText(exchange, 400, "Erreur dans le fichier .scene : " + e.getMessage());
+        } catch (RuntimeException e) {
+            sendText(exchange, 500, "Erreur de rendu : " + e);
+        }
+    }
+
+    /**
+     * Répond par les compteurs du service au format texte.
+     */
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        long count = rendered.get();
+        long avgMicros = count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(renderNanos.get() / count);
+        String body = "rendered=" + count + "\n"
+                + "averageRenderMicros=" + avgMicros + "\n"
+                + "cachedScenes=" + cache.size() + "\n"
+                + "cacheHits=" + cache.getHits() + "\n"
+                + "cacheMisses=" + cache.getMisses() + "\n";
+        sendText(exchange, 200, body);
+    }
+
+    /**
+     * Résout un chemin de scène par rapport au répertoire des scènes.
+     *
+     * @return le fichier, ou null s'il est hors du répertoire des scènes
+     * @throws NoSuchFileException si le fichier n'existe pas
+     */
+    private Path resolveScene(String path) throws IOException {
+        Path file;
+        try {
+            file = sceneRoot.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!file.startsWith(sceneRoot)) {
+            return null;
+        }
+        // un lien symbolique du répertoire peut désigner un fichier extérieur
+        return file.toRealPath().startsWith(sceneRoot) ? file : null;
+    }
+
+    /**
+     * Extrait un paramètre de la chaîne de requête.
+     */
+    private static String queryParameter(HttpExchange exchange, String name)
+            throws UnsupportedEncodingException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
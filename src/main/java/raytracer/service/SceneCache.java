@@ -0,0 +1,202 @@
+package raytracer.service;
+
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+import raytracer.parsing.SceneFileParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU de scènes analysées, indexé par l'empreinte SHA-256 de leur texte.
+ *
+ * Une scène analysée n'est jamais modifiée pendant le rendu : la même
+ * instance peut donc être partagée entre plusieurs requêtes concurrentes.
+ *
+ * Les textes proviennent de clients : leurs commandes meshfile ne peuvent
+ * désigner que des fichiers situés sous le répertoire des maillages.
+ *
+ * Une scène est empruntée par acquire et rendue par Lease.close. Une scène
+ * évincée garde ses maillages ouverts tant qu'elle est empruntée, et est
+ * fermée (Scene.close) au dernier retour.
+ */
+public class SceneCache {
+
+    /** Nombre maximal de scènes conservées. */
+    private final int capacity;
+
+    /** Répertoire auquel les chemins meshfile sont restreints, ou null. */
+    private final Path meshRoot;
+
+    /** Scènes indexées par empreinte, dans l'ordre des accès. */
+    private final LinkedHashMap<String, CachedScene> entries;
+
+    /** Nombre de requêtes servies depuis le cache. */
+    private long hits;
+
+    /** Nombre de requêtes ayant nécessité une analyse. */
+    private long misses;
+
+    /**
+     * Construit un cache de capacité donnée, sans restriction sur les
+     * chemins meshfile.
+     *
+     * @param capacity nombre maximal de scènes conservées
+     */
+    public SceneCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Construit un cache de capacité donnée.
+     *
+     * @param capacity nombre maximal de scènes conservées
+     * @param meshRoot répertoire des maillages autorisés, ou null pour
+     *        n'imposer aucune restriction
+     */
+    public SceneCache(int capacity, Path meshRoot) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacité du cache doit être positive");
+        }
+        this.capacity = capacity;
+        this.meshRoot = meshRoot;
+        this.entries = new LinkedHashMap<String, CachedScene>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedScene> eldest) {
+                if (size() <= SceneCache.this.capacity) {
+                    return false;
+                }
+                eldest.getValue().evicted = true;
+                closeIfUnused(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Emprunte la scène correspondant au texte donné, en l'analysant
+     * uniquement si elle n'est pas déjà en cache.
+     *
+     * @param content texte complet au format .scene
+     * @return emprunt de la scène analysée, à rendre par close
+     * @throws IllegalArgumentException si la scène est invalide
+     */
+    public Lease acquire(String content) {
+        String key = SceneDigest.sha256(content);
+        synchronized (this) {
+            CachedScene cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                cached.users++;
+                return new Lease(cached);
+            }
+            misses++;
+        }
+
+        // l'analyse se fait hors verrou : deux requêtes identiques simultanées
+        // peuvent analyser deux fois, la première insertion l'emporte
+        CachedScene parsed = new CachedScene(parser().parseContent(content));
+        synchronized (this) {
+            CachedScene cached = entries.get(key);
+            if (cached == null) {
+                cached = parsed;
+                entries.put(key, cached);
+            } else {
+                parsed.scene.close();
+            }
+            cached.users++;
+            return new Lease(cached);
+        }
+    }
+
+    /**
+     * Rend un emprunt, et ferme la scène si elle a été évincée et que plus
+     * personne ne l'utilise.
+     */
+    private synchronized void release(CachedScene entry) {
+        entry.users--;
+        closeIfUnused(entry);
+    }
+
+    private static void closeIfUnused(CachedScene entry) {
+        if (entry.evicted && entry.users == 0) {
+            try {
+                entry.scene.close();
+            } catch (UncheckedIOException e) {
+                // maillages en lecture seule : rien n'est perdu
+                System.err.println("Erreur à la fermeture d'une scène : " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    private SceneFileParser parser() {
+        if (meshRoot == null) {
+            return new SceneFileParser();
+        }
+        try {
+            return new SceneFileParser(meshRoot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** @return nombre de scènes en cache */
+    public synchronized int size() { return entries.size(); }
+
+    /** @return nombre de requêtes servies depuis le cache */
+    public synchronized long getHits() { return hits; }
+
+    /** @return nombre de requêtes ayant nécessité une analyse */
+    public synchronized long getMisses() { return misses; }
+
+    /** Scène en cache et nombre de ses emprunts ; protégée par le cache. */
+    private static final class CachedScene {
+
+        /** Scène analysée. */
+        final Scene scene;
+
+        /** Nombre d'emprunts en cours. */
+        int users;
+
+        /** Vrai une fois la scène sortie du cache. */
+        boolean evicted;
+
+        CachedScene(Scene scene) {
+            this.scene = scene;
+        }
+    }
+
+    /**
+     * Emprunt d'une scène du cache, à rendre par close une fois le rendu
+     * terminé.
+     */
+    public final class Lease implements AutoCloseable {
+
+        /** Entrée empruntée, ou null une fois rendue. */
+        private CachedScene entry;
+
+        private Lease(CachedScene entry) {
+            this.entry = entry;
+        }
+
+        /** @return scène empruntée */
+        public Scene getScene() {
+            if (entry == null) {
+                throw new IllegalStateException("Emprunt déjà rendu");
+            }
+            return entry.scene;
+        }
+
+        /** Rend l'emprunt ; un second appel est sans effet. */
+        @Override
+        public void close() {
+            if (entry != null) {
+                release(entry);
+                entry = null;
+            }
+        }
+    }
+}
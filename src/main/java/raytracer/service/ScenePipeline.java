@@ -0,0 +1,457 @@
+package raytracer.service;
+
+import raytracer.core.Precision;
+import raytracer.core.Scene;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.PngWriter;
+import raytracer.parsing.SceneFileParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chaîne de rendu alimentée par un répertoire surveillé.
+ *
+ * Chaque fichier .scene déposé (ou modifié) dans le répertoire d'entrée
+ * traverse trois étages reliés par des files bornées :
+ *  1. analyse de la scène (entrées-sorties, un thread) ;
+ *  2. rendu dans un Framebuffer (calcul, un thread par cœur par défaut) ;
+ *  3. encodage et écriture de l'image dans le répertoire de sortie
+ *     (entrées-sorties, un thread), sous le nom du fichier .scene avec
+ *     l'extension de sa ligne output.
+ *
+ * Un étage dont la file de sortie est pleine se bloque : un étage lent
+ * freine ceux qui le précèdent, jusqu'à la surveillance du répertoire,
+ * qui garde alors les fichiers en attente. Le nombre d'images en mémoire
+ * est ainsi borné quel que soit le nombre de fichiers déposés.
+ *
+ * Un fichier n'est pris en compte qu'après SETTLE_MILLIS sans nouvel
+ * événement, pour ne pas lire un fichier en cours d'écriture. Un fichier
+ * déjà rendu et inchangé n'est pas rendu de nouveau.
+ */
+public final class ScenePipeline implements Closeable {
+
+    /** Délai sans événement après lequel un fichier est considéré comme écrit. */
+    public static final long SETTLE_MILLIS = 200;
+
+    /** Capacité par défaut de chaque file entre deux étages. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /** Extension des fichiers surveillés. */
+    private static final String SCENE_EXTENSION = ".scene";
+
+    /** Scène en cours de traitement, passée d'un étage à l'autre. */
+    private static final class Job {
+        final Path source;
+        final long detected;
+        Scene scene;
+        ImageRenderer renderer;
+        Framebuffer image;
+
+        Job(Path source, long detected) {
+            this.source = source;
+            this.detected = detected;
+        }
+    }
+
+    /** Répertoire surveillé. */
+    private final Path input;
+
+    /** Répertoire des images produites. */
+    private final Path output;
+
+    /** Précision du rendu. */
+    private final Precision precision;
+
+    /** Fichiers prêts à être analysés. */
+    private final BlockingQueue<Job> parseQueue;
+
+    /** Scènes analysées, prêtes à être rendues. */
+    private final BlockingQueue<Job> renderQueue;
+
+    /** Images rendues, prêtes à être écrites. */
+    private final BlockingQueue<Job> writeQueue;
+
+    /** Capacité de chaque file. */
+    private final int capacity;
+
+    /** Service de surveillance du répertoire. */
+    private final WatchService watcher;
+
+    /** Threads des étages, surveillance comprise. */
+    private final List<Thread> threads = new ArrayList<>();
+
+    /** Date de modification des fichiers déjà mis en file. */
+    private final Map<Path, FileTime> submitted = new HashMap<>();
+
+    /** Scènes analysées. */
+    private final AtomicLong parsed = new AtomicLong();
+
+    /** Scènes rendues. */
+    private final AtomicLong rendered = new AtomicLong();
+
+    /** Images écrites. */
+    private final AtomicLong written = new AtomicLong();
+
+    /** Scènes abandonnées sur une erreur. */
+    private final AtomicLong failed = new AtomicLong();
+
+    /** Temps cumulé entre la détection d'un fichier et l'écriture de son image. */
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    /** Nombre de threads de rendu. */
+    private final int renderThreads;
+
+    /** Échantillons par côté de pixel. */
+    private int samples = 1;
+
+    /** Niveau de compression des PNG écrits. */
+    private int pngLevel = PngWriter.DEFAULT_LEVEL;
+
+    /** Date de démarrage, pour le débit. */
+    private volatile long started;
+
+    /**
+     * Crée la chaîne et commence à surveiller le répertoire. Les threads
+     * ne démarrent qu'à l'appel de start.
+     *
+     * @param input répertoire surveillé
+     * @param output répertoire des images, créé si besoin
+     * @param precision précision du rendu
+     * @param renderThreads nombre de threads de rendu
+     * @param capacity capacité de chaque file entre deux étages
+     * @throws IOException si le répertoire ne peut pas être surveillé
+     * @throws IllegalArgumentException si renderThreads ou capacity est inférieur à 1
+     */
+    public ScenePipeline(Path input, Path output, Precision precision, int renderThreads, int capacity)
+            throws IOException {
+        if (renderThreads < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Threads et capacité des files doivent être au moins 1");
+        }
+        this.input = input;
+        this.output = Files.createDirectories(output);
+        this.precision = precision;
+        this.renderThreads = renderThreads;
+        this.capacity = capacity;
+        this.parseQueue = new ArrayBlockingQueue<>(capacity);
+        this.renderQueue = new ArrayBlockingQueue<>(capacity);
+        this.writeQueue = new ArrayBlockingQueue<>(capacity);
+        this.watcher = FileSystems.getDefault().newWatchService();
+        input.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Choisit le suréchantillonnage des rendus (voir ImageRenderer.setSamples).
+     *
+     * @param samples échantillons par côté de pixel
+     * @throws IllegalArgumentException si samples est inférieur à 1
+     */
+    public void setSamples(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("Le nombre d'échantillons doit être au moins 1");
+        }
+        this.samples = samples;
+    }
+
+    /**
+     * Choisit le niveau de compression des PNG écrits.
+     *
+     * @param level de 0 à 9
+     * @throws IllegalArgumentException si le niveau est invalide
+     */
+    public void setPngLevel(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Niveau de compression PNG invalide : " + level);
+        }
+        this.pngLevel = level;
+    }
+
+    /**
+     * Démarre la surveillance et les étages. Les fichiers .scene déjà
+     * présents dans le répertoire sont rendus.
+     *
+     * @throws IllegalStateException si la chaîne est déjà démarrée
+     */
+    public synchronized void start() {
+        if (!threads.isEmpty()) {
+            throw new IllegalStateException("Chaîne déjà démarrée");
+        }
+        started = System.nanoTime();
+        start("pipeline-watch", this::watch);
+        start("pipeline-parse", () -> stage(parseQueue, renderQueue, this::parse));
+        for (int k = 0; k < renderThreads; k++) {
+            start("pipeline-render-" + (k + 1), () -> stage(renderQueue, writeQueue, this::render));
+        }
+        start("pipeline-write", () -> stage(writeQueue, null, this::write));
+    }
+
+    private void start(String name, Runnable body) {
+        Thread t = new Thread(body, name);
+        t.setDaemon(true);
+        threads.add(t);
+        t.start();
+    }
+
+    /** Traitement d'un étage. */
+    private interface Step {
+        void apply(Job job) throws IOException;
+    }
+
+    /**
+     * Boucle d'un étage : prend un travail, le traite et le passe à la
+     * file suivante, en attendant qu'elle ait de la place.
+     */
+    private void stage(BlockingQueue<Job> from, BlockingQueue<Job> to, Step step) {
+        try {
+            while (true) {
+                Job job = from.take();
+                try {
+                    step.apply(job);
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    release(job);
+                    System.err.println("Erreur pour " + job.source.getFileName() + " : " + e.getMessage());
+                    continue;
+                }
+                if (to != null) {
+                    to.put(job);
+                }
+            }
+        } catch (InterruptedException e) {
+            // arrêt de la chaîne
+        }
+    }
+
+    private void parse(Job job) throws IOException {
+        Scene scene = new SceneFileParser().parse(job.source.toString());
+        job.scene = scene;
+        job.renderer = new ImageRenderer(scene, precision);
+        job.renderer.setSamples(samples);
+        job.renderer.setPngLevel(pngLevel);
+        parsed.incrementAndGet();
+    }
+
+    private void render(Job job) throws IOException {
+        job.image = Framebuffer.create(output, job.scene.getWidth(), job.scene.getHeight());
+        try {
+            job.renderer.renderFramebuffer(job.image);
+        } catch (RuntimeException e) {
+            release(job);
+            throw e;
+        }
+        rendered.incrementAndGet();
+    }
+
+    private void write(Job job) throws IOException {
+        try {
+            job.renderer.writeImage(job.image, output.resolve(outputName(job)).toFile());
+        } finally {
+            release(job);
+        }
+        written.incrementAndGet();
+        latencyNanos.addAndGet(System.nanoTime() - job.detected);
+    }
+
+    /** Nom de l'image : celui du fichier .scene, avec l'extension de sa ligne output. */
+    private static String outputName(Job job) {
+        String name = job.source.getFileName().toString();
+        String base = name.substring(0, name.length() - SCENE_EXTENSION.length());
+        String declared = job.scene.getOutput();
+        int dot = declared.lastIndexOf('.');
+        return base + (dot >= 0 ? declared.substring(dot) : ".png");
+    }
+
+    private static void release(Job job) {
+        if (job.image != null) {
+            try {
+                job.image.close();
+            } catch (IOException e) {
+                // fichier temporaire déjà supprimé sous Linux
+            }
+            job.image = null;
+        }
+        if (job.scene != null) {
+            try {
+                job.scene.close();
+            } catch (UncheckedIOException e) {
+                // maillages en lecture seule : rien n'est perdu
+            }
+        }
+    }
+
+    /**
+     * Surveillance du répertoire : les fichiers sont mis en file après
+     * SETTLE_MILLIS de calme. En cas de débordement des événements, le
+     * répertoire est relu en entier.
+     */
+    private void watch() {
+        Map<Path, Long> pending = new HashMap<>();
+        try {
+            scan(pending);
+            while (true) {
+                WatchKey key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan(pending);
+                        } else {
+                            Path file = input.resolve((Path) event.context());
+                            if (isScene(file)) {
+                                pending.put(file, System.nanoTime());
+                            }
+                        }
+                    }
+                    key.reset();
+                }
+                long now = System.nanoTime();
+                Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Path, Long> e = it.next();
+                    if (now - e.getValue() >= TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS)) {
+                        it.remove();
+                        submit(e.getKey());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // arrêt de la chaîne
+        } catch (IOException e) {
+            System.err.println("Erreur de surveillance de " + input + " : " + e.getMessage());
+        }
+    }
+
+    /** Ajoute les fichiers .scene du répertoire aux fichiers en attente. */
+    private void scan(Map<Path, Long> pending) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(input, "*" + SCENE_EXTENSION)) {
+            long now = System.nanoTime();
+            for (Path file : files) {
+                pending.put(file, now);
+            }
+        }
+    }
+
+    private static boolean isScene(Path file) {
+        return file.getFileName().toString().endsWith(SCENE_EXTENSION);
+    }
+
+    /**
+     * Met un fichier en file d'analyse, sauf s'il a disparu ou n'a pas
+     * changé depuis sa dernière mise en file. Bloque si la file est pleine.
+     */
+    private void submit(Path file) throws InterruptedException {
+        FileTime modified;
+        try {
+            if (!Files.isRegularFile(file)) {
+                return;
+            }
+            modified = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return;
+        }
+        if (modified.equals(submitted.get(file))) {
+            return;
+        }
+        submitted.put(file, modified);
+        parseQueue.put(new Job(file, System.nanoTime()));
+    }
+
+    /** @return nombre de scènes analysées */
+    public long getParsedCount() { return parsed.get(); }
+
+    /** @return nombre de scènes rendues */
+    public long getRenderedCount() { return rendered.get(); }
+
+    /** @return nombre d'images écrites */
+    public long getWrittenCount() { return written.get(); }
+
+    /** @return nombre de scènes abandonnées sur une erreur */
+    public long getFailedCount() { return failed.get(); }
+
+    /**
+     * Retourne la profondeur des trois files, dans l'ordre des étages.
+     *
+     * @return travaux en attente d'analyse, de rendu et d'écriture
+     */
+    public int[] getQueueDepths() {
+        return new int[] {parseQueue.size(), renderQueue.size(), writeQueue.size()};
+    }
+
+    /** @return capacité de chaque file */
+    public int getQueueCapacity() { return capacity; }
+
+    /** @return images écrites par seconde depuis le démarrage */
+    public double getThroughput() {
+        if (started == 0) {
+            return 0.0;
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        return seconds > 0 ? written.get() / seconds : 0.0;
+    }
+
+    /** @return délai moyen, en millisecondes, entre la détection d'un fichier et l'écriture de son image */
+    public double getMeanLatencyMillis() {
+        long n = written.get();
+        return n == 0 ? 0.0 : latencyNanos.get() / 1e6 / n;
+    }
+
+    /**
+     * Résume l'état de la chaîne sur une ligne.
+     *
+     * @return compteurs, débit et profondeur des files
+     */
+    public String report() {
+        int[] depths = getQueueDepths();
+        return String.format("%d images écrites, %d en erreur, %.2f images/s, %.0f ms en moyenne ;"
+                        + " files analyse %d/%d, rendu %d/%d, écriture %d/%d",
+                written.get(), failed.get(), getThroughput(), getMeanLatencyMillis(),
+                depths[0], capacity, depths[1], capacity, depths[2], capacity);
+    }
+
+    /**
+     * Arrête la surveillance et les étages ; les travaux en cours sont
+     * abandonnés.
+     *
+     * @throws IOException si le service de surveillance ne peut pas être fermé
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        watcher.close();
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (BlockingQueue<Job> queue : List.of(parseQueue, renderQueue, writeQueue)) {
+            for (Job job : queue) {
+                release(job);
+            }
+        }
+    }
+}
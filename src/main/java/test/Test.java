@@ -3,24 +3,37 @@ package test;
 import imgcompare.ImageComparator;
 import raytracer.core.Scene;
 import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.RenderCache;
 import raytracer.parsing.SceneFileParser;
+import raytracer.service.BatchRunner;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Lance tous les tests *.test sous src/main/java/test/jalon/...
  * Génère images_gen/<nom>.png et compare avec le PNG de référence
  * situé dans le même dossier que le .test.
+ *
+ * Les tests sont exécutés en parallèle par un BatchRunner (option
+ * --jobs n, par défaut un par cœur) ; leurs comptes rendus sont affichés
+ * dans l'ordre des fichiers.
  */
 public class Test {
 
     private static final int PIXEL_THRESHOLD = 1000;
 
+    // cache disque des rendus (option --cache), null si désactivé
+    private static RenderCache cache;
+
     // ----------------------------------------
     // Résultat d'un test individuel
     // ----------------------------------------
@@ -31,26 +44,41 @@ public class Test {
         final boolean ok;
         final int diffPixels;   // -1 si erreur parsing / exécution
         final String message;
+        final String log;       // sortie standard du test
+        final String errors;    // sortie d'erreur du test
 
         TestResult(String name, String jalon,
                    boolean skipped, boolean ok,
-                   int diffPixels, String message) {
+                   int diffPixels, String message,
+                   String log, String errors) {
             this.name = name;
             this.jalon = jalon;
             this.skipped = skipped;
             this.ok = ok;
             this.diffPixels = diffPixels;
             this.message = message;
+            this.log = log;
+            this.errors = errors;
         }
     }
 
     // ----------------------------------------
     // main
     // ----------------------------------------
-    public static void main(String[] args) throws IOException {
-        Path testsRoot = (args.length > 0)
-                ? Paths.get(args[0])
-                : Paths.get("src/main/java/test");
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path testsRoot = Paths.get("src/main/java/test");
+        int jobs = Runtime.getRuntime().availableProcessors();
+        for (int k = 0; k < args.length; k++) {
+            if (args[k].equals("--cache")) {
+                // les scènes inchangées depuis le dernier passage ne sont pas re-rendues
+                cache = new RenderCache(Paths.get(RenderCache.DEFAULT_DIR), RenderCache.DEFAULT_MAX_BYTES);
+            } else if (args[k].equals("--jobs") && k + 1 < args.length) {
+                // nombre de tests rendus en parallèle
+                jobs = Math.max(1, Integer.parseInt(args[++k]));
+            } else {
+                testsRoot = Paths.get(args[k]);
+            }
+        }
 
         if (!Files.isDirectory(testsRoot)) {
             System.err.println("Dossier de tests introuvable : " + testsRoot.toAbsolutePath());
@@ -58,95 +86,189 @@ public class Test {
         }
 
         System.out.println("Recherche des .test dans : " + testsRoot.toAbsolutePath());
+        Files.createDirectories(Paths.get("images_gen"));
 
-        List<TestResult> results = new ArrayList<>();
-
+        List<Path> testFiles;
         try (Stream<Path> paths = Files.walk(testsRoot)) {
-            paths.filter(p -> p.getFileName().toString().endsWith(".test"))
+            testFiles = paths.filter(p -> p.getFileName().toString().endsWith(".test"))
                     .sorted()
-                    .forEach(p -> results.add(runSingleTest(p)));
+                    .collect(Collectors.toList());
+        }
+
+        // lecture et écriture sur des threads virtuels, rendu sur un thread par cœur ;
+        // les comptes rendus sont affichés dans l'ordre des fichiers
+        List<CompletableFuture<TestResult>> pending = new ArrayList<>();
+        List<TestResult> results = new ArrayList<>();
+        try (BatchRunner runner = new BatchRunner(jobs)) {
+            for (Path testFile : testFiles) {
+                pending.add(runner.submit(new SingleTest(testFile)).exceptionally(SingleTest::resultOf));
+            }
+            for (CompletableFuture<TestResult> f : pending) {
+                TestResult r = f.join();
+                System.out.print(r.log);
+                System.err.print(r.errors);
+                results.add(r);
+            }
         }
 
         printSummary(results);
     }
 
     // ----------------------------------------
-    // Exécution d'un test
+    // Exécution d'un test, en trois étapes :
+    // chargement (E/S), rendu (calcul), écriture et comparaison (E/S)
     // ----------------------------------------
-    private static TestResult runSingleTest(Path testFile) {
-        String fileName = testFile.getFileName().toString(); // p.ex. tp61.test
-        String baseName = fileName.substring(0, fileName.lastIndexOf('.')); // tp61
-
-        // jalon = parent direct (tp61.test est dans .../jalon/jalon6/)
-        String jalon = testFile.getParent().getFileName().toString(); // jalon6
-
-        Path refImagePath = testFile.getParent().resolve(baseName + ".png");
-        if (!Files.exists(refImagePath)) {
-            String msg = "[SKIP] Pas d'image de référence pour "
-                    + testFile + " (attendu : " + refImagePath + ")";
-            System.err.println(msg);
-            return new TestResult(baseName, jalon, true, false, 0, msg);
-        }
+    private static final class SingleTest implements BatchRunner.Job<SingleTest, SingleTest, TestResult> {
 
-        System.out.println("=== Test " + jalon + " / " + baseName + " ===");
-        System.out.println("Scene : " + testFile);
-        System.out.println("Ref   : " + refImagePath);
-
-        try {
-            // 1) parsing de la scène
-            SceneFileParser parser = new SceneFileParser();
-            Scene scene = parser.parse(testFile.toString());
-
-            // impose le nom de sortie = baseName.png
-            scene.setOutput(baseName + ".png");
-
-            // 2) rendu -> images_gen/baseName.png
-            ImageRenderer renderer = new ImageRenderer(scene);
-            renderer.render();
-
-            Path generatedImagePath = Paths.get("images_gen").resolve(scene.getOutput());
-            System.out.println("Gen   : " + generatedImagePath);
-
-            // 3) chargement des images
-            BufferedImage refImg = ImageIO.read(refImagePath.toFile());
-            BufferedImage genImg = ImageIO.read(generatedImagePath.toFile());
-
-            if (refImg.getWidth() != genImg.getWidth()
-                    || refImg.getHeight() != genImg.getHeight()) {
-                String msg = String.format(
-                        "[ERREUR] Dimensions différentes : ref=%dx%d, gen=%dx%d",
-                        refImg.getWidth(), refImg.getHeight(),
-                        genImg.getWidth(), genImg.getHeight());
-                System.err.println(msg);
-                System.out.println();
-                return new TestResult(baseName, jalon, false, false, -1, msg);
+        /** Échec d'une étape, portant le résultat du test. */
+        private static final class Failure extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            final transient TestResult result;
+
+            Failure(TestResult result, Throwable cause) {
+                super(cause);
+                this.result = result;
             }
+        }
 
-            // 4) comparaison
-            ImageComparator comparator = new ImageComparator();
-            int diffPixels = comparator.countDifferentPixels(refImg, genImg);
+        final Path testFile;
+        final String baseName;
+        final String jalon;
+        final StringBuilder log = new StringBuilder();
+        final StringBuilder errors = new StringBuilder();
+
+        Path refImagePath;
+        Scene scene;
+        ImageRenderer renderer;
+        BufferedImage refImg;
+        BufferedImage genImg;
+
+        SingleTest(Path testFile) {
+            this.testFile = testFile;
+            String fileName = testFile.getFileName().toString(); // p.ex. tp61.test
+            this.baseName = fileName.substring(0, fileName.lastIndexOf('.')); // tp61
+            // jalon = parent direct (tp61.test est dans .../jalon/jalon6/)
+            this.jalon = testFile.getParent().getFileName().toString(); // jalon6
+        }
 
-            // image de diff (optionnelle mais utile)
-            BufferedImage diffImg = comparator.createDiffImage(refImg, genImg);
-            Path diffPath = Paths.get("images_gen").resolve(baseName + "_diff.png");
-            ImageIO.write(diffImg, "png", diffPath.toFile());
+        @Override
+        public SingleTest load() {
+            refImagePath = testFile.getParent().resolve(baseName + ".png");
+            if (!Files.exists(refImagePath)) {
+                return this;
+            }
+            log.append("=== Test ").append(jalon).append(" / ").append(baseName).append(" ===\n");
+            log.append("Scene : ").append(testFile).append('\n');
+            log.append("Ref   : ").append(refImagePath).append('\n');
+            try {
+                // 1) parsing de la scène
+                SceneFileParser parser = new SceneFileParser();
+                scene = parser.parse(testFile.toString());
+
+                // impose le nom de sortie = baseName.png
+                scene.setOutput(baseName + ".png");
+                renderer = new ImageRenderer(scene);
+                renderer.setCache(cache);
+
+                refImg = ImageIO.read(refImagePath.toFile());
+                return this;
+            } catch (Exception e) {
+                throw fail(e);
+            }
+        }
 
-            System.out.println("Différence : " + diffPixels + " pixels");
-            System.out.println("Diff   : " + diffPath);
+        @Override
+        public SingleTest trace(SingleTest loaded) {
+            if (renderer == null) {
+                return this;
+            }
+            try {
+                // 2) rendu ; avec le cache, render() écrit ou recopie directement le PNG
+                if (cache != null) {
+                    renderer.render();
+                } else {
+                    genImg = renderer.renderImage();
+                }
+                return this;
+            } catch (Exception e) {
+                throw fail(e);
+            } finally {
+                scene.close();
+            }
+        }
 
-            boolean ok = diffPixels < PIXEL_THRESHOLD;
-            System.out.println("=> " + (ok ? "OK" : "KO"));
-            System.out.println();
+        @Override
+        public TestResult store(SingleTest traced) {
+            if (renderer == null) {
+                String msg = "[SKIP] Pas d'image de référence pour "
+                        + testFile + " (attendu : " + refImagePath + ")";
+                errors.append(msg).append('\n');
+                return result(true, false, 0, msg);
+            }
+            try {
+                // -> images_gen/baseName.png
+                Path generatedImagePath = Paths.get("images_gen").resolve(baseName + ".png");
+                if (genImg != null) {
+                    renderer.writeImage(genImg);
+                } else {
+                    genImg = ImageIO.read(generatedImagePath.toFile());
+                }
+                log.append("Gen   : ").append(generatedImagePath).append('\n');
+
+                if (refImg.getWidth() != genImg.getWidth()
+                        || refImg.getHeight() != genImg.getHeight()) {
+                    String msg = String.format(
+                            "[ERREUR] Dimensions différentes : ref=%dx%d, gen=%dx%d",
+                            refImg.getWidth(), refImg.getHeight(),
+                            genImg.getWidth(), genImg.getHeight());
+                    errors.append(msg).append('\n');
+                    log.append('\n');
+                    return result(false, false, -1, msg);
+                }
+
+                // 4) comparaison
+                ImageComparator comparator = new ImageComparator();
+                int diffPixels = comparator.countDifferentPixels(refImg, genImg);
+
+                // image de diff (optionnelle mais utile)
+                BufferedImage diffImg = comparator.createDiffImage(refImg, genImg);
+                Path diffPath = Paths.get("images_gen").resolve(baseName + "_diff.png");
+                ImageIO.write(diffImg, "png", diffPath.toFile());
+
+                log.append("Différence : ").append(diffPixels).append(" pixels\n");
+                log.append("Diff   : ").append(diffPath).append('\n');
+
+                boolean ok = diffPixels < PIXEL_THRESHOLD;
+                log.append("=> ").append(ok ? "OK" : "KO").append("\n\n");
+
+                return result(false, ok, diffPixels, "diff=" + diffPixels + " pixels");
+            } catch (Exception e) {
+                throw fail(e);
+            }
+        }
 
-            return new TestResult(baseName, jalon, false, ok, diffPixels,
-                    "diff=" + diffPixels + " pixels");
+        /** Résultat d'un test dont une étape a échoué. */
+        static TestResult resultOf(Throwable error) {
+            Throwable cause = error.getCause();
+            if (cause instanceof Failure) {
+                return ((Failure) cause).result;
+            }
+            throw new IllegalStateException(cause != null ? cause : error);
+        }
 
-        } catch (Exception e) {
+        private Failure fail(Exception e) {
             String msg = "[ERREUR] pendant le test " + testFile + " : " + e.getMessage();
-            System.err.println(msg);
-            e.printStackTrace();
-            System.out.println();
-            return new TestResult(baseName, jalon, false, false, -1, msg);
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            errors.append(msg).append('\n').append(trace);
+            log.append('\n');
+            return new Failure(result(false, false, -1, msg), e);
+        }
+
+        private TestResult result(boolean skipped, boolean ok, int diffPixels, String message) {
+            return new TestResult(baseName, jalon, skipped, ok, diffPixels, message,
+                    log.toString(), errors.toString());
         }
     }
 
@@ -0,0 +1,129 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.service.BatchRunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    /** Travail qui enregistre le thread et la concurrence de chaque étape. */
+    private static final class Probe implements BatchRunner.Job<Integer, Integer, Integer> {
+
+        static final AtomicInteger tracing = new AtomicInteger();
+        static final AtomicInteger maxTracing = new AtomicInteger();
+        static final AtomicInteger inFlight = new AtomicInteger();
+        static final AtomicInteger maxInFlight = new AtomicInteger();
+        static final AtomicInteger wrongThread = new AtomicInteger();
+
+        private final int value;
+
+        Probe(int value) {
+            this.value = value;
+        }
+
+        private static boolean onCpuThread() {
+            return Thread.currentThread().getName().startsWith("batch-cpu-");
+        }
+
+        @Override
+        public Integer load() {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            if (onCpuThread()) {
+                wrongThread.incrementAndGet();
+            }
+            return value;
+        }
+
+        @Override
+        public Integer trace(Integer loaded) {
+            maxTracing.accumulateAndGet(tracing.incrementAndGet(), Math::max);
+            if (!onCpuThread()) {
+                wrongThread.incrementAndGet();
+            }
+            Thread.yield();
+            tracing.decrementAndGet();
+            return loaded * 2;
+        }
+
+        @Override
+        public Integer store(Integer traced) {
+            if (onCpuThread()) {
+                wrongThread.incrementAndGet();
+            }
+            inFlight.decrementAndGet();
+            return traced + 1;
+        }
+    }
+
+    @Test
+    public void testStagesRunOnTheirExecutorsWithBoundedConcurrency() throws InterruptedException {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        try (BatchRunner runner = new BatchRunner(2)) {
+            assertEquals(Runtime.version().feature() >= 21, runner.isUsingVirtualThreads());
+            for (int k = 0; k < 500; k++) {
+                results.add(runner.submit(new Probe(k)));
+            }
+        }
+        for (int k = 0; k < 500; k++) {
+            assertTrue(results.get(k).isDone());
+            assertEquals(2 * k + 1, (int) results.get(k).join());
+        }
+        assertEquals(0, Probe.wrongThread.get());
+        assertTrue(Probe.maxTracing.get() <= 2, "calculs simultanés : " + Probe.maxTracing.get());
+        assertTrue(Probe.maxInFlight.get() <= 2 * BatchRunner.JOBS_PER_THREAD,
+                "travaux simultanés : " + Probe.maxInFlight.get());
+    }
+
+    @Test
+    public void testFailingStageCompletesExceptionally() throws InterruptedException {
+        CompletableFuture<String> failed;
+        CompletableFuture<String> ok;
+        try (BatchRunner runner = new BatchRunner(1)) {
+            failed = runner.submit(new BatchRunner.Job<String, String, String>() {
+                @Override
+                public String load() throws IOException {
+                    throw new IOException("scène illisible");
+                }
+
+                @Override
+                public String trace(String loaded) {
+                    return loaded;
+                }
+
+                @Override
+                public String store(String traced) {
+                    return traced;
+                }
+            });
+            ok = runner.submit(new BatchRunner.Job<String, String, String>() {
+                @Override
+                public String load() {
+                    return "a";
+                }
+
+                @Override
+                public String trace(String loaded) {
+                    return loaded + "b";
+                }
+
+                @Override
+                public String store(String traced) {
+                    return traced + "c";
+                }
+            });
+        }
+        CompletionException e = assertThrows(CompletionException.class, failed::join);
+        assertTrue(e.getCause() instanceof UncheckedIOException);
+        assertEquals("abc", ok.join());
+        assertThrows(IllegalArgumentException.class, () -> new BatchRunner(0));
+    }
+}
@@ -0,0 +1,118 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.acceleration.Bvh;
+import raytracer.core.Camera;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.Scene;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.imaging.Color;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BvhRefitTest {
+
+    private static Scene spheres(List<Sphere> out, Random random) {
+        Scene scene = new Scene();
+        scene.setWidth(10);
+        scene.setHeight(10);
+        scene.setCamera(new Camera(0, 0, 30, 0, 0, 0, 0, 1, 0, 45));
+        for (int k = 0; k < 300; k++) {
+            Sphere s = new Sphere(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10,
+                    random.nextDouble() * 20 - 10, 0.4, new Color(0.5, 0.5, 0.5), new Color());
+            out.add(s);
+            scene.addShape(s);
+        }
+        return scene;
+    }
+
+    private static void assertMatchesLinear(Scene scene, Random random) {
+        for (int k = 0; k < 200; k++) {
+            Ray ray = new Ray(new Point(0, 0, 30),
+                    new Vector(random.nextDouble() * 0.6 - 0.3, random.nextDouble() * 0.6 - 0.3, -1));
+            Optional<Intersection> expected = Optional.empty();
+            for (Shape s : scene.getShapes()) {
+                Optional<Intersection> hit = s.intersect(ray);
+                if (hit.isPresent() && (!expected.isPresent() || hit.get().getT() < expected.get().getT())) {
+                    expected = hit;
+                }
+            }
+            Optional<Intersection> actual = scene.findClosestIntersection(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                assertSame(expected.get().getShape(), actual.get().getShape());
+            }
+        }
+    }
+
+    @Test
+    public void testSmallMotionIsRefittedWithoutRebuild() {
+        Random random = new Random(11);
+        List<Sphere> spheres = new ArrayList<>();
+        Scene scene = spheres(spheres, random);
+        assertMatchesLinear(scene, random);
+
+        for (int frame = 0; frame < 5; frame++) {
+            for (Sphere s : spheres) {
+                Point c = s.getCenter();
+                s.setCenter(new Point(c.x + 0.1, c.y + random.nextGaussian() * 0.05, c.z));
+            }
+            assertFalse(scene.refit());
+            assertMatchesLinear(scene, random);
+        }
+    }
+
+    @Test
+    public void testShuffledPositionsTriggerRebuild() {
+        Random random = new Random(5);
+        List<Sphere> spheres = new ArrayList<>();
+        Scene scene = spheres(spheres, random);
+        assertMatchesLinear(scene, random);
+
+        List<Point> centers = new ArrayList<>();
+        for (Sphere s : spheres) {
+            centers.add(s.getCenter());
+        }
+        Collections.shuffle(centers, random);
+        for (int k = 0; k < spheres.size(); k++) {
+            spheres.get(k).setCenter(centers.get(k));
+        }
+
+        assertTrue(scene.refit());
+        assertMatchesLinear(scene, random);
+    }
+
+    @Test
+    public void testRefitGrowsCostAndTracksMovedBounds() {
+        Random random = new Random(2);
+        List<Sphere> spheres = new ArrayList<>();
+        spheres(spheres, random);
+        Bvh bvh = new Bvh(spheres);
+        double cost = bvh.getBuildCost();
+        assertTrue(cost > 0);
+
+        for (Sphere s : spheres) {
+            s.setCenter(s.getCenter().add(new Vector(0, 0, 50 * random.nextDouble())));
+        }
+        assertTrue(bvh.refit() > cost);
+
+        for (Sphere s : spheres) {
+            s.setCenter(new Point(s.getCenter().x, s.getCenter().y, 0));
+        }
+        bvh.refit();
+        for (Sphere s : spheres) {
+            assertTrue(s.getBounds().getMinZ() >= bvh.getBounds().getMinZ());
+            assertTrue(s.getBounds().getMaxZ() <= bvh.getBounds().getMaxZ());
+        }
+    }
+}
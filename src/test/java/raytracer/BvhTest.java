@@ -0,0 +1,162 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.acceleration.Bvh;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BvhTest {
+
+    private static Optional<Intersection> linear(List<Shape> shapes, Ray ray) {
+        Optional<Intersection> best = Optional.empty();
+        for (Shape s : shapes) {
+            Optional<Intersection> hit = s.intersect(ray);
+            if (hit.isPresent() && hit.get().getT() > 0
+                    && (!best.isPresent() || hit.get().getT() < best.get().getT())) {
+                best = hit;
+            }
+        }
+        return best;
+    }
+
+    /** Grille de triangles jointifs : les rayons passant par une arête touchent deux triangles au même t. */
+    private static List<Shape> grid(int n) {
+        List<Shape> shapes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                Point a = new Point(i, j, 0);
+                Point b = new Point(i + 1, j, 0);
+                Point c = new Point(i + 1, j + 1, 0);
+                Point d = new Point(i, j + 1, 0);
+                shapes.add(new Triangle(a, b, c, new Color(), new Color()));
+                shapes.add(new Triangle(a, c, d, new Color(), new Color()));
+            }
+        }
+        return shapes;
+    }
+
+    @Test
+    public void testTiesOnSharedEdgesResolveLikeLinearSearch() {
+        List<Shape> shapes = grid(16);
+        Bvh bvh = new Bvh(shapes);
+        assertTrue(bvh.getNodeCount() < 2 * shapes.size());
+
+        for (int i = 0; i <= 16; i++) {
+            for (int j = 0; j < 16; j++) {
+                // sommets et diagonales de la grille
+                Ray ray = new Ray(new Point(i, j, 5), new Vector(0, 0, -1));
+                Optional<Intersection> expected = linear(shapes, ray);
+                Optional<Intersection> actual = bvh.intersect(ray);
+                assertEquals(expected.isPresent(), actual.isPresent());
+                if (expected.isPresent()) {
+                    assertSame(expected.get().getShape(), actual.get().getShape(), "rayon " + i + "," + j);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAxisParallelRaysOnBoxFacesAreNotCulled() {
+        List<Shape> shapes = new ArrayList<>();
+        for (int k = 0; k < 20; k++) {
+            shapes.add(new Sphere(3 * k, 0, 0, 1, new Color(), new Color()));
+        }
+        Bvh bvh = new Bvh(shapes);
+
+        // origine sur le plan y = 1 des boîtes, direction parallèle à ce plan : tangente aux sphères
+        Ray grazing = new Ray(new Point(-5, 1, 0), new Vector(1, 0, 0));
+        assertEquals(linear(shapes, grazing).isPresent(), bvh.intersect(grazing).isPresent());
+
+        Ray inside = new Ray(new Point(-5, 0, 0), new Vector(1, 0, 0));
+        assertSame(shapes.get(0), bvh.intersect(inside).get().getShape());
+
+        Ray backwards = new Ray(new Point(30, 0, 0), new Vector(-1, 0, 0));
+        assertEquals(linear(shapes, backwards).get().getT(), bvh.intersect(backwards).get().getT());
+    }
+
+    @Test
+    public void testRandomRaysMatchLinearSearch() {
+        Random random = new Random(9);
+        List<Shape> shapes = new ArrayList<>();
+        for (int k = 0; k < 500; k++) {
+            shapes.add(new Sphere(random.nextGaussian() * 5, random.nextGaussian() * 5, random.nextGaussian() * 5,
+                    0.1 + random.nextDouble(), new Color(), new Color()));
+        }
+        Bvh bvh = new Bvh(shapes);
+        for (int k = 0; k < 500; k++) {
+            Ray ray = new Ray(new Point(random.nextGaussian() * 20, random.nextGaussian() * 20, random.nextGaussian() * 20),
+                    new Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+            Optional<Intersection> expected = linear(shapes, ray);
+            Optional<Intersection> actual = bvh.intersect(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                assertSame(expected.get().getShape(), actual.get().getShape());
+                assertEquals(expected.get().getT(), actual.get().getT());
+            }
+        }
+    }
+
+    @Test
+    public void testParallelBuildOfLargeSetMatchesLinearSearch() {
+        Random random = new Random(4);
+        List<Shape> shapes = new ArrayList<>();
+        for (int k = 0; k < 40000; k++) {
+            // amas de densités différentes : la coupe SAH n'est pas la médiane
+            double spread = k % 10 == 0 ? 50 : 3;
+            shapes.add(new Sphere(random.nextGaussian() * spread, random.nextGaussian() * spread,
+                    random.nextGaussian() * spread, 0.05 + 0.1 * random.nextDouble(), new Color(), new Color()));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Bvh bvh;
+        try {
+            bvh = new Bvh(shapes, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(bvh.getBuildCost(), bvh.getSahCost());
+
+        for (int k = 0; k < 200; k++) {
+            Ray ray = new Ray(new Point(random.nextGaussian() * 40, random.nextGaussian() * 40, 80),
+                    new Vector(random.nextGaussian() * 0.3, random.nextGaussian() * 0.3, -1));
+            Optional<Intersection> expected = linear(shapes, ray);
+            Optional<Intersection> actual = bvh.intersect(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                assertSame(expected.get().getShape(), actual.get().getShape());
+            }
+        }
+    }
+
+    @Test
+    public void testDegenerateDistributionsStayWithinTraversalStack() {
+        List<Shape> shapes = new ArrayList<>();
+        // centres confondus : aucune coupe SAH possible
+        for (int k = 0; k < 100; k++) {
+            shapes.add(new Sphere(0, 0, 0, 1 + k * 0.01, new Color(), new Color()));
+        }
+        // positions en progression géométrique : coupes SAH très déséquilibrées
+        for (int k = 0; k < 300; k++) {
+            shapes.add(new Sphere(Math.pow(1.1, k), 0, 0, 0.01, new Color(), new Color()));
+        }
+        Bvh bvh = new Bvh(shapes);
+
+        Ray ray = new Ray(new Point(-100, 0, 0), new Vector(1, 0, 0));
+        assertEquals(linear(shapes, ray).get().getT(), bvh.intersect(ray).get().getT());
+        Ray far = new Ray(new Point(Math.pow(1.1, 299), 5, 0), new Vector(0, -1, 0));
+        assertSame(shapes.get(399), bvh.intersect(far).get().getShape());
+    }
+}
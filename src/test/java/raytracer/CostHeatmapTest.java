@@ -0,0 +1,66 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.imaging.CostHeatmap;
+import raytracer.imaging.ImageRenderer;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CostHeatmapTest {
+
+    private static final String SCENE =
+            "size 40 30\n" +
+            "camera 0 0 5  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "point 2 2 4  0.4 0.4 0.4\n" +
+            "directional 0 0 -1  0.4 0.4 0.4\n" +
+            "sphere 0 0 0 1\n" +
+            "sphere 1 1 -2 0.5\n";
+
+    @Test
+    public void testCountsPerPixel() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        ImageRenderer renderer = new ImageRenderer(scene);
+        CostHeatmap heatmap = new CostHeatmap(40, 30);
+        renderer.setHeatmap(heatmap);
+
+        BufferedImage image = renderer.renderImage();
+
+        // coin : fond, un seul rayon primaire testé contre 2 formes, aucune ombre
+        assertEquals(2, heatmap.getIntersectionTests(0, 0));
+        assertEquals(0, heatmap.getShadowRays(0, 0));
+
+        // centre : sphère touchée, un rayon d'ombre par lumière
+        assertEquals(2, heatmap.getShadowRays(20, 15));
+        assertEquals(2 + 2 * 2, heatmap.getIntersectionTests(20, 15));
+
+        // l'image produite est identique à un rendu non instrumenté
+        BufferedImage plain = new ImageRenderer(scene).renderImage();
+        assertEquals(plain.getRGB(20, 15), image.getRGB(20, 15));
+        assertTrue(heatmap.getTotalNanos() > 0);
+    }
+
+    @Test
+    public void testWritesPngAndCsv() throws Exception {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        ImageRenderer renderer = new ImageRenderer(scene);
+        CostHeatmap heatmap = new CostHeatmap(40, 30);
+        renderer.setHeatmap(heatmap);
+        renderer.renderImage();
+
+        Path dir = Files.createTempDirectory("heatmap_");
+        heatmap.write(dir.resolve("cost.png"), dir.resolve("cost.csv"));
+
+        List<String> lines = Files.readAllLines(dir.resolve("cost.csv"));
+        assertEquals(1 + 40 * 30, lines.size());
+        assertTrue(Files.size(dir.resolve("cost.png")) > 0);
+    }
+}
@@ -0,0 +1,87 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.imaging.DeferredRenderer;
+import raytracer.imaging.GBuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeferredRendererTest {
+
+    private static final String SCENE =
+            "size 50 40\n" +
+            "camera 0 2 7  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 3 4 2  0.4 0.4 0.4\n" +
+            "directional -1 -1 -1  0.3 0.3 0.3\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "plane 0 -1 0  0 1 0\n" +
+            "diffuse 0.6 0.2 0.2\n" +
+            "specular 0.3 0.3 0.3\n" +
+            "shininess 10\n" +
+            "sphere 0 0 0 1\n" +
+            "sphere 1.5 -0.5 1 0.5\n";
+
+    private static Scene parse(String txt) {
+        return new SceneFileParser().parseContent(txt);
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int j = 0; j < expected.getHeight(); j++) {
+            for (int i = 0; i < expected.getWidth(); i++) {
+                assertEquals(expected.getRGB(i, j), actual.getRGB(i, j), "pixel " + i + "," + j);
+            }
+        }
+    }
+
+    @Test
+    public void testDeferredMatchesImmediateRendering() {
+        Scene scene = parse(SCENE);
+        DeferredRenderer deferred = new DeferredRenderer(16);
+
+        assertSameImage(new ImageRenderer(scene).renderImage(), deferred.render(scene));
+        assertEquals(50 * 40, deferred.getLastPrimaryRays());
+
+        GBuffer gbuffer = deferred.getGBuffer();
+        // coin supérieur gauche : ciel ; centre : sphère
+        assertFalse(gbuffer.isHit(0));
+        int center = 20 * 50 + 25;
+        assertTrue(gbuffer.isHit(center));
+        assertEquals(1, gbuffer.getShapeId(center));
+        assertEquals(1.0, gbuffer.getNormal(center).length(), 1e-9);
+    }
+
+    @Test
+    public void testLightingChangeReusesGBuffer() {
+        DeferredRenderer deferred = new DeferredRenderer(16);
+        deferred.render(parse(SCENE));
+
+        Scene relit = parse(SCENE.replace("point 3 4 2  0.4 0.4 0.4", "point -3 3 1  0.2 0.5 0.3")
+                .replace("ambient 0.1 0.1 0.1", "ambient 0.05 0.1 0.05"));
+        BufferedImage image = deferred.render(relit);
+
+        assertEquals(0, deferred.getLastPrimaryRays());
+        assertSameImage(new ImageRenderer(relit).renderImage(), image);
+    }
+
+    @Test
+    public void testGeometryOrCameraChangeRetraces() {
+        DeferredRenderer deferred = new DeferredRenderer(16);
+        deferred.render(parse(SCENE));
+
+        Scene moved = parse(SCENE.replace("sphere 0 0 0 1", "sphere 0 0.2 0 1"));
+        assertSameImage(new ImageRenderer(moved).renderImage(), deferred.render(moved));
+        assertEquals(50 * 40, deferred.getLastPrimaryRays());
+
+        Scene camera = parse(SCENE.replace("camera 0 2 7", "camera 1 2 7"));
+        deferred.render(camera);
+        assertEquals(50 * 40, deferred.getLastPrimaryRays());
+    }
+}
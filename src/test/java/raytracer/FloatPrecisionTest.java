@@ -0,0 +1,196 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.FloatRayTracer;
+import raytracer.core.Precision;
+import raytracer.core.Scene;
+import raytracer.core.TraceStats;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.RenderCache;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FloatPrecisionTest {
+
+    /**
+     * Grande sphère servant de sol (sensible à l'auto-ombrage en float),
+     * sphères posées dessus, triangle, plan, lumières ponctuelle et directionnelle.
+     */
+    private static final String SCENE =
+            "size 80 60\n" +
+            "camera 0 4 12  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 4 8 6  0.6 0.6 0.6\n" +
+            "directional -1 -2 -1  0.3 0.3 0.3\n" +
+            "diffuse 0.6 0.6 0.6\n" +
+            "sphere 0 -1000 0 1000\n" +
+            "diffuse 0.7 0.2 0.2\n" +
+            "specular 0.5 0.5 0.5\n" +
+            "shininess 32\n" +
+            "sphere 0 1 0 1\n" +
+            "sphere 2.5 0.5 1 0.5\n" +
+            "diffuse 0.2 0.5 0.2\n" +
+            "specular 0 0 0\n" +
+            "maxverts 3\n" +
+            "vertex -4 0.01 -2\n" +
+            "vertex -1 0.01 -2\n" +
+            "vertex -2.5 3 -2\n" +
+            "tri 0 1 2\n" +
+            "diffuse 0.2 0.2 0.5\n" +
+            "plane 0 0 -6  0 0 1\n";
+
+    /**
+     * Même échelle que scenes/final.scene : sol de rayon 10000, caméra à
+     * 150 unités, petites sphères posées sur le sol sous une lumière
+     * ponctuelle. Les erreurs d'arrondi float sur une si grande sphère et
+     * sur les impacts rasants produisaient de l'acné d'ombre.
+     */
+    private static final String LARGE_SCALE_SCENE =
+            "size 192 108\n" +
+            "camera 0 0 150  0 0 5  0 1 0  45\n" +
+            "ambient 0 0 0\n" +
+            "point 0 0 40  0.9 0.9 0.9\n" +
+            "diffuse 0.7 0.3 0.4\n" +
+            "specular 0.4 0.4 0.4\n" +
+            "sphere 0 0 -10000 10000\n" +
+            "diffuse 0.3 0.6 0.3\n" +
+            "shininess 100\n" +
+            "specular 0.46 0.46 0.46\n" +
+            "sphere 53 -7 5 5\n" +
+            "sphere -51 2 3 3\n" +
+            "sphere 9 28 5 5\n" +
+            "sphere -31 3 3 3\n" +
+            "sphere 39 -26 3 3\n" +
+            "sphere 15 5 3 3\n" +
+            "sphere 9 -7 3 3\n" +
+            "sphere -54 25 3 3\n" +
+            "sphere -9 2 5 5\n" +
+            "sphere -22 22 7 7\n" +
+            "sphere -15 3 3 3\n" +
+            "sphere 21 -5 5 5\n" +
+            "sphere -4 29 5 5\n" +
+            "sphere 33 -29 7 7\n" +
+            "sphere -6 7 7 7\n" +
+            "sphere -41 0 5 5\n";
+
+    private Scene parse(String txt) {
+        return new SceneFileParser().parseContent(txt);
+    }
+
+    @Test
+    public void testFloatRenderMatchesDoubleWithinTolerance() {
+        Scene scene = parse(SCENE);
+        BufferedImage ref = new ImageRenderer(scene).renderImage();
+        ImageRenderer floatRenderer = new ImageRenderer(scene, Precision.FLOAT);
+        assertEquals(Precision.FLOAT, floatRenderer.getPrecision());
+        BufferedImage img = floatRenderer.renderImage();
+
+        int different = 0;
+        for (int j = 0; j < ref.getHeight(); j++) {
+            for (int i = 0; i < ref.getWidth(); i++) {
+                if (maxChannelDelta(ref.getRGB(i, j), img.getRGB(i, j)) > 2) {
+                    different++;
+                }
+            }
+        }
+        // quelques pixels de bord d'ombre ou de silhouette au plus, pas d'acné
+        assertTrue(different <= ref.getWidth() * ref.getHeight() / 200,
+                "pixels différents : " + different);
+    }
+
+    @Test
+    public void testNoShadowAcneAtLargeSceneScale() {
+        Scene scene = parse(LARGE_SCALE_SCENE);
+        BufferedImage ref = new ImageRenderer(scene).renderImage();
+        BufferedImage img = new ImageRenderer(scene, Precision.FLOAT).renderImage();
+
+        int different = 0;
+        for (int j = 0; j < ref.getHeight(); j++) {
+            for (int i = 0; i < ref.getWidth(); i++) {
+                if (maxChannelDelta(ref.getRGB(i, j), img.getRGB(i, j)) > 2) {
+                    different++;
+                }
+            }
+        }
+        assertTrue(different <= ref.getWidth() * ref.getHeight() / 1000,
+                "pixels différents : " + different);
+    }
+
+    @Test
+    public void testManyPrimitivesAreTracedThroughHierarchy() {
+        Random random = new Random(4);
+        StringBuilder txt = new StringBuilder(
+                "size 64 48\n" +
+                "camera 0 0 40  0 0 0  0 1 0  45\n" +
+                "ambient 0.1 0.1 0.1\n" +
+                "point 10 20 30  0.7 0.7 0.7\n" +
+                "diffuse 0.5 0.4 0.3\n" +
+                "plane 0 0 -20  0 0 1\n" +
+                "maxverts 600\n");
+        for (int k = 0; k < 2000; k++) {
+            txt.append("sphere ").append(random.nextGaussian() * 8).append(' ')
+                    .append(random.nextGaussian() * 6).append(' ')
+                    .append(random.nextGaussian() * 6).append(' ')
+                    .append(0.1 + random.nextDouble() * 0.4).append('\n');
+        }
+        for (int k = 0; k < 600; k++) {
+            txt.append("vertex ").append(random.nextGaussian() * 8).append(' ')
+                    .append(random.nextGaussian() * 6).append(' ')
+                    .append(random.nextGaussian() * 6).append('\n');
+        }
+        for (int k = 0; k < 200; k++) {
+            txt.append("tri ").append(3 * k).append(' ').append(3 * k + 1).append(' ')
+                    .append(3 * k + 2).append('\n');
+        }
+        Scene scene = parse(txt.toString());
+
+        FloatRayTracer tracer = new FloatRayTracer(scene);
+        float[] accum = new float[3 * 64 * 48];
+        TraceStats stats = new TraceStats().attach();
+        try {
+            tracer.traceRegion(0, 0, 64, 48, accum);
+        } finally {
+            TraceStats.detach();
+        }
+        long rays = 64 * 48 + stats.shadowRays;
+        assertTrue(stats.intersectionTests < rays * 2201 / 20, "tests : " + stats.intersectionTests);
+
+        BufferedImage ref = new ImageRenderer(scene).renderImage();
+        BufferedImage img = new ImageRenderer(scene, Precision.FLOAT).renderImage();
+        int different = 0;
+        for (int j = 0; j < ref.getHeight(); j++) {
+            for (int i = 0; i < ref.getWidth(); i++) {
+                if (maxChannelDelta(ref.getRGB(i, j), img.getRGB(i, j)) > 2) {
+                    different++;
+                }
+            }
+        }
+        assertTrue(different <= ref.getWidth() * ref.getHeight() / 200, "pixels différents : " + different);
+    }
+
+    @Test
+    public void testPrecisionParsing() {
+        assertEquals(Precision.FLOAT, Precision.parse("Float"));
+        assertEquals(Precision.DOUBLE, Precision.parse("double"));
+        assertThrows(IllegalArgumentException.class, () -> Precision.parse("half"));
+    }
+
+    @Test
+    public void testCacheKeyDependsOnPrecision() {
+        Scene scene = parse(SCENE);
+        assertEquals(RenderCache.key(scene), RenderCache.key(scene, Precision.DOUBLE));
+        assertNotEquals(RenderCache.key(scene, Precision.DOUBLE), RenderCache.key(scene, Precision.FLOAT));
+    }
+
+    private static int maxChannelDelta(int a, int b) {
+        int max = 0;
+        for (int shift = 0; shift < 24; shift += 8) {
+            max = Math.max(max, Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF)));
+        }
+        return max;
+    }
+}
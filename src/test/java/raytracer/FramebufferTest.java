@@ -0,0 +1,122 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.PngWriter;
+import raytracer.parsing.SceneFileParser;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FramebufferTest {
+
+    private static final String SCENE =
+            "size 48 36\n" +
+            "camera 0 0 6  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 3 4 5  0.7 0.7 0.7\n" +
+            "diffuse 0.6 0.3 0.2\n" +
+            "sphere 0 0 0 1.2\n";
+
+    @Test
+    public void testPngWriterRoundTripsThroughImageIO() throws IOException {
+        Random random = new Random(3);
+        Framebuffer image = Framebuffer.allocate(37, 23);
+        for (int y = 0; y < 23; y++) {
+            for (int x = 0; x < 37; x++) {
+                // dégradés et bruit : chaque filtre PNG est retenu sur une ligne ou une autre
+                int rgb = y % 3 == 0 ? random.nextInt(1 << 24) : (x * 7) << 16 | (y * 11) << 8 | (x + y);
+                image.setRGB(x, y, rgb);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        PngWriter.write(image, png);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertEquals(37, decoded.getWidth());
+        assertEquals(23, decoded.getHeight());
+        for (int y = 0; y < 23; y++) {
+            for (int x = 0; x < 37; x++) {
+                assertEquals(image.getRGB(x, y), decoded.getRGB(x, y) & 0xffffff, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    public void testAccumulationResolvesWeightedMean() throws IOException {
+        Path dir = Files.createTempDirectory("framebuffer_");
+        try (Framebuffer image = Framebuffer.map(dir, 4, 3)) {
+            image.add(1, 2, 0.2f, 0.4f, 1.0f, 1f);
+            image.add(1, 2, 0.6f, 0.0f, 1.0f, 3f);
+            image.add(3, 0, 2.0f, -1.0f, 0.5f, 1f);
+            image.resolve(0, 0, 4, 3);
+
+            float[] mean = new float[3];
+            image.getAccumulated(1, 2, mean, 0);
+            assertEquals(0.5f, mean[0], 1e-6f);
+            assertEquals(0.1f, mean[1], 1e-6f);
+            assertEquals(0x801aff, image.getRGB(1, 2));
+            // écrêtage dans [0, 1]
+            assertEquals(0xff0080, image.getRGB(3, 0));
+            // pixel sans échantillon : noir
+            assertEquals(0, image.getRGB(0, 0));
+        }
+        // le fichier projeté est supprimé à la fermeture
+        assertEquals(0, Files.list(dir).count());
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testFramebufferRenderMatchesPerPixelColors() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        ImageRenderer renderer = new ImageRenderer(scene);
+        Framebuffer image = Framebuffer.allocate(48, 36);
+        renderer.renderFramebuffer(image);
+
+        raytracer.core.RayTracer tracer = new raytracer.core.RayTracer(scene);
+        for (int y = 0; y < 36; y++) {
+            for (int x = 0; x < 48; x++) {
+                assertEquals(tracer.getPixelColor(x, y).toRGB(), image.getRGB(x, y));
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> renderer.renderFramebuffer(Framebuffer.allocate(10, 10)));
+    }
+
+    @Test
+    public void testSupersamplingSmoothsEdges() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        BufferedImage single = new ImageRenderer(scene).renderImage();
+        ImageRenderer renderer = new ImageRenderer(scene);
+        renderer.setSamples(3);
+        BufferedImage smooth = renderer.renderImage();
+
+        // sur le contour de la sphère, la couverture partielle donne des
+        // rouges intermédiaires entre le fond noir et la sphère
+        int partial = 0;
+        int differing = 0;
+        for (int y = 0; y < 36; y++) {
+            for (int x = 0; x < 48; x++) {
+                if (single.getRGB(x, y) != smooth.getRGB(x, y)) {
+                    differing++;
+                    if ((single.getRGB(x, y) & 0xffffff) == 0 && (smooth.getRGB(x, y) & 0xffffff) != 0) {
+                        partial++;
+                    }
+                }
+            }
+        }
+        assertTrue(partial > 10);
+        assertTrue(differing < 48 * 36 / 2);
+        assertThrows(IllegalArgumentException.class, () -> renderer.setSamples(0));
+    }
+}
@@ -0,0 +1,110 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+import raytracer.imaging.DeferredRenderer;
+import raytracer.imaging.GBuffer;
+import raytracer.imaging.GBufferStore;
+import raytracer.imaging.ImageRenderer;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GBufferStoreTest {
+
+    private static final String SCENE =
+            "size 40 30\n" +
+            "camera 0 2 7  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 3 4 2  0.4 0.4 0.4\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "plane 0 -1 0  0 1 0\n" +
+            "diffuse 0.6 0.2 0.2\n" +
+            "specular 0.3 0.3 0.3\n" +
+            "shininess 10\n" +
+            "sphere 0 0 0 1\n";
+
+    private static Scene parse(String txt) {
+        return new SceneFileParser().parseContent(txt);
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        for (int j = 0; j < expected.getHeight(); j++) {
+            for (int i = 0; i < expected.getWidth(); i++) {
+                assertEquals(expected.getRGB(i, j), actual.getRGB(i, j), "pixel " + i + "," + j);
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFileRoundTrip() throws Exception {
+        Path file = Files.createTempFile("gbuffer_", ".gbuf");
+        Scene scene = parse(SCENE);
+        DeferredRenderer deferred = new DeferredRenderer(16);
+        deferred.render(scene);
+        GBuffer memory = deferred.getGBuffer();
+
+        GBuffer mapped = GBuffer.create(file, 40, 30, memory.getMaterials());
+        for (int k = 0; k < 40 * 30; k++) {
+            assertFalse(mapped.isHit(k));
+        }
+        mapped.force();
+
+        GBuffer reopened = GBuffer.open(file);
+        assertEquals(40, reopened.getWidth());
+        assertEquals(30, reopened.getHeight());
+        assertArrayEquals(memory.getMaterials(), reopened.getMaterials());
+
+        // fichier tronqué : refusé
+        Files.write(file, new byte[100]);
+        assertThrows(java.io.IOException.class, () -> GBuffer.open(file));
+    }
+
+    @Test
+    public void testRelightingReusesStoredGBufferAcrossRenderers() throws Exception {
+        Path dir = Files.createTempDirectory("gbuffer_store_");
+        GBufferStore store = new GBufferStore(dir, 2);
+
+        DeferredRenderer first = new DeferredRenderer(16, store);
+        first.render(parse(SCENE));
+        assertEquals(40 * 30, first.getLastPrimaryRays());
+        assertEquals(1, store.size());
+
+        // nouvelle instance, comme lors d'une nouvelle exécution
+        Scene relit = parse(SCENE.replace("point 3 4 2  0.4 0.4 0.4", "point -2 3 1  0.2 0.5 0.3")
+                .replace("ambient 0.1 0.1 0.1", "ambient 0.05 0.1 0.05"));
+        DeferredRenderer second = new DeferredRenderer(16, store);
+        BufferedImage image = second.render(relit);
+
+        assertEquals(0, second.getLastPrimaryRays());
+        assertSameImage(new ImageRenderer(relit).renderImage(), image);
+        assertEquals(SceneDigest.ofGeometry(relit), second.getGeometryKey());
+    }
+
+    @Test
+    public void testCorruptEntryIsRetracedAndOldEntriesEvicted() throws Exception {
+        Path dir = Files.createTempDirectory("gbuffer_store_");
+        GBufferStore store = new GBufferStore(dir, 2);
+        new DeferredRenderer(16, store).render(parse(SCENE));
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*.gbuf")) {
+            for (Path entry : entries) {
+                Files.write(entry, new byte[] {1, 2, 3});
+            }
+        }
+        DeferredRenderer renderer = new DeferredRenderer(16, store);
+        Scene scene = parse(SCENE);
+        assertSameImage(new ImageRenderer(scene).renderImage(), renderer.render(scene));
+        assertEquals(40 * 30, renderer.getLastPrimaryRays());
+
+        new DeferredRenderer(16, store).render(parse(SCENE.replace("sphere 0 0 0 1", "sphere 0 0.1 0 1")));
+        new DeferredRenderer(16, store).render(parse(SCENE.replace("sphere 0 0 0 1", "sphere 0 0.2 0 1")));
+        assertEquals(2, store.size());
+    }
+}
@@ -0,0 +1,175 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.RayTracer;
+import raytracer.core.Scene;
+import raytracer.core.TraceStats;
+import raytracer.imaging.Color;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.HdrWriter;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.OutputFormat;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HdrWriterTest {
+
+    /** Reflet spéculaire intense : des pixels dépassent 1. */
+    private static final String SCENE =
+            "size 40 30\n" +
+            "camera 0 0 6  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 2 3 6  0.6 0.6 0.6\n" +
+            "point -3 2 4  0.4 0.4 0.4\n" +
+            "diffuse 0.8 0.5 0.2\n" +
+            "specular 1 1 1\n" +
+            "shininess 20\n" +
+            "sphere 0 0 0 1.5\n";
+
+    private static Scene parse(String output) {
+        return new SceneFileParser().parseContent(SCENE + "output " + output + "\n");
+    }
+
+    /** Position du premier octet après les n premières lignes de l'en-tête. */
+    private static int skipLines(byte[] data, int lines) {
+        int at = 0;
+        while (lines > 0) {
+            if (data[at++] == '\n') {
+                lines--;
+            }
+        }
+        return at;
+    }
+
+    @Test
+    public void testPfmKeepsUnclampedColors() throws IOException {
+        Scene scene = parse("hdr.pfm");
+        assertTrue(scene.isHighDynamicRange());
+        Framebuffer image = Framebuffer.allocate(40, 30);
+        new ImageRenderer(scene).renderFramebuffer(image);
+
+        Path file = Files.createTempFile("render_", ".pfm");
+        try {
+            HdrWriter.writePfm(image, file);
+            byte[] data = Files.readAllBytes(file);
+            int at = skipLines(data, 3);
+            assertEquals("PF\n40 30\n-1.0\n", new String(data, 0, at, StandardCharsets.US_ASCII));
+            assertEquals(at + 40 * 30 * 12, data.length);
+
+            ByteBuffer floats = ByteBuffer.wrap(data, at, data.length - at).slice().order(ByteOrder.LITTLE_ENDIAN);
+            RayTracer tracer = new RayTracer(scene);
+            float max = 0f;
+            for (int y = 0; y < 30; y++) {
+                for (int x = 0; x < 40; x++) {
+                    // lignes rangées de bas en haut
+                    int o = 12 * ((29 - y) * 40 + x);
+                    Color c = tracer.getPixelColor(x, y);
+                    assertEquals((float) c.x, floats.getFloat(o));
+                    assertEquals((float) c.y, floats.getFloat(o + 4));
+                    assertEquals((float) c.z, floats.getFloat(o + 8));
+                    max = Math.max(max, floats.getFloat(o));
+                }
+            }
+            assertTrue(max > 1f, "aucun pixel au-delà de 1 : " + max);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testRgbeRunLengthDecodesToSharedExponentColors() throws IOException {
+        Scene scene = parse("hdr.hdr");
+        Framebuffer image = Framebuffer.allocate(40, 30);
+        new ImageRenderer(scene).renderFramebuffer(image);
+
+        Path file = Files.createTempFile("render_", ".hdr");
+        try {
+            HdrWriter.write(image, file, OutputFormat.of("x.HDR"));
+            byte[] data = Files.readAllBytes(file);
+            int at = skipLines(data, 4);
+            assertTrue(new String(data, 0, at, StandardCharsets.US_ASCII).endsWith("\n-Y 30 +X 40\n"));
+
+            float[] rgb = new float[3];
+            byte[] component = new byte[4 * 40];
+            for (int y = 0; y < 30; y++) {
+                assertEquals(2, data[at]);
+                assertEquals(2, data[at + 1]);
+                assertEquals(40, ((data[at + 2] & 0xff) << 8) | (data[at + 3] & 0xff));
+                at += 4;
+                for (int c = 0; c < 4; c++) {
+                    int x = 0;
+                    while (x < 40) {
+                        int n = data[at++] & 0xff;
+                        if (n > 128) {
+                            for (int k = 0; k < n - 128; k++) {
+                                component[4 * x++ + c] = data[at];
+                            }
+                            at++;
+                        } else {
+                            for (int k = 0; k < n; k++) {
+                                component[4 * x++ + c] = data[at++];
+                            }
+                        }
+                    }
+                }
+                for (int x = 0; x < 40; x++) {
+                    image.getAccumulated(x, y, rgb, 0);
+                    int e = component[4 * x + 3] & 0xff;
+                    float scale = e == 0 ? 0f : Math.scalb(1f, e - 136);
+                    for (int c = 0; c < 3; c++) {
+                        // mantisses tronquées sur 8 bits : erreur relative à la plus grande composante
+                        float decoded = ((component[4 * x + c] & 0xff) + 0.5f) * scale;
+                        float peak = Math.max(rgb[0], Math.max(rgb[1], rgb[2]));
+                        assertEquals(rgb[c], e == 0 ? 0f : decoded, peak / 128f + 1e-6f);
+                    }
+                }
+            }
+            assertEquals(data.length, at);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testEightBitImagesAreNotWrittenAsHighDynamicRange() {
+        ImageRenderer writer = new ImageRenderer(parse("hdr.pfm"));
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        // les couleurs écrêtées de l'image ne peuvent pas donner un PFM fidèle
+        assertThrows(IllegalArgumentException.class, () -> writer.writeImage(image));
+    }
+
+    @Test
+    public void testHighDynamicRangeTracesEveryShadowRay() {
+        TraceStats stats = new TraceStats().attach();
+        try {
+            RayTracer png = new RayTracer(parse("ldr.png"));
+            RayTracer hdr = new RayTracer(parse("hdr.pfm"));
+            for (int y = 0; y < 30; y++) {
+                for (int x = 0; x < 40; x++) {
+                    png.getPixelColor(x, y);
+                }
+            }
+            long culled = stats.shadowRays;
+
+            stats.reset();
+            for (int y = 0; y < 30; y++) {
+                for (int x = 0; x < 40; x++) {
+                    hdr.getPixelColor(x, y);
+                }
+            }
+            // en 8 bits, les pixels saturés se passent de rayons d'ombre
+            assertTrue(stats.shadowRays > culled, stats.shadowRays + " <= " + culled);
+        } finally {
+            TraceStats.detach();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.IncrementalRenderer;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalRendererTest {
+
+    private static final String BASE =
+            "size 128 96\n" +
+            "camera 0 0 10  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "diffuse 0.6 0.3 0.3\n" +
+            "specular 0.3 0.3 0.3\n" +
+            "shininess 30\n" +
+            "point 0 5 5  0.7 0.7 0.7\n" +
+            "sphere -2 0 0 1\n" +
+            "sphere 2 0 0 0.5\n";
+
+    private Scene parse(String txt) {
+        return new SceneFileParser().parseContent(txt);
+    }
+
+    private void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testMovedSphereRetracesOnlyPartOfFrame() {
+        IncrementalRenderer renderer = new IncrementalRenderer(16);
+        renderer.render(parse(BASE));
+        assertEquals(renderer.getLastTotalTiles(), renderer.getLastTracedTiles());
+
+        String edited = BASE.replace("sphere 2 0 0 0.5", "sphere 2.3 0.2 0 0.5");
+        Scene scene = parse(edited);
+        BufferedImage incremental = renderer.render(scene);
+
+        assertTrue(renderer.getLastTracedTiles() > 0);
+        assertTrue(renderer.getLastTracedTiles() < renderer.getLastTotalTiles() / 2);
+        assertSameImage(new ImageRenderer(scene).renderImage(), incremental);
+    }
+
+    @Test
+    public void testShadowInfluenceOfMovedShapeIsRetraced() {
+        // une petite sphère entre la lumière et la grande sphère
+        String withBlocker = BASE + "sphere -2 2.5 2.5 0.3\n";
+        IncrementalRenderer renderer = new IncrementalRenderer(16);
+        renderer.render(parse(withBlocker));
+
+        Scene moved = parse(withBlocker.replace("sphere -2 2.5 2.5 0.3", "sphere -2.4 2.5 2.5 0.3"));
+        assertSameImage(new ImageRenderer(moved).renderImage(), renderer.render(moved));
+    }
+
+    @Test
+    public void testUnchangedSceneTracesNothingAndCameraChangeTracesAll() {
+        IncrementalRenderer renderer = new IncrementalRenderer(16);
+        renderer.render(parse(BASE));
+        renderer.render(parse(BASE));
+        assertEquals(0, renderer.getLastTracedTiles());
+
+        renderer.render(parse(BASE.replace("camera 0 0 10", "camera 0 1 10")));
+        assertEquals(renderer.getLastTotalTiles(), renderer.getLastTracedTiles());
+    }
+
+    @Test
+    public void testLightChangeMatchesFullRender() {
+        IncrementalRenderer renderer = new IncrementalRenderer(16);
+        renderer.render(parse(BASE));
+
+        Scene relit = parse(BASE.replace("point 0 5 5", "point 3 5 5"));
+        assertSameImage(new ImageRenderer(relit).renderImage(), renderer.render(relit));
+    }
+}
@@ -0,0 +1,215 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.Scene;
+import raytracer.core.TraceStats;
+import raytracer.geometry.Matrix4;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Instance;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.ShapeGroup;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+import raytracer.parsing.SceneFileParser;
+
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InstanceTest {
+
+    private static final String HEADER =
+            "size 40 30\n" +
+            "camera 0 3 12  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 4 6 5  0.6 0.6 0.6\n" +
+            "diffuse 0.5 0.5 0.5\n";
+
+    private static Scene parse(String txt) {
+        return new SceneFileParser().parseContent(txt);
+    }
+
+    /**
+     * Intersection de référence : parcours linéaire de toutes les formes.
+     */
+    private static Optional<Intersection> linear(Scene scene, Ray ray) {
+        Optional<Intersection> best = Optional.empty();
+        for (Shape s : scene.getShapes()) {
+            Optional<Intersection> hit = s.intersect(ray);
+            if (hit.isPresent() && hit.get().getT() > 0
+                    && (!best.isPresent() || hit.get().getT() < best.get().getT())) {
+                best = hit;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testTransformedInstanceMatchesEquivalentSphere() {
+        ShapeGroup unit = new ShapeGroup("unit");
+        unit.addShape(new Sphere(0, 0, 0, 1, new Color(), new Color()));
+
+        Matrix4 transform = Matrix4.translation(1, -2, 0.5)
+                .multiply(Matrix4.rotation(new Vector(1, 1, 0), 30))
+                .multiply(Matrix4.scaling(2.5, 2.5, 2.5));
+        Instance instance = new Instance(unit, transform, new Color(0.2, 0.3, 0.4), new Color());
+        Sphere sphere = new Sphere(1, -2, 0.5, 2.5, new Color(), new Color());
+
+        Random random = new Random(7);
+        int hits = 0;
+        for (int k = 0; k < 500; k++) {
+            Point origin = new Point(random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5, 12);
+            Vector dir = new Vector(1 - origin.x, -2 - origin.y, 0.5 - origin.z)
+                    .add(new Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+            Ray ray = new Ray(origin, dir);
+
+            Optional<Intersection> expected = sphere.intersect(ray);
+            Optional<Intersection> actual = instance.intersect(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                hits++;
+                assertEquals(expected.get().getT(), actual.get().getT(), 1e-9);
+                assertEquals(0.0, expected.get().getNormal().subtract(actual.get().getNormal()).length(), 1e-9);
+                assertSame(instance, actual.get().getShape());
+                assertEquals(0.3, actual.get().getDiffuse().y);
+            }
+        }
+        assertTrue(hits > 50);
+
+        // boîte du cube unité tourné : contient la sphère équivalente
+        assertTrue(instance.getBounds().getMinX() <= -1.5);
+        assertTrue(instance.getBounds().getMaxY() >= 0.5);
+    }
+
+    @Test
+    public void testRayBoundsAreConvertedToPrototypeUnits() {
+        ShapeGroup unit = new ShapeGroup("unit");
+        unit.addShape(new Sphere(0, 0, 0, 1, new Color(), new Color()));
+        Instance instance = new Instance(unit, Matrix4.scaling(1000, 1000, 1000), new Color(), new Color());
+        Sphere sphere = new Sphere(0, 0, 0, 1000, new Color(), new Color());
+
+        // impact très proche de l'origine : 5e-7 unité du prototype, sous Ray.DEFAULT_T_MIN
+        Ray close = new Ray(new Point(0, 0, 1000.0005), new Vector(0, 0, -1));
+        assertEquals(sphere.intersect(close).get().getT(), instance.intersect(close).get().getT(), 1e-9);
+
+        // tMin au-delà de la face avant : seule la face arrière est touchée
+        Ray far = new Ray(new Point(0, 0, 1010), new Vector(0, 0, -1), 20, Double.POSITIVE_INFINITY);
+        assertEquals(2010, sphere.intersect(far).get().getT(), 1e-9);
+        assertEquals(2010, instance.intersect(far).get().getT(), 1e-9);
+    }
+
+    @Test
+    public void testParserPlacesInstancesOfGroups() {
+        Scene scene = parse(HEADER +
+                "maxverts 3\n" +
+                "group pyramid\n" +
+                "vertex -1 0 0\n" +
+                "vertex 1 0 0\n" +
+                "vertex 0 2 0\n" +
+                "tri 0 1 2\n" +
+                "sphere 0 0.5 0 0.3\n" +
+                "endgroup\n" +
+                "diffuse 0.6 0.2 0.2\n" +
+                "instance pyramid -2 0 0\n" +
+                "instance pyramid 2 0 0  0 1 0 90 0.5\n" +
+                "sphere 0 -5 0 1\n");
+
+        assertEquals(3, scene.getShapes().size());
+        Instance rotated = (Instance) scene.getShapes().get(1);
+        assertEquals(2, rotated.getPrototype().getShapes().size());
+        assertSame(((Instance) scene.getShapes().get(0)).getPrototype(), rotated.getPrototype());
+
+        // sommet de la pyramide tournée et réduite : (2, 1, 0)
+        Point top = rotated.getTransform().transformPoint(new Point(0, 2, 0));
+        assertEquals(2.0, top.x, 1e-12);
+        assertEquals(1.0, top.y, 1e-12);
+        assertEquals(0.0, top.z, 1e-12);
+
+        Optional<Intersection> hit = scene.findClosestIntersection(
+                new Ray(new Point(-2, 0.5, 10), new Vector(0, 0, -1)));
+        assertTrue(hit.isPresent());
+        assertSame(scene.getShapes().get(0), hit.get().getShape());
+        assertEquals(0.6, hit.get().getDiffuse().x);
+    }
+
+    @Test
+    public void testTwoLevelBvhMatchesLinearSearch() {
+        StringBuilder txt = new StringBuilder(HEADER)
+                .append("group ball\nsphere 0 0 0 0.3\nsphere 0 0.4 0 0.2\nendgroup\n");
+        Random random = new Random(3);
+        for (int k = 0; k < 2000; k++) {
+            txt.append(String.format(java.util.Locale.ROOT, "instance ball %.3f %.3f %.3f  0 1 0 %.1f %.2f%n",
+                    random.nextDouble() * 40 - 20, random.nextDouble() * 4 - 2, random.nextDouble() * 40 - 30,
+                    random.nextDouble() * 360, 0.5 + random.nextDouble()));
+        }
+        txt.append("plane 0 -2 0  0 1 0\n");
+        Scene scene = parse(txt.toString());
+
+        TraceStats stats = new TraceStats().attach();
+        try {
+            for (int k = 0; k < 300; k++) {
+                Ray ray = new Ray(scene.getCamera().getLookFrom(),
+                        new Vector(random.nextDouble() - 0.5, random.nextDouble() * 0.4 - 0.3, -1));
+                Optional<Intersection> expected = linear(scene, ray);
+                Optional<Intersection> actual = scene.findClosestIntersection(ray);
+                assertEquals(expected.isPresent(), actual.isPresent());
+                if (expected.isPresent()) {
+                    assertSame(expected.get().getShape(), actual.get().getShape());
+                    assertEquals(expected.get().getT(), actual.get().getT());
+                }
+            }
+        } finally {
+            TraceStats.detach();
+        }
+        // bien moins que 300 rayons x 2001 formes
+        assertTrue(stats.intersectionTests < 300 * 200, stats.toString());
+    }
+
+    @Test
+    public void testNormalAtHitPointMatchesIntersection() {
+        ShapeGroup ball = new ShapeGroup("ball");
+        ball.addShape(new Sphere(0, 0, 0, 0.3, new Color(), new Color()));
+        ball.addShape(new Sphere(0, 0.4, 0, 0.2, new Color(), new Color()));
+        ball.addShape(new Triangle(new Point(-1, -0.2, -1), new Point(-1, -0.2, 1), new Point(1, -0.2, 0),
+                new Color(), new Color()));
+        Instance instance = new Instance(ball,
+                Matrix4.translation(2, 1, -3).multiply(Matrix4.rotation(new Vector(0, 1, 1), 40))
+                        .multiply(Matrix4.scaling(1.5, 0.5, 2)),
+                new Color(), new Color());
+
+        Random random = new Random(12);
+        int hits = 0;
+        for (int k = 0; k < 500; k++) {
+            Ray ray = new Ray(new Point(2 + random.nextGaussian() * 0.6, 1 + random.nextGaussian() * 0.6, 5),
+                    new Vector(random.nextGaussian() * 0.05, random.nextGaussian() * 0.05, -1));
+            Optional<Intersection> hit = instance.intersect(ray);
+            if (hit.isPresent()) {
+                hits++;
+                // constructeur sans normale : passe par Shape.getNormal
+                Vector n = new Intersection(hit.get().getT(), hit.get().getPoint(), instance).getNormal();
+                assertEquals(hit.get().getNormal().x, n.x, 1e-6);
+                assertEquals(hit.get().getNormal().y, n.y, 1e-6);
+                assertEquals(hit.get().getNormal().z, n.z, 1e-6);
+            }
+        }
+        assertTrue(hits > 50, "hits=" + hits);
+        assertThrows(IllegalArgumentException.class,
+                () -> new Instance(new ShapeGroup("vide"), Matrix4.translation(0, 0, 0), new Color(), new Color())
+                        .getNormal(new Point(0, 0, 0)));
+    }
+
+    @Test
+    public void testInvalidGroupCommandsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> parse(HEADER + "instance tree 0 0 0\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse(HEADER + "endgroup\n"));
+        assertThrows(IllegalArgumentException.class, () -> parse(HEADER + "group a\nsphere 0 0 0 1\n"));
+        assertThrows(IllegalArgumentException.class,
+                () -> parse(HEADER + "group a\nsphere 0 0 0 1\nendgroup\ninstance a 0 0 0  0 1 0 45 0\n"));
+        assertThrows(IllegalArgumentException.class, () -> Matrix4.scaling(1, 0, 1).inverse());
+    }
+}
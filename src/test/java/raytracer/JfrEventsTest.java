@@ -0,0 +1,105 @@
+package raytracer;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.imaging.DeferredRenderer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.parsing.SceneFileParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JfrEventsTest {
+
+    private static final String SCENE =
+            "size 100 70\n" +
+            "camera 0 0 5  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "point 2 2 4  0.4 0.4 0.4\n" +
+            "sphere 0 0 0 1\n";
+
+    @Test
+    public void testParseAndTileEventsAreRecorded() throws Exception {
+        Path file = Files.createTempFile("raytracer_", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("raytracer.SceneParse");
+            recording.enable("raytracer.TileRender");
+            recording.start();
+
+            Scene scene = new SceneFileParser().parseContent(SCENE);
+            new ImageRenderer(scene).renderImage();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        long parses = events.stream()
+                .filter(e -> e.getEventType().getName().equals("raytracer.SceneParse"))
+                .peek(e -> assertEquals(1, e.getInt("shapeCount")))
+                .count();
+        assertEquals(1, parses);
+
+        // 100x70 en tuiles de 64 : 2 x 2 tuiles
+        long primaryRays = events.stream()
+                .filter(e -> e.getEventType().getName().equals("raytracer.TileRender"))
+                .mapToLong(e -> e.getLong("primaryRays"))
+                .sum();
+        assertEquals(100 * 70, primaryRays);
+
+        long shadowRays = events.stream()
+                .filter(e -> e.getEventType().getName().equals("raytracer.TileRender"))
+                .mapToLong(e -> e.getLong("shadowRays"))
+                .sum();
+        assertTrue(shadowRays > 0);
+    }
+
+    @Test
+    public void testShadowBatchEventsAreRecordedWhenEnabled() throws Exception {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        Path file = Files.createTempFile("raytracer_", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("raytracer.ShadowBatch");
+            recording.start();
+            new ImageRenderer(scene).renderImage();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        long shadowRays = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("raytracer.ShadowBatch"))
+                .peek(e -> assertEquals(1, e.getInt("lightCount")))
+                .mapToLong(e -> e.getInt("shadowRays"))
+                .sum();
+        assertTrue(shadowRays > 0);
+    }
+
+    @Test
+    public void testDeferredShadowBatchEventsAreRecordedWhenEnabled() throws Exception {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        DeferredRenderer deferred = new DeferredRenderer(16);
+        Path file = Files.createTempFile("raytracer_", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("raytracer.ShadowBatch");
+            recording.start();
+            deferred.render(scene);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        long shadowRays = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("raytracer.ShadowBatch"))
+                .mapToLong(e -> e.getInt("shadowRays"))
+                .sum();
+        assertEquals(deferred.getLastShadowRays(), shadowRays);
+        assertTrue(shadowRays > 0);
+    }
+}
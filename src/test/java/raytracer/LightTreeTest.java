@@ -0,0 +1,125 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+import raytracer.core.TraceStats;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.imaging.Color;
+import raytracer.imaging.ImageRenderer;
+import raytracer.lighting.LightTree;
+import raytracer.lighting.PointLight;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LightTreeTest {
+
+    /**
+     * Scène éclairée par une grille side x side de lumières ponctuelles
+     * de puissance totale constante.
+     */
+    private static Scene gridScene(int side) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("size 40 30\n")
+          .append("camera 0 3 10  0 0 0  0 1 0  45\n")
+          .append("ambient 0.05 0.05 0.05\n");
+        double c = 0.9 / (side * side);
+        for (int a = 0; a < side; a++) {
+            for (int b = 0; b < side; b++) {
+                double x = -8 + 16.0 * a / (side - 1);
+                double z = -8 + 16.0 * b / (side - 1);
+                sb.append("point ").append(x).append(" 6 ").append(z)
+                  .append(' ').append(c).append(' ').append(c).append(' ').append(c).append('\n');
+            }
+        }
+        sb.append("diffuse 0.8 0.8 0.8\n")
+          .append("plane 0 -1 0  0 1 0\n")
+          .append("diffuse 0.6 0.3 0.3\n")
+          .append("specular 0.2 0.2 0.2\n")
+          .append("shininess 20\n")
+          .append("sphere 0 0 0 1\n");
+        return new SceneFileParser().parseContent(sb.toString());
+    }
+
+    private static long shadowRays(Scene scene, BufferedImage[] out) {
+        TraceStats stats = new TraceStats().attach();
+        try {
+            out[0] = new ImageRenderer(scene).renderImage();
+        } finally {
+            TraceStats.detach();
+        }
+        return stats.shadowRays;
+    }
+
+    @Test
+    public void testSampledRenderIsCloseToExact() {
+        BufferedImage[] exact = new BufferedImage[1];
+        BufferedImage[] sampled = new BufferedImage[1];
+        Scene scene = gridScene(16);
+        long exactRays = shadowRays(scene, exact);
+        scene.setLightSamplingError(0.05);
+        long sampledRays = shadowRays(scene, sampled);
+
+        assertTrue(sampledRays * 4 < exactRays, sampledRays + " / " + exactRays);
+
+        double totalError = 0;
+        int pixels = exact[0].getWidth() * exact[0].getHeight();
+        for (int j = 0; j < exact[0].getHeight(); j++) {
+            for (int i = 0; i < exact[0].getWidth(); i++) {
+                int a = exact[0].getRGB(i, j);
+                int b = sampled[0].getRGB(i, j);
+                totalError += Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF));
+            }
+        }
+        assertTrue(totalError / pixels < 4.0, "erreur moyenne : " + totalError / pixels);
+    }
+
+    @Test
+    public void testShadowRaysScaleSubLinearly() {
+        BufferedImage[] img = new BufferedImage[1];
+        Scene small = gridScene(8);
+        Scene large = gridScene(32);
+        small.setLightSamplingError(0.05);
+        large.setLightSamplingError(0.05);
+
+        // 16 fois plus de lumières
+        long smallRays = shadowRays(small, img);
+        long largeRays = shadowRays(large, img);
+        assertTrue(largeRays < 4 * smallRays, largeRays + " / " + smallRays);
+    }
+
+    @Test
+    public void testBackFacingClusterIsCulled() {
+        List<PointLight> lights = new ArrayList<>();
+        for (int k = 0; k < 10; k++) {
+            lights.add(new PointLight(k, -5, 0, 0.1, 0.1, 0.1));
+        }
+        LightTree tree = new LightTree(lights);
+        List<PointLight> selected = new ArrayList<>();
+
+        // lumières sous le plan tangent, matériau sans spéculaire
+        tree.select(new Point(0, 0, 0), new Vector(0, 1, 0), new Color(0.5, 0.5, 0.5),
+                new Color(0, 0, 0), 0.0, 0.05, 1L, (light, w) -> selected.add(light));
+        assertTrue(selected.isEmpty());
+
+        // vues de face, toutes les lumières sont évaluées exactement avec maxError = 0
+        tree.select(new Point(0, 0, 0), new Vector(0, -1, 0), new Color(0.5, 0.5, 0.5),
+                new Color(0, 0, 0), 0.0, 0.0, 1L, (light, w) -> selected.add(light));
+        assertEquals(10, selected.size());
+    }
+
+    @Test
+    public void testSamplingErrorChangesDigest() {
+        Scene scene = gridScene(2);
+        String exact = SceneDigest.of(scene);
+        scene.setLightSamplingError(0.1);
+        assertNotEquals(exact, SceneDigest.of(scene));
+        assertThrows(IllegalArgumentException.class, () -> scene.setLightSamplingError(1.0));
+    }
+}
@@ -0,0 +1,205 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.acceleration.MeshFile;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.Scene;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.MappedMesh;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+import raytracer.parsing.SceneFileParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeshFileTest {
+
+    /** Terrain ondulé de n x n quadrilatères, deux triangles chacun. */
+    private static List<Triangle> terrain(int n) {
+        List<Triangle> triangles = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                Point a = vertex(i, j);
+                Point b = vertex(i + 1, j);
+                Point c = vertex(i + 1, j + 1);
+                Point d = vertex(i, j + 1);
+                triangles.add(new Triangle(a, c, b, new Color(), new Color()));
+                triangles.add(new Triangle(a, d, c, new Color(), new Color()));
+            }
+        }
+        return triangles;
+    }
+
+    private static Point vertex(int i, int j) {
+        return new Point(i, Math.sin(i * 0.3) * Math.cos(j * 0.2) * 3, j);
+    }
+
+    private static Optional<Intersection> linear(List<Triangle> triangles, Ray ray) {
+        Optional<Intersection> best = Optional.empty();
+        for (Triangle t : triangles) {
+            Optional<Intersection> hit = t.intersect(ray);
+            if (hit.isPresent() && hit.get().getT() > 0
+                    && (!best.isPresent() || hit.get().getT() < best.get().getT())) {
+                best = hit;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testClustersPagedInWithinBudgetMatchInMemoryTriangles() throws IOException {
+        List<Triangle> triangles = terrain(60);
+        Path file = Files.createTempFile("mesh_", ".rtm");
+        try {
+            MeshFile.write(file, triangles, 256);
+            // budget de quelques grappes seulement : les grappes sont abandonnées et reprojetées
+            try (MeshFile mesh = MeshFile.open(file, 80_000)) {
+                assertEquals(triangles.size(), mesh.size());
+                assertTrue(mesh.getClusterCount() >= triangles.size() / 256);
+                MappedMesh shape = new MappedMesh(mesh, new Color(0.4, 0.5, 0.6), new Color());
+
+                Random random = new Random(8);
+                int hits = 0;
+                for (int k = 0; k < 400; k++) {
+                    Ray ray = new Ray(new Point(random.nextDouble() * 60, 20, random.nextDouble() * 60),
+                            new Vector(random.nextGaussian(), -1, random.nextGaussian()));
+                    Optional<Intersection> expected = linear(triangles, ray);
+                    Optional<Intersection> actual = shape.intersect(ray);
+                    assertEquals(expected.isPresent(), actual.isPresent());
+                    if (expected.isPresent()) {
+                        hits++;
+                        assertEquals(expected.get().getT(), actual.get().getT());
+                        assertEquals(expected.get().getNormal().x, actual.get().getNormal().x);
+                        assertEquals(expected.get().getNormal().y, actual.get().getNormal().y);
+                        assertSame(shape, actual.get().getShape());
+                        assertEquals(0.5, actual.get().getDiffuse().y);
+                    }
+                    assertTrue(mesh.getResidentBytes() <= 80_000);
+                }
+                assertTrue(hits > 200);
+                assertTrue(mesh.getPageIns() > mesh.getResidentClusters());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testConcurrentRaysShareResidentClusters() throws Exception {
+        List<Triangle> triangles = terrain(60);
+        Path file = Files.createTempFile("mesh_", ".rtm");
+        try {
+            MeshFile.write(file, triangles, 256);
+            try (MeshFile mesh = MeshFile.open(file, 80_000)) {
+                MappedMesh shape = new MappedMesh(mesh, new Color(), new Color());
+                List<Ray> rays = new ArrayList<>();
+                Random random = new Random(21);
+                for (int k = 0; k < 2000; k++) {
+                    rays.add(new Ray(new Point(random.nextDouble() * 60, 20, random.nextDouble() * 60),
+                            new Vector(random.nextGaussian(), -1, random.nextGaussian())));
+                }
+                long mismatches = rays.parallelStream().filter(ray -> {
+                    Optional<Intersection> expected = linear(triangles, ray);
+                    Optional<Intersection> actual = shape.intersect(ray);
+                    return expected.isPresent() != actual.isPresent()
+                            || expected.isPresent() && expected.get().getT() != actual.get().getT();
+                }).count();
+                assertEquals(0, mismatches);
+                assertTrue(mesh.getResidentBytes() <= 80_000);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testNormalAtHitPointMatchesIntersection() throws IOException {
+        List<Triangle> triangles = terrain(30);
+        Path file = Files.createTempFile("mesh_", ".rtm");
+        try {
+            MeshFile.write(file, triangles, 64);
+            try (MeshFile mesh = MeshFile.open(file, 40_000)) {
+                MappedMesh shape = new MappedMesh(mesh, new Color(), new Color());
+                Random random = new Random(5);
+                int hits = 0;
+                for (int k = 0; k < 300; k++) {
+                    Ray ray = new Ray(new Point(random.nextDouble() * 30, 20, random.nextDouble() * 30),
+                            new Vector(random.nextGaussian(), -1, random.nextGaussian()));
+                    Optional<Intersection> hit = shape.intersect(ray);
+                    if (hit.isPresent()) {
+                        hits++;
+                        // constructeur sans normale : passe par Shape.getNormal
+                        Vector n = new Intersection(hit.get().getT(), hit.get().getPoint(), shape).getNormal();
+                        assertEquals(hit.get().getNormal().x, n.x);
+                        assertEquals(hit.get().getNormal().y, n.y);
+                        assertEquals(hit.get().getNormal().z, n.z);
+                    }
+                }
+                assertTrue(hits > 50, "hits=" + hits);
+                assertThrows(IllegalArgumentException.class, () -> shape.getNormal(new Point(0, 100, 0)));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSceneCommandAndDigest() throws IOException {
+        Path file = Files.createTempFile("mesh_", ".rtm");
+        try {
+            MeshFile.write(file, terrain(10), MeshFile.DEFAULT_CLUSTER_SIZE);
+            String scene = "size 20 20\n" +
+                    "camera 5 15 -10  5 0 5  0 1 0  45\n" +
+                    "point 5 10 5  0.5 0.5 0.5\n" +
+                    "diffuse 0.3 0.6 0.3\n" +
+                    "meshfile " + file + " 16\n";
+            Scene parsed = new SceneFileParser().parseContent(scene);
+            MappedMesh mesh = (MappedMesh) parsed.getShapes().get(0);
+            assertEquals(200, mesh.getMesh().size());
+            assertEquals(1, mesh.getMesh().getClusterCount());
+            assertTrue(parsed.findClosestIntersection(
+                    new Ray(new Point(5, 10, 5), new Vector(0, -1, 0))).isPresent());
+
+            Path other = Files.createTempFile("mesh_", ".rtm");
+            try {
+                List<Triangle> moved = terrain(10);
+                moved.set(3, new Triangle(new Point(0, 0, 0), new Point(1, 0, 0), new Point(0, 1, 0),
+                        new Color(), new Color()));
+                MeshFile.write(other, moved, MeshFile.DEFAULT_CLUSTER_SIZE);
+                try (MeshFile changed = MeshFile.open(other, MeshFile.DEFAULT_MAX_RESIDENT_BYTES)) {
+                    assertNotEquals(mesh.getMesh().getDigest(), changed.getDigest());
+                }
+            } finally {
+                Files.deleteIfExists(other);
+            }
+            mesh.getMesh().close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testInvalidFilesAreRejected() throws IOException {
+        Path file = Files.createTempFile("mesh_", ".rtm");
+        try {
+            Files.write(file, new byte[100]);
+            assertThrows(IOException.class, () -> MeshFile.open(file, 1 << 20));
+            assertThrows(IllegalArgumentException.class,
+                    () -> MeshFile.write(file, terrain(2), 1));
+            assertThrows(IllegalArgumentException.class, () -> new SceneFileParser().parseContent(
+                    "size 10 10\ncamera 0 0 5  0 0 0  0 1 0  45\nmeshfile " + file + "\n"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.PngWriter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PngWriterTest {
+
+    /** Image assez haute pour être compressée en plusieurs tranches. */
+    private static Framebuffer gradient(int width, int height) {
+        Random random = new Random(11);
+        Framebuffer image = Framebuffer.allocate(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(4);
+                image.setRGB(x, y, (x + noise) << 16 | ((y / 3) & 0xff) << 8 | ((x * y) & 0xff));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(Framebuffer image, int level, ForkJoinPool pool) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngWriter.write(image, out, level, pool);
+        return out.toByteArray();
+    }
+
+    /**
+     * Décompresse le flux zlib des chunks IDAT ; Inflater vérifie la somme
+     * Adler-32 finale.
+     */
+    private static int inflateIdat(byte[] png) throws DataFormatException {
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        ByteBuffer chunks = ByteBuffer.wrap(png, 8, png.length - 8);
+        while (chunks.hasRemaining()) {
+            int length = chunks.getInt();
+            String type = new String(png, chunks.position(), 4, StandardCharsets.US_ASCII);
+            if (type.equals("IDAT")) {
+                zlib.write(png, chunks.position() + 4, length);
+            }
+            chunks.position(chunks.position() + 4 + length + 4);
+        }
+        Inflater inflater = new Inflater();
+        inflater.setInput(zlib.toByteArray());
+        byte[] buffer = new byte[1 << 16];
+        int total = 0;
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            assertTrue(n > 0 || inflater.finished(), "flux zlib tronqué");
+            total += n;
+        }
+        assertEquals(0, inflater.getRemaining());
+        inflater.end();
+        return total;
+    }
+
+    @Test
+    public void testSlicedStreamDecodesAtEveryLevel() throws IOException, DataFormatException {
+        Framebuffer image = gradient(200, 700);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int level : new int[] {0, PngWriter.FAST_LEVEL, PngWriter.DEFAULT_LEVEL, 9}) {
+                byte[] png = encode(image, level, pool);
+                assertEquals(700 * (1 + 3 * 200), inflateIdat(png));
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+                assertEquals(200, decoded.getWidth());
+                assertEquals(700, decoded.getHeight());
+                for (int y = 0; y < 700; y++) {
+                    for (int x = 0; x < 200; x++) {
+                        assertEquals(image.getRGB(x, y), decoded.getRGB(x, y) & 0xffffff,
+                                "niveau " + level + ", pixel " + x + "," + y);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOutputDoesNotDependOnThreadCount() throws IOException {
+        Framebuffer image = gradient(200, 700);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool quad = new ForkJoinPool(4);
+        try {
+            byte[] expected = encode(image, PngWriter.DEFAULT_LEVEL, single);
+            assertArrayEquals(expected, encode(image, PngWriter.DEFAULT_LEVEL, quad));
+            // sans compression, les données filtrées sont recopiées telles quelles
+            int stored = encode(image, 0, quad).length;
+            assertTrue(stored > 700 * (1 + 3 * 200));
+            assertTrue(encode(image, PngWriter.FAST_LEVEL, quad).length < stored / 2);
+            assertTrue(expected.length < stored / 2);
+        } finally {
+            single.shutdown();
+            quad.shutdown();
+        }
+    }
+
+    @Test
+    public void testInvalidLevelIsRejected() {
+        Framebuffer image = Framebuffer.allocate(4, 4);
+        assertThrows(IllegalArgumentException.class,
+                () -> PngWriter.write(image, new ByteArrayOutputStream(), 10, ForkJoinPool.commonPool()));
+        assertThrows(IllegalArgumentException.class,
+                () -> PngWriter.write(image, new ByteArrayOutputStream(), -1, ForkJoinPool.commonPool()));
+    }
+}
@@ -0,0 +1,119 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.acceleration.Bvh;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.Scene;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Plane;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RayIntervalTest {
+
+    /** Intersection la plus proche dans [tMin, tMax], par parcours de toutes les formes sans borne. */
+    private static Optional<Intersection> linear(List<Shape> shapes, Point origin, Vector dir, double tMax) {
+        Optional<Intersection> best = Optional.empty();
+        for (Shape s : shapes) {
+            Optional<Intersection> hit = s.intersect(new Ray(origin, dir));
+            if (hit.isPresent() && hit.get().getT() <= tMax
+                    && (!best.isPresent() || hit.get().getT() < best.get().getT())) {
+                best = hit;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testSignBits() {
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(-1, 2, -3));
+        assertEquals(Ray.NEGATIVE_X | Ray.NEGATIVE_Z, ray.getSignBits());
+        assertTrue(ray.isNegative(0));
+        assertFalse(ray.isNegative(1));
+        assertTrue(ray.isNegative(2));
+        assertEquals(0, new Ray(new Point(0, 0, 0), new Vector(0, 0, 1)).getSignBits());
+    }
+
+    @Test
+    public void testDefaultInterval() {
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(1, 0, 0));
+        assertEquals(Ray.DEFAULT_T_MIN, ray.getTMin());
+        assertEquals(Double.POSITIVE_INFINITY, ray.getTMax());
+        assertThrows(IllegalArgumentException.class,
+                () -> new Ray(new Point(0, 0, 0), new Vector(1, 0, 0), 2.0, 1.0));
+    }
+
+    @Test
+    public void testShapesIgnoreHitsBeyondTMax() {
+        Point o = new Point(0, 0, 0);
+        Vector d = new Vector(0, 0, -1);
+        Sphere sphere = new Sphere(0, 0, -5, 1, new Color(), new Color());
+        Plane plane = new Plane(0, 0, -4, 0, 0, 1, new Color(), new Color());
+        Triangle triangle = new Triangle(new Point(-1, -1, -4), new Point(1, -1, -4), new Point(0, 1, -4),
+                new Color(), new Color());
+
+        assertEquals(4.0, sphere.intersect(new Ray(o, d, Ray.DEFAULT_T_MIN, 4.0)).get().getT());
+        assertFalse(sphere.intersect(new Ray(o, d, Ray.DEFAULT_T_MIN, 3.5)).isPresent());
+        assertTrue(plane.intersect(new Ray(o, d, Ray.DEFAULT_T_MIN, 4.0)).isPresent());
+        assertFalse(plane.intersect(new Ray(o, d, Ray.DEFAULT_T_MIN, 3.5)).isPresent());
+        assertTrue(triangle.intersect(new Ray(o, d, Ray.DEFAULT_T_MIN, 4.0)).isPresent());
+        assertFalse(triangle.intersect(new Ray(o, d, Ray.DEFAULT_T_MIN, 3.5)).isPresent());
+
+        // origine dans la sphère : la seconde racine, au-delà de tMin
+        Ray inside = new Ray(new Point(0, 0, -5), d, Ray.DEFAULT_T_MIN, 2.0);
+        assertEquals(1.0, sphere.intersect(inside).get().getT(), 1e-12);
+        // tMin au-delà des deux racines
+        assertFalse(sphere.intersect(new Ray(o, d, 7.0, 10.0)).isPresent());
+    }
+
+    @Test
+    public void testClosestHitSearchRestoresTMax() {
+        Scene scene = new Scene();
+        scene.addShape(new Sphere(0, 0, -5, 1, new Color(), new Color()));
+        scene.addShape(new Sphere(0, 0, -10, 1, new Color(), new Color()));
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(0, 0, -1), Ray.DEFAULT_T_MIN, 20.0);
+
+        assertEquals(4.0, scene.findClosestIntersection(ray).get().getT());
+        assertEquals(20.0, ray.getTMax());
+
+        ray.setTMax(3.0);
+        assertFalse(scene.findClosestIntersection(ray).isPresent());
+        assertEquals(3.0, ray.getTMax());
+    }
+
+    @Test
+    public void testBvhRespectsTMax() {
+        Random random = new Random(12);
+        List<Shape> shapes = new ArrayList<>();
+        for (int k = 0; k < 300; k++) {
+            shapes.add(new Sphere(random.nextGaussian() * 5, random.nextGaussian() * 5, random.nextGaussian() * 5,
+                    0.1 + random.nextDouble(), new Color(), new Color()));
+        }
+        Bvh bvh = new Bvh(shapes);
+        for (int k = 0; k < 500; k++) {
+            Point origin = new Point(random.nextGaussian() * 20, random.nextGaussian() * 20, random.nextGaussian() * 20);
+            Vector dir = new Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            double tMax = random.nextDouble() * 40;
+            Ray ray = new Ray(origin, dir, Ray.DEFAULT_T_MIN, tMax);
+
+            Optional<Intersection> expected = linear(shapes, origin, dir, tMax);
+            Optional<Intersection> actual = bvh.intersect(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                assertSame(expected.get().getShape(), actual.get().getShape());
+            }
+            assertEquals(tMax, ray.getTMax());
+        }
+    }
+}
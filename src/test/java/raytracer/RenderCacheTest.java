@@ -0,0 +1,72 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.core.SceneDigest;
+import raytracer.imaging.RenderCache;
+import raytracer.parsing.SceneFileParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderCacheTest {
+
+    private static final String SCENE =
+            "size 20 10\n" +
+            "output a.png\n" +
+            "camera 0 0 5  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "diffuse 0.5 0.2 0.2\n" +
+            "point 1 1 3  0.5 0.5 0.5\n" +
+            "sphere 0 0 0 1\n";
+
+    private Scene parse(String txt) {
+        return new SceneFileParser().parseContent(txt);
+    }
+
+    @Test
+    public void testDigestIgnoresOutputNameAndFormatting() {
+        String other = "# même scène, autre présentation\n"
+                + SCENE.replace("output a.png", "output b.png").replace("sphere 0 0 0 1", "sphere 0.0 0 0  1.0");
+
+        assertEquals(SceneDigest.of(parse(SCENE)), SceneDigest.of(parse(other)));
+    }
+
+    @Test
+    public void testDigestDependsOnMaterial() {
+        String other = SCENE.replace("diffuse 0.5 0.2 0.2", "diffuse 0.5 0.2 0.3");
+
+        assertNotEquals(SceneDigest.of(parse(SCENE)), SceneDigest.of(parse(other)));
+    }
+
+    @Test
+    public void testLookupStoreAndLruEviction() throws Exception {
+        Path dir = Files.createTempDirectory("render_cache_");
+        RenderCache cache = new RenderCache(dir, 25);
+
+        Path img = Files.createTempFile("img_", ".png");
+        Files.write(img, new byte[10]);
+
+        cache.store("a", img);
+        cache.store("b", img);
+        Files.setLastModifiedTime(dir.resolve("a.png"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(dir.resolve("b.png"), FileTime.fromMillis(2000));
+
+        // "a" devient la plus récente
+        assertTrue(cache.lookup("a").isPresent());
+
+        // 30 octets > 25 : "b" est évincée
+        cache.store("c", img);
+        assertTrue(Files.exists(dir.resolve("a.png")));
+        assertFalse(Files.exists(dir.resolve("b.png")));
+        assertTrue(Files.exists(dir.resolve("c.png")));
+        assertEquals(20, cache.size());
+
+        Path target = Files.createTempFile("out_", ".png");
+        assertTrue(cache.copyTo("a", target));
+        assertFalse(cache.copyTo("b", target));
+    }
+}
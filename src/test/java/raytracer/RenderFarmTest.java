@@ -0,0 +1,131 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.distributed.RenderCoordinator;
+import raytracer.distributed.RenderWorker;
+import raytracer.imaging.ImageRenderer;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderFarmTest {
+
+    private static final String SCENE =
+            "size 40 30\n" +
+            "camera 0 0 5  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "diffuse 0.6 0.2 0.2\n" +
+            "specular 0.5 0.5 0.5\n" +
+            "shininess 20\n" +
+            "point 2 2 4  0.8 0.8 0.8\n" +
+            "sphere 0 0 0 1\n";
+
+    // Travailleur exécuté dans un thread, connecté en loopback
+    private Thread startWorker(int port) {
+        Thread t = new Thread(() -> {
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                RenderWorker.serve(s);
+            } catch (IOException e) {
+                // fin de session
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    // Travailleur défaillant : lit la scène puis coupe la connexion
+    private Thread startFailingWorker(int port) {
+        Thread t = new Thread(() -> {
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(s.getInputStream());
+                in.readInt();
+                in.readFully(new byte[in.readInt()]);
+                in.readByte(); // première demande de tuile, jamais honorée
+            } catch (IOException e) {
+                // ignoré
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    // Travailleur bloqué : lit la scène et une demande de tuile, puis ne
+    // répond plus sans couper la connexion
+    private Thread startHungWorker(int port) {
+        Thread t = new Thread(() -> {
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(s.getInputStream());
+                in.readInt();
+                in.readFully(new byte[in.readInt()]);
+                while (in.read() >= 0) {
+                    // attend la fermeture par le coordinateur
+                }
+            } catch (IOException e) {
+                // ignoré
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    @Test
+    public void testDistributedImageMatchesLocalRender() throws Exception {
+        BufferedImage expected = new ImageRenderer(
+                new SceneFileParser().parseContent(SCENE)).renderImage();
+
+        RenderCoordinator coordinator = new RenderCoordinator(SCENE, 16);
+        BufferedImage actual;
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            startFailingWorker(server.getLocalPort());
+            startWorker(server.getLocalPort());
+            startWorker(server.getLocalPort());
+            actual = coordinator.render(server, 5000);
+        }
+
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testHungWorkerTileIsReassigned() throws Exception {
+        BufferedImage expected = new ImageRenderer(
+                new SceneFileParser().parseContent(SCENE)).renderImage();
+
+        RenderCoordinator coordinator = new RenderCoordinator(SCENE, 16, 300);
+        BufferedImage actual;
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            startHungWorker(server.getLocalPort());
+            Thread.sleep(100);
+            startWorker(server.getLocalPort());
+            actual = coordinator.render(server, 5000);
+        }
+
+        assertTrue(coordinator.getReassignedCount() >= 1);
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testNoWorkerTimesOut() throws Exception {
+        RenderCoordinator coordinator = new RenderCoordinator(SCENE, 16);
+        try (ServerSocket server = new ServerSocket(0, 10, InetAddress.getLoopbackAddress())) {
+            assertThrows(IOException.class, () -> coordinator.render(server, 200));
+        }
+    }
+}
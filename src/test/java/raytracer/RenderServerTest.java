@@ -0,0 +1,168 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.acceleration.MeshFile;
+import raytracer.geometry.Point;
+import raytracer.geometry.shapes.MappedMesh;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+import raytracer.service.RenderServer;
+import raytracer.service.SceneCache;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderServerTest {
+
+    private static final String SCENE =
+            "size 32 24\n" +
+            "camera 0 0 5  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "directional 0 0 -1  0.5 0.5 0.5\n" +
+            "sphere 0 0 0 1\n";
+
+    private HttpURLConnection post(int port, String body) throws Exception {
+        HttpURLConnection c = (HttpURLConnection)
+                new URL("http://localhost:" + port + "/render").openConnection();
+        c.setRequestMethod("POST");
+        c.setDoOutput(true);
+        try (OutputStream out = c.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return c;
+    }
+
+    private HttpURLConnection get(int port, String path) throws Exception {
+        String query = URLEncoder.encode(path, StandardCharsets.UTF_8);
+        return (HttpURLConnection) new URL("http://localhost:" + port + "/render?path=" + query).openConnection();
+    }
+
+    @Test
+    public void testSceneCacheEvictsLeastRecentlyUsed() {
+        SceneCache cache = new SceneCache(2);
+        String a = SCENE;
+        String b = SCENE + "# b\n";
+        String c = SCENE + "# c\n";
+
+        cache.acquire(a).close();
+        cache.acquire(b).close();
+        cache.acquire(a).close(); // a devient le plus récent
+        cache.acquire(c).close(); // évince b
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getHits());
+        cache.acquire(a).close();
+        assertEquals(2, cache.getHits());
+        cache.acquire(b).close();
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictedSceneClosesMeshFilesAfterLastLease() throws Exception {
+        Path file = Files.createTempFile("mesh_", ".rtm");
+        try {
+            MeshFile.write(file, List.of(new Triangle(new Point(-1, -1, 0), new Point(1, -1, 0),
+                    new Point(0, 1, 0), new Color(), new Color())), MeshFile.DEFAULT_CLUSTER_SIZE);
+            SceneCache cache = new SceneCache(1);
+            String withMesh = SCENE + "meshfile " + file + "\n";
+
+            MeshFile mesh;
+            try (SceneCache.Lease lease = cache.acquire(withMesh)) {
+                mesh = ((MappedMesh) lease.getScene().getShapes().get(1)).getMesh();
+                cache.acquire(SCENE).close(); // évince la scène empruntée
+                assertTrue(mesh.isOpen());
+                assertThrows(IllegalStateException.class, () -> {
+                    SceneCache.Lease returned = cache.acquire(SCENE);
+                    returned.close();
+                    returned.getScene();
+                });
+            }
+            assertFalse(mesh.isOpen());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testRenderReturnsPngAndReusesParsedScene() throws Exception {
+        RenderServer server = new RenderServer(0, 2, 4);
+        server.start();
+        try {
+            for (int k = 0; k < 2; k++) {
+                HttpURLConnection c = post(server.getPort(), SCENE);
+                assertEquals(200, c.getResponseCode());
+                assertEquals("image/png", c.getContentType());
+                try (InputStream in = c.getInputStream()) {
+                    BufferedImage img = ImageIO.read(in);
+                    assertEquals(32, img.getWidth());
+                    assertEquals(24, img.getHeight());
+                }
+            }
+            assertEquals(1, server.getCache().getMisses());
+            assertEquals(1, server.getCache().getHits());
+
+            HttpURLConnection bad = post(server.getPort(), "size 10 10\n");
+            assertEquals(400, bad.getResponseCode());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testGetOnlyReadsFilesUnderSceneRoot() throws Exception {
+        Path dir = Files.createTempDirectory("render_server_");
+        Path root = Files.createDirectory(dir.resolve("scenes"));
+        Files.write(root.resolve("a.scene"), SCENE.getBytes(StandardCharsets.UTF_8));
+        Path outside = Files.write(dir.resolve("secret.scene"), SCENE.getBytes(StandardCharsets.UTF_8));
+
+        RenderServer server = new RenderServer(0, 2, 4, root);
+        server.start();
+        try {
+            int port = server.getPort();
+            assertEquals(200, get(port, "a.scene").getResponseCode());
+            assertEquals(200, get(port, "./sub/../a.scene").getResponseCode());
+            assertEquals(404, get(port, "b.scene").getResponseCode());
+            assertEquals(403, get(port, "../secret.scene").getResponseCode());
+            assertEquals(403, get(port, outside.toString()).getResponseCode());
+        } finally {
+            server.stop(0);
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new RenderServer(0, 1, 1, dir.resolve("absent")));
+    }
+
+    @Test
+    public void testPostedMeshFilesMustStayUnderSceneRoot() throws Exception {
+        Path dir = Files.createTempDirectory("render_server_");
+        Path root = Files.createDirectory(dir.resolve("scenes"));
+        List<Triangle> triangles = List.of(new Triangle(new Point(-1, -1, 0), new Point(1, -1, 0),
+                new Point(0, 1, 0), new Color(), new Color()));
+        MeshFile.write(root.resolve("m.rtm"), triangles, MeshFile.DEFAULT_CLUSTER_SIZE);
+        Path outside = dir.resolve("o.rtm");
+        MeshFile.write(outside, triangles, MeshFile.DEFAULT_CLUSTER_SIZE);
+
+        RenderServer server = new RenderServer(0, 2, 4, root);
+        server.start();
+        try {
+            int port = server.getPort();
+            assertEquals(200, post(port, SCENE + "meshfile m.rtm\n").getResponseCode());
+            assertEquals(400, post(port, SCENE + "meshfile ../o.rtm\n").getResponseCode());
+            assertEquals(400, post(port, SCENE + "meshfile " + outside + "\n").getResponseCode());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
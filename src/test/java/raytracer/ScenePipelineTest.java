@@ -0,0 +1,124 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Precision;
+import raytracer.core.Scene;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.parsing.SceneFileParser;
+import raytracer.service.ScenePipeline;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScenePipelineTest {
+
+    private static final String SCENE =
+            "size 32 24\n" +
+            "camera 0 2 6  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 2 5 3  0.6 0.6 0.6\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "plane 0 -1 0  0 1 0\n" +
+            "diffuse 0.8 0.2 0.2\n";
+
+    private static String scene(double x) {
+        return SCENE + "sphere " + x + " 0 0 1\n";
+    }
+
+    /** Attend que la chaîne ait terminé count scènes, au plus dix secondes. */
+    private static void awaitDone(ScenePipeline pipeline, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (pipeline.getWrittenCount() + pipeline.getFailedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static Path write(Path dir, String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rendersExistingAndDroppedScenes() throws Exception {
+        Path in = Files.createTempDirectory("pipeline_in_");
+        Path out = Files.createTempDirectory("pipeline_out_");
+        write(in, "a.scene", scene(-1));
+        write(in, "notes.txt", "pas une scène");
+
+        try (ScenePipeline pipeline = new ScenePipeline(in, out, Precision.DOUBLE, 2, 1)) {
+            pipeline.start();
+            awaitDone(pipeline, 1);
+            write(in, "b.scene", scene(0));
+            write(in, "c.scene", scene(1));
+            write(in, "broken.scene", "sphere 0 0\n");
+            awaitDone(pipeline, 4);
+
+            assertEquals(3, pipeline.getWrittenCount());
+            assertEquals(1, pipeline.getFailedCount());
+            assertEquals(3, pipeline.getRenderedCount());
+            assertArrayEquals(new int[] {0, 0, 0}, pipeline.getQueueDepths());
+            assertTrue(pipeline.getThroughput() > 0);
+            assertTrue(pipeline.getMeanLatencyMillis() > 0);
+            assertTrue(pipeline.report().contains("3 images écrites"));
+        }
+
+        for (String name : new String[] {"a", "b", "c"}) {
+            assertTrue(Files.exists(out.resolve(name + ".png")), name);
+        }
+        assertFalse(Files.exists(out.resolve("notes.png")));
+        assertFalse(Files.exists(out.resolve("broken.png")));
+    }
+
+    @Test
+    void matchesDirectRender() throws Exception {
+        Path in = Files.createTempDirectory("pipeline_in_");
+        Path out = Files.createTempDirectory("pipeline_out_");
+        Path file = write(in, "s.scene", scene(0.5));
+
+        try (ScenePipeline pipeline = new ScenePipeline(in, out, Precision.DOUBLE, 1, 4)) {
+            pipeline.start();
+            awaitDone(pipeline, 1);
+            assertEquals(1, pipeline.getWrittenCount());
+        }
+
+        Scene scene = new SceneFileParser().parse(file.toString());
+        Framebuffer expected = Framebuffer.allocate(scene.getWidth(), scene.getHeight());
+        new ImageRenderer(scene).renderFramebuffer(expected);
+        BufferedImage actual = ImageIO.read(out.resolve("s.png").toFile());
+        for (int y = 0; y < scene.getHeight(); y++) {
+            for (int x = 0; x < scene.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y) & 0xFFFFFF, x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void unchangedSceneIsNotRenderedTwice() throws Exception {
+        Path in = Files.createTempDirectory("pipeline_in_");
+        Path out = Files.createTempDirectory("pipeline_out_");
+        write(in, "a.scene", scene(0));
+
+        try (ScenePipeline pipeline = new ScenePipeline(in, out, Precision.DOUBLE, 1, 2)) {
+            pipeline.start();
+            awaitDone(pipeline, 1);
+            // relire le répertoire ne remet pas la scène en file
+            Thread.sleep(3 * ScenePipeline.SETTLE_MILLIS);
+            assertEquals(1, pipeline.getParsedCount());
+        }
+    }
+
+    @Test
+    void rejectsInvalidSettings() throws IOException {
+        Path in = Files.createTempDirectory("pipeline_in_");
+        assertThrows(IllegalArgumentException.class,
+                () -> new ScenePipeline(in, in, Precision.DOUBLE, 0, 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ScenePipeline(in, in, Precision.DOUBLE, 1, 0));
+    }
+}
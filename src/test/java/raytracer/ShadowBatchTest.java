@@ -0,0 +1,88 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.core.ShadowBatch;
+import raytracer.geometry.Point;
+import raytracer.imaging.DeferredRenderer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.lighting.AbstractLight;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShadowBatchTest {
+
+    private static final String SCENE =
+            "size 48 40\n" +
+            "camera 0 3 8  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 2 5 3  0.5 0.5 0.5\n" +
+            "point -4 3 1  0.3 0.3 0.3\n" +
+            "directional 1 -1 -0.5  0.2 0.2 0.2\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "plane 0 -1 0  0 1 0\n" +
+            "diffuse 0.2 0.6 0.3\n" +
+            "sphere 0 0 0 1\n" +
+            "sphere -1.5 -0.4 1.2 0.6\n" +
+            "sphere 1.8 -0.3 -0.5 0.7\n" +
+            "sphere 0.5 1.5 -1 0.4\n" +
+            "sphere -2 1 -2 0.8\n" +
+            "sphere 2.5 1 1 0.3\n" +
+            "sphere -0.5 -0.8 2.5 0.2\n";
+
+    @Test
+    public void testSortedBatchMatchesPerPointShadows() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        Random random = new Random(5);
+        ShadowBatch batch = new ShadowBatch(4);
+        Point[] points = new Point[500];
+        for (int k = 0; k < points.length; k++) {
+            points[k] = new Point(6 * random.nextDouble() - 3, -1 + 1e-3, 6 * random.nextDouble() - 3);
+        }
+        boolean[] inShadow = new boolean[points.length];
+        for (AbstractLight light : scene.getLights()) {
+            batch.clear();
+            for (int k = points.length - 1; k >= 0; k--) {
+                batch.add(k, points[k]);
+            }
+            assertEquals(points.length, batch.size());
+            int occluded = batch.trace(scene, light, inShadow);
+            int expected = 0;
+            for (int k = 0; k < points.length; k++) {
+                assertEquals(scene.isInShadow(points[k], light), inShadow[k], "point " + k);
+                if (inShadow[k]) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, occluded);
+        }
+        assertEquals(3, batch.getBatchCount());
+        assertEquals(1500, batch.getRayCount());
+        assertEquals(500.0, batch.getMeanBatchSize(), 1e-12);
+        assertTrue(batch.getOccludedCount() > 0);
+        assertTrue(batch.getOccludedFraction() < 1.0);
+    }
+
+    @Test
+    public void testDeferredBatchesReportSizesAndMatchImmediateRendering() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        DeferredRenderer deferred = new DeferredRenderer(16);
+        BufferedImage image = deferred.render(scene);
+        BufferedImage expected = new ImageRenderer(scene).renderImage();
+        for (int j = 0; j < 40; j++) {
+            for (int i = 0; i < 48; i++) {
+                assertEquals(expected.getRGB(i, j), image.getRGB(i, j), "pixel " + i + "," + j);
+            }
+        }
+        // 3 x 3 tuiles, 3 lumières : au plus un lot par tuile et par lumière
+        assertTrue(deferred.getLastShadowBatches() > 0);
+        assertTrue(deferred.getLastShadowBatches() <= 27);
+        assertTrue(deferred.getLastShadowRays() > 0);
+        assertTrue(deferred.getLastOccludedShadowRays() > 0);
+        assertTrue(deferred.getLastOccludedShadowRays() < deferred.getLastShadowRays());
+    }
+}
@@ -0,0 +1,130 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.RayTracer;
+import raytracer.core.Scene;
+import raytracer.core.TraceStats;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.imaging.Color;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.lighting.AbstractLight;
+import raytracer.parsing.SceneFileParser;
+
+import java.awt.image.BufferedImage;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShadowSkipTest {
+
+    /** Sphères vues de près, éclairées de côté : une moitié de chaque sphère tourne le dos à chaque lumière. */
+    private static final String SCENE =
+            "size 60 40\n" +
+            "camera 0 1 5  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 6 1 0  0.4 0.4 0.4\n" +
+            "point -6 2 -1  0.3 0.3 0.3\n" +
+            "directional 0 -1 0  0.3 0.3 0.3\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "plane 0 -1 0  0 1 0\n" +
+            "diffuse 0.7 0.3 0.2\n" +
+            "specular 0.4 0.4 0.4\n" +
+            "shininess 16\n" +
+            "sphere -0.6 0 0 1\n" +
+            "diffuse 0.2 0.4 0.6\n" +
+            "specular 0 0 0\n" +
+            "sphere 1.2 -0.4 1 0.6\n";
+
+    /**
+     * Éclairage de référence : un rayon d'ombre par lumière, sans tri.
+     */
+    private static Color naiveColor(Scene scene, Intersection inter) {
+        Point p = inter.getPoint();
+        Vector eyeDir = (Vector) scene.getCamera().getLookFrom().subtract(p).normalize();
+        Color result = new Color(scene.getAmbient().x, scene.getAmbient().y, scene.getAmbient().z);
+        for (AbstractLight light : scene.getLights()) {
+            Optional<Intersection> hit = scene.findClosestIntersection(new Ray(p, light.getLightDirection(p)));
+            if (hit.isPresent() && hit.get().getT() > 1e-4
+                    && hit.get().getT() < light.getMaxDistance(p) - 1e-4) {
+                continue;
+            }
+            result = result.add(inter.computeLambert(light)).add(inter.computePhong(light, eyeDir));
+        }
+        return result;
+    }
+
+    @Test
+    public void testSkippingShadowRaysKeepsPixelsIdentical() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        RayTracer tracer = new RayTracer(scene);
+
+        TraceStats stats = new TraceStats().attach();
+        BufferedImage image;
+        try {
+            image = new ImageRenderer(scene).renderImage();
+        } finally {
+            TraceStats.detach();
+        }
+
+        for (int j = 0; j < scene.getHeight(); j++) {
+            for (int i = 0; i < scene.getWidth(); i++) {
+                Optional<Intersection> hit = tracer.tracePrimary(i, j);
+                int expected = hit.isPresent() ? naiveColor(scene, hit.get()).toRGB() : 0;
+                assertEquals(expected, image.getRGB(i, j) & 0xFFFFFF, "pixel " + i + "," + j);
+            }
+        }
+
+        // faces arrière des sphères et lumières sans effet sur le pixel
+        assertTrue(stats.skippedShadowRays > 0);
+        assertTrue(stats.getSkippedShadowFraction() > 0.1, stats.toString());
+    }
+
+    @Test
+    public void testSupersampledPixelsAverageExactColors() {
+        Scene scene = new SceneFileParser().parseContent(SCENE.replace("size 60 40", "size 80 60"));
+        ImageRenderer renderer = new ImageRenderer(scene);
+        renderer.setSamples(3);
+        BufferedImage image = renderer.renderImage();
+
+        // mêmes échantillons, avec et sans arrêt anticipé des rayons d'ombre
+        Framebuffer exact = accumulate(scene, 3, true);
+        Framebuffer early = accumulate(scene, 3, false);
+        int differing = 0;
+        for (int j = 0; j < scene.getHeight(); j++) {
+            for (int i = 0; i < scene.getWidth(); i++) {
+                assertEquals(exact.getRGB(i, j), image.getRGB(i, j) & 0xFFFFFF, "pixel " + i + "," + j);
+                if (early.getRGB(i, j) != exact.getRGB(i, j)) {
+                    differing++;
+                }
+            }
+        }
+        // la moyenne de bornes inférieures n'est pas la moyenne des couleurs
+        assertTrue(differing > 0);
+    }
+
+    /**
+     * Moyenne de n x n échantillons par pixel, comme ImageRenderer.
+     */
+    private static Framebuffer accumulate(Scene scene, int n, boolean exact) {
+        RayTracer tracer = new RayTracer(scene);
+        Framebuffer image = Framebuffer.allocate(scene.getWidth(), scene.getHeight());
+        for (int j = 0; j < scene.getHeight(); j++) {
+            for (int i = 0; i < scene.getWidth(); i++) {
+                for (int sy = 0; sy < n; sy++) {
+                    for (int sx = 0; sx < n; sx++) {
+                        Optional<Intersection> hit = scene.findClosestIntersection(
+                                tracer.getPrimaryRay(i + (sx + 0.5) / n, j + (sy + 0.5) / n));
+                        Color c = hit.isPresent() ? scene.computeColor(hit.get(), exact) : new Color(0, 0, 0);
+                        image.add(i, j, (float) c.x, (float) c.y, (float) c.z, 1f);
+                    }
+                }
+            }
+        }
+        image.resolve(0, 0, scene.getWidth(), scene.getHeight());
+        return image;
+    }
+}
@@ -0,0 +1,124 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Intersection;
+import raytracer.core.Ray;
+import raytracer.core.Scene;
+import raytracer.core.TraceStats;
+import raytracer.geometry.BoundingBox;
+import raytracer.geometry.Point;
+import raytracer.geometry.Vector;
+import raytracer.geometry.shapes.Plane;
+import raytracer.geometry.shapes.Shape;
+import raytracer.geometry.shapes.Sphere;
+import raytracer.geometry.shapes.Triangle;
+import raytracer.imaging.Color;
+
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShapeBoundsTest {
+
+    private static Optional<Intersection> linear(Scene scene, Ray ray) {
+        Optional<Intersection> best = Optional.empty();
+        for (Shape s : scene.getShapes()) {
+            Optional<Intersection> hit = s.intersect(ray);
+            if (hit.isPresent() && hit.get().getT() > 0
+                    && (!best.isPresent() || hit.get().getT() < best.get().getT())) {
+                best = hit;
+            }
+        }
+        return best;
+    }
+
+    /** Scène sous le seuil de la BVH : sphères, triangles alignés sur les axes et un plan. */
+    private static Scene smallScene() {
+        Scene scene = new Scene();
+        scene.addShape(new Sphere(0, 0, 0, 1, new Color(), new Color()));
+        scene.addShape(new Sphere(2.5, 0.5, -1, 0.5, new Color(), new Color()));
+        scene.addShape(new Triangle(new Point(-3, -1, -3), new Point(3, -1, -3), new Point(3, -1, 3),
+                new Color(), new Color()));
+        scene.addShape(new Triangle(new Point(-3, -1, -3), new Point(3, -1, 3), new Point(-3, -1, 3),
+                new Color(), new Color()));
+        scene.addShape(new Triangle(new Point(-2, 0, -4), new Point(2, 0, -4), new Point(0, 2, -4),
+                new Color(), new Color()));
+        scene.addShape(new Plane(0, -5, 0, 0, 1, 0, new Color(), new Color()));
+        assertTrue(scene.getShapes().size() < Scene.BVH_THRESHOLD);
+        return scene;
+    }
+
+    @Test
+    public void testRayPrecomputesInverseDirection() {
+        Ray ray = new Ray(new Point(0, 0, 0), new Vector(0, 3, -4));
+        assertEquals(1.0 / 0.6, ray.getInvDirY(), 1e-12);
+        assertEquals(-1.0 / 0.8, ray.getInvDirZ(), 1e-12);
+        assertEquals(Double.POSITIVE_INFINITY, ray.getInvDirX());
+    }
+
+    @Test
+    public void testSlabTest() {
+        BoundingBox box = new BoundingBox(-1, -1, -1, 1, 1, 1);
+        assertTrue(box.intersects(new Ray(new Point(0, 0, 5), new Vector(0, 0, -1)), Double.POSITIVE_INFINITY));
+        // boîte derrière l'origine
+        assertFalse(box.intersects(new Ray(new Point(0, 0, 5), new Vector(0, 0, 1)), Double.POSITIVE_INFINITY));
+        // boîte au-delà de tMax
+        assertFalse(box.intersects(new Ray(new Point(0, 0, 5), new Vector(0, 0, -1)), 3.0));
+        // direction parallèle à une face, origine hors de la boîte puis sur la face
+        assertFalse(box.intersects(new Ray(new Point(0, 2, 5), new Vector(0, 0, -1)), Double.POSITIVE_INFINITY));
+        assertTrue(box.intersects(new Ray(new Point(0, 1, 5), new Vector(0, 0, -1)), Double.POSITIVE_INFINITY));
+        // origine dans la boîte
+        assertTrue(box.intersects(new Ray(new Point(0, 0, 0), new Vector(1, 1, 1)), 0.5));
+        assertTrue(BoundingBox.INFINITE.intersects(new Ray(new Point(0, 0, 0), new Vector(1, 0, 0)), 1.0));
+    }
+
+    @Test
+    public void testPaddedBoxContainsOriginal() {
+        BoundingBox box = new BoundingBox(-2, 0, 1e6, 3, 0, 2e6).padded();
+        assertTrue(box.getMinX() < -2 && box.getMaxX() > 3);
+        assertTrue(box.getMinY() < 0 && box.getMaxY() > 0);
+        assertTrue(box.getMinZ() < 1e6 && box.getMaxZ() > 2e6);
+        assertSame(BoundingBox.INFINITE, BoundingBox.INFINITE.padded());
+    }
+
+    @Test
+    public void testRejectionKeepsClosestHits() {
+        Scene scene = smallScene();
+        Random random = new Random(3);
+        for (int k = 0; k < 2000; k++) {
+            Ray ray = new Ray(new Point(random.nextGaussian() * 4, random.nextGaussian() * 4, random.nextGaussian() * 4),
+                    new Vector(random.nextGaussian(), random.nextGaussian(), random.nextGaussian()));
+            Optional<Intersection> expected = linear(scene, ray);
+            Optional<Intersection> actual = scene.findClosestIntersection(ray);
+            assertEquals(expected.isPresent(), actual.isPresent());
+            if (expected.isPresent()) {
+                assertSame(expected.get().getShape(), actual.get().getShape());
+                assertEquals(expected.get().getT(), actual.get().getT());
+            }
+        }
+
+        // rayons verticaux sur les arêtes et les sommets des triangles du sol, alignés sur les axes
+        for (int i = -3; i <= 3; i++) {
+            for (int j = -3; j <= 3; j++) {
+                Ray ray = new Ray(new Point(i, 5, j), new Vector(0, -1, 0));
+                Optional<Intersection> expected = linear(scene, ray);
+                assertEquals(expected.get().getT(), scene.findClosestIntersection(ray).get().getT());
+            }
+        }
+    }
+
+    @Test
+    public void testMissedBoxesAreNotTested() {
+        Scene scene = smallScene();
+        TraceStats stats = new TraceStats().attach();
+        try {
+            // au-dessus de la sphère centrale, vers le haut : les triangles sont rejetés par
+            // leur boîte, les sphères et le plan infini sont testés directement
+            scene.findClosestIntersection(new Ray(new Point(0, 3, 0), new Vector(0, 1, 0)));
+            assertEquals(3, stats.intersectionTests);
+        } finally {
+            TraceStats.detach();
+        }
+    }
+}
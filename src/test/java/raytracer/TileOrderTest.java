@@ -0,0 +1,116 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.core.Scene;
+import raytracer.imaging.Framebuffer;
+import raytracer.imaging.ImageRenderer;
+import raytracer.imaging.Tile;
+import raytracer.imaging.TileOrder;
+import raytracer.imaging.TileScheduler;
+import raytracer.parsing.SceneFileParser;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileOrderTest {
+
+    private static final String SCENE =
+            "size 150 110\n" +
+            "camera 0 2 7  0 0 0  0 1 0  45\n" +
+            "ambient 0.1 0.1 0.1\n" +
+            "point 3 4 2  0.5 0.5 0.5\n" +
+            "diffuse 0.5 0.5 0.5\n" +
+            "plane 0 -1 0  0 1 0\n" +
+            "diffuse 0.6 0.2 0.2\n" +
+            "sphere 0 0 0 1\n" +
+            "sphere 1.5 -0.5 1 0.5\n";
+
+    @Test
+    public void testEveryOrderIsAPermutation() {
+        List<Tile> tiles = Tile.split(300, 200, 32);
+        for (TileOrder order : TileOrder.values()) {
+            List<Tile> ordered = order.arrange(tiles, 32);
+            assertEquals(tiles.size(), ordered.size());
+            assertEquals(new HashSet<>(tiles), new HashSet<>(ordered), order.name());
+        }
+        assertEquals(tiles, TileOrder.ROW_MAJOR.arrange(tiles, 32));
+        assertEquals(TileOrder.SPIRAL, TileOrder.parse("Spiral"));
+        assertThrows(IllegalArgumentException.class, () -> TileOrder.parse("zigzag"));
+    }
+
+    @Test
+    public void testHilbertStepsBetweenNeighbours() {
+        // grille 8 x 8 : chaque tuile est voisine de la précédente sur la courbe
+        List<Tile> ordered = TileOrder.HILBERT.arrange(Tile.split(256, 256, 32), 32);
+        for (int k = 1; k < ordered.size(); k++) {
+            Tile a = ordered.get(k - 1);
+            Tile b = ordered.get(k);
+            int distance = Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+            assertEquals(32, distance, a + " -> " + b);
+        }
+    }
+
+    @Test
+    public void testSpiralStartsAtCentre() {
+        List<Tile> ordered = TileOrder.SPIRAL.arrange(Tile.split(5 * 32, 5 * 32, 32), 32);
+        assertEquals(2 * 32, ordered.get(0).getX());
+        assertEquals(2 * 32, ordered.get(0).getY());
+        // les 8 tuiles suivantes forment le premier anneau
+        for (int k = 1; k <= 8; k++) {
+            Tile t = ordered.get(k);
+            assertTrue(Math.abs(t.getX() / 32 - 2) <= 1 && Math.abs(t.getY() / 32 - 2) <= 1, t.toString());
+        }
+    }
+
+    @Test
+    public void testSchedulerCutsContiguousSegmentsOfEqualCost() {
+        List<Tile> tiles = TileOrder.HILBERT.arrange(Tile.split(256, 256, 32), 32);
+        double[] costs = new double[tiles.size()];
+        for (int k = 0; k < costs.length; k++) {
+            // moitié de l'image dix fois plus chère
+            costs[k] = k < costs.length / 2 ? 10.0 : 1.0;
+        }
+        TileScheduler scheduler = new TileScheduler(tiles, costs, 4);
+        List<List<Tile>> segments = scheduler.getSegments();
+        assertEquals(4, segments.size());
+        List<Tile> joined = new ArrayList<>();
+        for (List<Tile> segment : segments) {
+            joined.addAll(segment);
+        }
+        assertEquals(tiles, joined);
+        // les segments de la partie chère comptent moins de tuiles
+        assertTrue(segments.get(0).size() < segments.get(3).size());
+
+        Set<List<Tile>> handed = new HashSet<>();
+        for (List<Tile> s = scheduler.next(); s != null; s = scheduler.next()) {
+            handed.add(s);
+        }
+        assertEquals(4, handed.size());
+        assertThrows(IllegalArgumentException.class, () -> new TileScheduler(tiles, new double[3], 2));
+    }
+
+    @Test
+    public void testParallelOrdersRenderTheSameImage() {
+        Scene scene = new SceneFileParser().parseContent(SCENE);
+        Framebuffer expected = Framebuffer.allocate(150, 110);
+        new ImageRenderer(scene).renderFramebuffer(expected);
+
+        for (TileOrder order : TileOrder.values()) {
+            ImageRenderer renderer = new ImageRenderer(scene);
+            renderer.setThreads(3);
+            renderer.setTileOrder(order);
+            Framebuffer image = Framebuffer.allocate(150, 110);
+            renderer.renderFramebuffer(image);
+            for (int y = 0; y < 110; y++) {
+                for (int x = 0; x < 150; x++) {
+                    assertEquals(expected.getRGB(x, y), image.getRGB(x, y), order + " pixel " + x + "," + y);
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ImageRenderer(scene).setThreads(0));
+    }
+}
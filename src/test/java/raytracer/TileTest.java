@@ -0,0 +1,38 @@
+package raytracer;
+
+import org.junit.jupiter.api.Test;
+import raytracer.imaging.Tile;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileTest {
+
+    @Test
+    public void testSplitCoversImageExactly() {
+        List<Tile> tiles = Tile.split(130, 70, 64);
+
+        // 3 colonnes x 2 lignes
+        assertEquals(6, tiles.size());
+
+        int covered = 0;
+        for (Tile t : tiles) {
+            covered += t.getPixelCount();
+            assertTrue(t.getX() + t.getWidth() <= 130);
+            assertTrue(t.getY() + t.getHeight() <= 70);
+        }
+        assertEquals(130 * 70, covered);
+
+        // tuile du coin inférieur droit tronquée
+        Tile last = tiles.get(5);
+        assertEquals(5, last.getIndex());
+        assertEquals(2, last.getWidth());
+        assertEquals(6, last.getHeight());
+    }
+
+    @Test
+    public void testInvalidTileSizeThrows() {
+        assertThrows(IllegalArgumentException.class, () -> Tile.split(10, 10, 0));
+    }
+}